@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.benchmarks;
+
+import java.security.GeneralSecurityException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.eclipse.californium.scandium.dtls.cipher.CCMBlockCipher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for {@link CCMBlockCipher}.
+ * <p>
+ * Compares the variants returning a new array with the variants writing into
+ * a caller supplied buffer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CcmBenchmark {
+
+	private static final int MAC_LENGTH = 8;
+
+	@Param({ "16", "128", "1024" })
+	public int size;
+
+	private SecretKey key;
+	private byte[] nonce;
+	private byte[] additionalData;
+	private byte[] message;
+	private byte[] encrypted;
+	private byte[] buffer;
+
+	@Setup
+	public void setup() throws GeneralSecurityException {
+		Random random = new Random(4711);
+		byte[] keyBytes = new byte[16];
+		random.nextBytes(keyBytes);
+		key = new SecretKeySpec(keyBytes, "AES");
+		nonce = new byte[12];
+		random.nextBytes(nonce);
+		additionalData = new byte[13];
+		random.nextBytes(additionalData);
+		message = new byte[size];
+		random.nextBytes(message);
+		encrypted = CCMBlockCipher.encrypt(key, nonce, additionalData, message, MAC_LENGTH);
+		buffer = new byte[size + MAC_LENGTH];
+	}
+
+	@Benchmark
+	public byte[] encrypt() throws GeneralSecurityException {
+		return CCMBlockCipher.encrypt(key, nonce, additionalData, message, MAC_LENGTH);
+	}
+
+	@Benchmark
+	public int encryptIntoBuffer() throws GeneralSecurityException {
+		return CCMBlockCipher.encrypt(key, nonce, additionalData, message, 0, message.length, buffer, 0,
+				MAC_LENGTH);
+	}
+
+	@Benchmark
+	public byte[] decrypt() throws GeneralSecurityException {
+		return CCMBlockCipher.decrypt(key, nonce, additionalData, encrypted, MAC_LENGTH);
+	}
+
+	@Benchmark
+	public int decryptIntoBuffer() throws GeneralSecurityException {
+		return CCMBlockCipher.decrypt(key, nonce, additionalData, encrypted, 0, encrypted.length, buffer, 0,
+				MAC_LENGTH);
+	}
+}
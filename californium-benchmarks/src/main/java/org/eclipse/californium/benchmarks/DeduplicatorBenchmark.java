@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.benchmarks;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.core.coap.Request;
+import org.eclipse.californium.core.network.Exchange;
+import org.eclipse.californium.core.network.KeyMID;
+import org.eclipse.californium.core.network.config.NetworkConfig;
+import org.eclipse.californium.core.network.deduplication.Deduplicator;
+import org.eclipse.californium.core.network.deduplication.DeduplicatorFactory;
+import org.eclipse.californium.elements.AddressEndpointContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark comparing the {@link Deduplicator} implementations.
+ * <p>
+ * The deduplicator is filled with {@code PEERS * MESSAGES} exchanges.
+ * {@link #duplicate()} looks up already received messages,
+ * {@link #replace()} replaces them by newer exchanges. Use
+ * {@code -prof gc} to compare the allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeduplicatorBenchmark {
+
+	private static final int PEERS = 256;
+	private static final int MESSAGES = 256;
+
+	@Param({ NetworkConfig.Keys.DEDUPLICATOR_MARK_AND_SWEEP, NetworkConfig.Keys.DEDUPLICATOR_CROP_ROTATION,
+			NetworkConfig.Keys.DEDUPLICATOR_OPEN_ADDRESSING })
+	public String deduplicator;
+
+	private Deduplicator store;
+	private KeyMID[] keys;
+	private Exchange[] exchanges;
+	private int index;
+
+	@Setup
+	public void setup() {
+		NetworkConfig config = NetworkConfig.createStandardWithoutFile();
+		config.setString(NetworkConfig.Keys.DEDUPLICATOR, deduplicator);
+		store = DeduplicatorFactory.getDeduplicatorFactory().createDeduplicator(config);
+		keys = new KeyMID[PEERS * MESSAGES];
+		exchanges = new Exchange[PEERS * MESSAGES];
+		for (int peer = 0; peer < PEERS; ++peer) {
+			InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 10000 + peer);
+			for (int mid = 0; mid < MESSAGES; ++mid) {
+				int entry = peer * MESSAGES + mid;
+				keys[entry] = new KeyMID(mid, address);
+				exchanges[entry] = newExchange(mid, address);
+				store.findPrevious(keys[entry], exchanges[entry]);
+			}
+		}
+	}
+
+	@Benchmark
+	public Exchange duplicate() {
+		int entry = next();
+		return store.findPrevious(keys[entry], exchanges[entry]);
+	}
+
+	@Benchmark
+	public Exchange find() {
+		return store.find(keys[next()]);
+	}
+
+	@Benchmark
+	public boolean replace() {
+		int entry = next();
+		return store.replacePrevious(keys[entry], exchanges[entry], exchanges[entry]);
+	}
+
+	private int next() {
+		index = (index + 1) % keys.length;
+		return index;
+	}
+
+	private static Exchange newExchange(int mid, InetSocketAddress peer) {
+		Request request = Request.newGet();
+		request.setMID(mid);
+		request.setSourceContext(new AddressEndpointContext(peer));
+		return new Exchange(request, Exchange.Origin.REMOTE, null);
+	}
+}
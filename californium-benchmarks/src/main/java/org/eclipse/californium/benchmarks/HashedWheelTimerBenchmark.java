@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.elements.util.DaemonThreadFactory;
+import org.eclipse.californium.elements.util.ExecutorsUtil;
+import org.eclipse.californium.elements.util.HashedWheelTimer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark comparing {@link HashedWheelTimer} with the
+ * {@link ScheduledThreadPoolExecutor} for many pending timers.
+ * <p>
+ * The timers are scheduled with delays in the range of the exchange lifetime,
+ * so none expires during the measurement. Each operation schedules and
+ * cancels an other timer, as done for retransmissions, which are cancelled
+ * by the response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashedWheelTimerBenchmark {
+
+	private static final Runnable TASK = new Runnable() {
+
+		@Override
+		public void run() {
+		}
+	};
+
+	@Param({ "wheel", "pool" })
+	public String timer;
+
+	@Param({ "1000", "100000", "1000000" })
+	public int pending;
+
+	private final Random random = new Random(4711);
+	private ExecutorService executor;
+	private ScheduledExecutorService scheduler;
+
+	@Setup
+	public void setup() {
+		if ("wheel".equals(timer)) {
+			executor = ExecutorsUtil.newFixedThreadPool(1, new DaemonThreadFactory("Benchmark#"));
+			scheduler = new HashedWheelTimer(executor, new DaemonThreadFactory("Timer#"), 10, TimeUnit.MILLISECONDS,
+					512);
+		} else {
+			ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(1,
+					new DaemonThreadFactory("Timer#"));
+			pool.setRemoveOnCancelPolicy(true);
+			scheduler = pool;
+		}
+		for (int count = 0; count < pending; ++count) {
+			scheduler.schedule(TASK, nextDelay(), TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		scheduler.shutdownNow();
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+	@Benchmark
+	public boolean scheduleAndCancel() {
+		ScheduledFuture<?> future = scheduler.schedule(TASK, nextDelay(), TimeUnit.MILLISECONDS);
+		return future.cancel(false);
+	}
+
+	private long nextDelay() {
+		return 300000 + random.nextInt(300000);
+	}
+}
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.elements.util.LeastRecentlyUsedCache;
+import org.eclipse.californium.elements.util.SegmentedLeastRecentlyUsedCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark comparing concurrent reads of the {@link LeastRecentlyUsedCache},
+ * guarded by a single lock, with the {@link SegmentedLeastRecentlyUsedCache}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class LeastRecentlyUsedCacheBenchmark {
+
+	private static final int ENTRIES = 65536;
+
+	@Param({ "locked", "segmented" })
+	public String cache;
+
+	private Reader reader;
+
+	@Setup
+	public void setup() {
+		if ("locked".equals(cache)) {
+			final LeastRecentlyUsedCache<Integer, Integer> lru = new LeastRecentlyUsedCache<>(ENTRIES, ENTRIES,
+					3600);
+			for (int index = 0; index < ENTRIES; ++index) {
+				lru.put(index, index);
+			}
+			reader = new Reader() {
+
+				@Override
+				public Integer get(Integer key) {
+					synchronized (lru) {
+						return lru.get(key);
+					}
+				}
+			};
+		} else {
+			final SegmentedLeastRecentlyUsedCache<Integer, Integer> lru = new SegmentedLeastRecentlyUsedCache<>(16,
+					ENTRIES, 3600);
+			for (int index = 0; index < ENTRIES; ++index) {
+				lru.put(index, index);
+			}
+			reader = new Reader() {
+
+				@Override
+				public Integer get(Integer key) {
+					return lru.get(key);
+				}
+			};
+		}
+	}
+
+	@Benchmark
+	public Integer get(ThreadIndex index) {
+		return reader.get(index.next());
+	}
+
+	@State(Scope.Thread)
+	public static class ThreadIndex {
+
+		private int index = (int) Thread.currentThread().getId() * 7919;
+
+		private Integer next() {
+			index = (index + 1) & (ENTRIES - 1);
+			return index;
+		}
+	}
+
+	private interface Reader {
+
+		Integer get(Integer key);
+	}
+}
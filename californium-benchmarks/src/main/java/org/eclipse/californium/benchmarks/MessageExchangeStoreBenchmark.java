@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.benchmarks;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.core.coap.Request;
+import org.eclipse.californium.core.network.Exchange;
+import org.eclipse.californium.core.network.InMemoryMessageExchangeStore;
+import org.eclipse.californium.core.network.config.NetworkConfig;
+import org.eclipse.californium.elements.AddressEndpointContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for {@link InMemoryMessageExchangeStore} registration and lookup.
+ * <p>
+ * The store is filled with {@link #exchanges} outgoing requests. Each
+ * operation registers an other request, looks it up by token and MID, and
+ * removes it again. The requests use fixed MIDs and tokens, so neither the
+ * MID provider nor the token generator are part of the measurement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageExchangeStoreBenchmark {
+
+	private static final int PEERS = 64;
+	private static final int PROBES = 1024;
+
+	@Param({ "1000", "100000" })
+	public int exchanges;
+
+	private InMemoryMessageExchangeStore store;
+	private Exchange[] probes;
+	private int index;
+
+	@Setup
+	public void setup() {
+		store = new InMemoryMessageExchangeStore(NetworkConfig.createStandardWithoutFile());
+		for (int count = 0; count < exchanges; ++count) {
+			store.registerOutboundRequest(newExchange(count));
+		}
+		probes = new Exchange[PROBES];
+		for (int count = 0; count < PROBES; ++count) {
+			probes[count] = newExchange(exchanges + count);
+		}
+	}
+
+	@Benchmark
+	public Exchange registerLookupRemove() {
+		Exchange exchange = probes[index++ & (PROBES - 1)];
+		store.registerOutboundRequest(exchange);
+		Exchange found = store.get(exchange.getKeyToken());
+		if (found == store.get(exchange.getKeyMID())) {
+			store.remove(exchange.getKeyToken(), exchange);
+			store.remove(exchange.getKeyMID(), exchange);
+		}
+		return found;
+	}
+
+	private static Exchange newExchange(int count) {
+		int peer = count % PEERS;
+		int mid = (count / PEERS) & 0xffff;
+		InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 10000 + peer);
+		Request request = Request.newGet();
+		request.setMID(mid);
+		request.setToken(new byte[] { (byte) (count >> 24), (byte) (count >> 16), (byte) (count >> 8), (byte) count });
+		request.setDestinationContext(new AddressEndpointContext(address));
+		request.getOptions().setUriPath("sensors/temperature");
+		Exchange exchange = new Exchange(request, Exchange.Origin.LOCAL, null);
+		exchange.setRequest(request);
+		return exchange;
+	}
+}
@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.benchmarks;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.californium.core.network.InMemoryMessageIdProvider;
+import org.eclipse.californium.core.network.config.NetworkConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for the {@link InMemoryMessageIdProvider} with the different
+ * tracker modes accessed by several threads.
+ * <p>
+ * Each operation gets the next MID for one of {@link #PEERS} peers. The
+ * exchange lifetime is reduced to {@link #EXCHANGE_LIFETIME} milliseconds, so
+ * the MIDs are not exhausted during the benchmark. Use {@code -t} to change
+ * the number of threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class MessageIdProviderBenchmark {
+
+	private static final int PEERS = 1024;
+	private static final int EXCHANGE_LIFETIME = 100;
+
+	/**
+	 * Tracker mode. {@code MAPBASED} is not included by default, it requires
+	 * several GB of heap for {@link #PEERS}.
+	 */
+	@Param({ "GROUPED", "RINGBUFFER" })
+	public String mode;
+
+	private final AtomicInteger threads = new AtomicInteger();
+	private InMemoryMessageIdProvider provider;
+	private InetSocketAddress[] peers;
+
+	@Setup
+	public void setup() throws UnknownHostException {
+		NetworkConfig config = NetworkConfig.createStandardWithoutFile();
+		config.setString(NetworkConfig.Keys.MID_TRACKER, mode);
+		config.setInt(NetworkConfig.Keys.EXCHANGE_LIFETIME, EXCHANGE_LIFETIME);
+		provider = new InMemoryMessageIdProvider(config);
+		peers = new InetSocketAddress[PEERS];
+		for (int index = 0; index < PEERS; ++index) {
+			byte[] ip = { 10, 0, (byte) (index >> 8), (byte) index };
+			peers[index] = new InetSocketAddress(InetAddress.getByAddress(ip), 5683);
+		}
+	}
+
+	@Benchmark
+	public int getNextMessageId(ThreadState state) {
+		return provider.getNextMessageId(peers[state.next()]);
+	}
+
+	@State(Scope.Thread)
+	public static class ThreadState {
+
+		private int index;
+
+		@Setup
+		public void setup(MessageIdProviderBenchmark benchmark) {
+			index = benchmark.threads.incrementAndGet() * 7919;
+		}
+
+		private int next() {
+			index = (index + 1) & (PEERS - 1);
+			return index;
+		}
+	}
+}
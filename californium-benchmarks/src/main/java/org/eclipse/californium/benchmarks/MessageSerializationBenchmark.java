@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.core.coap.CoAP.ResponseCode;
+import org.eclipse.californium.core.coap.CoAP.Type;
+import org.eclipse.californium.core.coap.MediaTypeRegistry;
+import org.eclipse.californium.core.coap.Message;
+import org.eclipse.californium.core.coap.Request;
+import org.eclipse.californium.core.coap.Response;
+import org.eclipse.californium.core.network.serialization.UdpDataParser;
+import org.eclipse.californium.core.network.serialization.UdpDataSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for {@link UdpDataParser} and {@link UdpDataSerializer}.
+ * <p>
+ * {@link #forwardRequest()} serializes a received request, which reuses the
+ * encoded options of the parser.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageSerializationBenchmark {
+
+	private final UdpDataParser parser = new UdpDataParser();
+	private final UdpDataSerializer serializer = new UdpDataSerializer();
+
+	private Request request;
+	private Response response;
+	private Request received;
+	private byte[] requestBytes;
+	private byte[] responseBytes;
+
+	@Setup
+	public void setup() {
+		request = Request.newGet();
+		request.setMID(4711);
+		request.setToken(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+		request.getOptions().setUriPath("sensors/temperature/outdoor").setUriQuery("unit=celsius&precision=1")
+				.setAccept(MediaTypeRegistry.APPLICATION_JSON).addETag(new byte[] { 10, 11, 12, 13 });
+		requestBytes = serializer.getByteArray(request);
+
+		response = new Response(ResponseCode.CONTENT);
+		response.setType(Type.ACK);
+		response.setMID(4711);
+		response.setToken(request.getToken());
+		response.getOptions().setContentFormat(MediaTypeRegistry.APPLICATION_JSON).setMaxAge(30)
+				.addETag(new byte[] { 10, 11, 12, 13 });
+		response.setPayload("{\"temperature\":21.5,\"unit\":\"celsius\"}");
+		responseBytes = serializer.getByteArray(response);
+
+		received = (Request) parser.parseMessage(requestBytes);
+	}
+
+	@Benchmark
+	public Message parseRequest() {
+		return parser.parseMessage(requestBytes);
+	}
+
+	@Benchmark
+	public Message parseResponse() {
+		return parser.parseMessage(responseBytes);
+	}
+
+	@Benchmark
+	public byte[] serializeRequest() {
+		return serializer.getByteArray(request);
+	}
+
+	@Benchmark
+	public byte[] serializeResponse() {
+		return serializer.getByteArray(response);
+	}
+
+	@Benchmark
+	public byte[] forwardRequest() {
+		return serializer.getByteArray(received);
+	}
+}
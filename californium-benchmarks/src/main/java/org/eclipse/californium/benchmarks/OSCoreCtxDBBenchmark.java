@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.californium.core.coap.Token;
+import org.eclipse.californium.cose.AlgorithmID;
+import org.eclipse.californium.oscore.ConcurrentCtxDB;
+import org.eclipse.californium.oscore.HashMapCtxDB;
+import org.eclipse.californium.oscore.OSCoreCtx;
+import org.eclipse.californium.oscore.OSCoreCtxDB;
+import org.eclipse.californium.oscore.OSException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Multi-threaded benchmark comparing the {@link OSCoreCtxDB}
+ * implementations.
+ * <p>
+ * Each operation emulates the database accesses of an OSCORE request/response
+ * exchange: lookup of the context by RID, the sender sequence number and
+ * replay window updates, and the token associations. The contexts are shared
+ * by all threads. Use {@code -t} to change the number of threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class OSCoreCtxDBBenchmark {
+
+	private static final int CONTEXTS = 16;
+	private static final byte[] MASTER_SECRET = { 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08, 0x09, 0x0A, 0x0B,
+			0x0C, 0x0D, 0x0E, 0x0F, 0x10 };
+
+	@Param({ "hashmap", "concurrent" })
+	public String db;
+
+	private OSCoreCtxDB ctxDb;
+	private byte[][] rids;
+	private final AtomicInteger seq = new AtomicInteger();
+
+	@State(Scope.Thread)
+	public static class ThreadState {
+
+		private int index;
+		private int token;
+
+		private int next() {
+			index = (index + 1) % CONTEXTS;
+			return index;
+		}
+
+		private Token nextToken() {
+			++token;
+			return new Token(new byte[] { (byte) token, (byte) (token >> 8), (byte) (token >> 16),
+					(byte) (token >> 24), (byte) System.identityHashCode(this) });
+		}
+	}
+
+	@Setup
+	public void setup() throws OSException {
+		ctxDb = "concurrent".equals(db) ? new ConcurrentCtxDB() : new HashMapCtxDB();
+		rids = new byte[CONTEXTS][];
+		for (int index = 0; index < CONTEXTS; ++index) {
+			rids[index] = new byte[] { (byte) index };
+			OSCoreCtx ctx = new OSCoreCtx(MASTER_SECRET, false, AlgorithmID.AES_CCM_16_64_128, new byte[] { 0x00 },
+					rids[index], AlgorithmID.HKDF_HMAC_SHA_256, 32, null, null);
+			ctxDb.addContext(ctx);
+		}
+	}
+
+	@Benchmark
+	public OSCoreCtx exchange(ThreadState state) throws OSException {
+		OSCoreCtx ctx = ctxDb.getContext(rids[state.next()]);
+		try {
+			ctx.checkIncomingSeq(seq.incrementAndGet() & 0x7fffffff);
+		} catch (OSException ex) {
+			// too old for the window
+		}
+		ctx.increaseSenderSeq();
+		Token token = state.nextToken();
+		ctxDb.addContext(token, ctx);
+		ctxDb.addSeqByToken(token, ctx.getSenderSeq());
+		OSCoreCtx result = ctxDb.getContextByToken(token);
+		ctxDb.getSeqByToken(token);
+		ctxDb.removeToken(token);
+		ctxDb.removeSeqByToken(token);
+		return result;
+	}
+}
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.core.coap.MediaTypeRegistry;
+import org.eclipse.californium.core.coap.Option;
+import org.eclipse.californium.core.coap.OptionSet;
+import org.eclipse.californium.core.coap.Request;
+import org.eclipse.californium.core.network.serialization.UdpDataParser;
+import org.eclipse.californium.core.network.serialization.UdpDataSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for {@link OptionSet} operations.
+ * <p>
+ * The {@code received*} benchmarks copy the options of a parsed request, which
+ * keeps the repeatable options undecoded, and access them afterwards.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OptionSetBenchmark {
+
+	private OptionSet options;
+	private OptionSet receivedOptions;
+
+	@Setup
+	public void setup() {
+		options = createOptions();
+		Request request = Request.newGet();
+		request.setMID(1);
+		request.setToken(new byte[] { 1 });
+		request.setOptions(options);
+		byte[] bytes = new UdpDataSerializer().getByteArray(request);
+		receivedOptions = new UdpDataParser().parseMessage(bytes).getOptions();
+	}
+
+	@Benchmark
+	public OptionSet create() {
+		return createOptions();
+	}
+
+	@Benchmark
+	public OptionSet copy() {
+		return new OptionSet(options);
+	}
+
+	@Benchmark
+	public List<Option> sortedList() {
+		return options.asSortedList();
+	}
+
+	@Benchmark
+	public String uriPathString() {
+		return options.getUriPathString();
+	}
+
+	@Benchmark
+	public String receivedUriPathString() {
+		return new OptionSet(receivedOptions).getUriPathString();
+	}
+
+	@Benchmark
+	public boolean receivedContainsETag() {
+		return new OptionSet(receivedOptions).containsETag(new byte[] { 10, 11, 12, 13 });
+	}
+
+	private static OptionSet createOptions() {
+		OptionSet options = new OptionSet();
+		options.setUriPath("sensors/temperature/outdoor").setUriQuery("unit=celsius&precision=1")
+				.setAccept(MediaTypeRegistry.APPLICATION_JSON).addETag(new byte[] { 10, 11, 12, 13 })
+				.setBlock2(2, false, 0);
+		return options;
+	}
+}
@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.core.CoapResource;
+import org.eclipse.californium.core.coap.Request;
+import org.eclipse.californium.core.network.Exchange;
+import org.eclipse.californium.core.network.serialization.UdpDataParser;
+import org.eclipse.californium.core.network.serialization.UdpDataSerializer;
+import org.eclipse.californium.core.server.IndexedServerMessageDeliverer;
+import org.eclipse.californium.core.server.ServerMessageDeliverer;
+import org.eclipse.californium.core.server.resources.Resource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark comparing the resource lookup of {@link ServerMessageDeliverer}
+ * and {@link IndexedServerMessageDeliverer}.
+ * <p>
+ * The request is parsed for each operation, so the lookup starts with
+ * undecoded Uri-Path options as for received requests.
+ * {@link #parseOnly()} provides the parsing costs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResourceLookupBenchmark {
+
+	private static final int CHILDREN = 10;
+
+	private final UdpDataParser parser = new UdpDataParser();
+
+	private byte[] requestBytes;
+	private Lookup plain;
+	private Lookup indexed;
+
+	@Setup
+	public void setup() {
+		CoapResource root = new CoapResource("");
+		for (int level1 = 0; level1 < CHILDREN; ++level1) {
+			CoapResource child1 = new CoapResource("device-" + level1);
+			root.add(child1);
+			for (int level2 = 0; level2 < CHILDREN; ++level2) {
+				CoapResource child2 = new CoapResource("sensor-" + level2);
+				child1.add(child2);
+				for (int level3 = 0; level3 < CHILDREN; ++level3) {
+					child2.add(new CoapResource("value-" + level3));
+				}
+			}
+		}
+		plain = new PlainLookup(root);
+		indexed = new IndexedLookup(root);
+
+		Request request = Request.newGet();
+		request.setMID(1);
+		request.setToken(new byte[] { 1 });
+		request.getOptions().setUriPath("device-7/sensor-3/value-5");
+		requestBytes = new UdpDataSerializer().getByteArray(request);
+	}
+
+	@Benchmark
+	public Request parseOnly() {
+		return (Request) parser.parseMessage(requestBytes);
+	}
+
+	@Benchmark
+	public Resource plainLookup() throws Exception {
+		return plain.lookup(newExchange());
+	}
+
+	@Benchmark
+	public Resource indexedLookup() throws Exception {
+		return indexed.lookup(newExchange());
+	}
+
+	private Exchange newExchange() {
+		Request request = (Request) parser.parseMessage(requestBytes);
+		Exchange exchange = new Exchange(request, Exchange.Origin.REMOTE, null);
+		exchange.setRequest(request);
+		return exchange;
+	}
+
+	private interface Lookup {
+
+		Resource lookup(Exchange exchange) throws Exception;
+	}
+
+	private static class PlainLookup extends ServerMessageDeliverer implements Lookup {
+
+		private PlainLookup(Resource root) {
+			super(root);
+		}
+
+		@Override
+		public Resource lookup(Exchange exchange) throws Exception {
+			return findResource(exchange);
+		}
+	}
+
+	private static class IndexedLookup extends IndexedServerMessageDeliverer implements Lookup {
+
+		private IndexedLookup(Resource root) {
+			super(root);
+		}
+
+		@Override
+		public Resource lookup(Exchange exchange) throws Exception {
+			return findResource(exchange);
+		}
+	}
+}
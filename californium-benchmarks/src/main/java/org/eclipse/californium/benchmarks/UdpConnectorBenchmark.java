@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.benchmarks;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.elements.AddressEndpointContext;
+import org.eclipse.californium.elements.EndpointContext;
+import org.eclipse.californium.elements.RawData;
+import org.eclipse.californium.elements.RawDataChannel;
+import org.eclipse.californium.elements.UDPConnector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark comparing the {@link UDPConnector} with and without batch mode.
+ * <p>
+ * Sends bursts of datagrams over the loopback interface and waits until they
+ * are received. Lost datagrams are not retransmitted, the burst ends after a
+ * timeout instead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UdpConnectorBenchmark {
+
+	private static final int BURST = 100;
+
+	@Param({ "1", "16" })
+	public int batchSize;
+
+	@Param({ "64", "1024" })
+	public int size;
+
+	private final Semaphore received = new Semaphore(0);
+	private UDPConnector sender;
+	private UDPConnector receiver;
+	private EndpointContext destination;
+	private byte[] data;
+
+	@Setup
+	public void setup() throws IOException {
+		InetSocketAddress loopback = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+		receiver = new UDPConnector(loopback);
+		receiver.setBatchSize(batchSize);
+		receiver.setRawDataReceiver(new RawDataChannel() {
+
+			@Override
+			public void receiveData(RawData raw) {
+				received.release();
+			}
+		});
+		receiver.start();
+		sender = new UDPConnector(loopback);
+		sender.setBatchSize(batchSize);
+		sender.setRawDataReceiver(new RawDataChannel() {
+
+			@Override
+			public void receiveData(RawData raw) {
+			}
+		});
+		sender.start();
+		destination = new AddressEndpointContext(receiver.getAddress());
+		data = new byte[size];
+	}
+
+	@TearDown
+	public void tearDown() {
+		sender.destroy();
+		receiver.destroy();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BURST)
+	public boolean burst() throws InterruptedException {
+		for (int count = 0; count < BURST; ++count) {
+			sender.send(RawData.outbound(data, destination, null, false));
+		}
+		if (received.tryAcquire(BURST, 1, TimeUnit.SECONDS)) {
+			return true;
+		}
+		received.drainPermits();
+		return false;
+	}
+}
@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.benchmarks;
+
+import java.security.GeneralSecurityException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.scandium.dtls.cipher.XECDHECryptography;
+import org.eclipse.californium.scandium.dtls.cipher.XECDHECryptography.SupportedGroup;
+import org.eclipse.californium.scandium.dtls.cipher.XECDHEKeyPairPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for {@link XECDHEKeyPairPool}.
+ * <p>
+ * Simulates a handshake storm. Each iteration creates {@link #STORM} ephemeral
+ * ECDHE key pairs in a row, as the handshakers do, if many peers start their
+ * handshakes at the same time. Between the iterations the pool is refilled.
+ * The score is the time for the whole storm. A pool smaller than the storm
+ * is exhausted during the storm, the remaining key pairs are then generated
+ * on demand.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = XECDHEKeyPairPoolBenchmark.STORM)
+@Measurement(iterations = 5, batchSize = XECDHEKeyPairPoolBenchmark.STORM)
+@Fork(1)
+public class XECDHEKeyPairPoolBenchmark {
+
+	/**
+	 * Number of handshakes within a storm.
+	 */
+	public static final int STORM = 200;
+
+	@Param({ "0", "50", "200" })
+	public int poolSize;
+
+	@Param({ "secp256r1", "X25519" })
+	public String group;
+
+	private SupportedGroup supportedGroup;
+
+	private XECDHEKeyPairPool pool;
+
+	@Setup(Level.Iteration)
+	public void setup() throws InterruptedException {
+		supportedGroup = SupportedGroup.valueOf(group);
+		if (poolSize > 0) {
+			pool = new XECDHEKeyPairPool(poolSize, Collections.singletonList(supportedGroup));
+			pool.start();
+			while (pool.getPooled(supportedGroup) < poolSize) {
+				Thread.sleep(10);
+			}
+		}
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDown() {
+		if (pool != null) {
+			pool.stop();
+			pool = null;
+		}
+	}
+
+	@Benchmark
+	public byte[] ecdhe() throws GeneralSecurityException {
+		return new XECDHECryptography(supportedGroup, pool).getEncodedPoint();
+	}
+}
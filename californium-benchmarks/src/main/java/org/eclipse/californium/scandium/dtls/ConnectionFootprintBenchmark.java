@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.scandium.ConnectionListener;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for the heap footprint of idle connections in the
+ * {@link InMemoryConnectionStore}.
+ * <p>
+ * Fills the store with {@link #connections} idle connections, each with the
+ * connector's context as the {@code DTLSConnector} sets it. The primary score
+ * is the time to fill the store, the secondary score {@code bytesPerConnection}
+ * the retained heap per connection after a full GC, including the peer's
+ * address and connection id.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class ConnectionFootprintBenchmark {
+
+	private static final Executor DIRECT = new Executor() {
+
+		@Override
+		public void execute(Runnable command) {
+			command.run();
+		}
+	};
+
+	private static final ConnectionListener LISTENER = new ConnectionListener() {
+
+		@Override
+		public void onConnectionEstablished(Connection connection) {
+		}
+
+		@Override
+		public void onConnectionRemoved(Connection connection) {
+		}
+
+		@Override
+		public boolean onConnectionUpdatesSequenceNumbers(Connection connection, boolean writeSequenceNumber) {
+			return false;
+		}
+
+		@Override
+		public boolean onConnectionMacError(Connection connection) {
+			return false;
+		}
+
+		@Override
+		public void beforeExecution(Connection connection) {
+		}
+
+		@Override
+		public void updateExecution(Connection connection) {
+		}
+
+		@Override
+		public void afterExecution(Connection connection) {
+		}
+	};
+
+	@Param({ "1000000" })
+	public int connections;
+
+	@Benchmark
+	public ResumptionSupportingConnectionStore fill(Footprint footprint) throws UnknownHostException {
+		long before = usedHeap();
+		InMemoryConnectionStore store = new InMemoryConnectionStore(connections, 3600, null);
+		store.attach(null);
+		for (int index = 0; index < connections; ++index) {
+			store.put(new Connection(address(index)).setConnectorContext(DIRECT, LISTENER));
+		}
+		footprint.bytesPerConnection = (usedHeap() - before) / connections;
+		return store;
+	}
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Footprint {
+
+		public long bytesPerConnection;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			bytesPerConnection = 0;
+		}
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int loop = 0; loop < 3; ++loop) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static InetSocketAddress address(int index) throws UnknownHostException {
+		byte[] ip = { 10, (byte) (index >> 16), (byte) (index >> 8), (byte) index };
+		return new InetSocketAddress(InetAddress.getByAddress(ip), 5684);
+	}
+}
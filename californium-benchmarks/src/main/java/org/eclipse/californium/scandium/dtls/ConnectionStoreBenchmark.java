@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark comparing the {@link InMemoryConnectionStore} with the
+ * {@link StripedConnectionStore} accessed by several threads.
+ * <p>
+ * Lookups by connection id and address are mixed with connections added and
+ * removed concurrently. Use {@code -t} to change the number of threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class ConnectionStoreBenchmark {
+
+	private static final int CONNECTIONS = 65536;
+
+	private static final Executor DIRECT = new Executor() {
+
+		@Override
+		public void execute(Runnable command) {
+			command.run();
+		}
+	};
+
+	/**
+	 * Number of stripes. {@code 0} for the {@link InMemoryConnectionStore}.
+	 */
+	@Param({ "0", "4", "16" })
+	public int stripes;
+
+	private final AtomicInteger threads = new AtomicInteger();
+	private ResumptionSupportingConnectionStore store;
+	private ConnectionId[] connectionIds;
+	private InetSocketAddress[] addresses;
+
+	@Setup
+	public void setup() throws UnknownHostException {
+		int capacity = CONNECTIONS * 2;
+		if (stripes == 0) {
+			store = new InMemoryConnectionStore(capacity, 3600, null);
+		} else {
+			store = new StripedConnectionStore(stripes, capacity, 3600, null);
+		}
+		store.attach(null);
+		connectionIds = new ConnectionId[CONNECTIONS];
+		addresses = new InetSocketAddress[CONNECTIONS];
+		for (int index = 0; index < CONNECTIONS; ++index) {
+			Connection connection = newConnection(address(0, index));
+			store.put(connection);
+			connectionIds[index] = connection.getConnectionId();
+			addresses[index] = connection.getPeerAddress();
+		}
+	}
+
+	@Benchmark
+	public Connection getByConnectionId(ThreadState state) {
+		return store.get(connectionIds[state.next()]);
+	}
+
+	@Benchmark
+	public Connection getByAddress(ThreadState state) {
+		return store.get(addresses[state.next()]);
+	}
+
+	@Benchmark
+	public boolean putAndRemove(ThreadState state) throws UnknownHostException {
+		Connection connection = newConnection(address(state.thread, state.next()));
+		return store.put(connection) && store.remove(connection, false);
+	}
+
+	@State(Scope.Thread)
+	public static class ThreadState {
+
+		private int thread;
+		private int index;
+
+		@Setup
+		public void setup(ConnectionStoreBenchmark benchmark) {
+			thread = benchmark.threads.incrementAndGet();
+			index = thread * 7919;
+		}
+
+		private int next() {
+			index = (index + 1) & (CONNECTIONS - 1);
+			return index;
+		}
+	}
+
+	private static Connection newConnection(InetSocketAddress address) {
+		return new Connection(address).setConnectorContext(DIRECT, null);
+	}
+
+	private static InetSocketAddress address(int thread, int index) throws UnknownHostException {
+		byte[] ip = { 10, (byte) thread, (byte) (index >> 8), (byte) index };
+		return new InetSocketAddress(InetAddress.getByAddress(ip), 5684);
+	}
+}
@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls;
+
+import java.security.GeneralSecurityException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.eclipse.californium.elements.util.ClockUtil;
+import org.eclipse.californium.elements.util.DatagramReader;
+import org.eclipse.californium.scandium.dtls.cipher.CipherSuite;
+import org.eclipse.californium.scandium.util.SecretIvParameterSpec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for the DTLS record layer.
+ * <p>
+ * {@link #encrypt()} creates an encrypted application data record,
+ * {@link #decrypt()} reads a record using {@link Record#fromReader} and
+ * decrypts its fragment with the {@link DtlsAeadConnectionState}.
+ * <p>
+ * Located in the scandium package to access the package private
+ * {@link DTLSContext} setup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecordBenchmark {
+
+	private static final int EPOCH = 1;
+
+	@Param({ "TLS_ECDHE_ECDSA_WITH_AES_128_CCM_8", "TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256" })
+	public String cipherSuite;
+
+	@Param({ "64", "1024" })
+	public int size;
+
+	private DTLSContext context;
+	private ApplicationMessage message;
+	private byte[] record;
+
+	@Setup
+	public void setup() throws GeneralSecurityException {
+		CipherSuite suite = CipherSuite.valueOf(cipherSuite);
+		if (!suite.isSupported()) {
+			throw new IllegalStateException(cipherSuite + " is not supported by the JCE!");
+		}
+		Random random = new Random(4711);
+		SecretKey key = new SecretKeySpec(randomBytes(random, suite.getEncKeyLength()), "AES");
+		SecretIvParameterSpec iv = new SecretIvParameterSpec(randomBytes(random, suite.getFixedIvLength()));
+		DTLSSession session = new DTLSSession();
+		session.setCipherSuite(suite);
+		session.setCompressionMethod(CompressionMethod.NULL);
+		context = new DTLSContext(session, 0);
+		context.createReadState(key, iv, null);
+		context.createWriteState(key, iv, null);
+		message = new ApplicationMessage(randomBytes(random, size));
+		record = encrypt();
+	}
+
+	@Benchmark
+	public byte[] encrypt() throws GeneralSecurityException {
+		return new Record(ContentType.APPLICATION_DATA, EPOCH, message, context, false, 0).toByteArray();
+	}
+
+	@Benchmark
+	public DTLSMessage decrypt() throws GeneralSecurityException, HandshakeException {
+		List<Record> records = Record.fromReader(new DatagramReader(record), null, ClockUtil.nanoRealtime());
+		Record received = records.get(0);
+		received.decodeFragment(context.getReadState());
+		return received.getFragment();
+	}
+
+	private static byte[] randomBytes(Random random, int length) {
+		byte[] bytes = new byte[length];
+		random.nextBytes(bytes);
+		return bytes;
+	}
+}
@@ -32,8 +32,13 @@
  ******************************************************************************/
 package org.eclipse.californium.core;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
@@ -46,9 +51,14 @@ import org.eclipse.californium.core.coap.CoAP;
 import org.eclipse.californium.core.coap.CoAP.Code;
 import org.eclipse.californium.core.coap.CoAP.ResponseCode;
 import org.eclipse.californium.core.coap.CoAP.Type;
+import org.eclipse.californium.core.coap.Option;
+import org.eclipse.californium.core.coap.OptionNumberRegistry;
+import org.eclipse.californium.core.coap.OptionSet;
+import org.eclipse.californium.core.coap.Request;
 import org.eclipse.californium.core.coap.Response;
 import org.eclipse.californium.core.network.Endpoint;
 import org.eclipse.californium.core.network.Exchange;
+import org.eclipse.californium.core.network.serialization.DataSerializer;
 import org.eclipse.californium.core.observe.ObserveNotificationOrderer;
 import org.eclipse.californium.core.observe.ObserveRelation;
 import org.eclipse.californium.core.observe.ObserveRelationContainer;
@@ -58,6 +68,10 @@ import org.eclipse.californium.core.server.resources.CoapExchange;
 import org.eclipse.californium.core.server.resources.Resource;
 import org.eclipse.californium.core.server.resources.ResourceAttributes;
 import org.eclipse.californium.core.server.resources.ResourceObserver;
+import org.eclipse.californium.elements.DtlsEndpointContext;
+import org.eclipse.californium.elements.EndpointContext;
+import org.eclipse.californium.elements.MapBasedEndpointContext;
+import org.eclipse.californium.elements.util.DatagramWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -139,6 +153,14 @@ public  class CoapResource implements Resource {
 	/** The logger. */
 	protected final static Logger LOGGER = LoggerFactory.getLogger(CoapResource.class);
 
+	/**
+	 * Maximum number of shared notifications sent by one job of the executor.
+	 * 
+	 * @see #setSharedNotifications(boolean)
+	 * @since 3.0
+	 */
+	private static final int SHARED_NOTIFICATIONS_PER_JOB = 64;
+
 	/* The attributes of this resource. */
 	private final ResourceAttributes attributes;
 
@@ -168,6 +190,9 @@ public  class CoapResource implements Resource {
 	/* The type used for notifications (no change when set to null) */
 	private Type observeType = null;
 
+	/* Create notifications once and share them with all observers */
+	private volatile boolean sharedNotifications;
+
 	/* The list of observers (not CoAP observer). */
 	private List<ResourceObserver> observers;
 
@@ -732,6 +757,45 @@ public  class CoapResource implements Resource {
 		this.observeType = type;
 	}
 
+	/**
+	 * Enables notifications, which are created once and shared with all
+	 * observers.
+	 * <p>
+	 * On {@link #changed()}, the resource processes the request only once for
+	 * all observe relations with equivalent requests (same code, options
+	 * except Observe, and payload). The resulting notification is used as
+	 * template. Its options are encoded once and each observer gets a copy
+	 * with its own token, MID and endpoint context. If the resource has an
+	 * executor, the copies are created and sent by multiple jobs of that
+	 * executor, each for a part of the observe relations. Otherwise they are
+	 * created and sent by the thread calling {@link #changed()}.
+	 * <p>
+	 * Only use this mode, if the representation doesn't depend on the
+	 * observing client (e.g. its identity or address), and if the request is
+	 * responded synchronously. If the template request is not responded
+	 * synchronously or results in an error, the notifications fall back to
+	 * process the request per observe relation.
+	 * 
+	 * @param shared {@code true}, to share the notifications, {@code false},
+	 *            to process the request for each observe relation (default).
+	 * @since 3.0
+	 */
+	public void setSharedNotifications(boolean shared) {
+		this.sharedNotifications = shared;
+	}
+
+	/**
+	 * Checks, if notifications are shared.
+	 * 
+	 * @return {@code true}, if notifications are shared, {@code false},
+	 *         otherwise.
+	 * @see #setSharedNotifications(boolean)
+	 * @since 3.0
+	 */
+	public boolean isSharedNotifications() {
+		return sharedNotifications;
+	}
+
 	/* (non-Javadoc)
 	 * @see org.eclipse.californium.core.server.resources.Resource#addObserveRelation(org.eclipse.californium.core.observe.ObserveRelation)
 	 */
@@ -845,6 +909,10 @@ public  class CoapResource implements Resource {
 	 */
 	protected void notifyObserverRelations(final ObserveRelationFilter filter) {
 		notificationOrderer.getNextObserveNumber();
+		if (sharedNotifications) {
+			notifySharedObserverRelations(filter);
+			return;
+		}
 		for (ObserveRelation relation : observeRelations) {
 			if (null == filter || filter.accept(relation)) {
 				relation.notifyObservers();
@@ -852,6 +920,134 @@ public  class CoapResource implements Resource {
 		}
 	}
 
+	/**
+	 * Notifies the observe relations with shared notifications.
+	 * 
+	 * Relations, which are not established or already canceled, are notified
+	 * as usual.
+	 * 
+	 * @param filter filter to select set of relations. <code>null</code>, if
+	 *            all clients should be notified.
+	 * @see #setSharedNotifications(boolean)
+	 */
+	private void notifySharedObserverRelations(final ObserveRelationFilter filter) {
+		Map<NotificationKey, Response> templates = new HashMap<NotificationKey, Response>();
+		final List<Exchange> exchanges = new ArrayList<Exchange>();
+		final List<Response> notifications = new ArrayList<Response>();
+		for (ObserveRelation relation : observeRelations) {
+			if (null == filter || filter.accept(relation)) {
+				if (!relation.isEstablished() || relation.isCanceled()) {
+					relation.notifyObservers();
+					continue;
+				}
+				Exchange exchange = relation.getExchange();
+				NotificationKey key = new NotificationKey(exchange.getRequest());
+				Response template;
+				if (templates.containsKey(key)) {
+					template = templates.get(key);
+				} else {
+					template = createNotificationTemplate(exchange);
+					templates.put(key, template);
+				}
+				if (template == null) {
+					relation.notifyObservers();
+				} else {
+					exchanges.add(exchange);
+					notifications.add(template);
+				}
+			}
+		}
+		int size = exchanges.size();
+		Executor executor = getExecutor();
+		if (executor == null || size <= SHARED_NOTIFICATIONS_PER_JOB) {
+			sendSharedNotifications(exchanges, notifications, 0, size);
+		} else {
+			// split the relations into jobs for the executor of the resource
+			for (int from = 0; from < size; from += SHARED_NOTIFICATIONS_PER_JOB) {
+				final int start = from;
+				final int end = Math.min(from + SHARED_NOTIFICATIONS_PER_JOB, size);
+				executor.execute(new Runnable() {
+
+					@Override
+					public void run() {
+						sendSharedNotifications(exchanges, notifications, start, end);
+					}
+				});
+			}
+		}
+	}
+
+	/**
+	 * Sends a range of shared notifications.
+	 * 
+	 * @param exchanges exchanges of the observe relations
+	 * @param templates templates of the notifications, with the same index
+	 *            as the related exchange
+	 * @param start index of first exchange to send the notification
+	 * @param end index after the last exchange to send the notification
+	 */
+	private void sendSharedNotifications(List<Exchange> exchanges, List<Response> templates, int start, int end) {
+		for (int index = start; index < end; ++index) {
+			Exchange exchange = exchanges.get(index);
+			exchange.sendResponse(createNotification(templates.get(index), exchange));
+		}
+	}
+
+	/**
+	 * Creates template of a notification.
+	 * 
+	 * Process the request of the provided exchange once more and capture the
+	 * response. The options of the captured response are encoded, including
+	 * the current observe number.
+	 * 
+	 * @param exchange exchange of an observe relation
+	 * @return template of the notification, or {@code null}, if the request
+	 *         is not responded synchronously with a success response code.
+	 */
+	private Response createNotificationTemplate(Exchange exchange) {
+		TemplateExchange template = new TemplateExchange(exchange);
+		handleRequest(template);
+		Response response = template.response;
+		if (response == null || !ResponseCode.isSuccess(response.getCode())) {
+			return null;
+		}
+		OptionSet options = response.getOptions();
+		options.setObserve(notificationOrderer.getCurrent());
+		DatagramWriter writer = new DatagramWriter();
+		DataSerializer.serializeOptionsAndPayload(writer, options, null);
+		byte[] encoded = writer.toByteArray();
+		options.setEncoded(encoded, 0, encoded.length);
+		return response;
+	}
+
+	/**
+	 * Creates notification for the provided exchange from a template.
+	 * 
+	 * The notification shares the payload and the encoded options of the
+	 * template.
+	 * 
+	 * @param template template of the notification
+	 * @param exchange exchange of an observe relation
+	 * @return notification for the exchange
+	 */
+	private Response createNotification(Response template, Exchange exchange) {
+		Response response = new Response(template.getCode());
+		response.setType(observeType != null ? observeType : template.getType());
+		response.setOptions(template.getOptions());
+		response.setPayload(template.getPayload());
+		EndpointContext context = exchange.getCurrentRequest().getSourceContext();
+		EndpointContext templateContext = template.getDestinationContext();
+		if (templateContext != null) {
+			Object mode = templateContext.get(DtlsEndpointContext.KEY_HANDSHAKE_MODE);
+			if (mode != null && context.get(DtlsEndpointContext.KEY_HANDSHAKE_MODE) == null) {
+				context = MapBasedEndpointContext.addEntries(context, DtlsEndpointContext.KEY_HANDSHAKE_MODE,
+						mode.toString());
+			}
+		}
+		response.setDestinationContext(context);
+		return response;
+	}
+
 	/* (non-Javadoc)
 	 * @see org.eclipse.californium.core.server.resources.Resource#getChildren()
 	 */
@@ -911,4 +1107,70 @@ public  class CoapResource implements Resource {
 		semaphore.acquire();
 	}
 
+
+	/**
+	 * Exchange to create the template of a notification.
+	 * 
+	 * Captures the response instead of sending it.
+	 */
+	private static class TemplateExchange extends Exchange {
+
+		private Response response;
+
+		private TemplateExchange(Exchange exchange) {
+			super(exchange.getRequest(), Origin.REMOTE, null);
+			setEndpoint(exchange.getEndpoint());
+		}
+
+		@Override
+		public void sendResponse(Response response) {
+			if (this.response == null) {
+				this.response = response;
+			}
+		}
+	}
+
+	/**
+	 * Key for requests, which are processed with the same results.
+	 * 
+	 * Compares the code, the options except the observe option, and the
+	 * payload.
+	 */
+	private static class NotificationKey {
+
+		private final Code code;
+		private final List<Option> options;
+		private final byte[] payload;
+		private final int hash;
+
+		private NotificationKey(Request request) {
+			this.code = request.getCode();
+			this.options = request.getOptions().asSortedList();
+			Iterator<Option> iterator = options.iterator();
+			while (iterator.hasNext()) {
+				if (iterator.next().getNumber() == OptionNumberRegistry.OBSERVE) {
+					iterator.remove();
+				}
+			}
+			this.payload = request.getPayload();
+			this.hash = (code.hashCode() * 31 + options.hashCode()) * 31 + Arrays.hashCode(payload);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			} else if (!(obj instanceof NotificationKey)) {
+				return false;
+			}
+			NotificationKey other = (NotificationKey) obj;
+			return hash == other.hash && code == other.code && options.equals(other.options)
+					&& Arrays.equals(payload, other.payload);
+		}
+	}
 }
@@ -34,7 +34,9 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -52,9 +54,11 @@ import org.eclipse.californium.core.server.resources.DiscoveryResource;
 import org.eclipse.californium.core.server.resources.Resource;
 import org.eclipse.californium.elements.Connector;
 import org.eclipse.californium.elements.PersistentConnector;
+import org.eclipse.californium.elements.util.DaemonThreadFactory;
 import org.eclipse.californium.elements.util.DataStreamReader;
 import org.eclipse.californium.elements.util.DatagramWriter;
 import org.eclipse.californium.elements.util.ExecutorsUtil;
+import org.eclipse.californium.elements.util.HashedWheelTimer;
 import org.eclipse.californium.elements.util.NamedThreadFactory;
 import org.eclipse.californium.elements.util.SerializationUtil;
 import org.eclipse.californium.elements.util.StringUtil;
@@ -116,6 +120,14 @@ public class CoapServer implements ServerInterface {
 	 */
 	private static final String MARK = "CoAP";
 
+	/**
+	 * Number of ticks per wheel of the {@link HashedWheelTimer}.
+	 * 
+	 * @see NetworkConfig.Keys#PROTOCOL_STAGE_TIMER_TICK
+	 * @since 3.0
+	 */
+	private static final int TIMER_TICKS_PER_WHEEL = 512;
+
 	/** The logger. */
 	protected static final Logger LOGGER = LoggerFactory.getLogger(CoapServer.class);
 
@@ -136,6 +148,15 @@ public class CoapServer implements ServerInterface {
 
 	/** Scheduled executor intended to be used for rare executing timers (e.g. cleanup tasks). */
 	private ScheduledExecutorService secondaryExecutor;
+	/**
+	 * Thread pool executing the expired timers of the main and secondary
+	 * executor, if these are {@link HashedWheelTimer}s. {@code null}, if not
+	 * used.
+	 * 
+	 * @see NetworkConfig.Keys#PROTOCOL_STAGE_TIMER_TICK
+	 * @since 3.0
+	 */
+	private ExecutorService timerPool;
 	/**
 	 * Indicate, it the server-specific executor service is detached, or
 	 * shutdown with this server.
@@ -226,7 +247,11 @@ public class CoapServer implements ServerInterface {
 			if (this.secondaryExecutor != null) {
 				this.secondaryExecutor.shutdownNow();
 			}
+			if (this.timerPool != null) {
+				this.timerPool.shutdownNow();
+			}
 		}
+		this.timerPool = null;
 		this.executor = mainExecutor;
 		this.secondaryExecutor = secondaryExecutor;
 		this.detachExecutor = detach;
@@ -257,10 +282,22 @@ public class CoapServer implements ServerInterface {
 		if (executor == null) {
 			// sets the central thread pool for the protocol stage over all
 			// endpoints
-			setExecutors(ExecutorsUtil.newScheduledThreadPool(//
-					this.config.getInt(NetworkConfig.Keys.PROTOCOL_STAGE_THREAD_COUNT),
-					new NamedThreadFactory("CoapServer(main)#")), //$NON-NLS-1$
-					ExecutorsUtil.newDefaultSecondaryScheduler("CoapServer(secondary)#"), false);
+			int threads = this.config.getInt(NetworkConfig.Keys.PROTOCOL_STAGE_THREAD_COUNT);
+			int tick = this.config.getInt(NetworkConfig.Keys.PROTOCOL_STAGE_TIMER_TICK, 0);
+			if (tick > 0) {
+				ExecutorService pool = ExecutorsUtil.newFixedThreadPool(threads,
+						new NamedThreadFactory("CoapServer(main)#")); //$NON-NLS-1$
+				setExecutors(new HashedWheelTimer(pool, new DaemonThreadFactory("CoapServer(timer)#"), tick, //$NON-NLS-1$
+						TimeUnit.MILLISECONDS, TIMER_TICKS_PER_WHEEL),
+						new HashedWheelTimer(pool, new DaemonThreadFactory("CoapServer(secondary)#"), tick, //$NON-NLS-1$
+								TimeUnit.MILLISECONDS, TIMER_TICKS_PER_WHEEL),
+						false);
+				timerPool = pool;
+			} else {
+				setExecutors(ExecutorsUtil.newScheduledThreadPool(//
+						threads, new NamedThreadFactory("CoapServer(main)#")), //$NON-NLS-1$
+						ExecutorsUtil.newDefaultSecondaryScheduler("CoapServer(secondary)#"), false);
+			}
 		}
 
 		if (endpoints.isEmpty()) {
@@ -319,6 +356,9 @@ public class CoapServer implements ServerInterface {
 			if (!detachExecutor)
 				if (running) {
 					ExecutorsUtil.shutdownExecutorGracefully(2000, executor, secondaryExecutor);
+					if (timerPool != null) {
+						ExecutorsUtil.shutdownExecutorGracefully(2000, timerPool);
+					}
 				} else {
 					if (executor !=null) {
 						executor.shutdownNow();
@@ -326,6 +366,9 @@ public class CoapServer implements ServerInterface {
 					if (secondaryExecutor != null) {
 						secondaryExecutor.shutdownNow();
 					}
+					if (timerPool != null) {
+						timerPool.shutdownNow();
+					}
 				}
 		} finally {
 			for (Endpoint ep : endpoints) {
@@ -31,6 +31,7 @@ import java.util.LinkedList;
 import java.util.List;
 
 import org.eclipse.californium.elements.util.Bytes;
+import org.eclipse.californium.elements.util.DatagramWriter;
 
 /**
  * {@code OptionSet} is a collection of all options of a request or a response.
@@ -95,6 +96,37 @@ public final class OptionSet {
 	 */
 	private boolean explicitUriOptions;
 
+	/**
+	 * Option numbers of not yet decoded options.
+	 * 
+	 * The values of the repeatable string and opaque options received with a
+	 * message are kept encoded until the first access. Consumed entries are
+	 * marked with {@code -1}.
+	 * 
+	 * @see #addOption(int, byte[])
+	 */
+	private int[] lazyNumbers;
+	/**
+	 * Values of not yet decoded options.
+	 */
+	private byte[][] lazyValues;
+	/**
+	 * Number of used entries in {@link #lazyNumbers} and {@link #lazyValues}.
+	 */
+	private int lazySize;
+	/**
+	 * Number of not yet decoded options.
+	 */
+	private int lazyPending;
+	/**
+	 * Encoded options, as received. {@code null}, if the options have been
+	 * modified or are not received.
+	 * 
+	 * @see #setEncoded(byte[], int, int)
+	 * @see #modified()
+	 */
+	private volatile EncodedOptions encoded;
+
 	/**
 	 * Creates an empty set of options.
 	 * <p>
@@ -162,6 +194,15 @@ public final class OptionSet {
 		}
 		no_response         = origin.no_response;
 		others              = copyList(origin.others);
+		synchronized (origin) {
+			if (origin.lazyPending > 0) {
+				lazyNumbers = origin.lazyNumbers.clone();
+				lazyValues = origin.lazyValues.clone();
+				lazySize = origin.lazySize;
+				lazyPending = origin.lazyPending;
+			}
+		}
+		encoded             = origin.encoded;
 	}
 
 	/**
@@ -197,6 +238,13 @@ public final class OptionSet {
 		no_response = null;
 		if (others != null)
 			others.clear();
+		synchronized (this) {
+			lazyNumbers = null;
+			lazyValues = null;
+			lazySize = 0;
+			lazyPending = 0;
+		}
+		modified();
 	}
 
 	/**
@@ -223,7 +271,15 @@ public final class OptionSet {
 	 * @return the list of If-Match ETags
 	 */
 	public List<byte[]> getIfMatch() {
+		List<byte[]> list = getIfMatchInternal();
+		// the list may be modified by the caller
+		modified();
+		return list;
+	}
+
+	private List<byte[]> getIfMatchInternal() {
 		synchronized (this) {
+			decodeLazyOptions(OptionNumberRegistry.IF_MATCH);
 			if (if_match_list == null)
 				if_match_list = new LinkedList<byte[]>();
 		}
@@ -236,7 +292,7 @@ public final class OptionSet {
 	 * @return the count
 	 */
 	public int getIfMatchCount() {
-		return getIfMatch().size();
+		return getIfMatchInternal().size();
 	}
 
 	/**
@@ -252,6 +308,7 @@ public final class OptionSet {
 	 */
 	public boolean isIfMatch(byte[] check) {
 
+		decodeLazyOptions(OptionNumberRegistry.IF_MATCH);
 		// if no If-Match option is present, conditional update is allowed
 		if (if_match_list == null)
 			return true;
@@ -278,6 +335,7 @@ public final class OptionSet {
 	 * @throws IllegalArgumentException if the etag has more than 8 bytes.
 	 */
 	public OptionSet addIfMatch(byte[] etag) {
+		modified();
 		checkOptionValue(OptionNumberRegistry.IF_MATCH, etag);
 		getIfMatch().add(etag);
 		return this;
@@ -290,6 +348,7 @@ public final class OptionSet {
 	 * @return this OptionSet for a fluent API.
 	 */
 	public OptionSet removeIfMatch(byte[] etag) {
+		modified();
 		getIfMatch().remove(etag);
 		return this;
 	}
@@ -300,6 +359,7 @@ public final class OptionSet {
 	 * @return this OptionSet for a fluent API.
 	 */
 	public OptionSet clearIfMatchs() {
+		modified();
 		getIfMatch().clear();
 		return this;
 	}
@@ -332,6 +392,7 @@ public final class OptionSet {
 	 *             255 bytes.
 	 */
 	public OptionSet setUriHost(String host) {
+		modified();
 		checkOptionValue(OptionNumberRegistry.URI_HOST, host);
 		this.uri_host = host;
 		return this;
@@ -343,6 +404,7 @@ public final class OptionSet {
 	 * @return this OptionSet for a fluent API.
 	 */
 	public OptionSet removeUriHost() {
+		modified();
 		this.uri_host = null;
 		return this;
 	}
@@ -358,7 +420,15 @@ public final class OptionSet {
 	 * @return the list of ETags
 	 */
 	public List<byte[]> getETags() {
+		List<byte[]> list = getETagsInternal();
+		// the list may be modified by the caller
+		modified();
+		return list;
+	}
+
+	private List<byte[]> getETagsInternal() {
 		synchronized (this) {
+			decodeLazyOptions(OptionNumberRegistry.ETAG);
 			if (etag_list == null)
 				etag_list = new LinkedList<byte[]>();
 		}
@@ -371,7 +441,7 @@ public final class OptionSet {
 	 * @return the count
 	 */
 	public int getETagCount() {
-		return getETags().size();
+		return getETagsInternal().size();
 	}
 
 	/**
@@ -385,6 +455,7 @@ public final class OptionSet {
 	 * @return {@code true}, if ETag is included
 	 */
 	public boolean containsETag(byte[] check) {
+		decodeLazyOptions(OptionNumberRegistry.ETAG);
 		if (etag_list == null)
 			return false;
 		for (byte[] etag : etag_list) {
@@ -404,6 +475,7 @@ public final class OptionSet {
 	 *             8 bytes.
 	 */
 	public OptionSet addETag(byte[] etag) {
+		modified();
 		checkOptionValue(OptionNumberRegistry.ETAG, etag);
 		if (!containsETag(etag)) {
 			getETags().add(etag.clone());
@@ -421,7 +493,9 @@ public final class OptionSet {
 	 *             8 bytes.
 	 */
 	public OptionSet removeETag(byte[] etag) {
+		modified();
 		checkOptionValue(OptionNumberRegistry.ETAG, etag);
+		decodeLazyOptions(OptionNumberRegistry.ETAG);
 		if (etag_list != null) {
 			for (int index = 0; index < etag_list.size(); ++index) {
 				if (Arrays.equals(etag_list.get(index), etag)) {
@@ -439,6 +513,7 @@ public final class OptionSet {
 	 * @return this OptionSet for a fluent API.
 	 */
 	public OptionSet clearETags() {
+		modified();
 		getETags().clear();
 		return this;
 	}
@@ -459,6 +534,7 @@ public final class OptionSet {
 	 * @return this OptionSet for a fluent API.
 	 */
 	public OptionSet setIfNoneMatch(boolean present) {
+		modified();
 		if_none_match = present;
 		return this;
 	}
@@ -489,6 +565,7 @@ public final class OptionSet {
 	 * @throws IllegalArgumentException if port is not in valid range
 	 */
 	public OptionSet setUriPort(int port) {
+		modified();
 		OptionNumberRegistry.assertValue(OptionNumberRegistry.URI_PORT, port);
 		this.uri_port = port;
 		return this;
@@ -500,6 +577,7 @@ public final class OptionSet {
 	 * @return this OptionSet for a fluent API.
 	 */
 	public OptionSet removeUriPort() {
+		modified();
 		uri_port = null;
 		return this;
 	}
@@ -512,7 +590,15 @@ public final class OptionSet {
 	 * @return the list of Location-Path segments
 	 */
 	public List<String> getLocationPath() {
+		List<String> list = getLocationPathInternal();
+		// the list may be modified by the caller
+		modified();
+		return list;
+	}
+
+	private List<String> getLocationPathInternal() {
 		synchronized (this) {
+			decodeLazyOptions(OptionNumberRegistry.LOCATION_PATH);
 			if (location_path_list == null)
 				location_path_list = new LinkedList<String>();
 		}
@@ -527,10 +613,10 @@ public final class OptionSet {
 	public String getLocationString() {
 		StringBuilder builder = new StringBuilder();
 		builder.append('/');
-		appendMultiOption(builder, getLocationPath(), '/');
+		appendMultiOption(builder, getLocationPathInternal(), '/');
 		if (getLocationQueryCount() > 0) {
 			builder.append('?');
-			appendMultiOption(builder, getLocationQuery(), '&');
+			appendMultiOption(builder, getLocationQueryInternal(), '&');
 		}
 		return builder.toString();
 	}
@@ -541,7 +627,7 @@ public final class OptionSet {
 	 * @return the Location-Path as string
 	 */
 	public String getLocationPathString() {
-		return getMultiOptionString(getLocationPath(), '/');
+		return getMultiOptionString(getLocationPathInternal(), '/');
 	}
 
 	/**
@@ -550,7 +636,7 @@ public final class OptionSet {
 	 * @return the count
 	 */
 	public int getLocationPathCount() {
-		return getLocationPath().size();
+		return getLocationPathInternal().size();
 	}
 
 	/**
@@ -562,6 +648,7 @@ public final class OptionSet {
 	 * @throws IllegalArgumentException if the segment has more than 255 bytes.
 	 */
 	public OptionSet addLocationPath(String segment) {
+		modified();
 		checkOptionValue(OptionNumberRegistry.LOCATION_PATH, segment);
 		getLocationPath().add(segment);
 		return this;
@@ -573,6 +660,7 @@ public final class OptionSet {
 	 * @return this OptionSet for a fluent API.
 	 */
 	public OptionSet clearLocationPath() {
+		modified();
 		getLocationPath().clear();
 		return this;
 	}
@@ -587,6 +675,7 @@ public final class OptionSet {
 	 *             than 255 bytes.
 	 */
 	public OptionSet setLocationPath(String path) {
+		modified();
 		final String slash = "/";
 
 		// remove leading slash
@@ -611,10 +700,10 @@ public final class OptionSet {
 	public String getUriString() {
 		StringBuilder builder = new StringBuilder();
 		builder.append('/');
-		appendMultiOption(builder, getUriPath(), '/');
+		appendMultiOption(builder, getUriPathInternal(), '/');
 		if (getURIQueryCount() > 0) {
 			builder.append('?');
-			appendMultiOption(builder, getUriQuery(), '&');
+			appendMultiOption(builder, getUriQueryInternal(), '&');
 		}
 		return builder.toString();
 	}
@@ -627,13 +716,50 @@ public final class OptionSet {
 	 * @return the list of Uri-Path segments
 	 */
 	public List<String> getUriPath() {
+		List<String> list = getUriPathInternal();
+		// the list may be modified by the caller
+		modified();
+		return list;
+	}
+
+	private List<String> getUriPathInternal() {
 		synchronized (this) {
+			decodeLazyOptions(OptionNumberRegistry.URI_PATH);
 			if (uri_path_list == null)
 				uri_path_list = new LinkedList<String>();
 		}
 		return uri_path_list;
 	}
 
+	/**
+	 * Gets the list of UTF-8 encoded Uri-Path segments.
+	 * <p>
+	 * If the Uri-Path segments of a received message are not decoded yet, the
+	 * received values are returned without decoding them. Intended for
+	 * resource lookups, which compare the encoded segments.
+	 * 
+	 * @return the list of encoded Uri-Path segments. Changes are not reflected
+	 *         in this option set and the values must not be modified.
+	 * @since 3.0
+	 */
+	public List<byte[]> getUriPathEncoded() {
+		List<byte[]> segments = new ArrayList<byte[]>();
+		synchronized (this) {
+			if (uri_path_list == null || uri_path_list.isEmpty()) {
+				for (int index = 0; index < lazySize; ++index) {
+					if (lazyNumbers[index] == OptionNumberRegistry.URI_PATH) {
+						segments.add(lazyValues[index]);
+					}
+				}
+				return segments;
+			}
+			for (String segment : getUriPathInternal()) {
+				segments.add(segment.getBytes(CoAP.UTF8_CHARSET));
+			}
+		}
+		return segments;
+	}
+
 	/**
 	 * Gets the Uri-Path options as relative URI string.
 	 * <p>
@@ -642,7 +768,7 @@ public final class OptionSet {
 	 * @return the Uri-Path as string
 	 */
 	public String getUriPathString() {
-		return getMultiOptionString(getUriPath(), '/');
+		return getMultiOptionString(getUriPathInternal(), '/');
 	}
 
 	/**
@@ -651,7 +777,7 @@ public final class OptionSet {
 	 * @return the count
 	 */
 	public int getURIPathCount() {
-		return getUriPath().size();
+		return getUriPathInternal().size();
 	}
 
 	/**
@@ -664,6 +790,7 @@ public final class OptionSet {
 	 *             than 255 bytes.
 	 */
 	public OptionSet setUriPath(String path) {
+		modified();
 		final String slash = "/";
 
 		// remove leading slash
@@ -689,6 +816,7 @@ public final class OptionSet {
 	 * @throws IllegalArgumentException if the segment has more than 255 bytes.
 	 */
 	public OptionSet addUriPath(String segment) {
+		modified();
 		checkOptionValue(OptionNumberRegistry.URI_PATH, segment);
 		getUriPath().add(segment);
 		this.explicitUriOptions = true;
@@ -701,6 +829,7 @@ public final class OptionSet {
 	 * @return this OptionSet for a fluent API.
 	 */
 	public OptionSet clearUriPath() {
+		modified();
 		getUriPath().clear();
 		return this;
 	}
@@ -752,6 +881,7 @@ public final class OptionSet {
 	 * @see MediaTypeRegistry
 	 */
 	public OptionSet setContentFormat(int format) {
+		modified();
 		OptionNumberRegistry.assertValue(OptionNumberRegistry.CONTENT_FORMAT, format);
 		content_format = format;
 		return this;
@@ -763,6 +893,7 @@ public final class OptionSet {
 	 * @return this OptionSet for a fluent API.
 	 */
 	public OptionSet removeContentFormat() {
+		modified();
 		content_format = null;
 		return this;
 	}
@@ -796,6 +927,7 @@ public final class OptionSet {
 	 * @throws IllegalArgumentException if the age has more than 4 bytes.
 	 */
 	public OptionSet setMaxAge(long age) {
+		modified();
 		OptionNumberRegistry.assertValue(OptionNumberRegistry.MAX_AGE, age);
 		max_age = age;
 		return this;
@@ -808,6 +940,7 @@ public final class OptionSet {
 	 * @return this Optionset
 	 */
 	public OptionSet removeMaxAge() {
+		modified();
 		max_age = null;
 		return this;
 	}
@@ -820,7 +953,15 @@ public final class OptionSet {
 	 * @return the list of query arguments
 	 */
 	public List<String> getUriQuery() {
+		List<String> list = getUriQueryInternal();
+		// the list may be modified by the caller
+		modified();
+		return list;
+	}
+
+	private List<String> getUriQueryInternal() {
 		synchronized (this) {
+			decodeLazyOptions(OptionNumberRegistry.URI_QUERY);
 			if (uri_query_list == null)
 				uri_query_list = new LinkedList<String>();
 		}
@@ -833,7 +974,7 @@ public final class OptionSet {
 	 * @return the count
 	 */
 	public int getURIQueryCount() {
-		return getUriQuery().size();
+		return getUriQueryInternal().size();
 	}
 
 	/**
@@ -842,7 +983,7 @@ public final class OptionSet {
 	 * @return the Uri-Query as string
 	 */
 	public String getUriQueryString() {
-		return getMultiOptionString(getUriQuery(), '&');
+		return getMultiOptionString(getUriQueryInternal(), '&');
 	}
 
 	/**
@@ -855,6 +996,7 @@ public final class OptionSet {
 	 *             than 255 bytes.
 	 */
 	public OptionSet setUriQuery(String query) {
+		modified();
 		while (query.startsWith("?"))
 			query = query.substring(1);
 
@@ -877,6 +1019,7 @@ public final class OptionSet {
 	 * @throws IllegalArgumentException if the argument has more than 255 bytes.
 	 */
 	public OptionSet addUriQuery(String argument) {
+		modified();
 		checkOptionValue(OptionNumberRegistry.URI_QUERY, argument);
 		getUriQuery().add(argument);
 		this.explicitUriOptions = true;
@@ -890,6 +1033,7 @@ public final class OptionSet {
 	 * @return this OptionSet for a fluent API.
 	 */
 	public OptionSet removeUriQuery(String argument) {
+		modified();
 		getUriQuery().remove(argument);
 		return this;
 	}
@@ -900,6 +1044,7 @@ public final class OptionSet {
 	 * @return this OptionSet for a fluent API.
 	 */
 	public OptionSet clearUriQuery() {
+		modified();
 		getUriQuery().clear();
 		return this;
 	}
@@ -946,6 +1091,7 @@ public final class OptionSet {
 	 * @see MediaTypeRegistry
 	 */
 	public OptionSet setAccept(int format) {
+		modified();
 		OptionNumberRegistry.assertValue(OptionNumberRegistry.ACCEPT, format);
 		accept = format;
 		return this;
@@ -957,6 +1103,7 @@ public final class OptionSet {
 	 * @return this OptionSet for a fluent API.
 	 */
 	public OptionSet removeAccept() {
+		modified();
 		accept = null;
 		return this;
 	}
@@ -969,7 +1116,15 @@ public final class OptionSet {
 	 * @return the list of query arguments
 	 */
 	public List<String> getLocationQuery() {
+		List<String> list = getLocationQueryInternal();
+		// the list may be modified by the caller
+		modified();
+		return list;
+	}
+
+	private List<String> getLocationQueryInternal() {
 		synchronized (this) {
+			decodeLazyOptions(OptionNumberRegistry.LOCATION_QUERY);
 			if (location_query_list == null)
 				location_query_list = new LinkedList<String>();
 		}
@@ -982,7 +1137,7 @@ public final class OptionSet {
 	 * @return the count
 	 */
 	public int getLocationQueryCount() {
-		return getLocationQuery().size();
+		return getLocationQueryInternal().size();
 	}
 
 	/**
@@ -991,7 +1146,7 @@ public final class OptionSet {
 	 * @return the Location-Query as string
 	 */
 	public String getLocationQueryString() {
-		return getMultiOptionString(getLocationQuery(), '&');
+		return getMultiOptionString(getLocationQueryInternal(), '&');
 	}
 
 	/**
@@ -1005,6 +1160,7 @@ public final class OptionSet {
 	 *             than 255 bytes.
 	 */
 	public OptionSet setLocationQuery(String query) {
+		modified();
 		while (query.startsWith("?"))
 			query = query.substring(1);
 
@@ -1027,6 +1183,7 @@ public final class OptionSet {
 	 * @throws IllegalArgumentException if the argument has more than 255 bytes.
 	 */
 	public OptionSet addLocationQuery(String argument) {
+		modified();
 		checkOptionValue(OptionNumberRegistry.LOCATION_QUERY, argument);
 		getLocationQuery().add(argument);
 		return this;
@@ -1039,6 +1196,7 @@ public final class OptionSet {
 	 * @return this OptionSet for a fluent API.
 	 */
 	public OptionSet removeLocationQuery(String argument) {
+		modified();
 		getLocationQuery().remove(argument);
 		return this;
 	}
@@ -1049,6 +1207,7 @@ public final class OptionSet {
 	 * @return this OptionSet for a fluent API.
 	 */
 	public OptionSet clearLocationQuery() {
+		modified();
 		getLocationQuery().clear();
 		return this;
 	}
@@ -1081,6 +1240,7 @@ public final class OptionSet {
 	 *             1034 bytes.
 	 */
 	public OptionSet setProxyUri(String uri) {
+		modified();
 		checkOptionValue(OptionNumberRegistry.PROXY_URI, uri);
 		proxy_uri = uri;
 		return this;
@@ -1092,6 +1252,7 @@ public final class OptionSet {
 	 * @return this OptionSet for a fluent API.
 	 */
 	public OptionSet removeProxyUri() {
+		modified();
 		proxy_uri = null;
 		return this;
 	}
@@ -1124,6 +1285,7 @@ public final class OptionSet {
 	 *             than 255 bytes.
 	 */
 	public OptionSet setProxyScheme(String scheme) {
+		modified();
 		checkOptionValue(OptionNumberRegistry.PROXY_SCHEME, scheme);
 		proxy_scheme = scheme;
 		return this;
@@ -1135,6 +1297,7 @@ public final class OptionSet {
 	 * @return this OptionSet for a fluent API.
 	 */
 	public OptionSet removeProxyScheme() {
+		modified();
 		proxy_scheme = null;
 		return this;
 	}
@@ -1166,6 +1329,7 @@ public final class OptionSet {
 	 * @return this OptionSet for a fluent API.
 	 */
 	public OptionSet setBlock1(int szx, boolean m, int num) {
+		modified();
 		this.block1 = new BlockOption(szx, m, num);
 		return this;
 	}
@@ -1177,6 +1341,7 @@ public final class OptionSet {
 	 * @return this OptionSet for a fluent API.
 	 */
 	public OptionSet setBlock1(byte[] value) {
+		modified();
 		this.block1 = new BlockOption(value);
 		return this;
 	}
@@ -1188,6 +1353,7 @@ public final class OptionSet {
 	 * @return this OptionSet for a fluent API.
 	 */
 	public OptionSet setBlock1(BlockOption block) {
+		modified();
 		this.block1 = block;
 		return this;
 	}
@@ -1198,6 +1364,7 @@ public final class OptionSet {
 	 * @return this OptionSet for a fluent API.
 	 */
 	public OptionSet removeBlock1() {
+		modified();
 		this.block1 = null;
 		return this;
 	}
@@ -1229,6 +1396,7 @@ public final class OptionSet {
 	 * @return this OptionSet for a fluent API.
 	 */
 	public OptionSet setBlock2(int szx, boolean m, int num) {
+		modified();
 		this.block2 = new BlockOption(szx, m, num);
 		return this;
 	}
@@ -1240,6 +1408,7 @@ public final class OptionSet {
 	 * @return this OptionSet for a fluent API.
 	 */
 	public OptionSet setBlock2(byte[] value) {
+		modified();
 		this.block2 = new BlockOption(value);
 		return this;
 	}
@@ -1251,6 +1420,7 @@ public final class OptionSet {
 	 * @return this OptionSet for a fluent API.
 	 */
 	public OptionSet setBlock2(BlockOption block) {
+		modified();
 		this.block2 = block;
 		return this;
 	}
@@ -1261,6 +1431,7 @@ public final class OptionSet {
 	 * @return this OptionSet for a fluent API.
 	 */
 	public OptionSet removeBlock2() {
+		modified();
 		this.block2 = null;
 		return this;
 	}
@@ -1290,6 +1461,7 @@ public final class OptionSet {
 	 * @return this OptionSet for a fluent API.
 	 */
 	public OptionSet setSize1(int size) {
+		modified();
 		this.size1 = size;
 		return this;
 	}
@@ -1300,6 +1472,7 @@ public final class OptionSet {
 	 * @return this OptionSet for a fluent API.
 	 */
 	public OptionSet removeSize1() {
+		modified();
 		this.size1 = null;
 		return this;
 	}
@@ -1329,6 +1502,7 @@ public final class OptionSet {
 	 * @return this OptionSet for a fluent API.
 	 */
 	public OptionSet setSize2(int size) {
+		modified();
 		this.size2 = size;
 		return this;
 	}
@@ -1339,6 +1513,7 @@ public final class OptionSet {
 	 * @return this OptionSet for a fluent API.
 	 */
 	public OptionSet removeSize2() {
+		modified();
 		this.size2 = null;
 		return this;
 	}
@@ -1370,6 +1545,7 @@ public final class OptionSet {
 	 *             2^24 - 1
 	 */
 	public OptionSet setObserve(final int seqnum) {
+		modified();
 		OptionNumberRegistry.assertValue(OptionNumberRegistry.OBSERVE, seqnum);
 		this.observe = seqnum;
 		return this;
@@ -1381,6 +1557,7 @@ public final class OptionSet {
 	 * @return this OptionSet for a fluent API.
 	 */
 	public OptionSet removeObserve() {
+		modified();
 		observe = null;
 		return this;
 	}
@@ -1423,6 +1600,7 @@ public final class OptionSet {
 	 * @throws IllegalArgumentException if the oscore has more than 255 bytes.
 	 */
 	public OptionSet setOscore(byte[] oscore) {
+		modified();
 		checkOptionValue(OptionNumberRegistry.OSCORE, oscore);
 		this.oscore = oscore.clone();
 		return this;
@@ -1434,6 +1612,7 @@ public final class OptionSet {
 	 * @return this OptionSet for a fluent API.
 	 */
 	public OptionSet removeOscore() {
+		modified();
 		oscore = null;
 		return this;
 	}
@@ -1466,6 +1645,7 @@ public final class OptionSet {
 	 * @since 3.0
 	 */
 	public OptionSet setNoResponse(int noResponse) {
+		modified();
 		this.no_response = new NoResponseOption(noResponse);
 		return this;
 	}
@@ -1478,6 +1658,7 @@ public final class OptionSet {
 	 * @since 3.0
 	 */
 	public OptionSet setNoResponse(NoResponseOption noResponse) {
+		modified();
 		this.no_response = noResponse;
 		return this;
 	}
@@ -1489,6 +1670,7 @@ public final class OptionSet {
 	 * @since 3.0
 	 */
 	public OptionSet removeNoResponse() {
+		modified();
 		this.no_response = null;
 		return this;
 	}
@@ -1539,6 +1721,7 @@ public final class OptionSet {
 	public List<Option> asSortedList() {
 		ArrayList<Option> options = new ArrayList<Option>();
 
+		decodeLazyOptions();
 		if (if_match_list != null)
 			for (byte[] value : if_match_list)
 				options.add(new Option(OptionNumberRegistry.IF_MATCH, value));
@@ -1613,6 +1796,7 @@ public final class OptionSet {
 	 * @since 3.0
 	 */
 	public OptionSet addOptions(Option... options) {
+		modified();
 		if (options != null) {
 			for (Option option : options) {
 				addOption(option);
@@ -1629,6 +1813,7 @@ public final class OptionSet {
 	 * @since 3.0
 	 */
 	public OptionSet addOptions(List<Option> options) {
+		modified();
 		if (options != null) {
 			for (Option option : options) {
 				addOption(option);
@@ -1646,6 +1831,7 @@ public final class OptionSet {
 	 * @return this OptionSet for a fluent API.
 	 */
 	public OptionSet addOption(Option option) {
+		modified();
 		switch (option.getNumber()) {
 		case OptionNumberRegistry.IF_MATCH:
 			addIfMatch(option.getValue());
@@ -1716,6 +1902,213 @@ public final class OptionSet {
 		return this;
 	}
 
+	/**
+	 * Adds a received option value.
+	 * <p>
+	 * The values of the repeatable string and opaque options (If-Match, ETag,
+	 * Location-Path, Uri-Path, Uri-Query, and Location-Query) are only checked
+	 * for their length and kept encoded until they are accessed the first
+	 * time. All other options are added using {@link #addOption(Option)}.
+	 * 
+	 * @param number option number
+	 * @param value option value. Not copied, must not be modified afterwards.
+	 * @return this OptionSet for a fluent API.
+	 * @throws NullPointerException if the value is {@code null}
+	 * @throws IllegalArgumentException if the value doesn't match the option
+	 *             definition.
+	 * @since 3.0
+	 */
+	public OptionSet addOption(int number, byte[] value) {
+		switch (number) {
+		case OptionNumberRegistry.URI_PATH:
+		case OptionNumberRegistry.URI_QUERY:
+			this.explicitUriOptions = true;
+			// fall through
+		case OptionNumberRegistry.IF_MATCH:
+		case OptionNumberRegistry.ETAG:
+		case OptionNumberRegistry.LOCATION_PATH:
+		case OptionNumberRegistry.LOCATION_QUERY:
+			checkOptionValue(number, value);
+			modified();
+			synchronized (this) {
+				if (lazyNumbers == null) {
+					lazyNumbers = new int[8];
+					lazyValues = new byte[8][];
+				} else if (lazySize == lazyNumbers.length) {
+					lazyNumbers = Arrays.copyOf(lazyNumbers, lazySize * 2);
+					lazyValues = Arrays.copyOf(lazyValues, lazySize * 2);
+				}
+				lazyNumbers[lazySize] = number;
+				lazyValues[lazySize] = value;
+				++lazySize;
+				++lazyPending;
+			}
+			return this;
+		default:
+			return addOption(new Option(number, value));
+		}
+	}
+
+	/**
+	 * Sets the encoded options, as received.
+	 * <p>
+	 * Intended to be called by the parser after all options are added. Any
+	 * later modification of the options discards the encoded options. As long
+	 * as the options are not modified, {@link #writeEncoded(DatagramWriter)}
+	 * writes them and serializing the options is reduced to copy them.
+	 * <p>
+	 * The data is not copied, only a reference to it is kept together with
+	 * the offset and length. The data must therefore not be modified
+	 * afterwards. The parser passes in the received message bytes, which are
+	 * kept unmodified by the message anyway (see {@link Message#getBytes()}).
+	 * 
+	 * @param data data containing the encoded options
+	 * @param offset offset of the encoded options
+	 * @param length length of the encoded options
+	 * @throws IndexOutOfBoundsException if offset or length doesn't fit into
+	 *             the data
+	 * @since 3.0
+	 */
+	public void setEncoded(byte[] data, int offset, int length) {
+		if (offset < 0 || length < 0 || offset + length > data.length) {
+			throw new IndexOutOfBoundsException(
+					"offset " + offset + " and length " + length + " exceeds " + data.length + " bytes!");
+		}
+		encoded = new EncodedOptions(data, offset, length);
+	}
+
+	/**
+	 * Checks, if the encoded options, as received, are available.
+	 * 
+	 * @return {@code true}, if the encoded options are available,
+	 *         {@code false}, if the options have been modified or are not
+	 *         received.
+	 * @see #setEncoded(byte[], int, int)
+	 * @since 3.0
+	 */
+	public boolean hasEncoded() {
+		return encoded != null;
+	}
+
+	/**
+	 * Writes the encoded options, as received.
+	 * 
+	 * @param writer writer to append the encoded options
+	 * @return {@code true}, if the encoded options are written,
+	 *         {@code false}, if the options have been modified or are not
+	 *         received. Nothing is written in that case.
+	 * @see #setEncoded(byte[], int, int)
+	 * @since 3.0
+	 */
+	public boolean writeEncoded(DatagramWriter writer) {
+		EncodedOptions current = encoded;
+		if (current == null) {
+			return false;
+		}
+		writer.writeBytes(current.data, current.offset, current.length);
+		return true;
+	}
+
+	/**
+	 * Discards the encoded options.
+	 * <p>
+	 * Must be called by all functions, which modify the options, or which
+	 * return a mutable list of options.
+	 * 
+	 * @see #setEncoded(byte[], int, int)
+	 */
+	private void modified() {
+		encoded = null;
+	}
+
+	/**
+	 * Decodes all not yet decoded options.
+	 */
+	private synchronized void decodeLazyOptions() {
+		if (lazyPending > 0) {
+			for (int index = 0; index < lazySize; ++index) {
+				if (lazyNumbers[index] >= 0) {
+					decodeLazyOption(index);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Decodes not yet decoded options of the provided number.
+	 * 
+	 * @param number option number
+	 */
+	private synchronized void decodeLazyOptions(int number) {
+		if (lazyPending > 0) {
+			for (int index = 0; index < lazySize; ++index) {
+				if (lazyNumbers[index] == number) {
+					decodeLazyOption(index);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Decodes not yet decoded option.
+	 * 
+	 * @param index index of option
+	 */
+	private void decodeLazyOption(int index) {
+		byte[] value = lazyValues[index];
+		switch (lazyNumbers[index]) {
+		case OptionNumberRegistry.IF_MATCH:
+			if (if_match_list == null)
+				if_match_list = new LinkedList<byte[]>();
+			if_match_list.add(value);
+			break;
+		case OptionNumberRegistry.ETAG:
+			if (etag_list == null) {
+				etag_list = new LinkedList<byte[]>();
+				etag_list.add(value);
+			} else {
+				for (byte[] etag : etag_list) {
+					if (Arrays.equals(etag, value)) {
+						// duplicate ETag
+						value = null;
+						break;
+					}
+				}
+				if (value != null) {
+					etag_list.add(value);
+				}
+			}
+			break;
+		case OptionNumberRegistry.LOCATION_PATH:
+			if (location_path_list == null)
+				location_path_list = new LinkedList<String>();
+			location_path_list.add(new String(value, CoAP.UTF8_CHARSET));
+			break;
+		case OptionNumberRegistry.URI_PATH:
+			if (uri_path_list == null)
+				uri_path_list = new LinkedList<String>();
+			uri_path_list.add(new String(value, CoAP.UTF8_CHARSET));
+			break;
+		case OptionNumberRegistry.URI_QUERY:
+			if (uri_query_list == null)
+				uri_query_list = new LinkedList<String>();
+			uri_query_list.add(new String(value, CoAP.UTF8_CHARSET));
+			break;
+		case OptionNumberRegistry.LOCATION_QUERY:
+			if (location_query_list == null)
+				location_query_list = new LinkedList<String>();
+			location_query_list.add(new String(value, CoAP.UTF8_CHARSET));
+			break;
+		}
+		lazyNumbers[index] = -1;
+		lazyValues[index] = null;
+		if (--lazyPending == 0) {
+			lazyNumbers = null;
+			lazyValues = null;
+			lazySize = 0;
+		}
+	}
+
 	/**
 	 * Add other option bypassing the validation check.
 	 * 
@@ -1731,6 +2124,7 @@ public final class OptionSet {
 	 * @since 2.3
 	 */
 	public OptionSet addOtherOption(Option option) {
+		modified();
 		getOthersInternal().add(option);
 		return this;
 	}
@@ -1836,4 +2230,22 @@ public final class OptionSet {
 		}
 		OptionNumberRegistry.assertValueLength(optionNumber, value.length);
 	}
+
+	/**
+	 * Encoded options, as received.
+	 * 
+	 * @since 3.0
+	 */
+	private static final class EncodedOptions {
+
+		private final byte[] data;
+		private final int offset;
+		private final int length;
+
+		private EncodedOptions(byte[] data, int offset, int length) {
+			this.data = data;
+			this.offset = offset;
+			this.length = length;
+		}
+	}
 }
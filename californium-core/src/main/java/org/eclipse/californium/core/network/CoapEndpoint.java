@@ -102,6 +102,7 @@ import org.eclipse.californium.core.network.EndpointManager.ClientMessageDeliver
 import org.eclipse.californium.core.network.Exchange.Origin;
 import org.eclipse.californium.core.network.config.NetworkConfig;
 import org.eclipse.californium.core.network.config.NetworkConfig.Keys;
+import org.eclipse.californium.core.network.config.NetworkConfigDefaults;
 import org.eclipse.californium.core.network.interceptors.MessageInterceptor;
 import org.eclipse.californium.core.network.serialization.DataParser;
 import org.eclipse.californium.core.network.serialization.DataSerializer;
@@ -399,6 +400,8 @@ public class CoapEndpoint implements Endpoint {
 				udpConnector.setReceiveBufferSize(config.getInt(Keys.UDP_CONNECTOR_RECEIVE_BUFFER));
 				udpConnector.setSendBufferSize(config.getInt(Keys.UDP_CONNECTOR_SEND_BUFFER));
 				udpConnector.setReceiverPacketSize(config.getInt(Keys.UDP_CONNECTOR_DATAGRAM_SIZE));
+				udpConnector.setBatchSize(config.getInt(Keys.UDP_CONNECTOR_BATCH_SIZE,
+						NetworkConfigDefaults.DEFAULT_UDP_CONNECTOR_BATCH_SIZE));
 			} else {
 				throw new IllegalArgumentException("Connector must be a UDPConnector to use apply configuration!");
 			}
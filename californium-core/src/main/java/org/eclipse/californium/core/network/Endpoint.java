@@ -91,6 +91,13 @@ public interface Endpoint {
 	 * externally, if the resource should be freed.
 	 * 
 	 * Executors must not be <code>null</code>.
+	 * 
+	 * The timers of the layers (e.g. retransmissions of the
+	 * {@code ReliabilityLayer}) are scheduled using the main executor, the
+	 * cleanup timers of the {@code BlockwiseLayer} and the deduplicators
+	 * using the secondary executor. A
+	 * {@link org.eclipse.californium.elements.util.HashedWheelTimer} may be
+	 * plugged in for each, if many timers are pending at the same time.
 	 *
 	 * @param mainExecutor executors used for main tasks
 	 * @param secondaryExecutor intended to be used for rare executing timers (e.g. cleanup tasks). 
@@ -20,6 +20,7 @@
  *                                                    MessageIdTracker to
  *                                                    MapBasedMessageIdTracker.
  *    Achim Kraus (Bosch Software Innovations GmbH) - add multicast mid tracker.
+ *    Bosch.IO GmbH - add ring buffer mid tracker and concurrent tracker lookup.
  ******************************************************************************/
 package org.eclipse.californium.core.network;
 
@@ -29,8 +30,8 @@ import java.util.Random;
 import org.eclipse.californium.core.network.config.NetworkConfig;
 import org.eclipse.californium.core.network.config.NetworkConfig.Keys;
 import org.eclipse.californium.elements.util.ClockUtil;
-import org.eclipse.californium.elements.util.LeastRecentlyUsedCache;
 import org.eclipse.californium.elements.util.NetworkInterfacesUtil;
+import org.eclipse.californium.elements.util.SegmentedLeastRecentlyUsedCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,17 +39,24 @@ import org.slf4j.LoggerFactory;
  * A provider for message IDs thats keeps track of all message IDs in memory.
  * <p>
  * This provider maintains an instance of {@link MessageIdTracker} for each
- * endpoint identified by IP address and port.
+ * endpoint identified by IP address and port. The lookup of the trackers is
+ * concurrent, only the creation of new trackers is synchronized.
  */
 public class InMemoryMessageIdProvider implements MessageIdProvider {
 
 	private static final Logger LOG = LoggerFactory.getLogger(InMemoryMessageIdProvider.class);
 
 	public enum TrackerMode {
-		NULL, GROUPED, MAPBASED
+		NULL, GROUPED, MAPBASED,
+		/**
+		 * Use {@link RingBufferMessageIdTracker}.
+		 * 
+		 * @since 3.0
+		 */
+		RINGBUFFER
 	}
 
-	private final LeastRecentlyUsedCache<InetSocketAddress, MessageIdTracker> trackers;
+	private final SegmentedLeastRecentlyUsedCache<InetSocketAddress, MessageIdTracker> trackers;
 	private final MessageIdTracker multicastTracker;
 	private final TrackerMode mode;
 	private final Random random;
@@ -63,8 +71,9 @@ public class InMemoryMessageIdProvider implements MessageIdProvider {
 	 * <li>{@link Keys#MID_TRACKER}
 	 * - determine the tracker mode. Supported values are "NULL" (for
 	 * {@link NullMessageIdTracker}), "GROUPED" (for
-	 * {@link GroupedMessageIdTracker}), and "MAPBASED" (for
-	 * {@link MapBasedMessageIdTracker}).</li>
+	 * {@link GroupedMessageIdTracker}), "MAPBASED" (for
+	 * {@link MapBasedMessageIdTracker}), and "RINGBUFFER" (for
+	 * {@link RingBufferMessageIdTracker}).</li>
 	 * <li>{@link Keys#MID_TRACKER_GROUPS}
 	 * - determine the group size for the message IDs, if the grouped tracker is
 	 * used. Each group is marked as <em>in use</em>, if a MID within the group
@@ -104,8 +113,10 @@ public class InMemoryMessageIdProvider implements MessageIdProvider {
 		} else {
 			random = null;
 		}
+		int maxPeers = config.getInt(Keys.MAX_ACTIVE_PEERS, 150000);
+		int segments = Math.max(1, Math.min(16, maxPeers / 1024));
 		// 10 minutes
-		trackers = new LeastRecentlyUsedCache<>(config.getInt(Keys.MAX_ACTIVE_PEERS, 150000),
+		trackers = new SegmentedLeastRecentlyUsedCache<>(segments, maxPeers,
 				config.getLong(Keys.MAX_PEER_INACTIVITY_PERIOD, 10 * 60));
 		trackers.setEvictingOnReadAccess(false);
 		int multicastBaseMid = config.getInt(Keys.MULTICAST_BASE_MID);
@@ -120,6 +131,9 @@ public class InMemoryMessageIdProvider implements MessageIdProvider {
 			case MAPBASED:
 				multicastTracker = new MapBasedMessageIdTracker(mid, multicastBaseMid, max, config);
 				break;
+			case RINGBUFFER:
+				multicastTracker = new RingBufferMessageIdTracker(mid, multicastBaseMid, max, config);
+				break;
 			case GROUPED:
 			default:
 				multicastTracker = new GroupedMessageIdTracker(mid, multicastBaseMid, max, config);
@@ -144,7 +158,7 @@ public class InMemoryMessageIdProvider implements MessageIdProvider {
 		}
 	}
 
-	private synchronized MessageIdTracker getTracker(final InetSocketAddress destination) {
+	private MessageIdTracker getTracker(final InetSocketAddress destination) {
 		// destination mc
 		// => use special range 65001-65535
 		// destination sp
@@ -159,6 +173,25 @@ public class InMemoryMessageIdProvider implements MessageIdProvider {
 			return multicastTracker;
 		}
 
+		MessageIdTracker tracker = trackers.get(destination);
+		if (tracker == null) {
+			tracker = createTracker(destination);
+		}
+		return tracker;
+	}
+
+	/**
+	 * Create tracker for destination.
+	 * 
+	 * Synchronized to ensure, that only one tracker is created for the same
+	 * destination.
+	 * 
+	 * @param destination destination address
+	 * @return created tracker, or the tracker of an other thread, if that was
+	 *         faster. {@code null}, if the maximum number of peers is reached.
+	 * @since 3.0
+	 */
+	private synchronized MessageIdTracker createTracker(final InetSocketAddress destination) {
 		MessageIdTracker tracker = trackers.get(destination);
 		if (tracker == null) {
 			// create new tracker for destination lazily
@@ -170,6 +203,9 @@ public class InMemoryMessageIdProvider implements MessageIdProvider {
 			case MAPBASED:
 				tracker = new MapBasedMessageIdTracker(mid, 0, multicastBaseMid, config);
 				break;
+			case RINGBUFFER:
+				tracker = new RingBufferMessageIdTracker(mid, 0, multicastBaseMid, config);
+				break;
 			case GROUPED:
 			default:
 				tracker = new GroupedMessageIdTracker(mid, 0, multicastBaseMid, config);
@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.core.network;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.core.network.config.NetworkConfig;
+import org.eclipse.californium.core.network.config.NetworkConfig.Keys;
+import org.eclipse.californium.elements.util.ClockUtil;
+
+/**
+ * A helper for keeping track of message IDs using a ring buffer of leases.
+ * <p>
+ * According to the
+ * <a href="https://tools.ietf.org/html/rfc7252#section-4.4" target="_blank">CoAP spec</a>
+ *
+ * <pre>
+ * The same Message ID MUST NOT be reused (in communicating with the
+   same endpoint) within the EXCHANGE_LIFETIME (Section 4.8.2).
+ * </pre>
+ *
+ * The MIDs are used in sequence. Therefore it's sufficient to keep the end of
+ * the lease for the last used MIDs in a primitive {@code long[]}, indexed by
+ * the sequence number modulo the capacity of that ring buffer. If the oldest
+ * lease in the ring buffer is still in use, the ring buffer is doubled. A MID
+ * is only overwritten in the ring buffer, if its lease has expired, so all MIDs
+ * older than the ring buffer are free. The ring buffer starts with
+ * {@link #INITIAL_CAPACITY} leases and grows up to the range of MIDs.
+ * <p>
+ * In difference to the {@link GroupedMessageIdTracker}, the leases are kept
+ * per MID, and in difference to the {@link MapBasedMessageIdTracker}, the
+ * memory is proportional to the number of MIDs in use within the
+ * {@link Keys#EXCHANGE_LIFETIME} without boxing.
+ *
+ * @since 3.0
+ */
+public class RingBufferMessageIdTracker implements MessageIdTracker {
+
+	/**
+	 * Initial capacity of the ring buffer.
+	 */
+	public static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * Minimal MID.
+	 */
+	private final int min;
+	/**
+	 * Range of MIDs.
+	 */
+	private final int range;
+	/**
+	 * Exchange lifetime. Value in nanoseconds.
+	 *
+	 * @see ClockUtil#nanoRealtime()
+	 */
+	private final long exchangeLifetimeNanos;
+	/**
+	 * Ring buffer with end of leases. The sequence number modulo the length
+	 * is used as index. Values in nanoseconds.
+	 *
+	 * @see ClockUtil#nanoRealtime()
+	 */
+	private long[] leases;
+	/**
+	 * Sequence number of the next MID. The MID is the sequence number modulo
+	 * the {@link #range} plus the {@link #min}.
+	 */
+	private long sequence;
+
+	/**
+	 * Creates a new ring buffer based tracker.
+	 *
+	 * The following configuration value is used:
+	 * <ul>
+	 * <li>{@link Keys#EXCHANGE_LIFETIME}
+	 * - each message ID returned by <em>getNextMessageId</em> is marked as
+	 * <em>in use</em> for this amount of time (ms).</li>
+	 * </ul>
+	 *
+	 * @param initialMid initial MID
+	 * @param minMid minimal MID (inclusive).
+	 * @param maxMid maximal MID (exclusive).
+	 * @param config configuration
+	 * @throws IllegalArgumentException if minMid is not smaller than maxMid or
+	 *             initialMid is not in the range of minMid and maxMid
+	 */
+	public RingBufferMessageIdTracker(int initialMid, int minMid, int maxMid, NetworkConfig config) {
+		if (minMid >= maxMid) {
+			throw new IllegalArgumentException("max. MID " + maxMid + " must be larger than min. MID " + minMid + "!");
+		}
+		if (initialMid < minMid || maxMid <= initialMid) {
+			throw new IllegalArgumentException(
+					"initial MID " + initialMid + " must be in range [" + minMid + "-" + maxMid + ")!");
+		}
+		exchangeLifetimeNanos = TimeUnit.MILLISECONDS.toNanos(config.getLong(Keys.EXCHANGE_LIFETIME));
+		sequence = initialMid - minMid;
+		this.min = minMid;
+		this.range = maxMid - minMid;
+		leases = new long[Math.min(INITIAL_CAPACITY, range)];
+		Arrays.fill(leases, ClockUtil.nanoRealtime() - 1000);
+	}
+
+	@Override
+	public int getNextMessageId() {
+		synchronized (this) {
+			// read the time within the lock, otherwise a thread waiting
+			// for the lock writes a lease based on an outdated time,
+			// which then expires too early
+			final long now = ClockUtil.nanoRealtime();
+			int index = (int) (sequence % leases.length);
+			if ((leases[index] - now) > 0) {
+				// oldest lease still in use
+				if (leases.length < range) {
+					grow(now);
+					index = (int) (sequence % leases.length);
+				} else {
+					index = -1;
+				}
+			}
+			if (index >= 0) {
+				leases[index] = now + exchangeLifetimeNanos;
+				int mid = (int) (sequence % range) + min;
+				++sequence;
+				return mid;
+			}
+		}
+		String time = TimeUnit.NANOSECONDS.toSeconds(exchangeLifetimeNanos) + "s";
+		throw new IllegalStateException(
+				"No MID available, all [" + min + "-" + (min + range) + ") MIDs in use! (MID lifetime " + time + "!)");
+	}
+
+	/**
+	 * Double the capacity of the ring buffer, limited by the {@link #range}.
+	 *
+	 * Keeps the leases of the last used MIDs. All other leases are expired.
+	 *
+	 * @param now current realtime in nanoseconds
+	 */
+	private void grow(long now) {
+		long[] current = leases;
+		int capacity = current.length;
+		long[] next = new long[Math.min(capacity * 2, range)];
+		Arrays.fill(next, now);
+		for (long seq = Math.max(0, sequence - capacity); seq < sequence; ++seq) {
+			next[(int) (seq % next.length)] = current[(int) (seq % capacity)];
+		}
+		leases = next;
+	}
+
+	/**
+	 * Get current capacity of the ring buffer.
+	 *
+	 * @return number of leases the ring buffer keeps
+	 */
+	public synchronized int getCapacity() {
+		return leases.length;
+	}
+}
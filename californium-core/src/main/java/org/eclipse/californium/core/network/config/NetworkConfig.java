@@ -244,6 +244,19 @@ public final class NetworkConfig {
 		public static final String CONGESTION_CONTROL_ALGORITHM = "CONGESTION_CONTROL_ALGORITHM";
 
 		public static final String PROTOCOL_STAGE_THREAD_COUNT = "PROTOCOL_STAGE_THREAD_COUNT";
+		/**
+		 * Tick duration in milliseconds of the
+		 * {@link org.eclipse.californium.elements.util.HashedWheelTimer}s
+		 * used as main and secondary executor of a
+		 * {@link org.eclipse.californium.core.CoapServer}.
+		 * The timers of the {@code ReliabilityLayer}, the
+		 * {@code BlockwiseLayer}, and the deduplicators are then scheduled
+		 * using that timing wheel. {@code 0} to use a
+		 * {@link java.util.concurrent.ScheduledThreadPoolExecutor} instead.
+		 * 
+		 * @since 3.0
+		 */
+		public static final String PROTOCOL_STAGE_TIMER_TICK = "PROTOCOL_STAGE_TIMER_TICK";
 		public static final String NETWORK_STAGE_RECEIVER_THREAD_COUNT = "NETWORK_STAGE_RECEIVER_THREAD_COUNT";
 		public static final String NETWORK_STAGE_SENDER_THREAD_COUNT = "NETWORK_STAGE_SENDER_THREAD_COUNT";
 
@@ -251,6 +264,14 @@ public final class NetworkConfig {
 		public static final String UDP_CONNECTOR_RECEIVE_BUFFER = "UDP_CONNECTOR_RECEIVE_BUFFER";
 		public static final String UDP_CONNECTOR_SEND_BUFFER = "UDP_CONNECTOR_SEND_BUFFER";
 		public static final String UDP_CONNECTOR_OUT_CAPACITY = "UDP_CONNECTOR_OUT_CAPACITY";
+		/**
+		 * Maximum number of datagrams processed by a UDP connector thread per
+		 * wakeup. Values larger than {@code 1} enable the batch mode of the
+		 * {@link org.eclipse.californium.elements.UDPConnector}.
+		 * 
+		 * @since 3.0
+		 */
+		public static final String UDP_CONNECTOR_BATCH_SIZE = "UDP_CONNECTOR_BATCH_SIZE";
 
 		public static final String DEDUPLICATOR = "DEDUPLICATOR";
 		public static final String DEDUPLICATOR_MARK_AND_SWEEP = "DEDUPLICATOR_MARK_AND_SWEEP";
@@ -278,6 +299,14 @@ public final class NetworkConfig {
 		 * MILLISECONDS).
 		 */
 		public static final String CROP_ROTATION_PERIOD = "CROP_ROTATION_PERIOD";
+		/**
+		 * Deduplicator based on open addressing tables of primitive arrays.
+		 * Doesn't allocate objects per incoming message. Uses
+		 * {@link #EXCHANGE_LIFETIME} and {@link #MARK_AND_SWEEP_INTERVAL}.
+		 * 
+		 * @since 3.0
+		 */
+		public static final String DEDUPLICATOR_OPEN_ADDRESSING = "DEDUPLICATOR_OPEN_ADDRESSING";
 		public static final String NO_DEDUPLICATOR = "NO_DEDUPLICATOR";
 		public static final String DEDUPLICATOR_AUTO_REPLACE = "DEDUPLICATOR_AUTO_REPLACE";
 		public static final String RESPONSE_MATCHING = "RESPONSE_MATCHING";
@@ -294,6 +323,20 @@ public final class NetworkConfig {
 		public static final String TCP_CONNECTION_IDLE_TIMEOUT = "TCP_CONNECTION_IDLE_TIMEOUT";
 		public static final String TCP_CONNECT_TIMEOUT = "TCP_CONNECT_TIMEOUT";
 		public static final String TCP_WORKER_THREADS = "TCP_WORKER_THREADS";
+		/**
+		 * Maximum number of flushes consolidated by the TCP and TLS
+		 * connectors. Values larger than {@code 0} enable the flush
+		 * consolidation, {@code 0} disables it.
+		 * 
+		 * @since 3.0
+		 */
+		public static final String TCP_FLUSH_CONSOLIDATION = "TCP_FLUSH_CONSOLIDATION";
+		/**
+		 * Use native transport for the TCP and TLS connectors, if available.
+		 * 
+		 * @since 3.0
+		 */
+		public static final String TCP_NATIVE_TRANSPORT = "TCP_NATIVE_TRANSPORT";
 		
 		/**
 		 * If the value is greater than 1, this sets up the active use of BERT.
@@ -96,7 +96,8 @@ public class NetworkConfigDefaults {
 	/**
 	 * The default MID tracker.
 	 * 
-	 * Supported values are {@code NULL}, {@code GROUPED}, or {@code MAPBASED}.
+	 * Supported values are {@code NULL}, {@code GROUPED}, {@code MAPBASED}, or
+	 * {@code RINGBUFFER}.
 	 * <p>
 	 * The default value is {@code GROUPED}.
 	 */
@@ -185,6 +186,33 @@ public class NetworkConfigDefaults {
 	 */
 	public static final int DEFAULT_MULTICAST_BASE_MID = 65000;
 
+	/**
+	 * The default number of flushes consolidated by the TCP connectors.
+	 * <p>
+	 * The default value is 0 for disabled flush consolidation.
+	 * 
+	 * @since 3.0
+	 */
+	public static final int DEFAULT_TCP_FLUSH_CONSOLIDATION = 0; // disabled
+
+	/**
+	 * The default usage of the native transport for the TCP connectors.
+	 * <p>
+	 * The default value is {@code false} to use NIO.
+	 * 
+	 * @since 3.0
+	 */
+	public static final boolean DEFAULT_TCP_NATIVE_TRANSPORT = false;
+
+	/**
+	 * The default batch size of the UDP connector.
+	 * <p>
+	 * The default value is 1 for disabled batch mode.
+	 * 
+	 * @since 3.0
+	 */
+	public static final int DEFAULT_UDP_CONNECTOR_BATCH_SIZE = 1; // disabled
+
 	/**
 	 * The default dtls connection id length.
 	 * <p>
@@ -242,6 +270,7 @@ public class NetworkConfigDefaults {
 		config.setString(Keys.CONGESTION_CONTROL_ALGORITHM, "Cocoa"); // see org.eclipse.californium.core.network.stack.congestioncontrol
 
 		config.setInt(Keys.PROTOCOL_STAGE_THREAD_COUNT, CORES);
+		config.setInt(Keys.PROTOCOL_STAGE_TIMER_TICK, 0); // [ms]
 		config.setInt(Keys.NETWORK_STAGE_RECEIVER_THREAD_COUNT, WINDOWS ? CORES : 1);
 		config.setInt(Keys.NETWORK_STAGE_SENDER_THREAD_COUNT, WINDOWS ? CORES : 1);
 
@@ -249,6 +278,7 @@ public class NetworkConfigDefaults {
 		config.setInt(Keys.UDP_CONNECTOR_RECEIVE_BUFFER, UDPConnector.UNDEFINED);
 		config.setInt(Keys.UDP_CONNECTOR_SEND_BUFFER, UDPConnector.UNDEFINED);
 		config.setInt(Keys.UDP_CONNECTOR_OUT_CAPACITY, Integer.MAX_VALUE); // unbounded
+		config.setInt(Keys.UDP_CONNECTOR_BATCH_SIZE, DEFAULT_UDP_CONNECTOR_BATCH_SIZE);
 
 		config.setString(Keys.DEDUPLICATOR, DEFAULT_DEDUPLICATOR);
 		config.setLong(Keys.MARK_AND_SWEEP_INTERVAL, DEFAULT_MARK_AND_SWEEP_INTERVAL);
@@ -268,6 +298,8 @@ public class NetworkConfigDefaults {
 		config.setInt(Keys.TCP_CONNECTION_IDLE_TIMEOUT, DEFAULT_TCP_CONNECTION_IDLE_TIMEOUT); // s
 		config.setInt(Keys.TCP_WORKER_THREADS, 1);
 		config.setInt(Keys.TCP_CONNECT_TIMEOUT, DEFAULT_TCP_CONNECT_TIMEOUT); // ms
+		config.setInt(Keys.TCP_FLUSH_CONSOLIDATION, DEFAULT_TCP_FLUSH_CONSOLIDATION);
+		config.setBoolean(Keys.TCP_NATIVE_TRANSPORT, DEFAULT_TCP_NATIVE_TRANSPORT);
 		config.setInt(Keys.TCP_NUMBER_OF_BULK_BLOCKS, 2);// BERT enabled when > 1.
 		config.setInt(Keys.TLS_HANDSHAKE_TIMEOUT, DEFAULT_TLS_HANDSHAKE_TIMEOUT); // ms
 
@@ -78,6 +78,8 @@ public class DeduplicatorFactory {
 			return new SweepDeduplicator(config);
 		case NetworkConfig.Keys.DEDUPLICATOR_CROP_ROTATION:
 			return new CropRotation(config);
+		case NetworkConfig.Keys.DEDUPLICATOR_OPEN_ADDRESSING:
+			return new OpenAddressingDeduplicator(config);
 		case NetworkConfig.Keys.NO_DEDUPLICATOR:
 			return new NoDeduplicator();
 		default:
@@ -0,0 +1,438 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.core.network.deduplication;
+
+import java.util.Arrays;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.core.network.Exchange;
+import org.eclipse.californium.core.network.KeyMID;
+import org.eclipse.californium.core.network.config.NetworkConfig;
+import org.eclipse.californium.core.network.config.NetworkConfig.Keys;
+import org.eclipse.californium.elements.util.ClockUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This deduplicator uses open addressing hash tables of primitive arrays to
+ * store incoming messages.
+ * <p>
+ * In difference to the {@link SweepDeduplicator} and the {@link CropRotation},
+ * no objects are allocated per incoming message. The {@link KeyMID} is not
+ * stored, the table keeps the hash of the peer combined with the MID in a
+ * {@code long}, the peer itself (which is already referenced by the message),
+ * the exchange and the time bucket of the last update. Lookups therefore
+ * require only a few array accesses and don't create garbage.
+ * <p>
+ * The time is divided into buckets of
+ * {@link org.eclipse.californium.core.network.config.NetworkConfig.Keys#MARK_AND_SWEEP_INTERVAL}.
+ * Entries older than
+ * {@link org.eclipse.californium.core.network.config.NetworkConfig.Keys#EXCHANGE_LIFETIME}
+ * are considered to be absent even before they are removed. The periodic
+ * sweep scans the arrays of the tables and removes these expired entries.
+ * <p>
+ * To reduce lock contention, the tables are split into segments, each with
+ * its own lock.
+ *
+ * @since 3.0
+ */
+public class OpenAddressingDeduplicator implements Deduplicator {
+
+	private final static Logger LOGGER = LoggerFactory.getLogger(OpenAddressingDeduplicator.class);
+
+	/**
+	 * Number of segments.
+	 */
+	private static final int SEGMENTS = 16;
+	/**
+	 * Initial number of slots of a segment.
+	 */
+	private static final int INITIAL_SLOTS = 256;
+
+	private final Segment[] segments;
+	private final long bucketNanos;
+	private final int lifetimeBuckets;
+	private final long startNanos;
+	private final long sweepInterval;
+	private final boolean replace;
+	private final Runnable sweep = new Runnable() {
+
+		@Override
+		public void run() {
+			try {
+				sweep();
+			} catch (Throwable t) {
+				LOGGER.warn("Exception in sweep algorithm", t);
+			}
+		}
+	};
+
+	private volatile ScheduledFuture<?> jobStatus;
+	private ScheduledExecutorService executor;
+
+	/**
+	 * Creates a new deduplicator from configuration values.
+	 * <p>
+	 * The following configuration values are used:
+	 * <ul>
+	 * <li>{@link org.eclipse.californium.core.network.config.NetworkConfig.Keys#EXCHANGE_LIFETIME} -
+	 * an exchange is removed from this deduplicator if no messages have been
+	 * received for this number of milliseconds</li>
+	 * <li>{@link org.eclipse.californium.core.network.config.NetworkConfig.Keys#MARK_AND_SWEEP_INTERVAL} -
+	 * the interval at which to remove expired exchanges in milliseconds. Also
+	 * used as size of the time buckets.</li>
+	 * <li>{@link org.eclipse.californium.core.network.config.NetworkConfig.Keys#DEDUPLICATOR_AUTO_REPLACE} -
+	 * the flag to enable exchange replacing, if the new exchange differs from
+	 * the already stored one.</li>
+	 * </ul>
+	 *
+	 * @param config the configuration to use.
+	 */
+	public OpenAddressingDeduplicator(NetworkConfig config) {
+		this(config.getLong(Keys.EXCHANGE_LIFETIME), config.getLong(Keys.MARK_AND_SWEEP_INTERVAL),
+				config.getBoolean(Keys.DEDUPLICATOR_AUTO_REPLACE));
+	}
+
+	/**
+	 * Creates a new deduplicator.
+	 *
+	 * @param exchangeLifetime exchange lifetime in milliseconds
+	 * @param sweepInterval sweep interval in milliseconds. Also used as size
+	 *            of the time buckets.
+	 * @param replace {@code true}, to replace exchanges of different origin,
+	 *            {@code false}, otherwise
+	 * @throws IllegalArgumentException if exchange lifetime or sweep interval
+	 *             is less than 1.
+	 */
+	public OpenAddressingDeduplicator(long exchangeLifetime, long sweepInterval, boolean replace) {
+		if (exchangeLifetime < 1) {
+			throw new IllegalArgumentException("exchange lifetime " + exchangeLifetime + " must be at least 1ms!");
+		}
+		if (sweepInterval < 1) {
+			throw new IllegalArgumentException("sweep interval " + sweepInterval + " must be at least 1ms!");
+		}
+		this.sweepInterval = sweepInterval;
+		this.replace = replace;
+		this.bucketNanos = TimeUnit.MILLISECONDS.toNanos(sweepInterval);
+		this.lifetimeBuckets = (int) ((exchangeLifetime + sweepInterval - 1) / sweepInterval);
+		this.startNanos = ClockUtil.nanoRealtime();
+		this.segments = new Segment[SEGMENTS];
+		for (int index = 0; index < SEGMENTS; ++index) {
+			this.segments[index] = new Segment();
+		}
+	}
+
+	@Override
+	public synchronized void start() {
+		if (jobStatus == null) {
+			jobStatus = executor.scheduleAtFixedRate(sweep, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@Override
+	public synchronized void stop() {
+		if (jobStatus != null) {
+			jobStatus.cancel(false);
+			jobStatus = null;
+			clear();
+		}
+	}
+
+	@Override
+	public synchronized void setExecutor(ScheduledExecutorService executor) {
+		if (jobStatus != null)
+			throw new IllegalStateException("executor service can not be set on running Deduplicator");
+		this.executor = executor;
+	}
+
+	@Override
+	public Exchange findPrevious(KeyMID key, Exchange exchange) {
+		long code = code(key);
+		int bucket = currentBucket();
+		Segment segment = segment(code);
+		synchronized (segment) {
+			int index = segment.lookup(code, key.getPeer());
+			if (index < 0) {
+				segment.insert(~index, code, key.getPeer(), exchange, bucket);
+				LOGGER.debug("add exchange for {}", key);
+				return null;
+			}
+			Exchange previous = segment.exchanges[index];
+			if (isExpired(segment.buckets[index], bucket)
+					|| (replace && previous.getOrigin() != exchange.getOrigin())) {
+				segment.exchanges[index] = exchange;
+				segment.buckets[index] = bucket;
+				LOGGER.debug("replace exchange for {}", key);
+				return null;
+			}
+			LOGGER.debug("found exchange for {}", key);
+			return previous;
+		}
+	}
+
+	@Override
+	public boolean replacePrevious(KeyMID key, Exchange previous, Exchange exchange) {
+		long code = code(key);
+		int bucket = currentBucket();
+		Segment segment = segment(code);
+		synchronized (segment) {
+			int index = segment.lookup(code, key.getPeer());
+			if (index < 0) {
+				segment.insert(~index, code, key.getPeer(), exchange, bucket);
+				return true;
+			}
+			if (isExpired(segment.buckets[index], bucket) || segment.exchanges[index] == previous) {
+				segment.exchanges[index] = exchange;
+				segment.buckets[index] = bucket;
+				return true;
+			}
+			return false;
+		}
+	}
+
+	@Override
+	public Exchange find(KeyMID key) {
+		long code = code(key);
+		int bucket = currentBucket();
+		Segment segment = segment(code);
+		synchronized (segment) {
+			int index = segment.lookup(code, key.getPeer());
+			if (index < 0 || isExpired(segment.buckets[index], bucket)) {
+				return null;
+			}
+			return segment.exchanges[index];
+		}
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * Includes expired entries, which are not removed yet by the sweep.
+	 */
+	@Override
+	public int size() {
+		int size = 0;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				size += segment.size;
+			}
+		}
+		return size;
+	}
+
+	@Override
+	public void clear() {
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	/**
+	 * Remove all expired entries.
+	 */
+	void sweep() {
+		final long start = ClockUtil.nanoRealtime();
+		int bucket = currentBucket();
+		int removed = 0;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				removed += segment.removeExpired(bucket, lifetimeBuckets);
+			}
+		}
+		LOGGER.debug("Sweep run removed {} entries and took {}ms", removed,
+				TimeUnit.NANOSECONDS.toMillis(ClockUtil.nanoRealtime() - start));
+	}
+
+	private int currentBucket() {
+		return (int) ((ClockUtil.nanoRealtime() - startNanos) / bucketNanos);
+	}
+
+	private boolean isExpired(int bucket, int currentBucket) {
+		return currentBucket - bucket > lifetimeBuckets;
+	}
+
+	private Segment segment(long code) {
+		return segments[(int) (code >>> 16) & (SEGMENTS - 1)];
+	}
+
+	/**
+	 * Encode hash of peer and MID into a {@code long}.
+	 *
+	 * @param key key with peer and MID
+	 * @return encoded key
+	 */
+	private static long code(KeyMID key) {
+		int hash = key.getPeer().hashCode();
+		hash ^= (hash >>> 16);
+		return ((hash & 0xffffffffL) << 16) | key.getMID();
+	}
+
+	/**
+	 * Home slot of an encoded key.
+	 *
+	 * @param code encoded key
+	 * @param mask mask of the table
+	 * @return home slot
+	 */
+	private static int home(long code, int mask) {
+		long hash = code * 0x9E3779B97F4A7C15L;
+		return (int) (hash >>> 32) & mask;
+	}
+
+	/**
+	 * Segment with open addressing table using linear probing. Not thread
+	 * safe, must be protected by the callers.
+	 */
+	private static class Segment {
+
+		private long[] codes;
+		private Object[] peers;
+		private Exchange[] exchanges;
+		private int[] buckets;
+		private int mask;
+		private int size;
+
+		private Segment() {
+			allocate(INITIAL_SLOTS);
+		}
+
+		private void allocate(int slots) {
+			codes = new long[slots];
+			peers = new Object[slots];
+			exchanges = new Exchange[slots];
+			buckets = new int[slots];
+			mask = slots - 1;
+		}
+
+		/**
+		 * Lookup slot of entry.
+		 *
+		 * @param code encoded key
+		 * @param peer peer of key
+		 * @return index of entry, if found. Otherwise the index of the free
+		 *         slot to insert the entry, encoded by {@code ~index}.
+		 */
+		private int lookup(long code, Object peer) {
+			int index = home(code, mask);
+			while (peers[index] != null) {
+				if (codes[index] == code && peers[index].equals(peer)) {
+					return index;
+				}
+				index = (index + 1) & mask;
+			}
+			return ~index;
+		}
+
+		private void insert(int index, long code, Object peer, Exchange exchange, int bucket) {
+			codes[index] = code;
+			peers[index] = peer;
+			exchanges[index] = exchange;
+			buckets[index] = bucket;
+			++size;
+			if (size > (codes.length >> 1) + (codes.length >> 2)) {
+				resize(codes.length << 1);
+			}
+		}
+
+		private void resize(int slots) {
+			long[] oldCodes = codes;
+			Object[] oldPeers = peers;
+			Exchange[] oldExchanges = exchanges;
+			int[] oldBuckets = buckets;
+			allocate(slots);
+			for (int old = 0; old < oldCodes.length; ++old) {
+				if (oldPeers[old] != null) {
+					int index = home(oldCodes[old], mask);
+					while (peers[index] != null) {
+						index = (index + 1) & mask;
+					}
+					codes[index] = oldCodes[old];
+					peers[index] = oldPeers[old];
+					exchanges[index] = oldExchanges[old];
+					buckets[index] = oldBuckets[old];
+				}
+			}
+		}
+
+		/**
+		 * Remove entry using backward shift deletion.
+		 *
+		 * @param index index of entry to remove
+		 */
+		private void remove(int index) {
+			int next = index;
+			while (true) {
+				next = (next + 1) & mask;
+				if (peers[next] == null) {
+					break;
+				}
+				int home = home(codes[next], mask);
+				boolean stays = index <= next ? (index < home && home <= next) : (index < home || home <= next);
+				if (!stays) {
+					codes[index] = codes[next];
+					peers[index] = peers[next];
+					exchanges[index] = exchanges[next];
+					buckets[index] = buckets[next];
+					index = next;
+				}
+			}
+			codes[index] = 0;
+			peers[index] = null;
+			exchanges[index] = null;
+			buckets[index] = 0;
+			--size;
+		}
+
+		private int removeExpired(int currentBucket, int lifetimeBuckets) {
+			int removed = 0;
+			int index = 0;
+			while (index < codes.length) {
+				if (peers[index] != null && currentBucket - buckets[index] > lifetimeBuckets) {
+					// backward shift may move an other entry into this slot
+					remove(index);
+					++removed;
+				} else {
+					++index;
+				}
+			}
+			if (codes.length > INITIAL_SLOTS && size < (codes.length >> 3)) {
+				resize(codes.length >> 1);
+			}
+			return removed;
+		}
+
+		private void clear() {
+			if (codes.length > INITIAL_SLOTS) {
+				allocate(INITIAL_SLOTS);
+			} else {
+				Arrays.fill(codes, 0);
+				Arrays.fill(peers, null);
+				Arrays.fill(exchanges, null);
+				Arrays.fill(buckets, 0);
+			}
+			size = 0;
+		}
+	}
+}
@@ -80,6 +80,7 @@ public abstract class DataParser {
 		String errorMsg = "illegal message code";
 		DatagramReader reader = new DatagramReader(new ByteArrayInputStream(msg));
 		MessageHeader header = parseHeader(reader);
+		int optionsOffset = msg.length - reader.bitsLeft() / Byte.SIZE;
 		try {
 			Message message = null;
 			if (CoAP.isRequest(header.getCode())) {
@@ -93,6 +94,9 @@ public abstract class DataParser {
 			// Set the message's bytes and return the message
 			if (message != null) {
 				message.setBytes(msg);
+				int payloadSize = message.getPayloadSize();
+				int optionsEnd = payloadSize > 0 ? msg.length - payloadSize - 1 : msg.length;
+				message.getOptions().setEncoded(msg, optionsOffset, optionsEnd - optionsOffset);
 				return message;
 			}
 		} catch (CoAPMessageFormatException e) {
@@ -184,10 +188,9 @@ public abstract class DataParser {
 			// read option
 			if (reader.bytesAvailable(optionLength)) {
 				try {
-					Option option = new Option(currentOptionNumber);
-					option.setValue(reader.readBytes(optionLength));
-
 					if (currentOptionNumber == OptionNumberRegistry.CONTENT_FORMAT) {
+						Option option = new Option(currentOptionNumber);
+						option.setValue(reader.readBytes(optionLength));
 						// OptionSet.setContentFormat(int) API weird => cleanup on 3.0
 						int format = option.getIntegerValue();
 						message.getOptions().setContentFormat(format);
@@ -196,8 +199,9 @@ public abstract class DataParser {
 									"Content Format option must be between 0 and " + MediaTypeRegistry.MAX_TYPE + " (2 bytes) inclusive");
 						}
 					} else {
-						// add option to message
-						message.getOptions().addOption(option);
+						// add option to message, repeatable options are
+						// decoded on first access
+						message.getOptions().addOption(currentOptionNumber, reader.readBytes(optionLength));
 					}
 				} catch (IllegalArgumentException ex) {
 					throw new CoAPMessageFormatException(ex.getMessage(), message.getToken(), message.getMID(), message.getRawCode(), message.isConfirmable());
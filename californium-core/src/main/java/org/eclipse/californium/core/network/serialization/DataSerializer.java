@@ -275,6 +275,28 @@ public abstract class DataSerializer {
 			throw new NullPointerException("option-set must not be null!");
 		}
 
+		if (!optionSet.writeEncoded(writer)) {
+			// options are modified since received, serialize them
+			serializeOptions(writer, optionSet);
+		}
+
+		if (payload != null && payload.length > 0) {
+			// if payload is present and of non-zero length, it is prefixed by
+			// an one-byte Payload Marker (0xFF) which indicates the end of
+			// options and the start of the payload
+			writer.writeByte(PAYLOAD_MARKER);
+			writer.writeBytes(payload);
+		}
+	}
+
+	/**
+	 * Serialize options. Append the serialized options to the writer.
+	 * 
+	 * @param writer writer to append the data
+	 * @param optionSet option set to be serialized
+	 * @since 3.0
+	 */
+	private static void serializeOptions(DatagramWriter writer, final OptionSet optionSet) {
 		int lastOptionNumber = 0;
 		for (Option option : optionSet.asSortedList()) {
 			byte[] value = option.getValue();
@@ -310,14 +332,6 @@ public abstract class DataSerializer {
 			// update last option number
 			lastOptionNumber = optionNumber;
 		}
-
-		if (payload != null && payload.length > 0) {
-			// if payload is present and of non-zero length, it is prefixed by
-			// an one-byte Payload Marker (0xFF) which indicates the end of
-			// options and the start of the payload
-			writer.writeByte(PAYLOAD_MARKER);
-			writer.writeBytes(payload);
-		}
 	}
 
 	/**
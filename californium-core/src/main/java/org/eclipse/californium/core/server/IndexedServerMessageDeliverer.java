@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.core.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.californium.core.coap.CoAP;
+import org.eclipse.californium.core.network.Exchange;
+import org.eclipse.californium.core.server.resources.Resource;
+import org.eclipse.californium.core.server.resources.ResourceObserverAdapter;
+
+/**
+ * Message deliverer using a trie index of the resource tree.
+ * <p>
+ * The index keeps the UTF-8 encoded names of the resources and is updated
+ * using {@link org.eclipse.californium.core.server.resources.ResourceObserver}
+ * callbacks, when resources are added or removed. Requests are resolved with
+ * the encoded Uri-Path segments, see {@link
+ * org.eclipse.californium.core.coap.OptionSet#getUriPathEncoded()}. For
+ * received requests, that avoids to decode the segments into strings and to
+ * lookup each segment with {@link Resource#getChild(String)}.
+ * <p>
+ * Segments not found in the index are resolved with
+ * {@link Resource#getChild(String)} starting at the last indexed resource.
+ * That keeps resources working, which override
+ * {@link Resource#getChild(String)} to accept requests for not existing
+ * sub-resources (e.g. wildcards). Resources, which return other resources
+ * than their children, are not supported.
+ *
+ * <pre>
+ * CoapServer server = new CoapServer();
+ * server.setMessageDeliverer(new IndexedServerMessageDeliverer(server.getRoot()));
+ * </pre>
+ *
+ * @since 3.0
+ */
+public class IndexedServerMessageDeliverer extends ServerMessageDeliverer {
+
+	/**
+	 * Root node of index.
+	 */
+	private final Node rootNode;
+
+	/**
+	 * Constructs a message deliverer that delivers requests to the resources
+	 * rooted at the specified root using a trie index.
+	 *
+	 * @param root the root resource
+	 */
+	public IndexedServerMessageDeliverer(final Resource root) {
+		super(root);
+		this.rootNode = new Node(root);
+	}
+
+	@Override
+	protected Resource findResource(Exchange exchange) throws DelivererException {
+		return findEncodedResource(exchange.getRequest().getOptions().getUriPathEncoded());
+	}
+
+	@Override
+	protected Resource findResource(List<String> path) throws DelivererException {
+		List<byte[]> encodedPath = new ArrayList<>(path.size());
+		for (String segment : path) {
+			encodedPath.add(segment.getBytes(CoAP.UTF8_CHARSET));
+		}
+		return findEncodedResource(encodedPath);
+	}
+
+	/**
+	 * Searches in the index for the specified encoded path.
+	 *
+	 * @param path the path as list of UTF-8 encoded resource names
+	 * @return the resource or {@code null}, if not found
+	 * @throws DelivererException if an other error is detected.
+	 */
+	protected Resource findEncodedResource(List<byte[]> path) throws DelivererException {
+		Key probe = new Key();
+		Node node = rootNode;
+		int size = path.size();
+		int index = 0;
+		for (; index < size; ++index) {
+			Node child = node.children.get(probe.set(path.get(index)));
+			if (child == null) {
+				break;
+			}
+			node = child;
+		}
+		Resource current = node.resource;
+		for (; index < size && current != null; ++index) {
+			current = current.getChild(new String(path.get(index), CoAP.UTF8_CHARSET));
+		}
+		return current;
+	}
+
+	/**
+	 * Name of a resource as key of the index.
+	 * <p>
+	 * Compares the UTF-8 encoded names. The key used for lookups is reused for
+	 * all segments of a path.
+	 */
+	private static class Key {
+
+		private byte[] name;
+		private int hash;
+
+		private Key() {
+		}
+
+		private Key(String name) {
+			set(name.getBytes(CoAP.UTF8_CHARSET));
+		}
+
+		private Key set(byte[] name) {
+			this.name = name;
+			this.hash = Arrays.hashCode(name);
+			return this;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			} else if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return hash == other.hash && Arrays.equals(name, other.name);
+		}
+	}
+
+	/**
+	 * Node of the index.
+	 * <p>
+	 * Registers itself as observer of the resource to keep the children up to
+	 * date.
+	 */
+	private static class Node extends ResourceObserverAdapter {
+
+		private final Resource resource;
+		private final ConcurrentMap<Key, Node> children = new ConcurrentHashMap<>();
+
+		private Node(Resource resource) {
+			this.resource = resource;
+			// register first, children added concurrently are not missed
+			resource.addObserver(this);
+			for (Resource child : resource.getChildren()) {
+				addedChild(child);
+			}
+		}
+
+		/**
+		 * Unregister this node and its children from the resources.
+		 */
+		private void unregister() {
+			resource.removeObserver(this);
+			for (Node child : children.values()) {
+				child.unregister();
+			}
+			children.clear();
+		}
+
+		@Override
+		public void addedChild(Resource child) {
+			Key key = new Key(child.getName());
+			Node current = children.get(key);
+			if (current == null || current.resource != child) {
+				Node previous = children.put(key, new Node(child));
+				if (previous != null) {
+					// replaced node, either of an other resource or
+					// concurrently added for the same resource
+					previous.unregister();
+				}
+			}
+		}
+
+		@Override
+		public void removedChild(Resource child) {
+			Key key = new Key(child.getName());
+			Node current = children.get(key);
+			if (current != null && current.resource == child && children.remove(key, current)) {
+				current.unregister();
+			}
+		}
+	}
+}
@@ -86,6 +86,13 @@ public class InMemoryMessageIdProviderTest {
 		testLimitedTrackerGetNextMessageIdReturnsMid(provider);
 	}
 
+	@Test
+	public void testRingBufferTrackerGetNextMessageIdReturnsMid() {
+		config.set(NetworkConfig.Keys.MID_TRACKER, "RINGBUFFER");
+		InMemoryMessageIdProvider provider = new InMemoryMessageIdProvider(config);
+		testLimitedTrackerGetNextMessageIdReturnsMid(provider);
+	}
+
 	@Test
 	public void testGroupedTrackerGetNextMessageIdReturnsMid() {
 		config.set(NetworkConfig.Keys.MID_TRACKER, "GROUPED");
@@ -56,7 +56,8 @@ public class DeduplicatorTest {
 	public static Iterable<String> deduplicatorParams() {
 		return Arrays.asList(NetworkConfig.Keys.DEDUPLICATOR_MARK_AND_SWEEP,
 				NetworkConfig.Keys.DEDUPLICATOR_PEERS_MARK_AND_SWEEP,
-				NetworkConfig.Keys.DEDUPLICATOR_CROP_ROTATION);
+				NetworkConfig.Keys.DEDUPLICATOR_CROP_ROTATION,
+				NetworkConfig.Keys.DEDUPLICATOR_OPEN_ADDRESSING);
 	}
 
 	KeyMID key;
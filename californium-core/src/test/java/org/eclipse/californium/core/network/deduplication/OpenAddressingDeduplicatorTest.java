@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.core.network.deduplication;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.core.coap.Request;
+import org.eclipse.californium.core.network.Exchange;
+import org.eclipse.californium.core.network.KeyMID;
+import org.eclipse.californium.elements.AddressEndpointContext;
+import org.eclipse.californium.elements.category.Small;
+import org.eclipse.californium.elements.rule.TestTimeRule;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(Small.class)
+public class OpenAddressingDeduplicatorTest {
+
+	private static final long EXCHANGE_LIFETIME = 10000;
+	private static final long SWEEP_INTERVAL = 1000;
+	private static final int NUMBER_OF_PEERS = 64;
+	private static final int NUMBER_OF_MESSAGES = 256;
+
+	@Rule
+	public TestTimeRule time = new TestTimeRule();
+
+	InetSocketAddress[] peers;
+	OpenAddressingDeduplicator deduplicator;
+
+	@Before
+	public void init() {
+		deduplicator = new OpenAddressingDeduplicator(EXCHANGE_LIFETIME, SWEEP_INTERVAL, true);
+		InetAddress loopbackAddress = InetAddress.getLoopbackAddress();
+		peers = new InetSocketAddress[NUMBER_OF_PEERS];
+		for (int port = 0; port < NUMBER_OF_PEERS; ++port) {
+			peers[port] = new InetSocketAddress(loopbackAddress, 5683 + port);
+		}
+	}
+
+	@Test
+	public void testManyEntries() {
+		addExchanges();
+		assertThat(deduplicator.size(), is(NUMBER_OF_PEERS * NUMBER_OF_MESSAGES));
+		for (InetSocketAddress peer : peers) {
+			for (int mid = 0; mid < NUMBER_OF_MESSAGES; ++mid) {
+				assertThat(deduplicator.find(new KeyMID(mid, peer)), is(notNullValue()));
+			}
+			assertThat(deduplicator.find(new KeyMID(NUMBER_OF_MESSAGES, peer)), is(nullValue()));
+		}
+	}
+
+	@Test
+	public void testExpiredEntriesAreAbsent() {
+		KeyMID key = new KeyMID(10, peers[0]);
+		Exchange exchange = newExchange(10, peers[0]);
+		assertThat(deduplicator.findPrevious(key, exchange), is(nullValue()));
+		assertThat(deduplicator.findPrevious(key, newExchange(10, peers[0])), is(exchange));
+		time.addTestTimeShift(EXCHANGE_LIFETIME + SWEEP_INTERVAL * 2, TimeUnit.MILLISECONDS);
+		assertThat(deduplicator.find(key), is(nullValue()));
+		assertThat(deduplicator.findPrevious(key, newExchange(10, peers[0])), is(nullValue()));
+		assertThat(deduplicator.size(), is(1));
+	}
+
+	@Test
+	public void testSweepRemovesExpiredEntries() {
+		addExchanges();
+		time.addTestTimeShift(EXCHANGE_LIFETIME / 2, TimeUnit.MILLISECONDS);
+		// refresh every second message of the first peer
+		for (int mid = 0; mid < NUMBER_OF_MESSAGES; mid += 2) {
+			KeyMID key = new KeyMID(mid, peers[0]);
+			assertThat(deduplicator.replacePrevious(key, deduplicator.find(key), newExchange(mid, peers[0])), is(true));
+		}
+		time.addTestTimeShift(EXCHANGE_LIFETIME / 2 + SWEEP_INTERVAL * 2, TimeUnit.MILLISECONDS);
+		deduplicator.sweep();
+		assertThat(deduplicator.size(), is(NUMBER_OF_MESSAGES / 2));
+		for (int mid = 0; mid < NUMBER_OF_MESSAGES; ++mid) {
+			KeyMID key = new KeyMID(mid, peers[0]);
+			if ((mid & 1) == 0) {
+				assertThat(deduplicator.find(key), is(notNullValue()));
+			} else {
+				assertThat(deduplicator.find(key), is(nullValue()));
+			}
+		}
+		time.addTestTimeShift(EXCHANGE_LIFETIME, TimeUnit.MILLISECONDS);
+		deduplicator.sweep();
+		assertThat(deduplicator.isEmpty(), is(true));
+	}
+
+	@Test
+	public void testClear() {
+		addExchanges();
+		deduplicator.clear();
+		assertThat(deduplicator.isEmpty(), is(true));
+		assertThat(deduplicator.find(new KeyMID(1, peers[1])), is(nullValue()));
+	}
+
+	private void addExchanges() {
+		for (InetSocketAddress peer : peers) {
+			for (int mid = 0; mid < NUMBER_OF_MESSAGES; ++mid) {
+				assertThat(deduplicator.findPrevious(new KeyMID(mid, peer), newExchange(mid, peer)), is(nullValue()));
+			}
+		}
+	}
+
+	private static Exchange newExchange(int mid, InetSocketAddress peer) {
+		Request incoming = Request.newGet();
+		incoming.setMID(mid);
+		incoming.setSourceContext(new AddressEndpointContext(peer));
+		return new Exchange(incoming, Exchange.Origin.REMOTE, null);
+	}
+}
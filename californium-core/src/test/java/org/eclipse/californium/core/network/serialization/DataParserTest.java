@@ -23,6 +23,7 @@
  ******************************************************************************/
 package org.eclipse.californium.core.network.serialization;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -250,6 +251,67 @@ public class DataParserTest {
 		assertEquals(response.getMID(), result.getMID());
 	}
 
+	@Test public void testReceivedOptionsAreSerializedUnchanged() {
+		Request request = new Request(Code.PUT);
+		request.setDestinationContext(ENDPOINT_CONTEXT);
+		request.setMID(expectedMid);
+		request.setToken(new byte[] { 11, 82, -91, 77, 3 });
+		request.getOptions().setUriPath("test/path").setUriQuery("a=1&b=2").addETag(new byte[] { 1, 2 })
+				.setAccept(40).setBlock2(2, false, 3);
+		request.setPayload("payload");
+
+		RawData rawData = serializer.serializeRequest(request);
+		rawData = receive(rawData, CONNECTOR);
+
+		Request result = (Request) parser.parseMessage(rawData);
+		assertTrue(result.getOptions().hasEncoded());
+
+		// forward options
+		Request forward = new Request(Code.PUT);
+		forward.setDestinationContext(ENDPOINT_CONTEXT);
+		forward.setMID(expectedMid);
+		forward.setToken(result.getToken());
+		forward.setOptions(result.getOptions());
+		forward.setPayload(result.getPayload());
+		assertTrue(forward.getOptions().hasEncoded());
+		assertArrayEquals(rawData.getBytes(), serializer.serializeRequest(forward).getBytes());
+
+		// decoded on access
+		assertEquals("test/path", result.getOptions().getUriPathString());
+		assertEquals("a=1&b=2", result.getOptions().getUriQueryString());
+		assertEquals(request.getOptions().asSortedList(), result.getOptions().asSortedList());
+		assertTrue(result.getOptions().hasEncoded());
+	}
+
+	@Test public void testModifiedReceivedOptionsAreSerialized() {
+		Request request = new Request(Code.GET);
+		request.setDestinationContext(ENDPOINT_CONTEXT);
+		request.setMID(expectedMid);
+		request.setToken(new byte[] { 11, 82, -91, 77, 3 });
+		request.getOptions().setUriPath("test/path").setUriQuery("a=1&b=2");
+
+		RawData rawData = serializer.serializeRequest(request);
+		rawData = receive(rawData, CONNECTOR);
+
+		Request result = (Request) parser.parseMessage(rawData);
+		result.getOptions().addUriPath("more");
+		assertFalse(result.getOptions().hasEncoded());
+		Request forward = new Request(Code.GET);
+		forward.setDestinationContext(ENDPOINT_CONTEXT);
+		forward.setMID(expectedMid);
+		forward.setToken(result.getToken());
+		forward.setOptions(result.getOptions());
+
+		rawData = receive(serializer.serializeRequest(forward), CONNECTOR);
+		result = (Request) parser.parseMessage(rawData);
+		assertEquals("test/path/more", result.getOptions().getUriPathString());
+
+		// modify the list returned by the getter
+		result.getOptions().getUriQuery().add("c=3");
+		assertFalse(result.getOptions().hasEncoded());
+		assertEquals("a=1&b=2&c=3", result.getOptions().getUriQueryString());
+	}
+
 	private static RawData receive(RawData data, InetSocketAddress connector) {
 		return RawData.inbound(data.getBytes(), data.getEndpointContext(), data.isMulticast(),
 				data.getReceiveNanoTimestamp(), connector);
@@ -18,6 +18,7 @@ package org.eclipse.californium.core.server;
 import static org.junit.Assert.assertEquals;
 
 import org.eclipse.californium.core.CoapServer;
+import org.eclipse.californium.core.network.config.NetworkConfig;
 import org.eclipse.californium.elements.category.Small;
 import org.eclipse.californium.rule.CoapNetworkRule;
 import org.eclipse.californium.rule.CoapThreadsRule;
@@ -62,4 +63,24 @@ public class CoapServerTest {
 		}
 		assertEquals("All news threads created must be destroyed", numberOfThreadbefore, Thread.activeCount());
 	}
+
+	@Test
+	public void testStartStopDestroyWithTimingWheel() {
+		// look at nb active thread before.
+		int numberOfThreadbefore = Thread.activeCount();
+
+		NetworkConfig config = network.createStandardTestConfig();
+		config.setInt(NetworkConfig.Keys.PROTOCOL_STAGE_TIMER_TICK, 10);
+		CoapServer server = new CoapServer(config, 0);
+		server.start();
+		server.stop();
+		server.destroy();
+
+		// ensure all thread are destroyed
+		try {
+			Thread.sleep(500);
+		} catch (InterruptedException e) {
+		}
+		assertEquals("All news threads created must be destroyed", numberOfThreadbefore, Thread.activeCount());
+	}
 }
@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.core.server;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.californium.core.CoapResource;
+import org.eclipse.californium.core.coap.CoAP.Code;
+import org.eclipse.californium.core.coap.Request;
+import org.eclipse.californium.core.network.Exchange;
+import org.eclipse.californium.core.network.MatcherTestUtils;
+import org.eclipse.californium.core.network.serialization.UdpDataParser;
+import org.eclipse.californium.core.network.serialization.UdpDataSerializer;
+import org.eclipse.californium.core.server.resources.Resource;
+import org.eclipse.californium.core.server.resources.ResourceObserver;
+import org.eclipse.californium.elements.category.Small;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Verifies behavior of {@link IndexedServerMessageDeliverer}.
+ */
+@Category(Small.class)
+public class IndexedServerMessageDelivererTest {
+
+	private CoapResource root;
+	private CoapResource sensors;
+	private CoapResource temperature;
+	private IndexedServerMessageDeliverer deliverer;
+
+	@Before
+	public void setUp() {
+		root = new CoapResource("");
+		sensors = new CoapResource("sensors");
+		temperature = new CoapResource("temp");
+		sensors.add(temperature);
+		root.add(sensors);
+		deliverer = new IndexedServerMessageDeliverer(root);
+	}
+
+	@Test
+	public void testFindInitialResources() throws Exception {
+		assertThat(find("sensors"), is(sameInstance((Resource) sensors)));
+		assertThat(find("sensors", "temp"), is(sameInstance((Resource) temperature)));
+		assertThat(find(), is(sameInstance((Resource) root)));
+		assertThat(find("sensors", "humidity"), is(nullValue()));
+		assertThat(find("actors"), is(nullValue()));
+	}
+
+	@Test
+	public void testFindReceivedRequest() throws Exception {
+		Request request = Request.newGet();
+		request.setURI("coap://localhost/sensors/temp");
+		request.setMID(1);
+		request.setToken(new byte[] { 1 });
+		byte[] raw = new UdpDataSerializer().getByteArray(request);
+		Request received = (Request) new UdpDataParser().parseMessage(raw);
+		assertThat(deliverer.findResource(newExchange(received)), is(sameInstance((Resource) temperature)));
+	}
+
+	@Test
+	public void testFindAddedResources() throws Exception {
+		CoapResource humidity = new CoapResource("humidity");
+		CoapResource history = new CoapResource("history");
+		humidity.add(history);
+		sensors.add(humidity);
+		assertThat(find("sensors", "humidity"), is(sameInstance((Resource) humidity)));
+		assertThat(find("sensors", "humidity", "history"), is(sameInstance((Resource) history)));
+		CoapResource last = new CoapResource("last");
+		history.add(last);
+		assertThat(find("sensors", "humidity", "history", "last"), is(sameInstance((Resource) last)));
+	}
+
+	@Test
+	public void testRemovedResources() throws Exception {
+		root.delete(sensors);
+		assertThat(find("sensors"), is(nullValue()));
+		assertThat(find("sensors", "temp"), is(nullValue()));
+		// detached resources must not change the index
+		sensors.add(new CoapResource("humidity"));
+		assertThat(find("sensors", "humidity"), is(nullValue()));
+	}
+
+	@Test
+	public void testRenamedResources() throws Exception {
+		temperature.setName("temperature");
+		assertThat(find("sensors", "temp"), is(nullValue()));
+		assertThat(find("sensors", "temperature"), is(sameInstance((Resource) temperature)));
+	}
+
+	@Test
+	public void testFallbackToGetChild() throws Exception {
+		final CoapResource any = new CoapResource("any");
+		CoapResource wildcard = new CoapResource("wildcard") {
+
+			@Override
+			public Resource getChild(String name) {
+				return any;
+			}
+		};
+		root.add(wildcard);
+		assertThat(find("wildcard", "1"), is(sameInstance((Resource) any)));
+	}
+
+	@Test
+	public void testConcurrentlyAddedResourceKeepsSingleObserver() throws Exception {
+		final AtomicInteger observers = new AtomicInteger();
+		final AtomicBoolean readd = new AtomicBoolean(true);
+		CoapResource humidity = new CoapResource("humidity") {
+
+			@Override
+			public synchronized void addObserver(ResourceObserver observer) {
+				super.addObserver(observer);
+				observers.incrementAndGet();
+				if (readd.compareAndSet(true, false)) {
+					// add again, while the index is adding a node
+					sensors.add(this);
+				}
+			}
+
+			@Override
+			public synchronized void removeObserver(ResourceObserver observer) {
+				super.removeObserver(observer);
+				observers.decrementAndGet();
+			}
+		};
+		sensors.add(humidity);
+		assertThat(find("sensors", "humidity"), is(sameInstance((Resource) humidity)));
+		assertThat(observers.get(), is(1));
+		sensors.delete(humidity);
+		assertThat(find("sensors", "humidity"), is(nullValue()));
+		assertThat(observers.get(), is(0));
+	}
+
+	private Resource find(String... path) throws Exception {
+		Request request = new Request(Code.GET);
+		for (String segment : path) {
+			request.getOptions().addUriPath(segment);
+		}
+		return deliverer.findResource(newExchange(request));
+	}
+
+	private static Exchange newExchange(Request request) {
+		Exchange exchange = new Exchange(request, Exchange.Origin.REMOTE, MatcherTestUtils.TEST_EXCHANGE_EXECUTOR);
+		exchange.setRequest(request);
+		return exchange;
+	}
+}
@@ -37,6 +37,7 @@ import static org.junit.Assert.assertTrue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -413,6 +414,78 @@ public class ObserveTest {
 		}
 	}
 
+	@Test
+	public void testSharedNotifications() throws Exception {
+		resourceX.setObserveType(Type.NON);
+		resourceX.setSharedNotifications(true);
+
+		CoapClient client1 = new CoapClient(uriX);
+		CoapClient client2 = new CoapClient(uriX);
+		CountingCoapHandler handler1 = new CountingCoapHandler();
+		CountingCoapHandler handler2 = new CountingCoapHandler();
+		CoapObserveRelation rel1 = client1.observeAndWait(handler1);
+		CoapObserveRelation rel2 = client2.observeAndWait(handler2);
+
+		assertTrue(handler1.waitOnLoadCalls(1, 1000, TimeUnit.MILLISECONDS));
+		assertTrue(handler2.waitOnLoadCalls(1, 1000, TimeUnit.MILLISECONDS));
+		assertEquals(2, resourceX.getObserverCount());
+		int gets = resourceX.getGetCounter();
+
+		resourceX.changed("shared");
+		assertTrue(handler1.waitOnLoadCalls(2, 1000, TimeUnit.MILLISECONDS));
+		assertTrue(handler2.waitOnLoadCalls(2, 1000, TimeUnit.MILLISECONDS));
+
+		// one GET for both notifications
+		assertEquals(gets + 1, resourceX.getGetCounter());
+		Response notify1 = rel1.getCurrent().advanced();
+		Response notify2 = rel2.getCurrent().advanced();
+		assertEquals("\"resX says shared for the 2 time\"", notify1.getPayloadString());
+		assertEquals(notify1.getPayloadString(), notify2.getPayloadString());
+		assertEquals(notify1.getOptions().getObserve(), notify2.getOptions().getObserve());
+		assertFalse(notify1.getToken().equals(notify2.getToken()));
+
+		client1.shutdown();
+		client2.shutdown();
+	}
+
+	@Test
+	public void testSharedNotificationsToManyObservers() throws Exception {
+		ExecutorService executor = ExecutorsUtil.newFixedThreadPool(2, new NamedThreadFactory("ResourceX#"));
+		cleanup.add(executor);
+		resourceX.setExecutor(executor);
+		resourceX.setObserveType(Type.NON);
+		resourceX.setSharedNotifications(true);
+
+		// more than one job of shared notifications
+		int observers = 100;
+		CoapClient[] clients = new CoapClient[observers];
+		CountingCoapHandler[] handlers = new CountingCoapHandler[observers];
+		try {
+			for (int index = 0; index < observers; ++index) {
+				clients[index] = new CoapClient(uriX);
+				handlers[index] = new CountingCoapHandler();
+				clients[index].observeAndWait(handlers[index]);
+				assertTrue(handlers[index].waitOnLoadCalls(1, 1000, TimeUnit.MILLISECONDS));
+			}
+			assertEquals(observers, resourceX.getObserverCount());
+			int gets = resourceX.getGetCounter();
+
+			resourceX.changed("shared");
+			for (int index = 0; index < observers; ++index) {
+				assertTrue(handlers[index].waitOnLoadCalls(2, 1000, TimeUnit.MILLISECONDS));
+			}
+
+			// one GET for all notifications
+			assertEquals(gets + 1, resourceX.getGetCounter());
+		} finally {
+			for (CoapClient client : clients) {
+				if (client != null) {
+					client.shutdown();
+				}
+			}
+		}
+	}
+
 	private CoapServer createServer() {
 		// retransmit constantly all 200 milliseconds
 		NetworkConfig config = network.createTestConfig().setInt(NetworkConfig.Keys.ACK_TIMEOUT, 200)
@@ -548,6 +621,8 @@ public class ObserveTest {
 		private AtomicBoolean reject = new AtomicBoolean();
 		private AtomicInteger counter = new AtomicInteger();
 		private AtomicInteger delay = new AtomicInteger();
+		private AtomicInteger gets = new AtomicInteger();
+		private volatile ExecutorService executor;
 
 		public MyResource(String name) {
 			super(name);
@@ -557,6 +632,7 @@ public class ObserveTest {
 
 		@Override
 		public void handleGET(CoapExchange exchange) {
+			gets.incrementAndGet();
 			int delay = this.delay.getAndSet(0);
 			if (0 < delay) {
 				try {
@@ -587,6 +663,20 @@ public class ObserveTest {
 			changed();
 		}
 
+		public int getGetCounter() {
+			return gets.get();
+		}
+
+		public void setExecutor(ExecutorService executor) {
+			this.executor = executor;
+		}
+
+		@Override
+		public ExecutorService getExecutor() {
+			ExecutorService executor = this.executor;
+			return executor != null ? executor : super.getExecutor();
+		}
+
 		public void rejectNextGet() {
 			reject.set(true);
 		}
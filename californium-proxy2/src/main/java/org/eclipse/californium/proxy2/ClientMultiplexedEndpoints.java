@@ -0,0 +1,370 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.proxy2;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.californium.core.coap.MessageObserverAdapter;
+import org.eclipse.californium.core.coap.Request;
+import org.eclipse.californium.core.coap.Response;
+import org.eclipse.californium.core.network.CoapEndpoint;
+import org.eclipse.californium.core.network.Endpoint;
+import org.eclipse.californium.core.network.config.NetworkConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Multiplexed client endpoints.
+ *
+ * Sends all outgoing requests using a small, fixed set of endpoints. A
+ * {@link CoapEndpoint} matches the responses by their tokens, therefore many
+ * requests are processed concurrently by the same endpoint. The endpoint is
+ * selected by the destination, so all requests to the same destination are
+ * sent using the same endpoint and its congestion control.
+ *
+ * The number of concurrent requests to the same destination is limited. If
+ * that limit is reached, requests are queued until a previous request is
+ * finished. If the queue is also exhausted, the request is rejected.
+ *
+ * In difference to the {@link EndpointPool}, that doesn't require a socket
+ * and stack per in-flight request and is therefore intended for high
+ * throughput.
+ *
+ * @since 3.0
+ */
+public class ClientMultiplexedEndpoints implements ClientEndpoints {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ClientMultiplexedEndpoints.class);
+
+	/**
+	 * Maximum number of concurrent requests per destination.
+	 */
+	protected final int maxRequestsPerDestination;
+	/**
+	 * Maximum number of queued requests per destination.
+	 */
+	protected final int maxQueuedPerDestination;
+	/**
+	 * Network configuration for new endpoints.
+	 */
+	protected final NetworkConfig config;
+	/**
+	 * Main executor for endpoints.
+	 *
+	 * @see Endpoint#setExecutors(ScheduledExecutorService,
+	 *      ScheduledExecutorService)
+	 */
+	protected final ScheduledExecutorService mainExecutor;
+	/**
+	 * Secondary executor for endpoints.
+	 *
+	 * @see Endpoint#setExecutors(ScheduledExecutorService,
+	 *      ScheduledExecutorService)
+	 */
+	protected final ScheduledExecutorService secondaryExecutor;
+	/**
+	 * Endpoints used to send the requests.
+	 */
+	protected final Endpoint[] endpoints;
+	/**
+	 * Map of destinations with in-flight or queued requests.
+	 */
+	private final ConcurrentMap<InetSocketAddress, Destination> destinations = new ConcurrentHashMap<>();
+	/**
+	 * Scheme of endpoints.
+	 */
+	protected String scheme;
+
+	/**
+	 * Create multiplexed client endpoints with specific network configuration
+	 * and executors and initializes the endpoints.
+	 *
+	 * @param size number of endpoints
+	 * @param maxRequestsPerDestination maximum number of concurrent requests
+	 *            per destination
+	 * @param maxQueuedPerDestination maximum number of queued requests per
+	 *            destination
+	 * @param config network configuration to create endpoints.
+	 * @param mainExecutor main executor for endpoints
+	 * @param secondaryExecutor secondary executor for endpoints
+	 * @throws IOException if an i/o error occurs creating the endpoints.
+	 * @throws IllegalArgumentException if size or
+	 *             maxRequestsPerDestination is less than {@code 1}, or
+	 *             maxQueuedPerDestination is negative
+	 */
+	public ClientMultiplexedEndpoints(int size, int maxRequestsPerDestination, int maxQueuedPerDestination,
+			NetworkConfig config, ScheduledExecutorService mainExecutor, ScheduledExecutorService secondaryExecutor)
+			throws IOException {
+		this(size, maxRequestsPerDestination, maxQueuedPerDestination, config, mainExecutor, secondaryExecutor,
+				true);
+	}
+
+	/**
+	 * Create multiplexed client endpoints with specific network configuration
+	 * and executors.
+	 *
+	 * If the endpoints are not initialized by this constructor, that requires
+	 * extra initialization calling {@link #init()}. That is intended for
+	 * subclasses, which override {@link #createEndpoint()} using their own
+	 * fields.
+	 *
+	 * @param size number of endpoints
+	 * @param maxRequestsPerDestination maximum number of concurrent requests
+	 *            per destination
+	 * @param maxQueuedPerDestination maximum number of queued requests per
+	 *            destination
+	 * @param config network configuration to create endpoints.
+	 * @param mainExecutor main executor for endpoints
+	 * @param secondaryExecutor secondary executor for endpoints
+	 * @param init {@code true}, to initialize the endpoints, {@code false}, if
+	 *            {@link #init()} is called later.
+	 * @throws IOException if an i/o error occurs creating the endpoints.
+	 * @throws IllegalArgumentException if size or
+	 *             maxRequestsPerDestination is less than {@code 1}, or
+	 *             maxQueuedPerDestination is negative
+	 */
+	protected ClientMultiplexedEndpoints(int size, int maxRequestsPerDestination, int maxQueuedPerDestination,
+			NetworkConfig config, ScheduledExecutorService mainExecutor, ScheduledExecutorService secondaryExecutor,
+			boolean init) throws IOException {
+		if (size < 1) {
+			throw new IllegalArgumentException("size must be at least 1!");
+		}
+		if (maxRequestsPerDestination < 1) {
+			throw new IllegalArgumentException("max. requests per destination must be at least 1!");
+		}
+		if (maxQueuedPerDestination < 0) {
+			throw new IllegalArgumentException("max. queued requests per destination must not be negative!");
+		}
+		this.endpoints = new Endpoint[size];
+		this.maxRequestsPerDestination = maxRequestsPerDestination;
+		this.maxQueuedPerDestination = maxQueuedPerDestination;
+		this.config = config;
+		this.mainExecutor = mainExecutor;
+		this.secondaryExecutor = secondaryExecutor;
+		if (init) {
+			this.scheme = init();
+		}
+	}
+
+	/**
+	 * Initialize endpoints.
+	 *
+	 * @return scheme of endpoints
+	 * @throws IOException if an i/o error occurs creating the endpoints. The
+	 *             already created endpoints are destroyed.
+	 */
+	protected String init() throws IOException {
+		try {
+			for (int index = 0; index < endpoints.length; ++index) {
+				endpoints[index] = createEndpoint();
+			}
+		} catch (IOException ex) {
+			destroy();
+			throw ex;
+		}
+		return endpoints[0].getUri().getScheme();
+	}
+
+	/**
+	 * Create new endpoint.
+	 *
+	 * Maybe overridden to create endpoints using other schemes and protocols.
+	 *
+	 * @return new created endpoint.
+	 * @throws IOException if the endpoint could not be started, e.g. because
+	 *             the endpoint's port is already in use.
+	 */
+	protected Endpoint createEndpoint() throws IOException {
+		Endpoint endpoint = new CoapEndpoint.Builder().setNetworkConfig(config).build();
+		endpoint.setExecutors(mainExecutor, secondaryExecutor);
+		try {
+			endpoint.start();
+			return endpoint;
+		} catch (IOException e) {
+			endpoint.destroy();
+			throw e;
+		}
+	}
+
+	@Override
+	public String getScheme() {
+		return scheme;
+	}
+
+	@Override
+	public void sendRequest(Request outgoingRequest) throws IOException {
+		InetSocketAddress peer = outgoingRequest.getDestinationContext().getPeerAddress();
+		while (true) {
+			Destination destination = destinations.get(peer);
+			if (destination == null) {
+				Destination newDestination = new Destination(peer, getEndpoint(peer));
+				destination = destinations.putIfAbsent(peer, newDestination);
+				if (destination == null) {
+					destination = newDestination;
+				}
+			}
+			synchronized (destination) {
+				if (destination.removed) {
+					// concurrently removed, retry with new destination
+					continue;
+				}
+				if (destination.requests < maxRequestsPerDestination) {
+					++destination.requests;
+				} else if (destination.queue.size() < maxQueuedPerDestination) {
+					destination.queue.add(outgoingRequest);
+					return;
+				} else {
+					destination = null;
+				}
+			}
+			if (destination == null) {
+				LOGGER.debug("Too many requests for {}, request rejected!", peer);
+				outgoingRequest.setRejected(true);
+			} else {
+				send(destination, outgoingRequest);
+			}
+			return;
+		}
+	}
+
+	/**
+	 * Get endpoint for destination.
+	 *
+	 * @param peer address of destination
+	 * @return endpoint to send requests to that destination
+	 */
+	protected Endpoint getEndpoint(InetSocketAddress peer) {
+		int index = (peer.hashCode() & Integer.MAX_VALUE) % endpoints.length;
+		return endpoints[index];
+	}
+
+	/**
+	 * Get number of destinations with in-flight or queued requests.
+	 *
+	 * @return number of destinations
+	 */
+	public int getDestinations() {
+		return destinations.size();
+	}
+
+	/**
+	 * Send request to destination.
+	 *
+	 * @param destination destination of request
+	 * @param outgoingRequest outgoing request
+	 */
+	private void send(Destination destination, Request outgoingRequest) {
+		outgoingRequest.addMessageObserver(new DestinationMessageObserver(destination));
+		destination.endpoint.sendRequest(outgoingRequest);
+	}
+
+	/**
+	 * Release request of destination and send next queued request.
+	 *
+	 * @param destination destination of finished request
+	 */
+	private void release(Destination destination) {
+		Request next = null;
+		synchronized (destination) {
+			while ((next = destination.queue.poll()) != null) {
+				if (!next.isCanceled()) {
+					break;
+				}
+			}
+			if (next == null && --destination.requests == 0) {
+				destination.removed = true;
+				destinations.remove(destination.peer, destination);
+			}
+		}
+		if (next != null) {
+			send(destination, next);
+		}
+	}
+
+	@Override
+	public void destroy() {
+		for (Destination destination : destinations.values()) {
+			Request request;
+			synchronized (destination) {
+				while ((request = destination.queue.poll()) != null) {
+					request.cancel();
+				}
+			}
+		}
+		for (Endpoint endpoint : endpoints) {
+			if (endpoint != null) {
+				endpoint.destroy();
+			}
+		}
+	}
+
+	/**
+	 * Destination with in-flight and queued requests.
+	 *
+	 * Fields are guarded by the instance.
+	 */
+	private static class Destination {
+
+		private final InetSocketAddress peer;
+		private final Endpoint endpoint;
+		private final Queue<Request> queue = new ArrayDeque<>();
+		private int requests;
+		private boolean removed;
+
+		private Destination(InetSocketAddress peer, Endpoint endpoint) {
+			this.peer = peer;
+			this.endpoint = endpoint;
+		}
+	}
+
+	private class DestinationMessageObserver extends MessageObserverAdapter {
+
+		private final Destination destination;
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		private DestinationMessageObserver(Destination destination) {
+			this.destination = destination;
+		}
+
+		@Override
+		public void onResponse(Response incomingResponse) {
+			release();
+		}
+
+		@Override
+		public void onCancel() {
+			release();
+		}
+
+		@Override
+		protected void failed() {
+			release();
+		}
+
+		private void release() {
+			if (released.compareAndSet(false, true)) {
+				ClientMultiplexedEndpoints.this.release(destination);
+			}
+		}
+	}
+}
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.proxy2;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.TestTools;
+import org.eclipse.californium.core.CoapResource;
+import org.eclipse.californium.core.CoapServer;
+import org.eclipse.californium.core.coap.CoAP.ResponseCode;
+import org.eclipse.californium.core.coap.CoAP.Type;
+import org.eclipse.californium.core.coap.Request;
+import org.eclipse.californium.core.network.CoapEndpoint;
+import org.eclipse.californium.core.network.config.NetworkConfig;
+import org.eclipse.californium.core.server.resources.CoapExchange;
+import org.eclipse.californium.elements.category.Medium;
+import org.eclipse.californium.elements.util.ExecutorsUtil;
+import org.eclipse.californium.elements.util.NamedThreadFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Verifies the per destination limits of {@link ClientMultiplexedEndpoints}.
+ */
+@Category(Medium.class)
+public class ClientMultiplexedEndpointsTest {
+
+	private static final String TARGET = "target";
+
+	private final BlockingQueue<CoapExchange> exchanges = new LinkedBlockingQueue<>();
+
+	private ScheduledExecutorService mainExecutor;
+	private ScheduledExecutorService secondaryExecutor;
+	private CoapServer server;
+	private ClientMultiplexedEndpoints endpoints;
+	private String uri;
+
+	@Before
+	public void setUp() throws Exception {
+		NetworkConfig config = NetworkConfig.createStandardWithoutFile();
+		mainExecutor = ExecutorsUtil.newScheduledThreadPool(2, new NamedThreadFactory("Test#"));
+		secondaryExecutor = ExecutorsUtil.newDefaultSecondaryScheduler("TestTimer#");
+		server = new CoapServer(config);
+		CoapEndpoint.Builder builder = new CoapEndpoint.Builder();
+		builder.setInetSocketAddress(TestTools.LOCALHOST_EPHEMERAL);
+		builder.setNetworkConfig(config);
+		CoapEndpoint endpoint = builder.build();
+		server.addEndpoint(endpoint);
+		server.add(new CoapResource(TARGET) {
+
+			@Override
+			public void handleGET(CoapExchange exchange) {
+				// respond later
+				exchanges.add(exchange);
+			}
+		});
+		server.start();
+		uri = TestTools.getUri(endpoint, TARGET);
+		endpoints = new ClientMultiplexedEndpoints(2, 2, 1, config, mainExecutor, secondaryExecutor);
+	}
+
+	@After
+	public void tearDown() {
+		endpoints.destroy();
+		server.destroy();
+		mainExecutor.shutdownNow();
+		secondaryExecutor.shutdownNow();
+	}
+
+	@Test
+	public void testLimitsPerDestination() throws Exception {
+		assertThat(endpoints.getScheme(), is("coap"));
+		Request[] requests = new Request[4];
+		for (int index = 0; index < requests.length; ++index) {
+			requests[index] = Request.newGet();
+			requests[index].setType(Type.NON);
+			requests[index].setURI(uri);
+			endpoints.sendRequest(requests[index]);
+		}
+		assertThat(requests[3].isRejected(), is(true));
+
+		// two requests in flight, one queued
+		CoapExchange first = exchanges.poll(1000, TimeUnit.MILLISECONDS);
+		CoapExchange second = exchanges.poll(1000, TimeUnit.MILLISECONDS);
+		assertThat(second, is(notNullValue()));
+		assertThat(exchanges.poll(200, TimeUnit.MILLISECONDS), is(nullValue()));
+		respond(first);
+
+		// queued request is sent, when a previous one has finished
+		CoapExchange third = exchanges.poll(1000, TimeUnit.MILLISECONDS);
+		respond(second);
+		respond(third);
+		for (int index = 0; index < 3; ++index) {
+			assertThat(requests[index].waitForResponse(1000), is(notNullValue()));
+		}
+		assertThat(exchanges.isEmpty(), is(true));
+		// observers are called after the response is available
+		for (int loop = 0; loop < 10 && endpoints.getDestinations() > 0; ++loop) {
+			Thread.sleep(50);
+		}
+		assertThat(endpoints.getDestinations(), is(0));
+	}
+
+	private void respond(CoapExchange exchange) {
+		assertThat(exchange, is(notNullValue()));
+		exchange.respond(ResponseCode.CONTENT, "hi");
+	}
+}
@@ -0,0 +1,484 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.oscore;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.core.coap.CoAP.ResponseCode;
+import org.eclipse.californium.core.coap.Token;
+import org.eclipse.californium.elements.util.Bytes;
+import org.eclipse.californium.elements.util.ClockUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Implements the OSCoreCtxDB interface with concurrent maps.
+ *
+ * In difference to the {@link HashMapCtxDB}, the lookups are not serialized
+ * by a single monitor. Only adding and removing contexts is synchronized,
+ * which is rare compared to the lookups for each message.
+ *
+ * The token associations (context, sequence number and the token usage
+ * itself) are kept in a single map, which is limited in size. Entries expire,
+ * if they are not accessed within the token lifetime. If the map is full,
+ * expired entries are removed. If that doesn't free 10 percent of the
+ * entries, the least recently used ones are removed as well.
+ *
+ * @since 3.0
+ */
+public class ConcurrentCtxDB implements OSCoreCtxDB {
+
+	/**
+	 * The logger
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(ConcurrentCtxDB.class);
+
+	/**
+	 * Default maximum number of token associations.
+	 */
+	public static final int DEFAULT_MAX_TOKENS = 100000;
+	/**
+	 * Default lifetime of token associations in seconds.
+	 */
+	public static final long DEFAULT_TOKEN_LIFETIME_IN_SECONDS = TimeUnit.HOURS.toSeconds(24);
+	/**
+	 * Divisor of the maximum number of token associations for the number of
+	 * associations to free at once, if the maximum is reached.
+	 */
+	private static final int EVICTION_BATCH_DIVISOR = 10;
+
+	/**
+	 * Map of contexts. The outer map has the RID as key, the inner the ID
+	 * Context.
+	 */
+	private final ConcurrentMap<ByteId, ConcurrentMap<ByteId, OSCoreCtx>> contextMap = new ConcurrentHashMap<>();
+	/**
+	 * Map of contexts by normalized uri.
+	 */
+	private final ConcurrentMap<String, OSCoreCtx> uriMap = new ConcurrentHashMap<>();
+	/**
+	 * Map of token associations.
+	 */
+	private final ConcurrentMap<Token, TokenEntry> tokenMap = new ConcurrentHashMap<>();
+	/**
+	 * Maximum number of token associations.
+	 */
+	private final int maxTokens;
+	/**
+	 * Number of token associations to free, if the maximum is reached.
+	 */
+	private final int evictionBatchSize;
+	/**
+	 * Lifetime of token associations in nanoseconds.
+	 */
+	private final long tokenLifetimeNanos;
+
+	/**
+	 * Create the database with default limits for the token associations.
+	 *
+	 * @see #DEFAULT_MAX_TOKENS
+	 * @see #DEFAULT_TOKEN_LIFETIME_IN_SECONDS
+	 */
+	public ConcurrentCtxDB() {
+		this(DEFAULT_MAX_TOKENS, DEFAULT_TOKEN_LIFETIME_IN_SECONDS, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Create the database.
+	 *
+	 * @param maxTokens maximum number of token associations
+	 * @param tokenLifetime lifetime of token associations. Refreshed on
+	 *            access.
+	 * @param unit time unit of lifetime
+	 * @throws IllegalArgumentException if maxTokens or tokenLifetime is less
+	 *             than {@code 1}
+	 */
+	public ConcurrentCtxDB(int maxTokens, long tokenLifetime, TimeUnit unit) {
+		if (maxTokens < 1) {
+			throw new IllegalArgumentException("max. tokens must be at least 1!");
+		}
+		if (tokenLifetime < 1) {
+			throw new IllegalArgumentException("token lifetime must be at least 1!");
+		}
+		this.maxTokens = maxTokens;
+		this.evictionBatchSize = Math.max(1, maxTokens / EVICTION_BATCH_DIVISOR);
+		this.tokenLifetimeNanos = unit.toNanos(tokenLifetime);
+	}
+
+	/**
+	 * Retrieve context using RID and ID Context. If the provided ID Context is
+	 * null a result will be returned if there is only one unique context for
+	 * that RID.
+	 */
+	@Override
+	public OSCoreCtx getContext(byte[] rid, byte[] IDContext) throws CoapOSException {
+		// Do not allow a null RID
+		if (rid == null) {
+			LOGGER.error(ErrorDescriptions.BYTE_ARRAY_NULL);
+			throw new NullPointerException(ErrorDescriptions.BYTE_ARRAY_NULL);
+		}
+
+		Map<ByteId, OSCoreCtx> matchingRidMap = contextMap.get(new ByteId(rid));
+
+		// No matching RID found at all
+		if (matchingRidMap == null) {
+			return null;
+		}
+
+		if (IDContext == null) {
+			// If retrieving using only RID, there must be only 1 match maximum
+			if (matchingRidMap.size() > 1) {
+				throw new CoapOSException(ErrorDescriptions.CONTEXT_NOT_FOUND_IDCONTEXT, ResponseCode.UNAUTHORIZED);
+			}
+			return first(matchingRidMap);
+		} else {
+			// If retrieving using both RID and ID Context
+			return matchingRidMap.get(new ByteId(IDContext));
+		}
+	}
+
+	/**
+	 * Retrieve context using only RID when it is certain it is unique.
+	 */
+	@Override
+	public OSCoreCtx getContext(byte[] rid) {
+		Map<ByteId, OSCoreCtx> matchingRidMap = contextMap.get(new ByteId(rid));
+
+		if (matchingRidMap == null) {
+			return null;
+		}
+
+		if (matchingRidMap.size() > 1) {
+			throw new RuntimeException("Attempting to retrieve context with only non-unique RID.");
+		}
+		return first(matchingRidMap);
+	}
+
+	@Override
+	public OSCoreCtx getContextByToken(Token token) {
+		if (token != null) {
+			TokenEntry entry = getTokenEntry(token);
+			return entry == null ? null : entry.ctx;
+		} else {
+			LOGGER.error(ErrorDescriptions.TOKEN_NULL);
+			throw new NullPointerException(ErrorDescriptions.TOKEN_NULL);
+		}
+	}
+
+	@Override
+	public OSCoreCtx getContext(String uri) throws OSException {
+		if (uri != null) {
+			return uriMap.get(uriKey(HashMapCtxDB.normalizeServerUri(uri)));
+		} else {
+			LOGGER.error(ErrorDescriptions.STRING_NULL);
+			throw new NullPointerException(ErrorDescriptions.STRING_NULL);
+		}
+	}
+
+	@Override
+	public void addContext(Token token, OSCoreCtx ctx) {
+		if (token != null) {
+			getOrCreateTokenEntry(token).ctx = ctx;
+		}
+		addContext(ctx);
+	}
+
+	@Override
+	public void addContext(String uri, OSCoreCtx ctx) throws OSException {
+		if (uri != null) {
+			String normalizedUri = HashMapCtxDB.normalizeServerUri(uri);
+			uriMap.put(uriKey(normalizedUri), ctx);
+			ctx.setUri(normalizedUri);
+		}
+		addContext(ctx);
+	}
+
+	@Override
+	public void addContext(OSCoreCtx ctx) {
+		if (ctx != null) {
+			ByteId rid = new ByteId(ctx.getRecipientId());
+			ByteId idContext = getIdContext(ctx);
+			synchronized (contextMap) {
+				ConcurrentMap<ByteId, OSCoreCtx> ridMap = contextMap.get(rid);
+				// If there is no existing map for this RID, create it
+				if (ridMap == null) {
+					ridMap = new ConcurrentHashMap<>();
+					contextMap.put(rid, ridMap);
+				}
+				ridMap.put(idContext, ctx);
+			}
+		} else {
+			LOGGER.error(ErrorDescriptions.CONTEXT_NULL);
+			throw new NullPointerException(ErrorDescriptions.CONTEXT_NULL);
+		}
+	}
+
+	@Override
+	public void removeContext(OSCoreCtx ctx) {
+		if (ctx != null) {
+			ByteId rid = new ByteId(ctx.getRecipientId());
+			ByteId idContext = getIdContext(ctx);
+			synchronized (contextMap) {
+				ConcurrentMap<ByteId, OSCoreCtx> ridMap = contextMap.get(rid);
+				if (ridMap != null) {
+					ridMap.remove(idContext);
+					if (ridMap.isEmpty()) {
+						contextMap.remove(rid);
+					}
+				}
+			}
+		} else {
+			LOGGER.error(ErrorDescriptions.CONTEXT_NULL);
+			throw new NullPointerException(ErrorDescriptions.CONTEXT_NULL);
+		}
+	}
+
+	@Override
+	public Integer getSeqByToken(Token token) {
+		if (token != null) {
+			TokenEntry entry = getTokenEntry(token);
+			return entry == null ? null : entry.seq;
+		} else {
+			LOGGER.error(ErrorDescriptions.TOKEN_NULL);
+			throw new NullPointerException(ErrorDescriptions.TOKEN_NULL);
+		}
+	}
+
+	@Override
+	public void addSeqByToken(Token token, Integer seq) {
+		if (seq == null || seq < 0) {
+			throw new NullPointerException(ErrorDescriptions.SEQ_NBR_INVALID);
+		}
+		if (token == null) {
+			throw new NullPointerException(ErrorDescriptions.TOKEN_NULL);
+		}
+		getOrCreateTokenEntry(token).seq = seq;
+	}
+
+	@Override
+	public boolean tokenExist(Token token) {
+		if (token != null) {
+			return getTokenEntry(token) != null;
+		} else {
+			LOGGER.error(ErrorDescriptions.TOKEN_NULL);
+			throw new NullPointerException(ErrorDescriptions.TOKEN_NULL);
+		}
+	}
+
+	@Override
+	public void removeSeqByToken(Token token) {
+		if (token != null) {
+			TokenEntry entry = tokenMap.get(token);
+			if (entry != null) {
+				entry.seq = null;
+				if (entry.ctx == null) {
+					tokenMap.remove(token, entry);
+				}
+			}
+		} else {
+			LOGGER.error(ErrorDescriptions.TOKEN_NULL);
+			throw new NullPointerException(ErrorDescriptions.TOKEN_NULL);
+		}
+	}
+
+	@Override
+	public void updateSeqByToken(Token token, Integer seq) {
+		if (tokenExist(token)) {
+			addSeqByToken(token, seq);
+		}
+	}
+
+	/**
+	 * Removes associations for this token, except for the generator
+	 *
+	 * @param token the token to remove
+	 */
+	@Override
+	public void removeToken(Token token) {
+		TokenEntry entry = tokenMap.get(token);
+		if (entry != null) {
+			entry.ctx = null;
+			entry.seq = null;
+		}
+	}
+
+	/**
+	 * Used mainly for test purpose, to purge the db of all contexts
+	 */
+	@Override
+	public void purge() {
+		synchronized (contextMap) {
+			contextMap.clear();
+		}
+		uriMap.clear();
+		tokenMap.clear();
+	}
+
+	/**
+	 * Get number of token associations.
+	 *
+	 * @return number of token associations
+	 */
+	public int getTokenSize() {
+		return tokenMap.size();
+	}
+
+	/**
+	 * Get token entry.
+	 *
+	 * Removes expired entry.
+	 *
+	 * @param token token
+	 * @return token entry, or {@code null}, if not available or expired.
+	 */
+	private TokenEntry getTokenEntry(Token token) {
+		TokenEntry entry = tokenMap.get(token);
+		if (entry != null) {
+			long now = ClockUtil.nanoRealtime();
+			if (entry.isExpired(now, tokenLifetimeNanos)) {
+				tokenMap.remove(token, entry);
+				return null;
+			}
+			entry.lastAccess = now;
+		}
+		return entry;
+	}
+
+	/**
+	 * Get token entry or create a new one.
+	 *
+	 * @param token token
+	 * @return token entry
+	 */
+	private TokenEntry getOrCreateTokenEntry(Token token) {
+		long now = ClockUtil.nanoRealtime();
+		while (true) {
+			TokenEntry entry = tokenMap.get(token);
+			if (entry != null) {
+				if (!entry.isExpired(now, tokenLifetimeNanos)) {
+					LOGGER.debug("Token exists, but this could be a refresh if not there is a problem");
+					entry.lastAccess = now;
+					return entry;
+				}
+				tokenMap.remove(token, entry);
+			}
+			if (tokenMap.size() >= maxTokens) {
+				evict(now);
+			}
+			TokenEntry newEntry = new TokenEntry(now);
+			if (tokenMap.putIfAbsent(token, newEntry) == null) {
+				return newEntry;
+			}
+		}
+	}
+
+	/**
+	 * Evict token entries in a batch.
+	 *
+	 * Removes all expired entries. If that doesn't free
+	 * {@link #evictionBatchSize} entries, the least recently used entries are
+	 * removed as well. The eviction therefore scans the entries only once for
+	 * a batch of new entries and not for every new entry.
+	 *
+	 * @param now current realtime in nanoseconds
+	 */
+	private synchronized void evict(long now) {
+		int size = tokenMap.size();
+		if (size < maxTokens) {
+			// already evicted by other thread
+			return;
+		}
+		long[] lastAccesses = new long[size];
+		int count = 0;
+		int expired = 0;
+		Iterator<TokenEntry> iterator = tokenMap.values().iterator();
+		while (iterator.hasNext()) {
+			TokenEntry entry = iterator.next();
+			if (entry.isExpired(now, tokenLifetimeNanos)) {
+				iterator.remove();
+				++expired;
+			} else if (count < lastAccesses.length) {
+				lastAccesses[count++] = entry.lastAccess;
+			}
+		}
+		int excess = Math.min(tokenMap.size() - (maxTokens - evictionBatchSize), count);
+		if (excess > 0) {
+			Arrays.sort(lastAccesses, 0, count);
+			long threshold = lastAccesses[excess - 1];
+			int evicted = 0;
+			iterator = tokenMap.values().iterator();
+			while (evicted < excess && iterator.hasNext()) {
+				if (iterator.next().lastAccess - threshold <= 0) {
+					iterator.remove();
+					++evicted;
+				}
+			}
+			LOGGER.warn("Token associations exhausted, {} expired and {} least recently used evicted!", expired,
+					evicted);
+		} else {
+			LOGGER.debug("{} expired token associations evicted.", expired);
+		}
+	}
+
+	/**
+	 * Get key for uri map.
+	 * 
+	 * Uris without host are normalized to {@code null}, which is not supported
+	 * as key.
+	 * 
+	 * @param normalizedUri normalized uri. May be {@code null}.
+	 * @return key for uri map
+	 */
+	private static String uriKey(String normalizedUri) {
+		return normalizedUri == null ? "" : normalizedUri;
+	}
+
+	private static ByteId getIdContext(OSCoreCtx ctx) {
+		byte[] IDContext = ctx.getIdContext();
+		if (IDContext == null) {
+			IDContext = Bytes.EMPTY;
+		}
+		return new ByteId(IDContext);
+	}
+
+	private static OSCoreCtx first(Map<ByteId, OSCoreCtx> map) {
+		Iterator<OSCoreCtx> iterator = map.values().iterator();
+		return iterator.hasNext() ? iterator.next() : null;
+	}
+
+	/**
+	 * Token associations.
+	 */
+	private static class TokenEntry {
+
+		private volatile long lastAccess;
+		private volatile OSCoreCtx ctx;
+		private volatile Integer seq;
+
+		private TokenEntry(long now) {
+			this.lastAccess = now;
+		}
+
+		private boolean isExpired(long now, long lifetime) {
+			return now - lastAccess > lifetime;
+		}
+	}
+}
@@ -20,6 +20,7 @@
 package org.eclipse.californium.oscore;
 
 import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
 import java.util.Arrays;
 
 import org.slf4j.Logger;
@@ -33,9 +34,12 @@ import org.eclipse.californium.cose.Encrypt0Message;
 
 import com.upokecenter.cbor.CBORObject;
 
+import org.eclipse.californium.cose.AlgorithmID;
 import org.eclipse.californium.cose.Attribute;
 import org.eclipse.californium.cose.CoseException;
+import org.eclipse.californium.cose.EncryptCommon;
 import org.eclipse.californium.cose.HeaderKeys;
+import org.eclipse.californium.scandium.dtls.cipher.CCMBlockCipher;
 
 /**
  * 
@@ -78,6 +82,7 @@ public abstract class Decryptor {
 		byte[] nonce = null;
 		byte[] partialIV = null;
 		byte[] aad = null;
+		byte[] requestKid = null;
 
 		if (isRequest) {
 
@@ -95,9 +100,9 @@ public abstract class Decryptor {
 				//Note that the code below can throw an OSException when replays are detected
 				ctx.checkIncomingSeq(seq);
 
-				nonce = OSSerializer.nonceGeneration(partialIV, ctx.getRecipientId(), ctx.getCommonIV(),
+				requestKid = ctx.getRecipientId();
+				nonce = OSSerializer.nonceGeneration(partialIV, requestKid, ctx.getCommonIV(),
 						ctx.getIVLength());
-				aad = OSSerializer.serializeAAD(CoAP.VERSION, ctx.getAlg(), seq, ctx.getRecipientId(), message.getOptions());
 			}
 		} else {
 			if (seqByToken == null) {
@@ -127,17 +132,32 @@ public abstract class Decryptor {
 			
 			//Nonce calculation uses partial IV in response (if present).
 			//AAD calculation always uses partial IV (seq. nr.) of original request.  
-			aad = OSSerializer.serializeAAD(CoAP.VERSION, ctx.getAlg(), seq, ctx.getSenderId(), message.getOptions());
+			requestKid = ctx.getSenderId();
 		}
 
 		byte[] plaintext = null;
 		byte[] key = ctx.getRecipientKey();
+		AlgorithmID alg = ctx.getAlg();
 
-		enc.setExternal(aad);
-			
 		try {
 
-			enc.addAttribute(HeaderKeys.Algorithm, ctx.getAlg().AsCBOR(), Attribute.DO_NOT_SEND);
+			byte[] cipherText = enc.getEncryptedContent();
+			if (OSCoreEncoder.isSupported(alg) && key.length == alg.getKeySize() / Byte.SIZE
+					&& nonce.length == EncryptCommon.ivLength(alg)
+					&& cipherText.length >= alg.getTagSize() / Byte.SIZE) {
+				// fast path, decrypt without generic COSE processing
+				aad = OSCoreEncoder.encodeEncStructure(alg, seq, requestKid);
+				try {
+					return CCMBlockCipher.decrypt(ctx.getRecipientSecretKey(), nonce, aad, cipherText,
+							alg.getTagSize() / Byte.SIZE);
+				} catch (GeneralSecurityException e) {
+					throw new CoseException("Decryption failure", e);
+				}
+			}
+
+			aad = OSSerializer.serializeAAD(CoAP.VERSION, alg, seq, requestKid, message.getOptions());
+			enc.setExternal(aad);
+			enc.addAttribute(HeaderKeys.Algorithm, alg.AsCBOR(), Attribute.DO_NOT_SEND);
 			enc.addAttribute(HeaderKeys.IV, CBORObject.FromObject(nonce), Attribute.DO_NOT_SEND);
 			plaintext = enc.decrypt(key);
 
@@ -20,7 +20,8 @@
 package org.eclipse.californium.oscore;
 
 import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import java.security.GeneralSecurityException;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,10 +33,13 @@ import org.eclipse.californium.cose.Encrypt0Message;
 
 import com.upokecenter.cbor.CBORObject;
 
+import org.eclipse.californium.cose.AlgorithmID;
 import org.eclipse.californium.cose.Attribute;
 import org.eclipse.californium.cose.CoseException;
+import org.eclipse.californium.cose.EncryptCommon;
 import org.eclipse.californium.cose.HeaderKeys;
 import org.eclipse.californium.elements.util.Bytes;
+import org.eclipse.californium.scandium.dtls.cipher.CCMBlockCipher;
 
 /**
  * 
@@ -57,48 +61,73 @@ public abstract class Encryptor {
 	 * @param ctx the OSCore context
 	 * @param message the message
 	 * @param newPartialIV if response contains partialIV
+	 * @param senderSeq sender sequence number for the partial IV of requests
+	 *            and responses with new partial IV, see
+	 *            {@link OSCoreCtx#getAndIncreaseSenderSeq()}. Ignored for
+	 *            responses without new partial IV.
 	 *
 	 * @return the COSE message
 	 * 
 	 * @throws OSException if encryption or encoding fails
 	 */
-	protected static byte[] encryptAndEncode(Encrypt0Message enc, OSCoreCtx ctx, Message message, boolean newPartialIV)
-			throws OSException {
+	protected static byte[] encryptAndEncode(Encrypt0Message enc, OSCoreCtx ctx, Message message, boolean newPartialIV,
+			int senderSeq) throws OSException {
 		boolean isRequest = message instanceof Request;
 
 		try {
+			AlgorithmID alg = ctx.getAlg();
 			byte[] key = ctx.getSenderKey();
 			byte[] partialIV = null;
 			byte[] nonce = null;
 			byte[] aad = null;
+			int requestSeq;
+			byte[] requestKid;
 
 			if (isRequest) {
-				partialIV = OSSerializer.processPartialIV(ctx.getSenderSeq());
-				nonce = OSSerializer.nonceGeneration(partialIV, ctx.getSenderId(), ctx.getCommonIV(),
+				requestSeq = senderSeq;
+				requestKid = ctx.getSenderId();
+				partialIV = OSSerializer.processPartialIV(requestSeq);
+				nonce = OSSerializer.nonceGeneration(partialIV, requestKid, ctx.getCommonIV(),
 						ctx.getIVLength());
-				aad = OSSerializer.serializeAAD(CoAP.VERSION, ctx.getAlg(), ctx.getSenderSeq(), ctx.getSenderId(), message.getOptions());
-				enc.addAttribute(HeaderKeys.PARTIAL_IV, CBORObject.FromObject(partialIV), Attribute.UNPROTECTED);
-				enc.addAttribute(HeaderKeys.KID, CBORObject.FromObject(ctx.getSenderId()), Attribute.UNPROTECTED);
 			} else {
+				requestSeq = ctx.getReceiverSeq();
+				requestKid = ctx.getRecipientId();
 
 				if (!newPartialIV) {
 					// use nonce from request
-					partialIV = OSSerializer.processPartialIV(ctx.getReceiverSeq());
-					nonce = OSSerializer.nonceGeneration(partialIV, ctx.getRecipientId(), ctx.getCommonIV(),
+					partialIV = OSSerializer.processPartialIV(requestSeq);
+					nonce = OSSerializer.nonceGeneration(partialIV, requestKid, ctx.getCommonIV(),
 							ctx.getIVLength());
 				} else {
 					// response creates its own partialIV
-					partialIV = OSSerializer.processPartialIV(ctx.getSenderSeq());
+					partialIV = OSSerializer.processPartialIV(senderSeq);
 					nonce = OSSerializer.nonceGeneration(partialIV, ctx.getSenderId(), ctx.getCommonIV(),
 							ctx.getIVLength());
 				}
-				aad = OSSerializer.serializeAAD(CoAP.VERSION, ctx.getAlg(), ctx.getReceiverSeq(), ctx.getRecipientId(), message.getOptions());
 			}
 
+			if (OSCoreEncoder.isSupported(alg) && key.length == alg.getKeySize() / Byte.SIZE
+					&& nonce.length == EncryptCommon.ivLength(alg) && enc.GetContent() != null) {
+				// fast path, encrypt without generic COSE processing
+				aad = OSCoreEncoder.encodeEncStructure(alg, requestSeq, requestKid);
+				try {
+					return CCMBlockCipher.encrypt(ctx.getSenderSecretKey(), nonce, aad, enc.GetContent(),
+							alg.getTagSize() / Byte.SIZE);
+				} catch (GeneralSecurityException e) {
+					throw new CoseException("Encryption failure", e);
+				}
+			}
+
+			if (isRequest) {
+				enc.addAttribute(HeaderKeys.PARTIAL_IV, CBORObject.FromObject(partialIV), Attribute.UNPROTECTED);
+				enc.addAttribute(HeaderKeys.KID, CBORObject.FromObject(requestKid), Attribute.UNPROTECTED);
+			}
+			aad = OSSerializer.serializeAAD(CoAP.VERSION, alg, requestSeq, requestKid, message.getOptions());
+
 			enc.setExternal(aad);
 			
 			enc.addAttribute(HeaderKeys.IV, CBORObject.FromObject(nonce), Attribute.DO_NOT_SEND);
-			enc.addAttribute(HeaderKeys.Algorithm, ctx.getAlg().AsCBOR(), Attribute.DO_NOT_SEND);
+			enc.addAttribute(HeaderKeys.Algorithm, alg.AsCBOR(), Attribute.DO_NOT_SEND);
 			enc.encrypt(key);
 
 			return enc.getEncryptedContent();
@@ -129,18 +158,20 @@ public abstract class Encryptor {
 	 * @param cipherText the cipher text to be appended to this compression
 	 * @param message the message
 	 * @param newPartialIV if response contains partialIV
+	 * @param senderSeq sender sequence number used to encrypt the message
 	 * @return the entire message's byte array
 	 */
-	protected static byte[] compression(OSCoreCtx ctx, byte[] cipherText, Message message, final boolean newPartialIV) {
+	protected static byte[] compression(OSCoreCtx ctx, byte[] cipherText, Message message, final boolean newPartialIV,
+			int senderSeq) {
 		boolean request = message instanceof Request;
 		ByteArrayOutputStream bRes = new ByteArrayOutputStream();
 		OptionSet options = message.getOptions();
 		options.removeOscore();
 
 		if (request) {
-			message.getOptions().setOscore(encodeOSCoreRequest(ctx));
+			message.getOptions().setOscore(encodeOSCoreRequest(ctx, senderSeq));
 		} else {
-			message.getOptions().setOscore(encodeOSCoreResponse(ctx, newPartialIV));
+			message.getOptions().setOscore(encodeOSCoreResponse(ctx, newPartialIV, senderSeq));
 		}
 
 		if (cipherText != null) {
@@ -153,88 +184,110 @@ public abstract class Encryptor {
 	/**
 	 * Encodes the Object-Security value for a Request.
 	 * 
+	 * Uses the current {@link OSCoreCtx#getSenderSeq()}.
+	 * 
 	 * @param ctx the context
 	 * @return the Object-Security value as byte array
 	 */
 	public static byte[] encodeOSCoreRequest(OSCoreCtx ctx) {
+		return encodeOSCoreRequest(ctx, ctx.getSenderSeq());
+	}
+
+	/**
+	 * Encodes the Object-Security value for a Request.
+	 * 
+	 * @param ctx the context
+	 * @param seq sender sequence number used to encrypt the request
+	 * @return the Object-Security value as byte array
+	 * @since 3.0
+	 */
+	public static byte[] encodeOSCoreRequest(OSCoreCtx ctx, int seq) {
 		int firstByte = 0x00;
-		ByteArrayOutputStream bRes = new ByteArrayOutputStream();
-		byte[] partialIV = OSSerializer.processPartialIV(ctx.getSenderSeq());
-		firstByte = firstByte | (partialIV.length & 0x07); //PartialIV length
+		int partialIVLength = OSCoreEncoder.partialIVLength(seq);
+		byte[] senderId = ctx.getSenderId();
+		byte[] contextId = ctx.getIncludeContextId() ? ctx.getMessageIdContext() : null;
+		int length = 1 + partialIVLength + senderId.length;
+		firstByte = firstByte | (partialIVLength & 0x07); //PartialIV length
 		firstByte = firstByte | 0x08; //Set the KID bit
 
 		//If the Context ID should be included for this context, set its bit
-		if (ctx.getIncludeContextId()) {
+		if (contextId != null) {
 			firstByte = firstByte | 0x10;
+			length += 1 + contextId.length;
 		}
 
-		bRes.write(firstByte);
+		byte[] result = new byte[length];
+		result[0] = (byte) firstByte;
+		int offset = OSCoreEncoder.writePartialIV(result, 1, seq);
 
-		try {
-			bRes.write(partialIV);
-
-			//Encode the Context ID length and value if to be included
-			if (ctx.getIncludeContextId()) {
-				bRes.write(ctx.getMessageIdContext().length);
-				bRes.write(ctx.getMessageIdContext());
-			}
-
-			//Encode Sender ID (KID)
-			bRes.write(ctx.getSenderId());
-		} catch (IOException e) {
-			e.printStackTrace();
+		//Encode the Context ID length and value if to be included
+		if (contextId != null) {
+			result[offset++] = (byte) contextId.length;
+			System.arraycopy(contextId, 0, result, offset, contextId.length);
+			offset += contextId.length;
 		}
-		return bRes.toByteArray();
+
+		//Encode Sender ID (KID)
+		System.arraycopy(senderId, 0, result, offset, senderId.length);
+		return result;
 	}
 
 	/**
 	 * Encodes the Object-Security value for a Response.
 	 * 
+	 * Uses the current {@link OSCoreCtx#getSenderSeq()}.
+	 * 
 	 * @param ctx the context
 	 * @param newPartialIV if true encodes the partialIV, otherwise partialIV is
 	 *            not encoded
 	 * @return the Object-Security value as byte array
 	 */
 	public static byte[] encodeOSCoreResponse(OSCoreCtx ctx, final boolean newPartialIV) {
+		return encodeOSCoreResponse(ctx, newPartialIV, ctx.getSenderSeq());
+	}
+
+	/**
+	 * Encodes the Object-Security value for a Response.
+	 * 
+	 * @param ctx the context
+	 * @param newPartialIV if true encodes the partialIV, otherwise partialIV is
+	 *            not encoded
+	 * @param seq sender sequence number used to encrypt the response. Ignored,
+	 *            if newPartialIV is {@code false}.
+	 * @return the Object-Security value as byte array
+	 * @since 3.0
+	 */
+	public static byte[] encodeOSCoreResponse(OSCoreCtx ctx, final boolean newPartialIV, int seq) {
 		int firstByte = 0x00;
-		ByteArrayOutputStream bRes = new ByteArrayOutputStream();
+		int partialIVLength = newPartialIV ? OSCoreEncoder.partialIVLength(seq) : 0;
+		byte[] contextId = ctx.getIncludeContextId() ? ctx.getMessageIdContext() : null;
+		int length = 1 + partialIVLength;
+		firstByte = firstByte | (partialIVLength & 0x07);
 
 		//If the Context ID should be included for this context, set its bit
-		if (ctx.getIncludeContextId()) {
+		if (contextId != null) {
 			firstByte = firstByte | 0x10;
+			length += 1 + contextId.length;
 		}
 
-		if (newPartialIV) {
-			byte[] partialIV = OSSerializer.processPartialIV(ctx.getSenderSeq());
-			firstByte = firstByte | (partialIV.length & 0x07);
-
-			bRes.write(firstByte);
-			try {
-				bRes.write(partialIV);
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
-		} else {
-			bRes.write(firstByte);
+		//If the OSCORE option is length 1 and 0x00, it should be empty
+		//See https://tools.ietf.org/html/draft-ietf-core-object-security-16#section-2
+		if (firstByte == 0x00) {
+			return Bytes.EMPTY;
 		}
 
-		//Encode the Context ID length and value if to be included
-		if (ctx.getIncludeContextId()) {
-			try {
-				bRes.write(ctx.getMessageIdContext().length);
-				bRes.write(ctx.getMessageIdContext());
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
+		byte[] result = new byte[length];
+		result[0] = (byte) firstByte;
+		int offset = 1;
+		if (newPartialIV) {
+			offset = OSCoreEncoder.writePartialIV(result, offset, seq);
 		}
 
-		//If the OSCORE option is length 1 and 0x00, it should be empty
-		//See https://tools.ietf.org/html/draft-ietf-core-object-security-16#section-2
-		byte[] optionBytes = bRes.toByteArray();
-		if (optionBytes.length == 1 && optionBytes[0] == 0x00) {
-			return Bytes.EMPTY;
-		} else {
-			return optionBytes;
+		//Encode the Context ID length and value if to be included
+		if (contextId != null) {
+			result[offset++] = (byte) contextId.length;
+			System.arraycopy(contextId, 0, result, offset, contextId.length);
 		}
+		return result;
 	}
 }
@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.oscore;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.eclipse.californium.elements.util.StringUtil;
+
+/**
+ * Sender sequence number store using one file per context.
+ *
+ * The files are named by the hexadecimal ID context and sender ID and contain
+ * the limit as decimal text. A new limit is written to a temporary file,
+ * synchronized to the storage device, and then renamed to the final file,
+ * which is atomic on POSIX file systems. Therefore a crash while storing
+ * leaves either the old or the new limit.
+ *
+ * On other platforms, e.g. Windows, renaming fails, if the final file already
+ * exists. Then the final file is deleted and the renaming is retried. That is
+ * not atomic. A crash between deleting and renaming leaves only the temporary
+ * file with the new limit. Therefore the temporary file is loaded, if the
+ * final file is missing.
+ *
+ * @since 3.0
+ */
+public class FileSenderSequenceNumberStore implements SenderSequenceNumberStore {
+
+	/**
+	 * File name prefix.
+	 */
+	private static final String PREFIX = "oscore-seq-";
+	/**
+	 * Temporary file name suffix.
+	 */
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	/**
+	 * Directory of the files.
+	 */
+	private final File directory;
+
+	/**
+	 * Create store.
+	 *
+	 * @param directory directory of the files. Created, if not existing.
+	 * @throws IOException if the directory could not be created
+	 * @throws NullPointerException if directory is {@code null}
+	 */
+	public FileSenderSequenceNumberStore(File directory) throws IOException {
+		if (directory == null) {
+			throw new NullPointerException("Directory must not be null!");
+		}
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Directory " + directory + " could not be created!");
+		}
+		this.directory = directory;
+	}
+
+	@Override
+	public int load(OSCoreCtx ctx) throws IOException {
+		File file = getFile(ctx);
+		if (!file.isFile()) {
+			// crashed after deleting the final file, see store
+			file = getTempFile(file);
+			if (!file.isFile()) {
+				return -1;
+			}
+		}
+		// limit has at most 10 digits
+		byte[] data = new byte[16];
+		int length = 0;
+		FileInputStream in = new FileInputStream(file);
+		try {
+			int read;
+			while (length < data.length && (read = in.read(data, length, data.length - length)) > 0) {
+				length += read;
+			}
+		} finally {
+			in.close();
+		}
+		String limit = new String(data, 0, length, StandardCharsets.US_ASCII).trim();
+		try {
+			return Integer.parseInt(limit);
+		} catch (NumberFormatException ex) {
+			throw new IOException("File " + file + " contains invalid limit '" + limit + "'!");
+		}
+	}
+
+	@Override
+	public void store(OSCoreCtx ctx, int limit) throws IOException {
+		File file = getFile(ctx);
+		File temp = getTempFile(file);
+		FileOutputStream out = new FileOutputStream(temp);
+		try {
+			out.write(Integer.toString(limit).getBytes(StandardCharsets.US_ASCII));
+			out.getFD().sync();
+		} finally {
+			out.close();
+		}
+		if (!temp.renameTo(file)) {
+			// rename doesn't replace existing files on all platforms
+			if (!file.delete() || !temp.renameTo(file)) {
+				throw new IOException("File " + temp + " could not be renamed to " + file + "!");
+			}
+		}
+	}
+
+	/**
+	 * Get temporary file.
+	 *
+	 * @param file final file
+	 * @return temporary file for the final file
+	 */
+	private File getTempFile(File file) {
+		return new File(directory, file.getName() + TEMP_SUFFIX);
+	}
+
+	/**
+	 * Get file for context.
+	 *
+	 * @param ctx context
+	 * @return file of the context
+	 */
+	private File getFile(OSCoreCtx ctx) {
+		StringBuilder name = new StringBuilder(PREFIX);
+		byte[] idContext = ctx.getIdContext();
+		if (idContext != null) {
+			name.append(StringUtil.byteArray2Hex(idContext));
+		}
+		name.append('-').append(StringUtil.byteArray2Hex(ctx.getSenderId()));
+		return new File(directory, name.toString());
+	}
+}
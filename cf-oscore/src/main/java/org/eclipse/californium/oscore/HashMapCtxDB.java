@@ -290,7 +290,7 @@ public class HashMapCtxDB implements OSCoreCtxDB {
 	 *
 	 * @throws OSException on failure to parse the URI
 	 */
-	private static String normalizeServerUri(String uri) throws OSException {
+	static String normalizeServerUri(String uri) throws OSException {
 		String normalized = null;
 
 		try {
@@ -15,17 +15,26 @@
  *    Ludwig Seitz (RISE SICS)
  *    Tobias Andersson (RISE SICS)
  *    Rikard Höglund (RISE SICS)
+ *    Bosch.IO GmbH - reserve sender sequence numbers in persistent blocks
  *    
  ******************************************************************************/
 package org.eclipse.californium.oscore;
 
 import java.security.GeneralSecurityException;
 import java.security.NoSuchAlgorithmException;
+import java.io.IOException;
 import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.crypto.Mac;
+import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
 
 import org.eclipse.californium.core.coap.CoAP.Code;
@@ -65,22 +74,81 @@ public class OSCoreCtx {
 
 	private byte[] sender_id;
 	private byte[] sender_key;
-	private int sender_seq;
+	/**
+	 * Cached AES secret key of {@link #sender_key}.
+	 * 
+	 * @since 3.0
+	 */
+	private volatile SecretKey sender_secret_key;
+	private final AtomicInteger sender_seq = new AtomicInteger();
+	/**
+	 * Store for reserved sender sequence numbers. {@code null}, if not
+	 * persisted.
+	 * 
+	 * @since 3.0
+	 */
+	private volatile SenderSequenceNumberStore senderSeqStore;
+	/**
+	 * Executor to reserve the next block in background. {@code null}, to
+	 * reserve the next block only when the current block is exhausted.
+	 * 
+	 * @since 3.0
+	 */
+	private volatile Executor senderSeqExecutor;
+	/**
+	 * Number of sender sequence numbers reserved at once.
+	 * 
+	 * @since 3.0
+	 */
+	private volatile int senderSeqBlockSize;
+	/**
+	 * Reserved sender sequence number limit. Only sequence numbers below that
+	 * limit are used.
+	 * 
+	 * @since 3.0
+	 */
+	private volatile int senderSeqLimit = Integer.MAX_VALUE;
+	/**
+	 * Indicates, that a background reservation is pending.
+	 * 
+	 * @since 3.0
+	 */
+	private final AtomicBoolean senderSeqReservationPending = new AtomicBoolean();
 
 	private byte[] recipient_id;
 	private byte[] recipient_key;
-	private int recipient_seq;
+	/**
+	 * Cached AES secret key of {@link #recipient_key}.
+	 * 
+	 * @since 3.0
+	 */
+	private volatile SecretKey recipient_secret_key;
 	private int recipient_replay_window_size;
-	private int recipient_replay_window;
+	/**
+	 * Recipient sequence number and replay window.
+	 * 
+	 * The upper 32 bits contains the highest received sequence number, the
+	 * lower 32 bits the replay window. Bit {@code n} of the window is set, if
+	 * the sequence number {@code recipient_seq - n - 1} has been received.
+	 * Both are updated atomically using compare and set.
+	 */
+	private final AtomicLong recipient_state = new AtomicLong(state(-1, 0));
 
 	private AlgorithmID kdf;
 
-	private int rollback_recipient_seq = -1;
-	private int rollback_recipient_replay = -1;
+	/**
+	 * Latest recipient state update, used to roll it back.
+	 * 
+	 * Previous and new state are kept in one immutable snapshot, so that a
+	 * rollback never mixes the states of concurrent messages.
+	 * 
+	 * @since 3.0
+	 */
+	private final AtomicReference<RecipientStateUpdate> rollback_recipient_state = new AtomicReference<RecipientStateUpdate>();
 	private byte[] rollback_last_block_tag = null;
 
 	private byte[] last_block_tag = null;
-	private int seqMax = Integer.MAX_VALUE;
+	private volatile int seqMax = Integer.MAX_VALUE;
 
 	private int id_length;
 	private int iv_length;
@@ -205,9 +273,6 @@ public class OSCoreCtx {
 
 		setLengths();
 
-		this.sender_seq = 0;
-		this.recipient_seq = -1;
-
 		if (master_secret != null) {
 			this.common_master_secret = master_secret.clone();
 		} else {
@@ -237,7 +302,6 @@ public class OSCoreCtx {
 		} else {
 			this.recipient_replay_window_size = replay_size.intValue();
 		}
-		this.recipient_replay_window = 0;
 
 		if (master_salt == null) {
 			// Default value. Automatically initialized with 0-es.
@@ -377,6 +441,40 @@ public class OSCoreCtx {
 		return recipient_key;
 	}
 
+	/**
+	 * Get the sender key as AES secret key.
+	 * 
+	 * The secret key is cached and reused for all messages of this context.
+	 * 
+	 * @return the sender key as AES secret key
+	 * @since 3.0
+	 */
+	public SecretKey getSenderSecretKey() {
+		SecretKey key = sender_secret_key;
+		if (key == null) {
+			key = new SecretKeySpec(sender_key, "AES");
+			sender_secret_key = key;
+		}
+		return key;
+	}
+
+	/**
+	 * Get the recipient key as AES secret key.
+	 * 
+	 * The secret key is cached and reused for all messages of this context.
+	 * 
+	 * @return the recipient key as AES secret key
+	 * @since 3.0
+	 */
+	public SecretKey getRecipientSecretKey() {
+		SecretKey key = recipient_secret_key;
+		if (key == null) {
+			key = new SecretKeySpec(recipient_key, "AES");
+			recipient_secret_key = key;
+		}
+		return key;
+	}
+
 	/**
 	 * @return the encryption algorithm
 	 */
@@ -387,15 +485,15 @@ public class OSCoreCtx {
 	/**
 	 * @return the sender sequence number
 	 */
-	public synchronized int getSenderSeq() {
-		return sender_seq;
+	public int getSenderSeq() {
+		return sender_seq.get();
 	}
 
 	/**
 	 * @return the receiver sequence number
 	 */
-	public synchronized int getReceiverSeq() {
-		return recipient_seq;
+	public int getReceiverSeq() {
+		return seq(recipient_state.get());
 	}
 
 	/**
@@ -444,7 +542,7 @@ public class OSCoreCtx {
 	 * @return recipient replay window
 	 */
 	public int getRecipientReplayWindow() {
-		return recipient_replay_window;
+		return window(recipient_state.get());
 	}
 
 	public byte[] getMasterSecret() {
@@ -621,26 +719,31 @@ public class OSCoreCtx {
 		return recipientIdString;
 	}
 
-    public int rollbackRecipientSeq() {
-		return rollback_recipient_seq;
+	public int rollbackRecipientSeq() {
+		RecipientStateUpdate update = rollback_recipient_state.get();
+		return update == null ? -1 : seq(update.previous);
 	}
 
 	public int rollbackRecipientReplay() {
-		return rollback_recipient_replay;
+		RecipientStateUpdate update = rollback_recipient_state.get();
+		return update == null ? -1 : window(update.previous);
 	}
 
 	/**
 	 * @param seq the sender sequence number to set
 	 */
-	public synchronized void setSenderSeq(int seq) {
-		sender_seq = seq;
+	public void setSenderSeq(int seq) {
+		sender_seq.set(seq);
 	}
 
 	/**
 	 * @param seq the recipient sequence number to set
 	 */
-	public synchronized void setReceiverSeq(int seq) {
-		recipient_seq = seq;
+	public void setReceiverSeq(int seq) {
+		long state;
+		do {
+			state = recipient_state.get();
+		} while (!recipient_state.compareAndSet(state, state(seq, window(state))));
 	}
 
 	/**
@@ -659,6 +762,7 @@ public class OSCoreCtx {
 	 */
 	public void setSenderKey(byte[] senderKey) {
 		this.sender_key = senderKey.clone();
+		this.sender_secret_key = null;
 	}
 	
 	/**
@@ -668,6 +772,7 @@ public class OSCoreCtx {
 	 */
 	public void setRecipientKey(byte[] recipientKey) {
 		this.recipient_key = recipientKey.clone();
+		this.recipient_secret_key = null;
 	}
 	
 	/**
@@ -762,66 +867,253 @@ public class OSCoreCtx {
 	/**
 	 * Increase the sender's sequence number by one
 	 *
-	 * @throws OSException if the sequence number wraps
+	 * If a {@link SenderSequenceNumberStore} is set, the skipped sequence
+	 * number is checked against the reserved limit, see
+	 * {@link #getAndIncreaseSenderSeq()}.
+	 *
+	 * @throws OSException if the sequence number wraps, or the next block of
+	 *             sequence numbers could not be stored.
+	 * @see #getAndIncreaseSenderSeq()
+	 */
+	public void increaseSenderSeq() throws OSException {
+		getAndIncreaseSenderSeq();
+	}
+
+	/**
+	 * Get the sender's sequence number and increase it by one.
+	 *
+	 * The sequence number is read and increased atomically. Each returned
+	 * sequence number is therefore used only once, even if messages are
+	 * protected concurrently with this context. Use the returned sequence
+	 * number for the partial IV and nonce of the outgoing message, not
+	 * {@link #getSenderSeq()}.
+	 *
+	 * If a {@link SenderSequenceNumberStore} is set, the returned sequence
+	 * number is checked against the reserved limit. Usually that's only an
+	 * in-memory comparison. If the limit is reached, the next block is
+	 * reserved and stored before returning. The stored limit therefore
+	 * always covers the returned sequence number.
+	 *
+	 * @return the sender's sequence number to use for the outgoing message
+	 * @throws OSException if the sequence number wraps, or the next block of
+	 *             sequence numbers could not be stored.
+	 * @see #increaseSenderSeq()
+	 * @since 3.0
+	 */
+	public int getAndIncreaseSenderSeq() throws OSException {
+		int seq;
+		do {
+			seq = sender_seq.get();
+			if (seq >= seqMax) {
+				LOGGER.error("Sequence number wrapped, get a new OSCore context");
+				throw new OSException("Sequence number wrapped");
+			}
+		} while (!sender_seq.compareAndSet(seq, seq + 1));
+		if (senderSeqStore != null) {
+			checkSenderSeqReservation(seq);
+		}
+		return seq;
+	}
+
+	/**
+	 * Set store to persist the sender sequence numbers.
+	 *
+	 * Loads the stored limit and continues the sender sequence number with
+	 * that, if it's larger than the current one. Then reserves the first
+	 * block of sequence numbers. Afterwards the next blocks are reserved by
+	 * {@link #getAndIncreaseSenderSeq()}, when required. With an executor, the next
+	 * block is reserved in background when half of the current block is used.
+	 * That keeps the storing out of the sending path. Without executor, the
+	 * next block is reserved, when the current is exhausted.
+	 *
+	 * Note: {@link #setSenderSeq(int)} doesn't reserve sequence numbers. Set
+	 * the store after setting the sender sequence number.
+	 *
+	 * @param store store for sender sequence numbers
+	 * @param blockSize number of sequence numbers reserved at once. Larger
+	 *            blocks reduce the writes, but skip more sequence numbers on
+	 *            restarts.
+	 * @param executor executor to reserve the next block in background. May
+	 *            be {@code null}.
+	 * @throws OSException if the limit could not be loaded or stored.
+	 * @throws NullPointerException if store is {@code null}
+	 * @throws IllegalArgumentException if block size is less than {@code 2}
+	 * @since 3.0
+	 */
+	public void setSenderSequenceNumberStore(SenderSequenceNumberStore store, int blockSize, Executor executor)
+			throws OSException {
+		if (store == null) {
+			throw new NullPointerException("Store must not be null!");
+		}
+		if (blockSize < 2) {
+			throw new IllegalArgumentException("Block size " + blockSize + " must be at least 2!");
+		}
+		try {
+			int limit = store.load(this);
+			if (limit > 0) {
+				int seq = sender_seq.get();
+				while (seq < limit) {
+					if (sender_seq.compareAndSet(seq, limit)) {
+						LOGGER.info("Continue sender sequence number {} with stored {}", seq, limit);
+						break;
+					}
+					seq = sender_seq.get();
+				}
+			}
+			synchronized (senderSeqReservationPending) {
+				senderSeqBlockSize = blockSize;
+				senderSeqExecutor = executor;
+				senderSeqLimit = reserveSenderSeq(store, sender_seq.get(), 0);
+				senderSeqStore = store;
+			}
+		} catch (IOException ex) {
+			LOGGER.error("Failed to reserve sender sequence numbers", ex);
+			throw new OSException("Failed to reserve sender sequence numbers");
+		}
+	}
+
+	/**
+	 * Check, if the next block of sender sequence numbers must be reserved.
+	 *
+	 * Reserves the next block before returning, if the sequence number is not
+	 * covered by the current limit. Reserves the next block in background,
+	 * if an executor is available and half of the current block is used.
+	 *
+	 * @param seq sender sequence number to use
+	 * @throws OSException if the next block could not be stored.
+	 * @since 3.0
 	 */
-	public synchronized void increaseSenderSeq() throws OSException {
-		if (sender_seq >= seqMax) {
-			LOGGER.error("Sequence number wrapped, get a new OSCore context");
-			throw new OSException("Sequence number wrapped");
+	private void checkSenderSeqReservation(final int seq) throws OSException {
+		int limit = senderSeqLimit;
+		if (seq >= limit) {
+			try {
+				synchronized (senderSeqReservationPending) {
+					limit = senderSeqLimit;
+					if (seq >= limit) {
+						senderSeqLimit = reserveSenderSeq(senderSeqStore, seq, limit);
+					}
+				}
+			} catch (IOException ex) {
+				LOGGER.error("Failed to reserve sender sequence numbers", ex);
+				throw new OSException("Failed to reserve sender sequence numbers");
+			}
+		} else {
+			Executor executor = senderSeqExecutor;
+			if (executor != null && limit - (seq + 1) <= senderSeqBlockSize / 2
+					&& senderSeqReservationPending.compareAndSet(false, true)) {
+				final int current = limit;
+				try {
+					executor.execute(new Runnable() {
+
+						@Override
+						public void run() {
+							try {
+								synchronized (senderSeqReservationPending) {
+									if (senderSeqLimit == current) {
+										senderSeqLimit = reserveSenderSeq(senderSeqStore, seq, current);
+									}
+								}
+							} catch (IOException ex) {
+								LOGGER.warn("Failed to reserve sender sequence numbers in background", ex);
+							} finally {
+								senderSeqReservationPending.set(false);
+							}
+						}
+					});
+				} catch (RuntimeException ex) {
+					senderSeqReservationPending.set(false);
+					LOGGER.warn("Failed to schedule sender sequence number reservation", ex);
+				}
+			}
 		}
-		sender_seq++;
+	}
+
+	/**
+	 * Reserve the next block of sender sequence numbers.
+	 *
+	 * Must be called synchronized on {@link #senderSeqReservationPending}.
+	 *
+	 * @param store store for sender sequence numbers
+	 * @param seq sender sequence number to cover
+	 * @param limit current limit
+	 * @return new limit. Stored before returning.
+	 * @throws IOException if the limit could not be stored
+	 * @since 3.0
+	 */
+	private int reserveSenderSeq(SenderSequenceNumberStore store, int seq, int limit) throws IOException {
+		long newLimit = Math.min((long) Math.max(seq, limit) + senderSeqBlockSize, Integer.MAX_VALUE);
+		store.store(this, (int) newLimit);
+		LOGGER.debug("Reserved sender sequence numbers up to {}", newLimit);
+		return (int) newLimit;
 	}
 
 	/**
 	 * Checks and sets the sequence number for incoming messages.
 	 * 
+	 * The replay window is updated lock-free. Concurrent calls with different
+	 * sequence numbers are all accepted, concurrent calls with the same
+	 * sequence number are accepted only once.
+	 * 
 	 * @param seq the incoming sequence number
 	 * 
 	 * @throws OSException if the sequence number wraps or if for a replay
 	 */
-	public synchronized void checkIncomingSeq(int seq) throws OSException {
+	public void checkIncomingSeq(int seq) throws OSException {
 		if (seq >= seqMax) {
 			LOGGER.error("Sequence number wrapped, get new OSCore context");
 			throw new OSException(ErrorDescriptions.REPLAY_DETECT);
 		}
-		rollback_recipient_seq = recipient_seq;
-		rollback_recipient_replay = recipient_replay_window;
-		if (seq > recipient_seq) {
-			// Update the replay window
-			int shift = seq - recipient_seq;
-			recipient_replay_window = recipient_replay_window << shift;
-			recipient_seq = seq;
-		} else if (seq == recipient_seq) {
-			LOGGER.error("Sequence number is replay");
-			throw new OSException(ErrorDescriptions.REPLAY_DETECT);
-		} else { // seq < recipient_seq
-			if (seq + recipient_replay_window_size < recipient_seq) {
-				LOGGER.error("Message too old");
-				throw new OSException(ErrorDescriptions.REPLAY_DETECT);
-			}
-			// seq+replay_window_size > recipient_seq
-			int shift = this.recipient_seq - seq;
-			int pattern = 1 << shift;
-			int verifier = recipient_replay_window & pattern;
-			verifier = verifier >> shift;
-			if (verifier == 1) {
+		int windowSize = Math.min(recipient_replay_window_size, Integer.SIZE);
+		long state;
+		long newState;
+		do {
+			state = recipient_state.get();
+			int recipientSeq = seq(state);
+			int window = window(state);
+			if (seq > recipientSeq) {
+				// Update the replay window
+				int shift = seq - recipientSeq;
+				if (shift > Integer.SIZE) {
+					window = 0;
+				} else {
+					window = shift == Integer.SIZE ? 0 : window << shift;
+					if (recipientSeq >= 0) {
+						// mark previous highest sequence number as received
+						window |= 1 << (shift - 1);
+					}
+				}
+				newState = state(seq, window);
+			} else if (seq == recipientSeq) {
+				LOGGER.error("Sequence number is replay");
 				throw new OSException(ErrorDescriptions.REPLAY_DETECT);
+			} else { // seq < recipientSeq
+				int shift = recipientSeq - seq;
+				if (shift > windowSize) {
+					LOGGER.error("Message too old");
+					throw new OSException(ErrorDescriptions.REPLAY_DETECT);
+				}
+				int pattern = 1 << (shift - 1);
+				if ((window & pattern) != 0) {
+					LOGGER.error("Sequence number is replay");
+					throw new OSException(ErrorDescriptions.REPLAY_DETECT);
+				}
+				newState = state(recipientSeq, window | pattern);
 			}
-			recipient_replay_window = recipient_replay_window | pattern;
-		}
+		} while (!recipient_state.compareAndSet(state, newState));
+		rollback_recipient_state.set(new RecipientStateUpdate(state, newState));
 	}
 
 	/**
 	 * Rolls back the latest recipient sequence number update if any
+	 * 
+	 * The rollback is only applied, if the recipient sequence number and
+	 * replay window have not been changed by other messages in the meantime.
+	 * Otherwise the sequence number stays marked as received.
 	 */
-	public synchronized void rollBack() {
-		if (rollback_recipient_replay != -1) {
-			recipient_replay_window = rollback_recipient_replay;
-			rollback_recipient_replay = -1;
-		}
-		if (rollback_recipient_seq != -1) {
-			recipient_seq = rollback_recipient_seq;
-			rollback_recipient_seq = -1;
+	public void rollBack() {
+		RecipientStateUpdate update = rollback_recipient_state.getAndSet(null);
+		if (update != null) {
+			recipient_state.compareAndSet(update.current, update.previous);
 		}
 		if (this.rollback_last_block_tag != null) {
 			this.last_block_tag = this.rollback_last_block_tag;
@@ -829,6 +1121,40 @@ public class OSCoreCtx {
 		}
 	}
 
+	/**
+	 * Immutable snapshot of a recipient state update.
+	 * 
+	 * @since 3.0
+	 */
+	private static class RecipientStateUpdate {
+
+		/**
+		 * Recipient state before the update.
+		 */
+		private final long previous;
+		/**
+		 * Recipient state after the update.
+		 */
+		private final long current;
+
+		private RecipientStateUpdate(long previous, long current) {
+			this.previous = previous;
+			this.current = current;
+		}
+	}
+
+	private static long state(int seq, int window) {
+		return ((long) seq << Integer.SIZE) | (window & 0xffffffffL);
+	}
+
+	private static int seq(long state) {
+		return (int) (state >> Integer.SIZE);
+	}
+
+	private static int window(long state) {
+		return (int) state;
+	}
+
 	protected static byte[] deriveKey(byte[] secret, byte[] salt, int cbitKey, String digest, byte[] rgbContext)
 			throws CoseException {
 
@@ -0,0 +1,289 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.oscore;
+
+import org.eclipse.californium.core.coap.CoAP;
+import org.eclipse.californium.cose.AlgorithmID;
+import org.eclipse.californium.cose.EncryptCommon;
+
+/**
+ * Encoder for the CBOR structures of OSCORE.
+ * <p>
+ * OSCORE uses only a small and fixed set of CBOR structures. These are the
+ * external AAD
+ *
+ * <pre>
+ * [ oscore_version : 1, algorithms : [ alg_aead ], request_kid : bstr,
+ *   request_piv : bstr, options : h'' ]
+ * </pre>
+ *
+ * and the COSE Enc_structure, which embeds the external AAD
+ *
+ * <pre>
+ * [ "Encrypt0", protected : h'', external_aad : bstr ]
+ * </pre>
+ *
+ * This encoder writes these structures directly into a byte array of the
+ * exact size, without building and serializing a tree of CBOR objects.
+ *
+ * The encoded Enc_structure is only valid, if the COSE object doesn't contain
+ * protected header parameters. That is the case for all OSCORE messages, see
+ * <a href="https://tools.ietf.org/html/rfc8613#section-5.4" target=
+ * "_blank">RFC8613, 5.4. Additional Authenticated Data</a>.
+ *
+ * @since 3.0
+ */
+public final class OSCoreEncoder {
+
+	/**
+	 * CBOR major type for unsigned integers.
+	 */
+	private static final int MAJOR_TYPE_UNSIGNED = 0x00;
+	/**
+	 * CBOR major type for negative integers.
+	 */
+	private static final int MAJOR_TYPE_NEGATIVE = 0x20;
+	/**
+	 * CBOR major type for byte strings.
+	 */
+	private static final int MAJOR_TYPE_BYTES = 0x40;
+	/**
+	 * CBOR major type for text strings.
+	 */
+	private static final int MAJOR_TYPE_TEXT = 0x60;
+	/**
+	 * CBOR major type for arrays.
+	 */
+	private static final int MAJOR_TYPE_ARRAY = 0x80;
+	/**
+	 * CBOR simple value {@code null}.
+	 */
+	private static final int SIMPLE_VALUE_NULL = 0xf6;
+	/**
+	 * Context of the COSE Enc_structure for COSE_Encrypt0.
+	 */
+	private static final byte[] ENCRYPT0 = { 'E', 'n', 'c', 'r', 'y', 'p', 't', '0' };
+
+	private OSCoreEncoder() {
+		// prevent instantiation
+	}
+
+	/**
+	 * Check, if the algorithm is supported by the direct encryption without
+	 * generic COSE objects.
+	 *
+	 * @param algorithm AEAD algorithm
+	 * @return {@code true}, if supported, {@code false}, otherwise.
+	 */
+	public static boolean isSupported(AlgorithmID algorithm) {
+		return algorithm != null && EncryptCommon.isSupportedAesCcm(algorithm);
+	}
+
+	/**
+	 * Encode the external AAD.
+	 *
+	 * The encoding is equal to
+	 * {@link OSSerializer#serializeAAD(int, AlgorithmID, int, byte[], org.eclipse.californium.core.coap.OptionSet)}
+	 * for the current CoAP version and without I-class options.
+	 *
+	 * @param algorithm AEAD algorithm
+	 * @param requestSeq sequence number of request (request PIV)
+	 * @param requestKid sender ID of request (request KID)
+	 * @return encoded external AAD
+	 */
+	public static byte[] encodeExternalAAD(AlgorithmID algorithm, int requestSeq, byte[] requestKid) {
+		int alg = algorithm.AsCBOR().AsInt32();
+		byte[] aad = new byte[externalAADLength(alg, requestSeq, requestKid)];
+		int offset = writeExternalAAD(aad, 0, alg, requestSeq, requestKid);
+		assert offset == aad.length;
+		return aad;
+	}
+
+	/**
+	 * Encode the Enc_structure with the provided external AAD.
+	 *
+	 * @param externalAAD encoded external AAD
+	 * @return encoded Enc_structure
+	 */
+	public static byte[] encodeEncStructure(byte[] externalAAD) {
+		byte[] structure = new byte[encStructureLength(externalAAD.length)];
+		int offset = writeEncStructureHeader(structure, externalAAD.length);
+		System.arraycopy(externalAAD, 0, structure, offset, externalAAD.length);
+		return structure;
+	}
+
+	/**
+	 * Encode the Enc_structure including the external AAD.
+	 *
+	 * Encodes the external AAD directly into the Enc_structure without
+	 * intermediate array.
+	 *
+	 * @param algorithm AEAD algorithm
+	 * @param requestSeq sequence number of request (request PIV)
+	 * @param requestKid sender ID of request (request KID)
+	 * @return encoded Enc_structure
+	 */
+	public static byte[] encodeEncStructure(AlgorithmID algorithm, int requestSeq, byte[] requestKid) {
+		int alg = algorithm.AsCBOR().AsInt32();
+		int aadLength = externalAADLength(alg, requestSeq, requestKid);
+		byte[] structure = new byte[encStructureLength(aadLength)];
+		int offset = writeEncStructureHeader(structure, aadLength);
+		offset = writeExternalAAD(structure, offset, alg, requestSeq, requestKid);
+		assert offset == structure.length;
+		return structure;
+	}
+
+	/**
+	 * Get length of the partial IV for the sequence number.
+	 *
+	 * The partial IV is the sequence number in network byte order without
+	 * leading zeros, but at least one byte. Equal to the length of
+	 * {@link OSSerializer#processPartialIV(int)}.
+	 *
+	 * @param seq sequence number
+	 * @return length of partial IV in bytes
+	 */
+	public static int partialIVLength(int seq) {
+		int bits = Integer.SIZE - Integer.numberOfLeadingZeros(seq);
+		return bits == 0 ? 1 : (bits + Byte.SIZE - 1) / Byte.SIZE;
+	}
+
+	/**
+	 * Write partial IV for the sequence number.
+	 *
+	 * @param buffer buffer to write the partial IV
+	 * @param offset offset in buffer
+	 * @param seq sequence number
+	 * @return offset after the partial IV
+	 * @see #partialIVLength(int)
+	 */
+	public static int writePartialIV(byte[] buffer, int offset, int seq) {
+		for (int index = partialIVLength(seq) - 1; index >= 0; --index) {
+			buffer[offset++] = (byte) (seq >>> (index * Byte.SIZE));
+		}
+		return offset;
+	}
+
+	/**
+	 * Read partial IV of the OSCORE option.
+	 *
+	 * @param oscoreOption value of the OSCORE option
+	 * @return sequence number of the partial IV, or {@code -1}, if the option
+	 *         doesn't contain a partial IV.
+	 * @throws IllegalArgumentException if the partial IV exceeds the option
+	 *             or an int.
+	 * @see #writePartialIV(byte[], int, int)
+	 * @since 3.0
+	 */
+	public static int readPartialIV(byte[] oscoreOption) {
+		if (oscoreOption == null || oscoreOption.length == 0) {
+			return -1;
+		}
+		int length = oscoreOption[0] & 0x07;
+		if (length == 0) {
+			return -1;
+		}
+		if (length > Integer.SIZE / Byte.SIZE || length >= oscoreOption.length) {
+			throw new IllegalArgumentException("Partial IV length " + length + " exceeds option!");
+		}
+		int seq = 0;
+		for (int index = 1; index <= length; ++index) {
+			seq = (seq << Byte.SIZE) | (oscoreOption[index] & 0xff);
+		}
+		return seq;
+	}
+
+	private static int externalAADLength(int alg, int requestSeq, byte[] requestKid) {
+		int pivLength = partialIVLength(requestSeq);
+		// array(5), version, array(1), alg, kid, piv, empty options
+		int length = 1 + 1 + 1 + headerLength(alg < 0 ? -1 - alg : alg);
+		if (requestKid == null) {
+			length += 1;
+		} else {
+			length += headerLength(requestKid.length) + requestKid.length;
+		}
+		length += headerLength(pivLength) + pivLength;
+		return length + 1;
+	}
+
+	private static int writeExternalAAD(byte[] buffer, int offset, int alg, int requestSeq, byte[] requestKid) {
+		offset = writeHeader(buffer, offset, MAJOR_TYPE_ARRAY, 5);
+		offset = writeHeader(buffer, offset, MAJOR_TYPE_UNSIGNED, CoAP.VERSION);
+		offset = writeHeader(buffer, offset, MAJOR_TYPE_ARRAY, 1);
+		if (alg < 0) {
+			offset = writeHeader(buffer, offset, MAJOR_TYPE_NEGATIVE, -1 - alg);
+		} else {
+			offset = writeHeader(buffer, offset, MAJOR_TYPE_UNSIGNED, alg);
+		}
+		if (requestKid == null) {
+			buffer[offset++] = (byte) SIMPLE_VALUE_NULL;
+		} else {
+			offset = writeHeader(buffer, offset, MAJOR_TYPE_BYTES, requestKid.length);
+			System.arraycopy(requestKid, 0, buffer, offset, requestKid.length);
+			offset += requestKid.length;
+		}
+		offset = writeHeader(buffer, offset, MAJOR_TYPE_BYTES, partialIVLength(requestSeq));
+		offset = writePartialIV(buffer, offset, requestSeq);
+		// I-class options (currently none)
+		return writeHeader(buffer, offset, MAJOR_TYPE_BYTES, 0);
+	}
+
+	private static int encStructureLength(int aadLength) {
+		// array(3), context, empty protected, external aad
+		return 1 + 1 + ENCRYPT0.length + 1 + headerLength(aadLength) + aadLength;
+	}
+
+	private static int writeEncStructureHeader(byte[] buffer, int aadLength) {
+		int offset = writeHeader(buffer, 0, MAJOR_TYPE_ARRAY, 3);
+		offset = writeHeader(buffer, offset, MAJOR_TYPE_TEXT, ENCRYPT0.length);
+		System.arraycopy(ENCRYPT0, 0, buffer, offset, ENCRYPT0.length);
+		offset += ENCRYPT0.length;
+		offset = writeHeader(buffer, offset, MAJOR_TYPE_BYTES, 0);
+		return writeHeader(buffer, offset, MAJOR_TYPE_BYTES, aadLength);
+	}
+
+	private static int headerLength(int value) {
+		if (value < 24) {
+			return 1;
+		} else if (value < 0x100) {
+			return 2;
+		} else if (value < 0x10000) {
+			return 3;
+		} else {
+			return 5;
+		}
+	}
+
+	private static int writeHeader(byte[] buffer, int offset, int majorType, int value) {
+		if (value < 24) {
+			buffer[offset++] = (byte) (majorType | value);
+		} else if (value < 0x100) {
+			buffer[offset++] = (byte) (majorType | 24);
+			buffer[offset++] = (byte) value;
+		} else if (value < 0x10000) {
+			buffer[offset++] = (byte) (majorType | 25);
+			buffer[offset++] = (byte) (value >> 8);
+			buffer[offset++] = (byte) value;
+		} else {
+			buffer[offset++] = (byte) (majorType | 26);
+			buffer[offset++] = (byte) (value >> 24);
+			buffer[offset++] = (byte) (value >> 16);
+			buffer[offset++] = (byte) (value >> 8);
+			buffer[offset++] = (byte) value;
+		}
+		return offset;
+	}
+}
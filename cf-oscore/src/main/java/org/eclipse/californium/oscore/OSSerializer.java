@@ -31,7 +31,6 @@ import org.eclipse.californium.cose.AlgorithmID;
 import org.eclipse.californium.elements.util.Bytes;
 import org.eclipse.californium.elements.util.DatagramWriter;
 
-import com.upokecenter.cbor.CBORObject;
 
 /**
  * 
@@ -97,19 +96,8 @@ public class OSSerializer {
 			if (requestSeq > -1) {
 				if (algorithm != null) {
 					if (options != null) {
-						CBORObject algorithms = CBORObject.NewArray();
-						algorithms.Add(algorithm.AsCBOR());
-
-						CBORObject aad = CBORObject.NewArray();
-						aad.Add(version);
-						aad.Add(algorithms);
-						aad.Add(requestSenderId);
-						aad.Add(processPartialIV(requestSeq));
-						
-						//I-class options (currently none)
-						aad.Add(CBORObject.FromObject(Bytes.EMPTY));
-						
-						return aad.EncodeToBytes();
+						// I-class options (currently none)
+						return OSCoreEncoder.encodeExternalAAD(algorithm, requestSeq, requestSenderId);
 					} else {
 						LOGGER.error(ErrorDescriptions.OPTIONSET_NULL);
 						throw new NullPointerException(ErrorDescriptions.OPTIONSET_NULL);
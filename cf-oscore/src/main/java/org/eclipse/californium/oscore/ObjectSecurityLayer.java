@@ -157,9 +157,10 @@ public class ObjectSecurityLayer extends AbstractLayer {
 				OSCoreEndpointContextInfo.sendingRequest(ctx, exchange);
 
 				exchange.setCryptographicContextID(ctx.getRecipientId());
-				final int seqByToken = ctx.getSenderSeq();
 
 				final Request preparedRequest = prepareSend(ctxDb, request);
+				// the sequence number used to protect the request
+				final int seqByToken = OSCoreEncoder.readPartialIV(preparedRequest.getOptions().getOscore());
 				final OSCoreCtx finalCtx = ctxDb.getContext(uri);
 
 				if (outgoingExceedsMaxUnfragSize(preparedRequest, outerBlockwise, ctx.getMaxUnfragmentedSize())) {
@@ -69,12 +69,14 @@ public class RequestEncryptor extends Encryptor {
 		OptionSet options = request.getOptions();
 		byte[] confidential = OSSerializer.serializeConfidentialData(options, request.getPayload(), realCode);
 		Encrypt0Message enc = prepareCOSEStructure(confidential);
-		byte[] cipherText = encryptAndEncode(enc, ctx, request, false);
-		compression(ctx, cipherText, request, false);
+		// reserve the sequence number atomically, concurrent requests must
+		// not use the same nonce
+		int senderSeq = ctx.getAndIncreaseSenderSeq();
+		byte[] cipherText = encryptAndEncode(enc, ctx, request, false, senderSeq);
+		compression(ctx, cipherText, request, false, senderSeq);
 
 		request.setOptions(OptionJuggle.prepareUoptions(request.getOptions()));
 
-		ctx.increaseSenderSeq();
 		return request;
 	}
 
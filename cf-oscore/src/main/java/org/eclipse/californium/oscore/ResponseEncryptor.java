@@ -78,8 +78,11 @@ public class ResponseEncryptor extends Encryptor {
 
 		byte[] confidential = OSSerializer.serializeConfidentialData(options, response.getPayload(), realCode);
 		Encrypt0Message enc = prepareCOSEStructure(confidential);
-		byte[] cipherText = encryptAndEncode(enc, ctx, response, newPartialIV);
-		compression(ctx, cipherText, response, newPartialIV);
+		// If new partial IV is generated for response, reserve the sender seq
+		// nr. atomically, concurrent responses must not use the same nonce
+		int senderSeq = newPartialIV ? ctx.getAndIncreaseSenderSeq() : -1;
+		byte[] cipherText = encryptAndEncode(enc, ctx, response, newPartialIV, senderSeq);
+		compression(ctx, cipherText, response, newPartialIV, senderSeq);
 
 		options = response.getOptions();
 		response.setOptions(OptionJuggle.prepareUoptions(options));
@@ -88,11 +91,6 @@ public class ResponseEncryptor extends Encryptor {
 			response.setOptions(response.getOptions().setBlock1(block1Option));
 		}
 
-		//If new partial IV was generated for response increment sender seq nr.
-		if (newPartialIV) {
-			ctx.increaseSenderSeq();
-		}
-		
 		return response;
 	}
 }
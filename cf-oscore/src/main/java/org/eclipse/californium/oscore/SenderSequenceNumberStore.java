@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.oscore;
+
+import java.io.IOException;
+
+/**
+ * Persistent store for reserved sender sequence numbers.
+ *
+ * The {@link OSCoreCtx} reserves the sender sequence numbers in blocks and
+ * stores only the end of the reserved block. After a restart the sender
+ * sequence number continues at that stored limit. Therefore sequence numbers
+ * are never reused and the context is still valid without
+ * {@link ContextRederivation}. The not used sequence numbers of the last
+ * block are skipped. See
+ * <a href="https://tools.ietf.org/html/rfc8613#appendix-B.1.1" target=
+ * "_blank">RFC8613, B.1.1. Sender Sequence Number</a>.
+ *
+ * Implementations must be thread safe.
+ *
+ * @see OSCoreCtx#setSenderSequenceNumberStore(SenderSequenceNumberStore, int,
+ *      java.util.concurrent.Executor)
+ * @since 3.0
+ */
+public interface SenderSequenceNumberStore {
+
+	/**
+	 * Load the stored sender sequence number limit of the context.
+	 *
+	 * @param ctx context to load the limit for. Identified by the sender ID
+	 *            and the ID context.
+	 * @return stored limit, or {@code -1}, if no limit is stored for that
+	 *         context.
+	 * @throws IOException if an i/o error occurred
+	 */
+	int load(OSCoreCtx ctx) throws IOException;
+
+	/**
+	 * Store the sender sequence number limit of the context.
+	 *
+	 * The limit must be persisted, when this method returns. Sequence numbers
+	 * below that limit are used afterwards.
+	 *
+	 * @param ctx context to store the limit for. Identified by the sender ID
+	 *            and the ID context.
+	 * @param limit sender sequence number limit. After a restart the sender
+	 *            sequence number continues with this value.
+	 * @throws IOException if an i/o error occurred
+	 */
+	void store(OSCoreCtx ctx, int limit) throws IOException;
+}
@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.oscore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.core.coap.Token;
+import org.eclipse.californium.elements.rule.TestTimeRule;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Runs the {@link HashMapCtxDBTest} with the {@link ConcurrentCtxDB} and
+ * verifies the limits of the token associations.
+ */
+public class ConcurrentCtxDBTest extends HashMapCtxDBTest {
+
+	@Rule
+	public TestTimeRule time = new TestTimeRule();
+
+	@Override
+	protected OSCoreCtxDB createDb() {
+		return new ConcurrentCtxDB();
+	}
+
+	@Test
+	public void testTokenExpires() {
+		ConcurrentCtxDB db = new ConcurrentCtxDB(10, 10, TimeUnit.SECONDS);
+		Token token = new Token(new byte[] { 1 });
+		Token other = new Token(new byte[] { 2 });
+		db.addSeqByToken(token, 1);
+		db.addSeqByToken(other, 2);
+		time.addTestTimeShift(6, TimeUnit.SECONDS);
+		// access refreshes token
+		assertEquals(Integer.valueOf(1), db.getSeqByToken(token));
+		time.addTestTimeShift(6, TimeUnit.SECONDS);
+		assertTrue(db.tokenExist(token));
+		assertFalse(db.tokenExist(other));
+		assertNull(db.getSeqByToken(other));
+	}
+
+	@Test
+	public void testTokensAreLimited() {
+		ConcurrentCtxDB db = new ConcurrentCtxDB(10, 10, TimeUnit.SECONDS);
+		for (int index = 0; index < 20; ++index) {
+			db.addSeqByToken(new Token(new byte[] { (byte) index }), index);
+			time.addTestTimeShift(1, TimeUnit.MILLISECONDS);
+		}
+		assertEquals(10, db.getTokenSize());
+		// least recently used tokens are evicted
+		assertFalse(db.tokenExist(new Token(new byte[] { 9 })));
+		assertTrue(db.tokenExist(new Token(new byte[] { 10 })));
+		assertTrue(db.tokenExist(new Token(new byte[] { 19 })));
+	}
+
+	@Test
+	public void testTokensAreEvictedInBatches() {
+		ConcurrentCtxDB db = new ConcurrentCtxDB(100, 10, TimeUnit.SECONDS);
+		for (int index = 0; index < 101; ++index) {
+			db.addSeqByToken(new Token(new byte[] { (byte) index }), index);
+			time.addTestTimeShift(1, TimeUnit.MILLISECONDS);
+		}
+		// 10 percent least recently used tokens are evicted at once
+		assertEquals(91, db.getTokenSize());
+		assertFalse(db.tokenExist(new Token(new byte[] { 9 })));
+		assertTrue(db.tokenExist(new Token(new byte[] { 10 })));
+		assertTrue(db.tokenExist(new Token(new byte[] { 100 })));
+	}
+
+	@Test
+	public void testRemoveTokenKeepsGenerator() {
+		ConcurrentCtxDB db = new ConcurrentCtxDB();
+		Token token = new Token(new byte[] { 1 });
+		db.addSeqByToken(token, 1);
+		db.removeToken(token);
+		assertNull(db.getSeqByToken(token));
+		assertTrue(db.tokenExist(token));
+	}
+}
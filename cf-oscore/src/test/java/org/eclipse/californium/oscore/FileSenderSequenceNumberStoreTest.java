@@ -0,0 +1,241 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.oscore;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.californium.cose.AlgorithmID;
+import org.eclipse.californium.elements.util.Bytes;
+import org.eclipse.californium.elements.util.StringUtil;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Verifies, that the reserved sender sequence numbers are persisted with the
+ * {@link FileSenderSequenceNumberStore}.
+ */
+public class FileSenderSequenceNumberStoreTest {
+
+	private static final byte[] MASTER_SECRET = StringUtil.hex2ByteArray("0102030405060708090A0B0C0D0E0F10");
+	private static final byte[] MASTER_SALT = StringUtil.hex2ByteArray("9e7ca92223786340");
+	private static final byte[] CLIENT_ID = Bytes.EMPTY;
+	private static final byte[] SERVER_ID = new byte[] { 0x01 };
+
+	private static final Executor DIRECT = new Executor() {
+
+		@Override
+		public void execute(Runnable command) {
+			command.run();
+		}
+	};
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File directory;
+
+	@Before
+	public void setup() throws Exception {
+		directory = folder.newFolder("seq");
+	}
+
+	@Test
+	public void testRestartContinuesAfterReservedBlock() throws Exception {
+		SenderSequenceNumberStore store = new FileSenderSequenceNumberStore(directory);
+		OSCoreCtx ctx = createContext(CLIENT_ID, SERVER_ID);
+		ctx.setSenderSequenceNumberStore(store, 10, null);
+		assertThat(store.load(ctx), is(10));
+		for (int index = 0; index < 25; ++index) {
+			ctx.increaseSenderSeq();
+		}
+		assertThat(ctx.getSenderSeq(), is(25));
+		assertThat(store.load(ctx), is(30));
+
+		// restart
+		store = new FileSenderSequenceNumberStore(directory);
+		ctx = createContext(CLIENT_ID, SERVER_ID);
+		ctx.setSenderSequenceNumberStore(store, 10, null);
+		assertThat(ctx.getSenderSeq(), is(30));
+		assertThat(store.load(ctx), is(40));
+	}
+
+	@Test
+	public void testBackgroundReservation() throws Exception {
+		SenderSequenceNumberStore store = new FileSenderSequenceNumberStore(directory);
+		OSCoreCtx ctx = createContext(CLIENT_ID, SERVER_ID);
+		ctx.setSenderSequenceNumberStore(store, 10, DIRECT);
+		for (int index = 0; index < 4; ++index) {
+			ctx.increaseSenderSeq();
+		}
+		assertThat(store.load(ctx), is(10));
+		ctx.increaseSenderSeq();
+		// half of the block used, next block reserved
+		assertThat(store.load(ctx), is(20));
+	}
+
+	@Test
+	public void testContextsAreSeparated() throws Exception {
+		SenderSequenceNumberStore store = new FileSenderSequenceNumberStore(directory);
+		OSCoreCtx client = createContext(CLIENT_ID, SERVER_ID);
+		OSCoreCtx server = createContext(SERVER_ID, CLIENT_ID);
+		client.setSenderSequenceNumberStore(store, 10, null);
+		server.setSenderSequenceNumberStore(store, 100, null);
+		assertThat(store.load(client), is(10));
+		assertThat(store.load(server), is(100));
+	}
+
+	@Test
+	public void testNotStored() throws Exception {
+		SenderSequenceNumberStore store = new FileSenderSequenceNumberStore(directory);
+		OSCoreCtx ctx = createContext(CLIENT_ID, SERVER_ID);
+		assertThat(store.load(ctx), is(-1));
+	}
+
+	@Test
+	public void testLoadsTemporaryFileIfFileIsMissing() throws Exception {
+		SenderSequenceNumberStore store = new FileSenderSequenceNumberStore(directory);
+		OSCoreCtx ctx = createContext(CLIENT_ID, SERVER_ID);
+		store.store(ctx, 10);
+		store.store(ctx, 20);
+		File[] files = directory.listFiles();
+		assertThat(files.length, is(1));
+		// simulate crash after deleting the file, but before renaming the
+		// temporary file
+		File file = files[0];
+		assertThat(file.renameTo(new File(directory, file.getName() + ".tmp")), is(true));
+		assertThat(store.load(ctx), is(20));
+		// next store replaces temporary file
+		store.store(ctx, 30);
+		assertThat(file.isFile(), is(true));
+		assertThat(store.load(ctx), is(30));
+	}
+
+	@Test
+	public void testFailingStoreRejectsMessages() throws Exception {
+		testFailingStoreRejectsMessages(null);
+	}
+
+	@Test
+	public void testFailingStoreRejectsMessagesWithBackgroundReservation() throws Exception {
+		testFailingStoreRejectsMessages(DIRECT);
+	}
+
+	private void testFailingStoreRejectsMessages(Executor executor) throws Exception {
+		FailingStore store = new FailingStore();
+		OSCoreCtx ctx = createContext(CLIENT_ID, SERVER_ID);
+		ctx.setSenderSequenceNumberStore(store, 10, executor);
+		assertThat(store.limit, is(10));
+		store.fail = true;
+		int sent = 0;
+		int rejected = 0;
+		for (int index = 0; index < 30; ++index) {
+			try {
+				// the encryptors use the returned sequence number
+				int seq = ctx.getAndIncreaseSenderSeq();
+				// message is sent with seq
+				assertTrue("used " + seq + ", stored " + store.limit, seq < store.limit);
+				++sent;
+			} catch (OSException ex) {
+				// message is rejected
+				++rejected;
+			}
+		}
+		// the whole reserved block is used
+		assertThat(sent, is(10));
+		assertThat(rejected, is(20));
+
+		// store works again
+		store.fail = false;
+		int seq = ctx.getAndIncreaseSenderSeq();
+		assertTrue("used " + seq + ", stored " + store.limit, seq < store.limit);
+	}
+
+	@Test
+	public void testConcurrentSequenceNumbersAreCovered() throws Exception {
+		final FailingStore store = new FailingStore();
+		final OSCoreCtx ctx = createContext(CLIENT_ID, SERVER_ID);
+		ctx.setSenderSequenceNumberStore(store, 10, null);
+		final int threads = 4;
+		final int loops = 1000;
+		final AtomicInteger uncovered = new AtomicInteger();
+		final CountDownLatch ready = new CountDownLatch(threads);
+		Thread[] workers = new Thread[threads];
+		for (int index = 0; index < threads; ++index) {
+			workers[index] = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					ready.countDown();
+					try {
+						ready.await();
+						for (int loop = 0; loop < loops; ++loop) {
+							int seq = ctx.getAndIncreaseSenderSeq();
+							// message is sent with seq
+							if (seq >= store.limit) {
+								uncovered.incrementAndGet();
+							}
+						}
+					} catch (Exception e) {
+						throw new IllegalStateException(e);
+					}
+				}
+			});
+			workers[index].start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		assertThat(uncovered.get(), is(0));
+		assertThat(ctx.getSenderSeq(), is(threads * loops));
+	}
+
+	private static OSCoreCtx createContext(byte[] senderId, byte[] recipientId) throws OSException {
+		return new OSCoreCtx(MASTER_SECRET, true, AlgorithmID.AES_CCM_16_64_128, senderId, recipientId,
+				AlgorithmID.HKDF_HMAC_SHA_256, 32, MASTER_SALT, null);
+	}
+
+	/**
+	 * In-memory store, which fails on demand.
+	 */
+	private static class FailingStore implements SenderSequenceNumberStore {
+
+		private volatile boolean fail;
+		private volatile int limit = -1;
+
+		@Override
+		public int load(OSCoreCtx ctx) throws IOException {
+			return limit;
+		}
+
+		@Override
+		public void store(OSCoreCtx ctx, int limit) throws IOException {
+			if (fail) {
+				throw new IOException("store failed!");
+			}
+			this.limit = limit;
+		}
+	}
+}
@@ -59,9 +59,18 @@ public class HashMapCtxDBTest {
 	public void tearDown() throws Exception {
 	}
 
+	/**
+	 * Create context database to test.
+	 * 
+	 * @return context database
+	 */
+	protected OSCoreCtxDB createDb() {
+		return new HashMapCtxDB();
+	}
+
 	@Test
 	public void testGetContextNull() throws OSException {
-		HashMapCtxDB db = new HashMapCtxDB();
+		OSCoreCtxDB db = createDb();
 
 		assertNull(db.getContext(rid));
 		assertNull(db.getContext(uri));
@@ -70,7 +79,7 @@ public class HashMapCtxDBTest {
 
 	@Test
 	public void testAddGetContextRid() throws OSException {
-		HashMapCtxDB db = new HashMapCtxDB();
+		OSCoreCtxDB db = createDb();
 		OSCoreCtx ctx = new OSCoreCtx(master_secret, true, alg, sid, rid, AlgorithmID.HKDF_HMAC_SHA_256, 32, null,
 				null);
 		db.addContext(ctx);
@@ -89,7 +98,7 @@ public class HashMapCtxDBTest {
 	 */
 	@Test
 	public void testAddGetContextRidIDContext() throws OSException {
-		HashMapCtxDB db = new HashMapCtxDB();
+		OSCoreCtxDB db = createDb();
 		OSCoreCtx ctx = new OSCoreCtx(master_secret, true, alg, sid, rid, AlgorithmID.HKDF_HMAC_SHA_256, 32, null,
 				context_id);
 		db.addContext(ctx);
@@ -108,7 +117,7 @@ public class HashMapCtxDBTest {
 	 */
 	@Test
 	public void testAddGetContextRidIDContextMultiple() throws OSException {
-		HashMapCtxDB db = new HashMapCtxDB();
+		OSCoreCtxDB db = createDb();
 		OSCoreCtx ctx = new OSCoreCtx(master_secret, true, alg, sid, rid, AlgorithmID.HKDF_HMAC_SHA_256, 32, null,
 				context_id);
 		OSCoreCtx ctx2 = new OSCoreCtx(master_secret, true, alg, sid, rid, AlgorithmID.HKDF_HMAC_SHA_256, 32, null,
@@ -131,7 +140,7 @@ public class HashMapCtxDBTest {
 	 */
 	@Test
 	public void testAddGetContextRidMultipleSuccess() throws OSException {
-		HashMapCtxDB db = new HashMapCtxDB();
+		OSCoreCtxDB db = createDb();
 		OSCoreCtx ctx = new OSCoreCtx(master_secret, true, alg, sid, rid, AlgorithmID.HKDF_HMAC_SHA_256, 32, null,
 				context_id);
 		OSCoreCtx ctx2 = new OSCoreCtx(master_secret, true, alg, sid, rid_2, AlgorithmID.HKDF_HMAC_SHA_256, 32, null,
@@ -158,7 +167,7 @@ public class HashMapCtxDBTest {
 		exception.expect(CoapOSException.class);
 		exception.expectMessage(ErrorDescriptions.CONTEXT_NOT_FOUND_IDCONTEXT);
 
-		HashMapCtxDB db = new HashMapCtxDB();
+		OSCoreCtxDB db = createDb();
 		OSCoreCtx ctx = new OSCoreCtx(master_secret, true, alg, sid, rid, AlgorithmID.HKDF_HMAC_SHA_256, 32, null,
 				context_id);
 		OSCoreCtx ctx2 = new OSCoreCtx(master_secret, true, alg, sid, rid, AlgorithmID.HKDF_HMAC_SHA_256, 32, null,
@@ -185,7 +194,7 @@ public class HashMapCtxDBTest {
 		exception.expect(RuntimeException.class);
 		exception.expectMessage("Attempting to retrieve context with only non-unique RID.");
 
-		HashMapCtxDB db = new HashMapCtxDB();
+		OSCoreCtxDB db = createDb();
 		OSCoreCtx ctx1 = new OSCoreCtx(master_secret, true, alg, sid, rid, AlgorithmID.HKDF_HMAC_SHA_256, 32, null,
 				context_id);
 		OSCoreCtx ctx2 = new OSCoreCtx(master_secret, true, alg, sid, rid, AlgorithmID.HKDF_HMAC_SHA_256, 32, null,
@@ -199,7 +208,7 @@ public class HashMapCtxDBTest {
 
 	@Test
 	public void testAddGetContextUri() throws OSException {
-		HashMapCtxDB db = new HashMapCtxDB();
+		OSCoreCtxDB db = createDb();
 		OSCoreCtx ctx = new OSCoreCtx(master_secret, true, alg, sid, rid, AlgorithmID.HKDF_HMAC_SHA_256, 32, null,
 				null);
 		db.addContext(uri, ctx);
@@ -213,7 +222,7 @@ public class HashMapCtxDBTest {
 
 	@Test
 	public void testAddGetContextToken() throws OSException {
-		HashMapCtxDB db = new HashMapCtxDB();
+		OSCoreCtxDB db = createDb();
 		OSCoreCtx ctx = new OSCoreCtx(master_secret, true, alg, sid, rid, AlgorithmID.HKDF_HMAC_SHA_256, 32, null,
 				null);
 		db.addContext(token, ctx);
@@ -227,7 +236,7 @@ public class HashMapCtxDBTest {
 
 	@Test
 	public void testNullSeqByToken() throws OSException {
-		HashMapCtxDB db = new HashMapCtxDB();
+		OSCoreCtxDB db = createDb();
 		exception.expect(NullPointerException.class);
 
 		db.addSeqByToken(token, null);
@@ -235,7 +244,7 @@ public class HashMapCtxDBTest {
 
 	@Test
 	public void testSeqByNullToken() throws OSException {
-		HashMapCtxDB db = new HashMapCtxDB();
+		OSCoreCtxDB db = createDb();
 		exception.expect(NullPointerException.class);
 
 		db.addSeqByToken(null, seq);
@@ -243,7 +252,7 @@ public class HashMapCtxDBTest {
 
 	@Test
 	public void testSeqBytToken() throws OSException {
-		HashMapCtxDB db = new HashMapCtxDB();
+		OSCoreCtxDB db = createDb();
 		db.addSeqByToken(token, seq);
 
 		assertEquals(seq, db.getSeqByToken(token));
@@ -252,7 +261,7 @@ public class HashMapCtxDBTest {
 
 	@Test
 	public void testRemoveSeqBytToken() throws OSException {
-		HashMapCtxDB db = new HashMapCtxDB();
+		OSCoreCtxDB db = createDb();
 		db.addSeqByToken(token, seq);
 		db.removeSeqByToken(token);
 
@@ -262,7 +271,7 @@ public class HashMapCtxDBTest {
 
 	@Test
 	public void testUpdateNonExistentSeqByToken() {
-		HashMapCtxDB db = new HashMapCtxDB();
+		OSCoreCtxDB db = createDb();
 
 		try {
 			db.updateSeqByToken(null, seq);
@@ -283,7 +292,7 @@ public class HashMapCtxDBTest {
 
 	@Test
 	public void testTokenExists() throws OSException {
-		HashMapCtxDB db = new HashMapCtxDB();
+		OSCoreCtxDB db = createDb();
 		db.addSeqByToken(token, seq);
 
 		assertTrue(db.tokenExist(token));
@@ -19,9 +19,13 @@ package org.eclipse.californium.oscore;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import org.eclipse.californium.cose.AlgorithmID;
 import org.eclipse.californium.elements.util.ExpectedExceptionWrapper;
@@ -184,4 +188,132 @@ public class OSCoreCtxTest {
 		
 		assertArrayEquals(predictedCommonIVContextID, ctx.getCommonIV());
 	}
+
+	@Test
+	public void testReplayWindow() throws OSException {
+		OSCoreCtx ctx = new OSCoreCtx(master_secret, true, cipher, sid, rid, kdf, 32, null, null);
+		ctx.checkIncomingSeq(5);
+		ctx.checkIncomingSeq(7);
+		ctx.checkIncomingSeq(6);
+		assertEquals(7, ctx.getReceiverSeq());
+		assertFalse(isAccepted(ctx, 5));
+		assertFalse(isAccepted(ctx, 6));
+		assertFalse(isAccepted(ctx, 7));
+		assertTrue(isAccepted(ctx, 4));
+		ctx.checkIncomingSeq(39);
+		assertTrue(isAccepted(ctx, 8));
+		assertFalse(isAccepted(ctx, 7));
+		assertEquals(39, ctx.getReceiverSeq());
+	}
+
+	@Test
+	public void testReplayWindowRollBack() throws OSException {
+		OSCoreCtx ctx = new OSCoreCtx(master_secret, true, cipher, sid, rid, kdf, 32, null, null);
+		ctx.checkIncomingSeq(5);
+		ctx.checkIncomingSeq(7);
+		ctx.rollBack();
+		assertEquals(5, ctx.getReceiverSeq());
+		assertTrue(isAccepted(ctx, 7));
+	}
+
+	@Test
+	public void testReplayWindowRollBackLatestUpdateOnlyOnce() throws OSException {
+		OSCoreCtx ctx = new OSCoreCtx(master_secret, true, cipher, sid, rid, kdf, 32, null, null);
+		ctx.checkIncomingSeq(5);
+		ctx.checkIncomingSeq(7);
+		ctx.checkIncomingSeq(6);
+		ctx.rollBack();
+		ctx.rollBack();
+		assertEquals(7, ctx.getReceiverSeq());
+		assertEquals(-1, ctx.rollbackRecipientSeq());
+		assertFalse(isAccepted(ctx, 7));
+		assertFalse(isAccepted(ctx, 5));
+		assertTrue(isAccepted(ctx, 6));
+	}
+
+	@Test
+	public void testConcurrentSequenceNumbers() throws Exception {
+		final OSCoreCtx ctx = new OSCoreCtx(master_secret, true, cipher, sid, rid, kdf, 32, null, null);
+		final int threads = 4;
+		final int loops = 10000;
+		final AtomicInteger accepted = new AtomicInteger();
+		final CountDownLatch ready = new CountDownLatch(threads);
+		Thread[] workers = new Thread[threads];
+		for (int index = 0; index < threads; ++index) {
+			workers[index] = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					ready.countDown();
+					try {
+						ready.await();
+						for (int loop = 0; loop < loops; ++loop) {
+							ctx.increaseSenderSeq();
+							// all threads try the same sequence numbers
+							if (isAccepted(ctx, loop)) {
+								accepted.incrementAndGet();
+							}
+						}
+					} catch (Exception e) {
+						throw new IllegalStateException(e);
+					}
+				}
+			});
+			workers[index].start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		assertEquals(threads * loops, ctx.getSenderSeq());
+		// sequence numbers are accepted once, or rejected as too old
+		assertTrue(accepted.get() <= loops);
+		assertEquals(loops - 1, ctx.getReceiverSeq());
+	}
+
+	@Test
+	public void testConcurrentGetAndIncreaseSenderSeq() throws Exception {
+		final OSCoreCtx ctx = new OSCoreCtx(master_secret, true, cipher, sid, rid, kdf, 32, null, null);
+		final int threads = 4;
+		final int loops = 10000;
+		final AtomicIntegerArray used = new AtomicIntegerArray(threads * loops);
+		final AtomicInteger duplicates = new AtomicInteger();
+		final CountDownLatch ready = new CountDownLatch(threads);
+		Thread[] workers = new Thread[threads];
+		for (int index = 0; index < threads; ++index) {
+			workers[index] = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					ready.countDown();
+					try {
+						ready.await();
+						for (int loop = 0; loop < loops; ++loop) {
+							int seq = ctx.getAndIncreaseSenderSeq();
+							// each sequence number (nonce) must be used once
+							if (used.getAndIncrement(seq) != 0) {
+								duplicates.incrementAndGet();
+							}
+						}
+					} catch (Exception e) {
+						throw new IllegalStateException(e);
+					}
+				}
+			});
+			workers[index].start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		assertEquals(0, duplicates.get());
+		assertEquals(threads * loops, ctx.getSenderSeq());
+	}
+
+	private static boolean isAccepted(OSCoreCtx ctx, int seq) {
+		try {
+			ctx.checkIncomingSeq(seq);
+			return true;
+		} catch (OSException e) {
+			return false;
+		}
+	}
 }
@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.oscore;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.eclipse.californium.core.coap.CoAP;
+import org.eclipse.californium.core.coap.Request;
+import org.eclipse.californium.cose.AlgorithmID;
+import org.eclipse.californium.cose.Attribute;
+import org.eclipse.californium.cose.Encrypt0Message;
+import org.eclipse.californium.cose.HeaderKeys;
+import org.eclipse.californium.elements.util.Bytes;
+import org.eclipse.californium.elements.util.StringUtil;
+import org.junit.Test;
+
+import com.upokecenter.cbor.CBORObject;
+
+/**
+ * Verifies, that the {@link OSCoreEncoder} encodes equal to the generic CBOR
+ * encoding.
+ */
+public class OSCoreEncoderTest {
+
+	private static final int[] SEQS = { 0, 1, 23, 24, 255, 256, 65535, 65536, 0xffffff, 0x1000000,
+			Integer.MAX_VALUE };
+
+	private static final byte[][] KIDS = { Bytes.EMPTY, new byte[] { 0x01 }, new byte[23], new byte[24],
+			new byte[300], null };
+
+	private static final AlgorithmID[] ALGS = { AlgorithmID.AES_CCM_16_64_128, AlgorithmID.AES_CCM_64_128_256,
+			AlgorithmID.AES_GCM_128, AlgorithmID.EDDSA, AlgorithmID.ECDH_SS_HKDF_256_AES_KW_256 };
+
+	private static final byte[] MASTER_SECRET = StringUtil.hex2ByteArray("0102030405060708090A0B0C0D0E0F10");
+	private static final byte[] MASTER_SALT = StringUtil.hex2ByteArray("9e7ca92223786340");
+	private static final byte[] CLIENT_ID = Bytes.EMPTY;
+	private static final byte[] SERVER_ID = new byte[] { 0x01 };
+
+	@Test
+	public void testPartialIV() {
+		for (int seq : SEQS) {
+			byte[] partialIV = OSSerializer.processPartialIV(seq);
+			assertThat(OSCoreEncoder.partialIVLength(seq), is(partialIV.length));
+			byte[] buffer = new byte[partialIV.length + 1];
+			assertThat(OSCoreEncoder.writePartialIV(buffer, 1, seq), is(buffer.length));
+			for (int index = 0; index < partialIV.length; ++index) {
+				assertThat(buffer[index + 1], is(partialIV[index]));
+			}
+			buffer[0] = (byte) partialIV.length;
+			assertThat(OSCoreEncoder.readPartialIV(buffer), is(seq));
+		}
+	}
+
+	@Test
+	public void testExternalAAD() {
+		for (AlgorithmID alg : ALGS) {
+			for (int seq : SEQS) {
+				for (byte[] kid : KIDS) {
+					byte[] expected = externalAAD(alg, seq, kid);
+					assertThat(OSCoreEncoder.encodeExternalAAD(alg, seq, kid), is(expected));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testEncStructure() {
+		for (AlgorithmID alg : ALGS) {
+			for (int seq : SEQS) {
+				for (byte[] kid : KIDS) {
+					byte[] externalAAD = externalAAD(alg, seq, kid);
+					byte[] expected = encStructure(externalAAD);
+					assertThat(OSCoreEncoder.encodeEncStructure(externalAAD), is(expected));
+					assertThat(OSCoreEncoder.encodeEncStructure(alg, seq, kid), is(expected));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testEncryptEqualsGenericCose() throws Exception {
+		byte[] plaintext = StringUtil.hex2ByteArray("01b3747631");
+		for (AlgorithmID alg : new AlgorithmID[] { AlgorithmID.AES_CCM_16_64_128, AlgorithmID.AES_CCM_64_128_128 }) {
+			OSCoreCtx client = new OSCoreCtx(MASTER_SECRET, true, alg, CLIENT_ID, SERVER_ID,
+					AlgorithmID.HKDF_HMAC_SHA_256, 32, MASTER_SALT, null);
+			client.setSenderSeq(20);
+			Request request = Request.newGet();
+
+			byte[] cipherText = Encryptor.encryptAndEncode(Encryptor.prepareCOSEStructure(plaintext), client,
+					request, false, client.getAndIncreaseSenderSeq());
+
+			byte[] partialIV = OSSerializer.processPartialIV(20);
+			byte[] nonce = OSSerializer.nonceGeneration(partialIV, CLIENT_ID, client.getCommonIV(),
+					client.getIVLength());
+			Encrypt0Message enc = Encryptor.prepareCOSEStructure(plaintext);
+			enc.setExternal(externalAAD(alg, 20, CLIENT_ID));
+			enc.addAttribute(HeaderKeys.IV, CBORObject.FromObject(nonce), Attribute.DO_NOT_SEND);
+			enc.addAttribute(HeaderKeys.Algorithm, alg.AsCBOR(), Attribute.DO_NOT_SEND);
+			enc.encrypt(client.getSenderKey());
+			assertThat(cipherText, is(enc.getEncryptedContent()));
+
+			OSCoreCtx server = new OSCoreCtx(MASTER_SECRET, false, alg, SERVER_ID, CLIENT_ID,
+					AlgorithmID.HKDF_HMAC_SHA_256, 32, MASTER_SALT, null);
+			request.getOptions().setOscore(Encryptor.encodeOSCoreRequest(client, 20));
+			enc = Decryptor.decompression(cipherText, request);
+			assertThat(Decryptor.decryptAndDecode(enc, request, server, null), is(plaintext));
+		}
+	}
+
+	private static byte[] externalAAD(AlgorithmID alg, int seq, byte[] kid) {
+		CBORObject algorithms = CBORObject.NewArray();
+		algorithms.Add(alg.AsCBOR());
+		CBORObject aad = CBORObject.NewArray();
+		aad.Add(CoAP.VERSION);
+		aad.Add(algorithms);
+		aad.Add(kid);
+		aad.Add(OSSerializer.processPartialIV(seq));
+		aad.Add(CBORObject.FromObject(Bytes.EMPTY));
+		return aad.EncodeToBytes();
+	}
+
+	private static byte[] encStructure(byte[] externalAAD) {
+		CBORObject structure = CBORObject.NewArray();
+		structure.Add("Encrypt0");
+		structure.Add(CBORObject.FromObject(Bytes.EMPTY));
+		structure.Add(CBORObject.FromObject(externalAAD));
+		return structure.EncodeToBytes();
+	}
+}
@@ -21,6 +21,7 @@ import org.eclipse.californium.cli.CliConnectorFactory;
 import org.eclipse.californium.cli.ClientBaseConfig;
 import org.eclipse.californium.core.network.config.NetworkConfig;
 import org.eclipse.californium.core.network.config.NetworkConfig.Keys;
+import org.eclipse.californium.core.network.config.NetworkConfigDefaults;
 import org.eclipse.californium.elements.Connector;
 import org.eclipse.californium.elements.tcp.netty.TcpClientConnector;
 
@@ -37,7 +38,12 @@ public class TcpConnectorFactory implements CliConnectorFactory {
 		int tcpThreads = config.getInt(Keys.TCP_WORKER_THREADS);
 		int tcpConnectTimeout = config.getInt(Keys.TCP_CONNECT_TIMEOUT);
 		int tcpIdleTimeout = config.getInt(Keys.TCP_CONNECTION_IDLE_TIMEOUT);
-		return new TcpClientConnector(tcpThreads, tcpConnectTimeout, tcpIdleTimeout);
+		TcpClientConnector connector = new TcpClientConnector(tcpThreads, tcpConnectTimeout, tcpIdleTimeout);
+		connector.setFlushConsolidation(config.getInt(Keys.TCP_FLUSH_CONSOLIDATION,
+				NetworkConfigDefaults.DEFAULT_TCP_FLUSH_CONSOLIDATION));
+		connector.setNativeTransport(config.getBoolean(Keys.TCP_NATIVE_TRANSPORT,
+				NetworkConfigDefaults.DEFAULT_TCP_NATIVE_TRANSPORT));
+		return connector;
 	}
 
 }
@@ -27,6 +27,7 @@ import org.eclipse.californium.cli.CliConnectorFactory;
 import org.eclipse.californium.cli.ClientBaseConfig;
 import org.eclipse.californium.core.network.config.NetworkConfig;
 import org.eclipse.californium.core.network.config.NetworkConfig.Keys;
+import org.eclipse.californium.core.network.config.NetworkConfigDefaults;
 import org.eclipse.californium.elements.Connector;
 import org.eclipse.californium.elements.tcp.netty.TlsClientConnector;
 import org.eclipse.californium.elements.util.SslContextUtil;
@@ -76,7 +77,12 @@ public class TlsConnectorFactory implements CliConnectorFactory {
 		} catch (GeneralSecurityException e) {
 			e.printStackTrace();
 		}
-		return new TlsClientConnector(clientSslContext, tcpThreads, tcpConnectTimeout, tlsHandshakeTimeout,
-				tcpIdleTimeout);
+		TlsClientConnector connector = new TlsClientConnector(clientSslContext, tcpThreads, tcpConnectTimeout,
+				tlsHandshakeTimeout, tcpIdleTimeout);
+		connector.setFlushConsolidation(config.getInt(Keys.TCP_FLUSH_CONSOLIDATION,
+				NetworkConfigDefaults.DEFAULT_TCP_FLUSH_CONSOLIDATION));
+		connector.setNativeTransport(config.getBoolean(Keys.TCP_NATIVE_TRANSPORT,
+				NetworkConfigDefaults.DEFAULT_TCP_NATIVE_TRANSPORT));
+		return connector;
 	}
 }
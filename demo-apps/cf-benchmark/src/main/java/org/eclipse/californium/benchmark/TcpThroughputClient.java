@@ -23,6 +23,7 @@ import org.eclipse.californium.core.network.CoapEndpoint;
 import org.eclipse.californium.core.network.EndpointManager;
 import org.eclipse.californium.core.network.config.NetworkConfig;
 import org.eclipse.californium.core.network.config.NetworkConfig.Keys;
+import org.eclipse.californium.core.network.config.NetworkConfigDefaults;
 import org.eclipse.californium.elements.exception.ConnectorException;
 import org.eclipse.californium.elements.tcp.netty.TcpClientConnector;
 import org.eclipse.californium.elements.util.Bytes;
@@ -45,6 +46,10 @@ public class TcpThroughputClient {
 		int tcpIdleTimeout = config.getInt(Keys.TCP_CONNECTION_IDLE_TIMEOUT);
 		int tcpPort = config.getInt(Keys.COAP_PORT);
 		TcpClientConnector connector = new TcpClientConnector(tcpThreads, tcpConnectTimeout, tcpIdleTimeout);
+		connector.setFlushConsolidation(config.getInt(Keys.TCP_FLUSH_CONSOLIDATION,
+				NetworkConfigDefaults.DEFAULT_TCP_FLUSH_CONSOLIDATION));
+		connector.setNativeTransport(config.getBoolean(Keys.TCP_NATIVE_TRANSPORT,
+				NetworkConfigDefaults.DEFAULT_TCP_NATIVE_TRANSPORT));
 		CoapEndpoint.Builder builder = new CoapEndpoint.Builder();
 		builder.setConnector(connector);
 		builder.setNetworkConfig(config);
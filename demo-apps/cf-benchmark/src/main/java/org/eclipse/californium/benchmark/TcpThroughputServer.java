@@ -23,9 +23,9 @@ import org.eclipse.californium.core.coap.CoAP;
 import org.eclipse.californium.core.network.CoapEndpoint;
 import org.eclipse.californium.core.network.config.NetworkConfig;
 import org.eclipse.californium.core.network.config.NetworkConfigDefaultHandler;
+import org.eclipse.californium.core.network.config.NetworkConfigDefaults;
 import org.eclipse.californium.core.network.config.NetworkConfig.Keys;
 import org.eclipse.californium.core.server.resources.CoapExchange;
-import org.eclipse.californium.elements.Connector;
 import org.eclipse.californium.elements.tcp.netty.TcpServerConnector;
 
 import java.io.File;
@@ -51,7 +51,12 @@ public class TcpThroughputServer {
 		int tcpIdleTimeout = config.getInt(Keys.TCP_CONNECTION_IDLE_TIMEOUT);
 		int tcpPort = config.getInt(Keys.COAP_PORT);
 
-		Connector serverConnector = new TcpServerConnector(new InetSocketAddress(tcpPort), tcpThreads, tcpIdleTimeout);
+		TcpServerConnector serverConnector = new TcpServerConnector(new InetSocketAddress(tcpPort), tcpThreads,
+				tcpIdleTimeout);
+		serverConnector.setFlushConsolidation(config.getInt(Keys.TCP_FLUSH_CONSOLIDATION,
+				NetworkConfigDefaults.DEFAULT_TCP_FLUSH_CONSOLIDATION));
+		serverConnector.setNativeTransport(config.getBoolean(Keys.TCP_NATIVE_TRANSPORT,
+				NetworkConfigDefaults.DEFAULT_TCP_NATIVE_TRANSPORT));
 		CoapEndpoint.Builder builder = new CoapEndpoint.Builder();
 		builder.setConnector(serverConnector);
 		builder.setNetworkConfig(config);
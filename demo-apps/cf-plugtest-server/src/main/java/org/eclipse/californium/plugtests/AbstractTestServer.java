@@ -41,6 +41,7 @@ import org.eclipse.californium.core.network.CoapEndpoint;
 import org.eclipse.californium.core.network.EndpointContextMatcherFactory.MatcherMode;
 import org.eclipse.californium.core.network.config.NetworkConfig;
 import org.eclipse.californium.core.network.config.NetworkConfig.Keys;
+import org.eclipse.californium.core.network.config.NetworkConfigDefaults;
 import org.eclipse.californium.elements.PrincipalEndpointContextMatcher;
 import org.eclipse.californium.elements.tcp.netty.TcpServerConnector;
 import org.eclipse.californium.elements.tcp.netty.TlsServerConnector;
@@ -332,6 +333,10 @@ public abstract class AbstractTestServer extends CoapServer {
 					int tcpThreads = tcpConfig.getInt(Keys.TCP_WORKER_THREADS);
 					int tcpIdleTimeout = tcpConfig.getInt(Keys.TCP_CONNECTION_IDLE_TIMEOUT);
 					TcpServerConnector connector = new TcpServerConnector(bindToAddress, tcpThreads, tcpIdleTimeout);
+					connector.setFlushConsolidation(tcpConfig.getInt(Keys.TCP_FLUSH_CONSOLIDATION,
+							NetworkConfigDefaults.DEFAULT_TCP_FLUSH_CONSOLIDATION));
+					connector.setNativeTransport(tcpConfig.getBoolean(Keys.TCP_NATIVE_TRANSPORT,
+							NetworkConfigDefaults.DEFAULT_TCP_NATIVE_TRANSPORT));
 					CoapEndpoint.Builder builder = new CoapEndpoint.Builder();
 					builder.setConnector(connector);
 					builder.setNetworkConfig(tcpConfig);
@@ -433,6 +438,10 @@ public abstract class AbstractTestServer extends CoapServer {
 					}
 					TlsServerConnector connector = new TlsServerConnector(serverSslContext, cliConfig.clientAuth,
 							bindToAddress, tcpThreads, tlsHandshakeTimeout, tcpIdleTimeout);
+					connector.setFlushConsolidation(tlsConfig.getInt(Keys.TCP_FLUSH_CONSOLIDATION,
+							NetworkConfigDefaults.DEFAULT_TCP_FLUSH_CONSOLIDATION));
+					connector.setNativeTransport(tlsConfig.getBoolean(Keys.TCP_NATIVE_TRANSPORT,
+							NetworkConfigDefaults.DEFAULT_TCP_NATIVE_TRANSPORT));
 					CoapEndpoint.Builder builder = new CoapEndpoint.Builder();
 					builder.setConnector(connector);
 					builder.setNetworkConfig(tlsConfig);
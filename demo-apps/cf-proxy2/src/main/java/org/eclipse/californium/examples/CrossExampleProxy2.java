@@ -42,9 +42,9 @@ import org.eclipse.californium.core.server.resources.CoapExchange;
 import org.eclipse.californium.elements.util.DaemonThreadFactory;
 import org.eclipse.californium.elements.util.ExecutorsUtil;
 import org.eclipse.californium.proxy2.ClientEndpoints;
+import org.eclipse.californium.proxy2.ClientMultiplexedEndpoints;
 import org.eclipse.californium.proxy2.ClientSingleEndpoint;
 import org.eclipse.californium.proxy2.Coap2CoapTranslator;
-import org.eclipse.californium.proxy2.EndpointPool;
 import org.eclipse.californium.proxy2.http.Coap2HttpTranslator;
 import org.eclipse.californium.proxy2.http.Http2CoapTranslator;
 import org.eclipse.californium.proxy2.http.HttpClientFactory;
@@ -135,7 +135,7 @@ public class CrossExampleProxy2 {
 	private static String start;
 
 	private CoapServer coapProxyServer;
-	private boolean useEndpointsPool = true;
+	private boolean useMultiplexedEndpoints = true;
 	private ClientEndpoints endpoints;
 	private ProxyHttpServer httpServer;
 	private int coapPort;
@@ -152,10 +152,8 @@ public class CrossExampleProxy2 {
 		ScheduledExecutorService secondaryExecutor = ExecutorsUtil.newDefaultSecondaryScheduler("ProxyTimer#");
 		Coap2CoapTranslator translater = new Coap2CoapTranslator();
 		NetworkConfig outgoingConfig = new NetworkConfig(config);
-		if (useEndpointsPool) {
-			outgoingConfig.setInt(NetworkConfig.Keys.NETWORK_STAGE_RECEIVER_THREAD_COUNT, 1);
-			outgoingConfig.setInt(NetworkConfig.Keys.NETWORK_STAGE_SENDER_THREAD_COUNT, 1);
-			endpoints = new EndpointPool(1000, 250, outgoingConfig, mainExecutor, secondaryExecutor);
+		if (useMultiplexedEndpoints) {
+			endpoints = new ClientMultiplexedEndpoints(4, 16, 256, outgoingConfig, mainExecutor, secondaryExecutor);
 		} else {
 			outgoingConfig.setString(Keys.MID_TRACKER, "NULL");
 			CoapEndpoint.Builder builder = new CoapEndpoint.Builder();
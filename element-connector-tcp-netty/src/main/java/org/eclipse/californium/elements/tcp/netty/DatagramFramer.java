@@ -14,6 +14,7 @@
  * Joe Magerramov (Amazon Web Services) - CoAP over TCP support.
  * Achim Kraus (Bosch Software Innovations GmbH) - add correlation context
  * Achim Kraus (Bosch Software Innovations GmbH) - add specific context util
+ * Bosch.IO GmbH - use composite cumulator and read length without copy
  ******************************************************************************/
 package org.eclipse.californium.elements.tcp.netty;
 
@@ -26,13 +27,21 @@ import org.eclipse.californium.elements.EndpointContext;
 import org.eclipse.californium.elements.RawData;
 import org.eclipse.californium.elements.util.ClockUtil;
 
-import java.math.BigInteger;
 import java.net.InetSocketAddress;
 import java.util.List;
 
 /**
  * Converts stream of bytes over TCP connection into distinct datagrams based on
  * CoAP over TCP spec.
+ * 
+ * Incomplete messages are accumulated using the
+ * {@link ByteToMessageDecoder#COMPOSITE_CUMULATOR}. That keeps the received
+ * pooled buffers as components until the message is complete, instead of
+ * copying them into a growing buffer, which is copied again on each expansion.
+ * The framing is not zero-copy: each complete message is copied into a new
+ * array, because {@link RawData} and the CoAP data parser are based on byte
+ * arrays. The length field is read in place, as unsigned value, and message
+ * lengths exceeding {@link Integer#MAX_VALUE} are rejected.
  */
 public class DatagramFramer extends ByteToMessageDecoder {
 
@@ -40,6 +49,7 @@ public class DatagramFramer extends ByteToMessageDecoder {
 
 	public DatagramFramer(TcpContextUtil contextUtil) {
 		this.contextUtil = contextUtil;
+		setCumulator(COMPOSITE_CUMULATOR);
 	}
 
 	@Override
@@ -56,13 +66,18 @@ public class DatagramFramer extends ByteToMessageDecoder {
 				return;
 			}
 
-			int bodyLength = getBodyLength(in, lengthNibble, lengthFieldSize);
+			long bodyLength = getBodyLength(in, lengthNibble, lengthFieldSize);
+			if (bodyLength > Integer.MAX_VALUE - coapHeaderSize) {
+				// the stream can't be framed anymore, discard it
+				in.skipBytes(in.readableBytes());
+				throw new IllegalArgumentException("Message too large: " + bodyLength);
+			}
 			if (in.readableBytes() < coapHeaderSize + bodyLength) {
 				// Whole body not available yet.
 				return;
 			}
 
-			byte[] data = new byte[coapHeaderSize + bodyLength];
+			byte[] data = new byte[coapHeaderSize + (int) bodyLength];
 			in.readBytes(data);
 
 			Channel channel = ctx.channel();
@@ -89,21 +104,18 @@ public class DatagramFramer extends ByteToMessageDecoder {
 		}
 	}
 
-	private int getBodyLength(ByteBuf in, int lengthNibble, int fieldSize) {
-		byte data[] = new byte[fieldSize];
-		in.getBytes(in.readerIndex() + 1, data);
+	private long getBodyLength(ByteBuf in, int lengthNibble, int fieldSize) {
+		int index = in.readerIndex() + 1;
 
 		switch (fieldSize) {
 		case 0:
 			return lengthNibble;
 		case 1:
-			return new BigInteger(1, data).intValue() + 13;
+			return in.getUnsignedByte(index) + 13;
 		case 2:
-			return new BigInteger(1, data).intValue() + 269;
+			return in.getUnsignedShort(index) + 269;
 		case 4:
-			// Possible overflow here, but is anybody really sending 2GB
-			// messages around?
-			return new BigInteger(1, data).intValue() + 65805;
+			return in.getUnsignedInt(index) + 65805;
 		default:
 			throw new IllegalArgumentException("Invalid field size: " + fieldSize);
 		}
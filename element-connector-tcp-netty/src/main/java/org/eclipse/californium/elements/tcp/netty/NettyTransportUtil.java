@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.elements.tcp.netty;
+
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+
+/**
+ * Utility to select the netty transport.
+ * <p>
+ * Uses the native epoll transport, if requested and available. Otherwise the
+ * NIO transport is used. The native transport is an optional dependency. It
+ * requires {@code netty-transport-native-epoll} including the native library
+ * for the platform (e.g. classifier {@code linux-x86_64}) on the classpath.
+ *
+ * @since 3.0
+ */
+public final class NettyTransportUtil {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(NettyTransportUtil.class);
+
+	/**
+	 * Indicates, that the native transport is available.
+	 */
+	private static final boolean NATIVE_AVAILABLE;
+
+	static {
+		boolean available = false;
+		try {
+			available = Native.isAvailable();
+			if (!available) {
+				LOGGER.debug("native transport not available: {}", Native.unavailabilityCause());
+			}
+		} catch (Throwable t) {
+			// optional dependency not on classpath
+			LOGGER.debug("native transport not available: {}", t.toString());
+		}
+		NATIVE_AVAILABLE = available;
+	}
+
+	private NettyTransportUtil() {
+		// prevent instantiation
+	}
+
+	/**
+	 * Check, if the native transport is available.
+	 *
+	 * @return {@code true}, if available, {@code false}, otherwise.
+	 */
+	public static boolean isNativeTransportAvailable() {
+		return NATIVE_AVAILABLE;
+	}
+
+	/**
+	 * Create event loop group.
+	 *
+	 * @param nativeTransport {@code true}, to use the native transport, if
+	 *            available, {@code false}, to use NIO.
+	 * @param numberOfThreads number of threads. {@code 0} to use netty's
+	 *            default.
+	 * @param threadFactory thread factory
+	 * @return created event loop group
+	 */
+	public static EventLoopGroup createEventLoopGroup(boolean nativeTransport, int numberOfThreads,
+			ThreadFactory threadFactory) {
+		if (nativeTransport) {
+			if (NATIVE_AVAILABLE) {
+				return Native.createEventLoopGroup(numberOfThreads, threadFactory);
+			}
+			LOGGER.warn("native transport not available, fallback to NIO!");
+		}
+		return new NioEventLoopGroup(numberOfThreads, threadFactory);
+	}
+
+	/**
+	 * Get server channel class for event loop group.
+	 *
+	 * @param group event loop group created by
+	 *            {@link #createEventLoopGroup(boolean, int, ThreadFactory)}.
+	 * @return server channel class
+	 */
+	public static Class<? extends ServerChannel> getServerChannelClass(EventLoopGroup group) {
+		if (group instanceof NioEventLoopGroup) {
+			return NioServerSocketChannel.class;
+		}
+		return Native.getServerChannelClass();
+	}
+
+	/**
+	 * Get channel class for event loop group.
+	 *
+	 * @param group event loop group created by
+	 *            {@link #createEventLoopGroup(boolean, int, ThreadFactory)}.
+	 * @return channel class
+	 */
+	public static Class<? extends Channel> getChannelClass(EventLoopGroup group) {
+		if (group instanceof NioEventLoopGroup) {
+			return NioSocketChannel.class;
+		}
+		return Native.getChannelClass();
+	}
+
+	/**
+	 * Native transport.
+	 * <p>
+	 * Separate class to load the classes of the optional native transport only
+	 * on demand.
+	 */
+	private static class Native {
+
+		private static boolean isAvailable() {
+			return Epoll.isAvailable();
+		}
+
+		private static Throwable unavailabilityCause() {
+			return Epoll.unavailabilityCause();
+		}
+
+		private static EventLoopGroup createEventLoopGroup(int numberOfThreads, ThreadFactory threadFactory) {
+			return new EpollEventLoopGroup(numberOfThreads, threadFactory);
+		}
+
+		private static Class<? extends ServerChannel> getServerChannelClass() {
+			return EpollServerSocketChannel.class;
+		}
+
+		private static Class<? extends Channel> getChannelClass() {
+			return EpollSocketChannel.class;
+		}
+	}
+}
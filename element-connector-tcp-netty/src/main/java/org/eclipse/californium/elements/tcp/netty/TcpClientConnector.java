@@ -35,18 +35,18 @@
  * Achim Kraus (Bosch Software Innovations GmbH) - add onConnect
  * Achim Kraus (Bosch Software Innovations GmbH) - close channel pool map before 
  *                                                 stop event loop group
+ * Bosch.IO GmbH - add flush consolidation and native transport
  ******************************************************************************/
 package org.eclipse.californium.elements.tcp.netty;
 
 import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.pool.AbstractChannelPoolHandler;
 import io.netty.channel.pool.AbstractChannelPoolMap;
 import io.netty.channel.pool.ChannelPool;
 import io.netty.channel.pool.FixedChannelPool;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.handler.timeout.IdleStateHandler;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.GenericFutureListener;
@@ -103,6 +103,22 @@ public class TcpClientConnector implements Connector {
 	 */
 	private volatile EndpointContextMatcher endpointContextMatcher;
 
+	/**
+	 * Number of flushes, which are consolidated. {@code 0} to disable the
+	 * flush consolidation.
+	 * 
+	 * @see #setFlushConsolidation(int)
+	 * @since 3.0
+	 */
+	private volatile int flushConsolidation;
+	/**
+	 * Use native transport, if available.
+	 * 
+	 * @see #setNativeTransport(boolean)
+	 * @since 3.0
+	 */
+	private volatile boolean nativeTransport;
+
 	protected volatile boolean running;
 
 	private EventLoopGroup workerGroup;
@@ -136,15 +152,16 @@ public class TcpClientConnector implements Connector {
 			throw new IllegalStateException("Connector already started");
 		}
 		running = true;
-		workerGroup = new NioEventLoopGroup(numberOfThreads,
+		workerGroup = NettyTransportUtil.createEventLoopGroup(nativeTransport, numberOfThreads,
 				new DaemonThreadFactory("TCP-Client-" + THREAD_COUNTER.incrementAndGet() + "#", TCP_THREAD_GROUP));
+		final Class<? extends Channel> channelClass = NettyTransportUtil.getChannelClass(workerGroup);
 		poolMap = new AbstractChannelPoolMap<SocketAddress, ChannelPool>() {
 
 			@Override
 			protected ChannelPool newPool(SocketAddress key) {
 				Bootstrap bootstrap = new Bootstrap()
 						.group(workerGroup)
-						.channel(NioSocketChannel.class)
+						.channel(channelClass)
 						.option(ChannelOption.SO_KEEPALIVE, true)
 						.option(ChannelOption.AUTO_READ, true)
 						.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMillis)
@@ -313,6 +330,66 @@ public class TcpClientConnector implements Connector {
 		});
 	}
 
+	/**
+	 * Set number of flushes, which are consolidated.
+	 * 
+	 * Must be set before the connector is started. Values larger than
+	 * {@code 0} add a {@link FlushConsolidationHandler} to the channels, which
+	 * consolidates the flushes of messages written to the same connection
+	 * within one event loop cycle. That reduces the number of system calls,
+	 * if many small messages are sent over the same connection.
+	 * 
+	 * @param explicitFlushAfterFlushes maximum number of flushes, before an
+	 *            explicit flush is executed. {@code 0} to disable the flush
+	 *            consolidation.
+	 * @throws IllegalArgumentException if value is negative
+	 * @since 3.0
+	 */
+	public void setFlushConsolidation(int explicitFlushAfterFlushes) {
+		if (explicitFlushAfterFlushes < 0) {
+			throw new IllegalArgumentException(
+					"flush consolidation " + explicitFlushAfterFlushes + " must not be negative!");
+		}
+		this.flushConsolidation = explicitFlushAfterFlushes;
+	}
+
+	/**
+	 * Get number of flushes, which are consolidated.
+	 * 
+	 * @return maximum number of flushes, before an explicit flush is
+	 *         executed. {@code 0}, if flush consolidation is disabled.
+	 * @since 3.0
+	 */
+	public int getFlushConsolidation() {
+		return flushConsolidation;
+	}
+
+	/**
+	 * Set usage of native transport.
+	 * 
+	 * Must be set before the connector is started. If the native transport is
+	 * not available, NIO is used.
+	 * 
+	 * @param enable {@code true}, to use the native transport, if available,
+	 *            {@code false}, to use NIO.
+	 * @see NettyTransportUtil#isNativeTransportAvailable()
+	 * @since 3.0
+	 */
+	public void setNativeTransport(boolean enable) {
+		this.nativeTransport = enable;
+	}
+
+	/**
+	 * Check, if the native transport is requested.
+	 * 
+	 * @return {@code true}, if the native transport is requested,
+	 *         {@code false}, otherwise.
+	 * @since 3.0
+	 */
+	public boolean isNativeTransport() {
+		return nativeTransport;
+	}
+
 	@Override
 	public void setRawDataReceiver(RawDataChannel messageHandler) {
 		if (rawDataChannel != null) {
@@ -374,12 +451,17 @@ public class TcpClientConnector implements Connector {
 			onNewChannelCreated(key, ch);
 
 			// Handler order:
+			// 0. Consolidate flushes (optional)
 			// 1. Generate Idle events
 			// 2. Close idle channels
 			// 3. Remove pools when they are empty.
 			// 4. Stream-to-message decoder
 			// 5. Hand-off decoded messages to CoAP stack
 			// 6. Close connections on errors
+			int flushes = flushConsolidation;
+			if (flushes > 0) {
+				ch.pipeline().addLast(new FlushConsolidationHandler(flushes, true));
+			}
 			ch.pipeline().addLast(new IdleStateHandler(0, 0, connectionIdleTimeoutSeconds));
 			ch.pipeline().addLast(new CloseOnIdleHandler());
 			ch.pipeline().addLast(new RemoveEmptyPoolHandler(poolMap, key));
@@ -25,15 +25,15 @@
  *                                                 remove scheme
  * Bosch Software Innovations GmbH - migrate to SLF4J
  * Achim Kraus (Bosch Software Innovations GmbH) - move SO_KEEPALIVE to child options.
+ * Bosch.IO GmbH - add flush consolidation and native transport
  ******************************************************************************/
 package org.eclipse.californium.elements.tcp.netty;
 
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.handler.timeout.IdleStateHandler;
 import io.netty.util.concurrent.GenericFutureListener;
 
@@ -91,6 +91,22 @@ public class TcpServerConnector implements Connector {
 	private volatile EndpointContextMatcher endpointContextMatcher;
 	private volatile InetSocketAddress effectiveLocalAddress;
 
+	/**
+	 * Number of flushes, which are consolidated. {@code 0} to disable the
+	 * flush consolidation.
+	 * 
+	 * @see #setFlushConsolidation(int)
+	 * @since 3.0
+	 */
+	private volatile int flushConsolidation;
+	/**
+	 * Use native transport, if available.
+	 * 
+	 * @see #setNativeTransport(boolean)
+	 * @since 3.0
+	 */
+	private volatile boolean nativeTransport;
+
 	protected volatile boolean running;
 
 	private RawDataChannel rawDataChannel;
@@ -124,13 +140,14 @@ public class TcpServerConnector implements Connector {
 		}
 		running = true;
 		int id = THREAD_COUNTER.incrementAndGet();
-		bossGroup = new NioEventLoopGroup(1, new DaemonThreadFactory("TCP-Server-" + id, TCP_THREAD_GROUP));
-		workerGroup = new NioEventLoopGroup(numberOfThreads,
+		bossGroup = NettyTransportUtil.createEventLoopGroup(nativeTransport, 1,
+				new DaemonThreadFactory("TCP-Server-" + id, TCP_THREAD_GROUP));
+		workerGroup = NettyTransportUtil.createEventLoopGroup(nativeTransport, numberOfThreads,
 				new DaemonThreadFactory("TCP-Server-" + id + "#", TCP_THREAD_GROUP));
 
 		ServerBootstrap bootstrap = new ServerBootstrap();
 		// server socket 
-		bootstrap.group(bossGroup, workerGroup).channel(NioServerSocketChannel.class)
+		bootstrap.group(bossGroup, workerGroup).channel(NettyTransportUtil.getServerChannelClass(bossGroup))
 				.childHandler(new ChannelRegistry())
 				.option(ChannelOption.SO_BACKLOG, 100)
 				.option(ChannelOption.AUTO_READ, true)
@@ -222,6 +239,66 @@ public class TcpServerConnector implements Connector {
 		});
 	}
 
+	/**
+	 * Set number of flushes, which are consolidated.
+	 * 
+	 * Must be set before the connector is started. Values larger than
+	 * {@code 0} add a {@link FlushConsolidationHandler} to the channels, which
+	 * consolidates the flushes of messages written to the same connection
+	 * within one event loop cycle. That reduces the number of system calls,
+	 * if many small messages are sent over the same connection.
+	 * 
+	 * @param explicitFlushAfterFlushes maximum number of flushes, before an
+	 *            explicit flush is executed. {@code 0} to disable the flush
+	 *            consolidation.
+	 * @throws IllegalArgumentException if value is negative
+	 * @since 3.0
+	 */
+	public void setFlushConsolidation(int explicitFlushAfterFlushes) {
+		if (explicitFlushAfterFlushes < 0) {
+			throw new IllegalArgumentException(
+					"flush consolidation " + explicitFlushAfterFlushes + " must not be negative!");
+		}
+		this.flushConsolidation = explicitFlushAfterFlushes;
+	}
+
+	/**
+	 * Get number of flushes, which are consolidated.
+	 * 
+	 * @return maximum number of flushes, before an explicit flush is
+	 *         executed. {@code 0}, if flush consolidation is disabled.
+	 * @since 3.0
+	 */
+	public int getFlushConsolidation() {
+		return flushConsolidation;
+	}
+
+	/**
+	 * Set usage of native transport.
+	 * 
+	 * Must be set before the connector is started. If the native transport is
+	 * not available, NIO is used.
+	 * 
+	 * @param enable {@code true}, to use the native transport, if available,
+	 *            {@code false}, to use NIO.
+	 * @see NettyTransportUtil#isNativeTransportAvailable()
+	 * @since 3.0
+	 */
+	public void setNativeTransport(boolean enable) {
+		this.nativeTransport = enable;
+	}
+
+	/**
+	 * Check, if the native transport is requested.
+	 * 
+	 * @return {@code true}, if the native transport is requested,
+	 *         {@code false}, otherwise.
+	 * @since 3.0
+	 */
+	public boolean isNativeTransport() {
+		return nativeTransport;
+	}
+
 	@Override
 	public void setRawDataReceiver(RawDataChannel messageHandler) {
 		if (rawDataChannel != null) {
@@ -271,12 +348,17 @@ public class TcpServerConnector implements Connector {
 
 			// Handler order:
 			// 0. Register/unregister new channel: all messages can only be sent over open connections.
-			// 1. Generate Idle events
-			// 2. Close idle channels.
-			// 3. Stream-to-message decoder
-			// 4. Hand-off decoded messages to CoAP stack
-			// 5. Close connections on errors.
+			// 1. Consolidate flushes (optional)
+			// 2. Generate Idle events
+			// 3. Close idle channels.
+			// 4. Stream-to-message decoder
+			// 5. Hand-off decoded messages to CoAP stack
+			// 6. Close connections on errors.
 			ch.pipeline().addLast(new ChannelTracker());
+			int flushes = flushConsolidation;
+			if (flushes > 0) {
+				ch.pipeline().addLast(new FlushConsolidationHandler(flushes, true));
+			}
 			ch.pipeline().addLast(new IdleStateHandler(0, 0, connectionIdleTimeoutSeconds));
 			ch.pipeline().addLast(new CloseOnIdleHandler());
 			ch.pipeline().addLast(new DatagramFramer(contextUtil));
@@ -0,0 +1,244 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.elements.tcp.netty;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+import org.eclipse.californium.elements.RawData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DecoderException;
+
+/**
+ * Verifies the framing of CoAP over TCP messages by the
+ * {@link DatagramFramer}.
+ */
+public class DatagramFramerTest {
+
+	private static final InetSocketAddress LOCAL = new InetSocketAddress("127.0.0.1", 5683);
+	private static final InetSocketAddress REMOTE = new InetSocketAddress("127.0.0.2", 45683);
+
+	private EmbeddedChannel channel;
+
+	@Before
+	public void setup() {
+		channel = new TestChannel(new DatagramFramer(new TcpContextUtil()));
+	}
+
+	@After
+	public void tearDown() {
+		channel.finishAndReleaseAll();
+	}
+
+	@Test
+	public void testMessageWithoutExtendedLength() {
+		byte[] message = createMessage(12, 2);
+		channel.writeInbound(Unpooled.wrappedBuffer(message));
+		assertMessage(message);
+		assertNoMessage();
+	}
+
+	@Test
+	public void testMessageWithUnsignedOneByteLength() {
+		// 0xc8 read as signed byte would be negative
+		byte[] message = createMessage(13 + 0xc8, 4);
+		assertThat(message[1], is((byte) 0xc8));
+		channel.writeInbound(Unpooled.wrappedBuffer(message));
+		assertMessage(message);
+		assertNoMessage();
+	}
+
+	@Test
+	public void testMessageWithUnsignedTwoBytesLength() {
+		// 0x9c40 read as signed short would be negative
+		byte[] message = createMessage(269 + 0x9c40, 8);
+		assertThat(message[1], is((byte) 0x9c));
+		assertThat(message[2], is((byte) 0x40));
+		channel.writeInbound(Unpooled.wrappedBuffer(message));
+		assertMessage(message);
+		assertNoMessage();
+	}
+
+	@Test
+	public void testMessageWithFourBytesLength() {
+		byte[] message = createMessage(65805 + 10, 0);
+		channel.writeInbound(Unpooled.wrappedBuffer(message));
+		assertMessage(message);
+		assertNoMessage();
+	}
+
+	@Test
+	public void testRejectsUnsignedFourBytesLengthOverflow() {
+		ByteBuf header = Unpooled.buffer();
+		header.writeByte(0xf0);
+		header.writeInt(0xffffffff);
+		header.writeByte(0x45);
+		assertRejected(header);
+	}
+
+	@Test
+	public void testRejectsLengthIncludingHeaderOverflow() {
+		ByteBuf header = Unpooled.buffer();
+		header.writeByte(0xf0);
+		// body length is Integer.MAX_VALUE, fits into an int, but not with
+		// the header
+		header.writeInt(Integer.MAX_VALUE - 65805);
+		header.writeByte(0x45);
+		assertRejected(header);
+	}
+
+	@Test
+	public void testMessageSplitIntoSingleBytes() {
+		byte[] message = createMessage(269 + 300, 4);
+		for (int index = 0; index < message.length - 1; ++index) {
+			channel.writeInbound(Unpooled.wrappedBuffer(message, index, 1));
+			assertNoMessage();
+		}
+		channel.writeInbound(Unpooled.wrappedBuffer(message, message.length - 1, 1));
+		assertMessage(message);
+		assertNoMessage();
+	}
+
+	@Test
+	public void testMessageSplitWithinLengthField() {
+		byte[] message = createMessage(65805 + 1000, 2);
+		// first part ends within the extended length
+		channel.writeInbound(Unpooled.wrappedBuffer(message, 0, 3));
+		assertNoMessage();
+		channel.writeInbound(Unpooled.wrappedBuffer(message, 3, 5000));
+		assertNoMessage();
+		channel.writeInbound(Unpooled.wrappedBuffer(message, 5003, message.length - 5003));
+		assertMessage(message);
+		assertNoMessage();
+	}
+
+	@Test
+	public void testSeveralMessagesSplitAcrossBuffers() {
+		byte[] message1 = createMessage(5, 1);
+		byte[] message2 = createMessage(13 + 100, 8);
+		byte[] message3 = createMessage(269 + 1000, 0);
+		byte[] stream = new byte[message1.length + message2.length + message3.length];
+		System.arraycopy(message1, 0, stream, 0, message1.length);
+		System.arraycopy(message2, 0, stream, message1.length, message2.length);
+		System.arraycopy(message3, 0, stream, message1.length + message2.length, message3.length);
+
+		// message 1 complete, message 2 partial
+		int offset = message1.length + 10;
+		channel.writeInbound(Unpooled.wrappedBuffer(stream, 0, offset));
+		assertMessage(message1);
+		assertNoMessage();
+		// message 2 complete, message 3 partial
+		int length = message2.length - 10 + 100;
+		channel.writeInbound(Unpooled.wrappedBuffer(stream, offset, length));
+		assertMessage(message2);
+		assertNoMessage();
+		// message 3 complete
+		offset += length;
+		channel.writeInbound(Unpooled.wrappedBuffer(stream, offset, stream.length - offset));
+		assertMessage(message3);
+		assertNoMessage();
+	}
+
+	private void assertRejected(ByteBuf header) {
+		try {
+			channel.writeInbound(header);
+			fail("length overflow not rejected!");
+		} catch (DecoderException ex) {
+			assertThat(ex.getCause(), instanceOf(IllegalArgumentException.class));
+		}
+		assertNoMessage();
+	}
+
+	private void assertMessage(byte[] message) {
+		Object inbound = channel.readInbound();
+		assertThat(inbound, is(notNullValue()));
+		assertThat(inbound, instanceOf(RawData.class));
+		RawData raw = (RawData) inbound;
+		assertArrayEquals(message, raw.getBytes());
+		assertThat(raw.getInetSocketAddress(), is(REMOTE));
+		assertThat(raw.getConnectorAddress(), is(LOCAL));
+	}
+
+	private void assertNoMessage() {
+		assertThat(channel.readInbound(), is(nullValue()));
+	}
+
+	/**
+	 * Create CoAP over TCP message.
+	 *
+	 * @param bodyLength length of options and payload
+	 * @param tokenLength length of token
+	 * @return message
+	 */
+	private static byte[] createMessage(int bodyLength, int tokenLength) {
+		ByteBuf buffer = Unpooled.buffer();
+		if (bodyLength < 13) {
+			buffer.writeByte((bodyLength << 4) | tokenLength);
+		} else if (bodyLength < 269) {
+			buffer.writeByte(0xd0 | tokenLength);
+			buffer.writeByte(bodyLength - 13);
+		} else if (bodyLength < 65805) {
+			buffer.writeByte(0xe0 | tokenLength);
+			buffer.writeShort(bodyLength - 269);
+		} else {
+			buffer.writeByte(0xf0 | tokenLength);
+			buffer.writeInt(bodyLength - 65805);
+		}
+		// code GET
+		buffer.writeByte(0x01);
+		for (int index = 0; index < tokenLength + bodyLength; ++index) {
+			buffer.writeByte(index);
+		}
+		byte[] message = new byte[buffer.readableBytes()];
+		buffer.readBytes(message);
+		return message;
+	}
+
+	/**
+	 * Embedded channel with internet socket addresses.
+	 */
+	private static class TestChannel extends EmbeddedChannel {
+
+		private TestChannel(ChannelHandler... handlers) {
+			super(handlers);
+		}
+
+		@Override
+		protected SocketAddress localAddress0() {
+			return LOCAL;
+		}
+
+		@Override
+		protected SocketAddress remoteAddress0() {
+			return REMOTE;
+		}
+	}
+}
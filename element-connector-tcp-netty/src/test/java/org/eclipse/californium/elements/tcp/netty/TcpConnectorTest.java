@@ -48,6 +48,7 @@ import org.junit.runners.Parameterized;
 public class TcpConnectorTest {
 
 	private static final int NUMBER_OF_CONNECTIONS = 10;
+	private static final int NUMBER_OF_MESSAGES = 20;
 
 	@Rule
 	public final Timeout timeout = new Timeout(TEST_TIMEOUT_IN_MS, TimeUnit.MILLISECONDS);
@@ -118,6 +119,51 @@ public class TcpConnectorTest {
 		assertArrayEquals(msg.getBytes(), clientCatcher.getMessage(0).getBytes());
 	}
 
+	@Test
+	public void serverClientConsolidatedFlushes() throws Exception {
+		TcpServerConnector server = new TcpServerConnector(createServerAddress(0), NUMBER_OF_THREADS,
+				IDLE_TIMEOUT_IN_S);
+		TcpClientConnector client = new TcpClientConnector(NUMBER_OF_THREADS, CONNECTION_TIMEOUT_IN_MS,
+				IDLE_TIMEOUT_IN_S);
+		server.setFlushConsolidation(8);
+		client.setFlushConsolidation(8);
+		// falls back to NIO, if not available
+		server.setNativeTransport(true);
+		client.setNativeTransport(true);
+
+		cleanup.add(server);
+		cleanup.add(client);
+
+		Catcher serverCatcher = new Catcher();
+		Catcher clientCatcher = new Catcher();
+		server.setRawDataReceiver(serverCatcher);
+		client.setRawDataReceiver(clientCatcher);
+		server.start();
+		client.start();
+
+		List<RawData> messages = new ArrayList<>();
+		for (int i = 0; i < NUMBER_OF_MESSAGES; i++) {
+			RawData msg = createMessage(server.getAddress(), messageSize, null);
+			messages.add(msg);
+			client.send(msg);
+		}
+		serverCatcher.blockUntilSize(NUMBER_OF_MESSAGES, CATCHER_TIMEOUT_IN_MS * NUMBER_OF_MESSAGES);
+		for (int i = 0; i < NUMBER_OF_MESSAGES; i++) {
+			assertArrayEquals(messages.get(i).getBytes(), serverCatcher.getMessage(i).getBytes());
+		}
+
+		messages.clear();
+		for (int i = 0; i < NUMBER_OF_MESSAGES; i++) {
+			RawData msg = createMessage(serverCatcher.getMessage(0).getInetSocketAddress(), messageSize, null);
+			messages.add(msg);
+			server.send(msg);
+		}
+		clientCatcher.blockUntilSize(NUMBER_OF_MESSAGES, CATCHER_TIMEOUT_IN_MS * NUMBER_OF_MESSAGES);
+		for (int i = 0; i < NUMBER_OF_MESSAGES; i++) {
+			assertArrayEquals(messages.get(i).getBytes(), clientCatcher.getMessage(i).getBytes());
+		}
+	}
+
 	@Test
 	public void singleServerManyClients() throws Exception {
 		TcpServerConnector server = new TcpServerConnector(createServerAddress(0), NUMBER_OF_THREADS,
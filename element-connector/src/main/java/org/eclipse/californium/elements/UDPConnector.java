@@ -33,6 +33,8 @@
  *                                                    on stop()
  *    Achim Kraus (Bosch Software Innovations GmbH) - make connector extendible to
  *                                                    support multicast sockets
+ *    Bosch.IO GmbH                                 - add batched datagram channel
+ *                                                    mode
  ******************************************************************************/
 package org.eclipse.californium.elements;
 
@@ -41,6 +43,11 @@ import java.io.InterruptedIOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
@@ -80,6 +87,15 @@ import org.slf4j.LoggerFactory;
  * 
  * The number of threads can be set through {@link #setReceiverThreadCount(int)}
  * and {@link #setSenderThreadCount(int)} before the connector is started.
+ * 
+ * With {@link #setBatchSize(int)} set to a value larger than {@code 1}, the
+ * connector uses a non-blocking {@link DatagramChannel} instead of the blocking
+ * {@link DatagramSocket}. Each wakeup of a receiver thread then drains up to
+ * that number of datagrams from the channel, and each sender thread takes up
+ * to that number of messages from the outbound queue at once. That reduces the
+ * thread wakeups and the queue lock handoffs per datagram under high load.
+ * Java doesn't offer a {@code recvmmsg}/{@code sendmmsg} equivalent, so it's
+ * still one system call per datagram.
  */
 public class UDPConnector implements Connector {
 
@@ -120,6 +136,15 @@ public class UDPConnector implements Connector {
 
 	private volatile DatagramSocket socket;
 
+	/**
+	 * Non-blocking datagram channel, if batch mode is used. {@code null}
+	 * otherwise.
+	 * 
+	 * @see #setBatchSize(int)
+	 * @since 3.0
+	 */
+	private volatile DatagramChannel channel;
+
 	protected volatile InetSocketAddress effectiveAddr;
 
 	/**
@@ -140,6 +165,15 @@ public class UDPConnector implements Connector {
 
 	private int receiverPacketSize = 2048;
 
+	/**
+	 * Maximum number of datagrams processed per thread wakeup.
+	 * 
+	 * Values larger than {@code 1} enable the batch mode.
+	 * 
+	 * @since 3.0
+	 */
+	private int batchSize = 1;
+
 	/**
 	 * {@code true}, if socket is reused, {@code false}, otherwise.
 	 * 
@@ -215,10 +249,25 @@ public class UDPConnector implements Connector {
 			multicastReceiver.start();
 		}
 
-		DatagramSocket socket = new DatagramSocket(null);
-		socket.setReuseAddress(reuseAddress);
-		socket.bind(localAddr);
-		init(socket);
+		if (batchSize > 1) {
+			DatagramChannel channel = DatagramChannel.open();
+			try {
+				DatagramSocket socket = channel.socket();
+				socket.setReuseAddress(reuseAddress);
+				socket.bind(localAddr);
+				channel.configureBlocking(false);
+			} catch (IOException ex) {
+				channel.close();
+				throw ex;
+			}
+			this.channel = channel;
+			init(channel.socket());
+		} else {
+			DatagramSocket socket = new DatagramSocket(null);
+			socket.setReuseAddress(reuseAddress);
+			socket.bind(localAddr);
+			init(socket);
+		}
 	}
 
 	/**
@@ -245,15 +294,32 @@ public class UDPConnector implements Connector {
 		running = true;
 
 		// start receiver and sender threads
-		LOGGER.info("UDPConnector starts up {} sender threads and {} receiver threads", senderCount, receiverCount);
+		DatagramChannel channel = this.channel;
+		if (channel != null) {
+			LOGGER.info("UDPConnector starts up {} sender threads and {} receiver threads, batch size {}",
+					senderCount, receiverCount, batchSize);
+		} else {
+			LOGGER.info("UDPConnector starts up {} sender threads and {} receiver threads", senderCount,
+					receiverCount);
+		}
 
 		for (int i = 0; i < receiverCount; i++) {
-			receiverThreads.add(new Receiver("UDP-Receiver-" + localAddr + "[" + i + "]"));
+			String name = "UDP-Receiver-" + localAddr + "[" + i + "]";
+			if (channel != null) {
+				receiverThreads.add(new BatchReceiver(name, channel));
+			} else {
+				receiverThreads.add(new Receiver(name));
+			}
 		}
 
 		if (!multicast) {
 			for (int i = 0; i < senderCount; i++) {
-				senderThreads.add(new Sender("UDP-Sender-" + localAddr + "[" + i + "]"));
+				String name = "UDP-Sender-" + localAddr + "[" + i + "]";
+				if (channel != null) {
+					senderThreads.add(new BatchSender(name, channel));
+				} else {
+					senderThreads.add(new Sender(name));
+				}
 			}
 		}
 
@@ -301,6 +367,14 @@ public class UDPConnector implements Connector {
 				socket.close();
 				socket = null;
 			}
+			if (channel != null) {
+				try {
+					channel.close();
+				} catch (IOException e) {
+					LOGGER.debug("UDPConnector on [{}] failed to close channel.", effectiveAddr, e);
+				}
+				channel = null;
+			}
 			// stop all threads
 			for (Thread t : senderThreads) {
 				t.interrupt();
@@ -494,20 +568,41 @@ public class UDPConnector implements Connector {
 
 		protected void work() throws InterruptedException {
 			RawData raw = outgoing.take(); // Blocking
-			/*
-			 * check, if message should be sent with the "none endpoint context"
-			 * of UDP connector
-			 */
+			send(raw);
+		}
+
+		/**
+		 * Send message.
+		 * 
+		 * Checks, if the message should be sent with the "none endpoint
+		 * context" of UDP connector, and transmits it, if so.
+		 * 
+		 * @param raw message to send
+		 * @since 3.0
+		 */
+		protected void send(RawData raw) {
 			EndpointContext destination = raw.getEndpointContext();
 			InetSocketAddress destinationAddress = destination.getPeerAddress();
 			EndpointContext connectionContext = new UdpEndpointContext(destinationAddress);
 			EndpointContextMatcher endpointMatcher = UDPConnector.this.endpointContextMatcher;
 			if (endpointMatcher != null && !endpointMatcher.isToBeSent(destination, connectionContext)) {
-				LOGGER.warn("UDPConnector ({}) drops {} bytes to {}", effectiveAddr, datagram.getLength(),
+				LOGGER.warn("UDPConnector ({}) drops {} bytes to {}", effectiveAddr, raw.getSize(),
 						StringUtil.toLog(destinationAddress));
 				raw.onError(new EndpointMismatchException("UDP sending"));
 				return;
 			}
+			transmit(raw, destinationAddress, connectionContext);
+		}
+
+		/**
+		 * Transmit message.
+		 * 
+		 * @param raw message to transmit
+		 * @param destinationAddress destination address
+		 * @param connectionContext connection context of the message
+		 * @since 3.0
+		 */
+		protected void transmit(RawData raw, InetSocketAddress destinationAddress, EndpointContext connectionContext) {
 			datagram.setData(raw.getBytes());
 			datagram.setSocketAddress(destinationAddress);
 
@@ -528,6 +623,148 @@ public class UDPConnector implements Connector {
 		}
 	}
 
+	/**
+	 * Receiver for batch mode.
+	 * 
+	 * Waits on its own {@link Selector} for the shared non-blocking channel to
+	 * become readable and then drains up to {@link #batchSize} datagrams.
+	 * 
+	 * @since 3.0
+	 */
+	private class BatchReceiver extends NetworkStageThread {
+
+		private final DatagramChannel channel;
+		private final Selector selector;
+		private final ByteBuffer buffer;
+		private final DatagramPacket datagram;
+
+		private BatchReceiver(String name, DatagramChannel channel) throws IOException {
+			super(name);
+			this.channel = channel;
+			this.selector = Selector.open();
+			// we add one byte to be able to detect potential truncation.
+			this.buffer = ByteBuffer.allocate(receiverPacketSize + 1);
+			this.datagram = new DatagramPacket(buffer.array(), buffer.capacity());
+			try {
+				channel.register(selector, SelectionKey.OP_READ);
+			} catch (IOException ex) {
+				selector.close();
+				throw ex;
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				super.run();
+			} finally {
+				try {
+					selector.close();
+				} catch (IOException e) {
+					LOGGER.trace("Network stage thread [{}] failed to close selector.", getName(), e);
+				}
+			}
+		}
+
+		protected void work() throws IOException {
+			selector.select();
+			selector.selectedKeys().clear();
+			for (int index = 0; index < batchSize && running; ++index) {
+				buffer.clear();
+				SocketAddress source = channel.receive(buffer);
+				if (source == null) {
+					// drained
+					break;
+				}
+				datagram.setData(buffer.array(), 0, buffer.position());
+				datagram.setSocketAddress(source);
+				processDatagram(datagram);
+			}
+		}
+	}
+
+	/**
+	 * Sender for batch mode.
+	 * 
+	 * Takes up to {@link #batchSize} messages from the outbound queue at once
+	 * and sends them using the shared non-blocking channel. Waits on its own
+	 * {@link Selector}, if the channel's send buffer is exhausted.
+	 * 
+	 * @since 3.0
+	 */
+	private class BatchSender extends Sender {
+
+		private final DatagramChannel channel;
+		private final Selector selector;
+		private final List<RawData> batch;
+
+		private BatchSender(String name, DatagramChannel channel) throws IOException {
+			super(name);
+			this.channel = channel;
+			this.selector = Selector.open();
+			this.batch = new ArrayList<>(batchSize);
+			try {
+				channel.register(selector, SelectionKey.OP_WRITE);
+			} catch (IOException ex) {
+				selector.close();
+				throw ex;
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				super.run();
+			} finally {
+				try {
+					selector.close();
+				} catch (IOException e) {
+					LOGGER.trace("Network stage thread [{}] failed to close selector.", getName(), e);
+				}
+				// the thread's batch will not be sent anymore
+				for (RawData raw : batch) {
+					notifyMsgAsInterrupted(raw);
+				}
+				batch.clear();
+			}
+		}
+
+		@Override
+		protected void work() throws InterruptedException {
+			batch.add(outgoing.take()); // Blocking
+			outgoing.drainTo(batch, batchSize - 1);
+			while (!batch.isEmpty()) {
+				// remove first, a failing send must not resend the message
+				send(batch.remove(0));
+			}
+		}
+
+		@Override
+		protected void transmit(RawData raw, InetSocketAddress destinationAddress, EndpointContext connectionContext) {
+			if (!channel.isOpen()) {
+				raw.onError(new IOException("socket already closed!"));
+				return;
+			}
+			ByteBuffer buffer = ByteBuffer.wrap(raw.getBytes());
+			try {
+				raw.onContextEstablished(connectionContext);
+				while (channel.send(buffer, destinationAddress) == 0) {
+					// send buffer exhausted, wait for channel to become writable
+					selector.select();
+					selector.selectedKeys().clear();
+					if (Thread.interrupted()) {
+						throw new InterruptedIOException();
+					}
+				}
+				raw.onSent();
+				LOGGER.debug("UDPConnector ({}) sent {} bytes to {}", this, raw.getSize(),
+						StringUtil.toLog(destinationAddress));
+			} catch (IOException ex) {
+				raw.onError(ex);
+			}
+		}
+	}
+
 	/**
 	 * Process received datagram.
 	 * 
@@ -637,6 +874,35 @@ public class UDPConnector implements Connector {
 		return receiverPacketSize;
 	}
 
+	/**
+	 * Set the batch size.
+	 * 
+	 * Must be set before the connector is started. Values larger than
+	 * {@code 1} enable the batch mode using a non-blocking
+	 * {@link DatagramChannel}. Not supported by {@link UdpMulticastConnector}.
+	 * 
+	 * @param size maximum number of datagrams processed per thread wakeup
+	 * @throws IllegalArgumentException if size is less than {@code 1}
+	 * @since 3.0
+	 */
+	public void setBatchSize(int size) {
+		if (size < 1) {
+			throw new IllegalArgumentException("batch size " + size + " must be at least 1!");
+		}
+		this.batchSize = size;
+	}
+
+	/**
+	 * Get the batch size.
+	 * 
+	 * @return maximum number of datagrams processed per thread wakeup.
+	 *         {@code 1}, if batch mode is not used.
+	 * @since 3.0
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
 	@Override
 	public String getProtocol() {
 		return "UDP";
@@ -226,6 +226,24 @@ public class UdpMulticastConnector extends UDPConnector {
 		return multicast;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The batch mode is not supported by multicast connectors, these always
+	 * use a {@link MulticastSocket}. Values larger than {@code 1} are ignored
+	 * with a warning.
+	 * 
+	 * @since 3.0
+	 */
+	@Override
+	public void setBatchSize(int size) {
+		if (size > 1) {
+			LOGGER.warn("batch size {} not supported by multicast connector, ignored!", size);
+			size = 1;
+		}
+		super.setBatchSize(size);
+	}
+
 	@Override
 	public synchronized void start() throws IOException {
 		if (this.running)
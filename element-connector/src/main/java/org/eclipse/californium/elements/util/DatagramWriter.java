@@ -20,6 +20,7 @@ package org.eclipse.californium.elements.util;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.net.DatagramPacket;
 import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -395,6 +396,23 @@ public final class DatagramWriter {
 		return byteArray;
 	}
 
+	/**
+	 * Set the written bytes as data of the provided datagram packet.
+	 * 
+	 * The packet refers to the internal buffer of this writer, which is
+	 * reused for the next writes. Therefore the packet must be sent before
+	 * anything else is written. Used to send datagrams without allocating a
+	 * new byte array for each of them.
+	 * 
+	 * @param packet datagram packet to apply the written bytes
+	 * @since 3.0
+	 */
+	public void writeTo(DatagramPacket packet) {
+		writeCurrentByte();
+		packet.setData(buffer, 0, count);
+		count = 0;
+	}
+
 	/**
 	 * Write content of provided writer.
 	 * 
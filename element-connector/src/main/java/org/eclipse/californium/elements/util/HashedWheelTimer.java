@@ -0,0 +1,623 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.elements.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Scheduled executor service based on a hashed timing wheel.
+ * <p>
+ * Scheduling and cancelling a timer are {@code O(1)} operations, independent
+ * of the number of pending timers. That fits the CoAP stack very well, where
+ * nearly every exchange schedules a retransmission or timeout timer, which is
+ * mostly cancelled before it expires. The price is a reduced precision, timers
+ * expire with the resolution of the tick duration. Therefore this executor is
+ * intended to be used for timeouts, not for exact timing.
+ * <p>
+ * A single timer thread advances the wheel. Expired timers are not executed by
+ * that thread, they are passed to the provided executor. Also
+ * {@link #execute(Runnable)} is delegated to that executor. This enables to
+ * plug-in a timing wheel as main or secondary executor of an endpoint,
+ * replacing the timer part of a {@link java.util.concurrent.ScheduledThreadPoolExecutor}.
+ *
+ * <pre>
+ * ExecutorService pool = ExecutorsUtil.newFixedThreadPool(threads, factory);
+ * HashedWheelTimer main = new HashedWheelTimer(pool, new DaemonThreadFactory("Timer#"), 10,
+ * 		TimeUnit.MILLISECONDS, 512);
+ * endpoint.setExecutors(main, secondary);
+ * </pre>
+ *
+ * The provided executor is not managed by this timer and must be shutdown
+ * externally.
+ * <p>
+ * {@link #shutdown()} cancels all pending timers, including periodic ones.
+ * Therefore all returned futures complete, either by expiring before the
+ * shutdown or as cancelled. {@link #shutdownNow()} returns the pending timers
+ * instead, without cancelling them.
+ *
+ * @since 3.0
+ */
+public class HashedWheelTimer extends AbstractExecutorService implements ScheduledExecutorService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(HashedWheelTimer.class);
+
+	/**
+	 * Maximum number of new timers transfered into the wheel on each tick.
+	 * Limits the processing time of a tick, if timers are scheduled faster
+	 * than the timer thread is able to transfer them.
+	 */
+	private static final int MAX_TRANSFERS_PER_TICK = 100000;
+
+	private static final int STATE_RUNNING = 0;
+	private static final int STATE_SHUTDOWN = 1;
+	private static final int STATE_STOP = 2;
+	private static final int STATE_TERMINATED = 3;
+
+	/**
+	 * Executor for expired timers and {@link #execute(Runnable)}.
+	 */
+	private final Executor executor;
+	/**
+	 * Tick duration in nanoseconds.
+	 */
+	private final long tickDuration;
+	/**
+	 * Wheel of buckets.
+	 */
+	private final Bucket[] wheel;
+	/**
+	 * Mask for wheel index.
+	 */
+	private final int mask;
+	/**
+	 * Start time in nanoseconds. All deadlines are relative to this time.
+	 */
+	private final long startTime;
+	/**
+	 * New timers, not yet transfered into the wheel.
+	 */
+	private final Queue<Timer<?>> newTimers = new ConcurrentLinkedQueue<Timer<?>>();
+	/**
+	 * Cancelled timers, not yet removed from the wheel.
+	 */
+	private final Queue<Timer<?>> cancelledTimers = new ConcurrentLinkedQueue<Timer<?>>();
+	/**
+	 * Number of pending timers.
+	 */
+	private final AtomicInteger pendingTimers = new AtomicInteger();
+	/**
+	 * State of this timer.
+	 */
+	private final AtomicInteger state = new AtomicInteger(STATE_RUNNING);
+	/**
+	 * Timer thread.
+	 */
+	private final Thread worker;
+	/**
+	 * Current tick. Only accessed by the timer thread.
+	 */
+	private long tick;
+	/**
+	 * Pending timers on termination after {@link #shutdownNow()}. Set by the
+	 * timer thread before it terminates.
+	 */
+	private volatile List<Runnable> remainingTimers;
+
+	/**
+	 * Create a hashed timing wheel.
+	 *
+	 * @param executor executor to execute expired timers
+	 * @param threadFactory thread factory to create the timer thread
+	 * @param tickDuration duration of a tick
+	 * @param unit time unit of tick duration
+	 * @param ticksPerWheel number of ticks per wheel. Rounded up to the next
+	 *            power of 2.
+	 * @throws NullPointerException if executor, thread factory or unit is
+	 *             {@code null}
+	 * @throws IllegalArgumentException if tick duration is less than 1
+	 *             millisecond, or ticks per wheel is less than 1 or larger
+	 *             than 2^30.
+	 */
+	public HashedWheelTimer(Executor executor, ThreadFactory threadFactory, long tickDuration, TimeUnit unit,
+			int ticksPerWheel) {
+		if (executor == null) {
+			throw new NullPointerException("executor must not be null!");
+		}
+		if (threadFactory == null) {
+			throw new NullPointerException("thread factory must not be null!");
+		}
+		if (unit == null) {
+			throw new NullPointerException("unit must not be null!");
+		}
+		if (unit.toMillis(tickDuration) < 1) {
+			throw new IllegalArgumentException("tick duration " + tickDuration + " " + unit + " must be at least 1ms!");
+		}
+		if (ticksPerWheel < 1 || ticksPerWheel > (1 << 30)) {
+			throw new IllegalArgumentException("ticks per wheel " + ticksPerWheel + " must be in range [1...2^30]!");
+		}
+		int size = 1;
+		while (size < ticksPerWheel) {
+			size <<= 1;
+		}
+		this.executor = executor;
+		this.tickDuration = unit.toNanos(tickDuration);
+		this.wheel = new Bucket[size];
+		for (int index = 0; index < size; ++index) {
+			this.wheel[index] = new Bucket();
+		}
+		this.mask = size - 1;
+		this.startTime = System.nanoTime();
+		this.worker = threadFactory.newThread(new Worker());
+		this.worker.start();
+	}
+
+	/**
+	 * Get number of pending timers.
+	 *
+	 * Includes cancelled timers, which are not yet removed from the wheel.
+	 *
+	 * @return number of pending timers
+	 */
+	public int getPendingTimers() {
+		return pendingTimers.get();
+	}
+
+	/**
+	 * Get tick duration.
+	 *
+	 * @param unit time unit of result
+	 * @return tick duration
+	 */
+	public long getTickDuration(TimeUnit unit) {
+		return unit.convert(tickDuration, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Get number of ticks per wheel.
+	 *
+	 * @return number of ticks per wheel
+	 */
+	public int getTicksPerWheel() {
+		return wheel.length;
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		if (state.get() != STATE_RUNNING) {
+			throw new RejectedExecutionException("timer is shutdown!");
+		}
+		executor.execute(command);
+	}
+
+	@Override
+	public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+		if (command == null || unit == null) {
+			throw new NullPointerException();
+		}
+		return add(new Timer<Void>(Executors.<Void> callable(command, null), deadline(delay, unit), 0));
+	}
+
+	@Override
+	public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+		if (callable == null || unit == null) {
+			throw new NullPointerException();
+		}
+		return add(new Timer<V>(callable, deadline(delay, unit), 0));
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+		if (command == null || unit == null) {
+			throw new NullPointerException();
+		}
+		if (period <= 0) {
+			throw new IllegalArgumentException("period must be positive!");
+		}
+		return add(new Timer<Void>(Executors.<Void> callable(command, null), deadline(initialDelay, unit),
+				unit.toNanos(period)));
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay,
+			TimeUnit unit) {
+		if (command == null || unit == null) {
+			throw new NullPointerException();
+		}
+		if (delay <= 0) {
+			throw new IllegalArgumentException("delay must be positive!");
+		}
+		return add(new Timer<Void>(Executors.<Void> callable(command, null), deadline(initialDelay, unit),
+				-unit.toNanos(delay)));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Cancels all pending timers, including the periodic ones.
+	 */
+	@Override
+	public void shutdown() {
+		if (state.compareAndSet(STATE_RUNNING, STATE_SHUTDOWN)) {
+			worker.interrupt();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The returned pending timers are not cancelled. If {@link #shutdown()}
+	 * was called before, the pending timers are already cancelled and the
+	 * returned list is empty.
+	 */
+	@Override
+	public List<Runnable> shutdownNow() {
+		if (state.compareAndSet(STATE_RUNNING, STATE_STOP) || state.compareAndSet(STATE_SHUTDOWN, STATE_STOP)) {
+			worker.interrupt();
+		}
+		try {
+			worker.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		List<Runnable> pending = remainingTimers;
+		remainingTimers = null;
+		return pending == null ? new ArrayList<Runnable>() : pending;
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return state.get() != STATE_RUNNING;
+	}
+
+	@Override
+	public boolean isTerminated() {
+		return state.get() == STATE_TERMINATED;
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		unit.timedJoin(worker, timeout);
+		return isTerminated();
+	}
+
+	/**
+	 * Calculate deadline relative to {@link #startTime}.
+	 *
+	 * @param delay delay
+	 * @param unit time unit of delay
+	 * @return deadline in nanoseconds
+	 */
+	private long deadline(long delay, TimeUnit unit) {
+		return System.nanoTime() - startTime + unit.toNanos(Math.max(0, delay));
+	}
+
+	/**
+	 * Add timer to new timers.
+	 *
+	 * @param timer timer to add
+	 * @return added timer
+	 * @throws RejectedExecutionException if timer is shutdown
+	 */
+	private <V> Timer<V> add(Timer<V> timer) {
+		if (state.get() != STATE_RUNNING || !enqueue(timer)) {
+			throw new RejectedExecutionException("timer is shutdown!");
+		}
+		return timer;
+	}
+
+	/**
+	 * Enqueue timer to new timers.
+	 * <p>
+	 * If the timer is shutdown concurrently, and the timer thread has already
+	 * drained the new timers, the timer is removed again.
+	 *
+	 * @param timer timer to enqueue
+	 * @return {@code true}, if enqueued, {@code false}, if the timer is
+	 *         shutdown.
+	 */
+	private boolean enqueue(Timer<?> timer) {
+		pendingTimers.incrementAndGet();
+		newTimers.add(timer);
+		if (state.get() != STATE_RUNNING && newTimers.remove(timer)) {
+			pendingTimers.decrementAndGet();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Timer thread loop.
+	 */
+	private class Worker implements Runnable {
+
+		@Override
+		public void run() {
+			try {
+				while (state.get() == STATE_RUNNING) {
+					if (waitForNextTick() < 0) {
+						break;
+					}
+					removeCancelledTimers();
+					transferNewTimers();
+					wheel[(int) (tick & mask)].expire();
+					++tick;
+				}
+			} catch (Throwable t) {
+				LOGGER.error("timer failed!", t);
+			} finally {
+				drainTimers();
+				state.set(STATE_TERMINATED);
+			}
+		}
+
+		/**
+		 * Drain all pending timers.
+		 * <p>
+		 * After {@link #shutdownNow()} the pending timers are kept in
+		 * {@link HashedWheelTimer#remainingTimers}, otherwise they are
+		 * cancelled to complete their futures.
+		 */
+		private void drainTimers() {
+			List<Runnable> pending = new ArrayList<Runnable>();
+			for (Bucket bucket : wheel) {
+				bucket.drain(pending);
+			}
+			Timer<?> timer;
+			while ((timer = newTimers.poll()) != null) {
+				if (!timer.isCancelled()) {
+					pending.add(timer);
+				}
+			}
+			cancelledTimers.clear();
+			pendingTimers.set(0);
+			if (state.get() == STATE_STOP) {
+				remainingTimers = pending;
+			} else {
+				for (Runnable pendingTimer : pending) {
+					((Timer<?>) pendingTimer).cancel(false);
+				}
+				cancelledTimers.clear();
+			}
+		}
+
+		/**
+		 * Wait for the next tick.
+		 *
+		 * @return deadline of the tick relative to {@link #startTime}, or
+		 *         {@code -1}, if the timer is shutdown.
+		 */
+		private long waitForNextTick() {
+			long deadline = tickDuration * (tick + 1);
+			while (true) {
+				long current = System.nanoTime() - startTime;
+				long sleepMillis = (deadline - current + 999999) / 1000000;
+				if (sleepMillis <= 0) {
+					return current;
+				}
+				try {
+					Thread.sleep(sleepMillis);
+				} catch (InterruptedException e) {
+					if (state.get() != STATE_RUNNING) {
+						return -1;
+					}
+				}
+			}
+		}
+
+		private void removeCancelledTimers() {
+			Timer<?> timer;
+			while ((timer = cancelledTimers.poll()) != null) {
+				if (timer.bucket != null) {
+					timer.bucket.remove(timer);
+					pendingTimers.decrementAndGet();
+				}
+			}
+		}
+
+		private void transferNewTimers() {
+			for (int count = 0; count < MAX_TRANSFERS_PER_TICK; ++count) {
+				Timer<?> timer = newTimers.poll();
+				if (timer == null) {
+					break;
+				}
+				if (timer.isCancelled()) {
+					pendingTimers.decrementAndGet();
+					continue;
+				}
+				long ticks = timer.deadline / tickDuration;
+				timer.remainingRounds = (ticks - tick) / wheel.length;
+				// already expired timers are processed with the current tick
+				ticks = Math.max(ticks, tick);
+				wheel[(int) (ticks & mask)].add(timer);
+			}
+		}
+	}
+
+	/**
+	 * Bucket of the wheel. Double linked list of timers, only accessed by the
+	 * timer thread.
+	 */
+	private class Bucket {
+
+		private Timer<?> head;
+		private Timer<?> tail;
+
+		private void add(Timer<?> timer) {
+			timer.bucket = this;
+			if (head == null) {
+				head = tail = timer;
+			} else {
+				tail.next = timer;
+				timer.prev = tail;
+				tail = timer;
+			}
+		}
+
+		private Timer<?> remove(Timer<?> timer) {
+			Timer<?> next = timer.next;
+			if (timer.prev != null) {
+				timer.prev.next = next;
+			}
+			if (next != null) {
+				next.prev = timer.prev;
+			}
+			if (timer == head) {
+				head = next;
+			}
+			if (timer == tail) {
+				tail = timer.prev;
+			}
+			timer.prev = null;
+			timer.next = null;
+			timer.bucket = null;
+			return next;
+		}
+
+		private void expire() {
+			Timer<?> timer = head;
+			while (timer != null) {
+				if (timer.isCancelled()) {
+					// removed by removeCancelledTimers
+					timer = timer.next;
+				} else if (timer.remainingRounds <= 0) {
+					Timer<?> next = remove(timer);
+					pendingTimers.decrementAndGet();
+					timer.expire();
+					timer = next;
+				} else {
+					--timer.remainingRounds;
+					timer = timer.next;
+				}
+			}
+		}
+
+		private void drain(List<Runnable> pending) {
+			Timer<?> timer = head;
+			while (timer != null) {
+				Timer<?> next = remove(timer);
+				if (!timer.isCancelled()) {
+					pending.add(timer);
+				}
+				timer = next;
+			}
+		}
+	}
+
+	/**
+	 * Scheduled timer.
+	 *
+	 * @param <V> type of result
+	 */
+	private class Timer<V> extends FutureTask<V> implements ScheduledFuture<V> {
+
+		/**
+		 * Period in nanoseconds. {@code 0} for one-shot timers, positive
+		 * values for fixed rate timers, negative values for fixed delay
+		 * timers.
+		 */
+		private final long period;
+		/**
+		 * Deadline relative to {@link HashedWheelTimer#startTime}.
+		 */
+		private volatile long deadline;
+		/**
+		 * Remaining rounds of the wheel. Only accessed by the timer thread.
+		 */
+		private long remainingRounds;
+		/**
+		 * Bucket of wheel. Only accessed by the timer thread.
+		 */
+		private Bucket bucket;
+		private Timer<?> next;
+		private Timer<?> prev;
+
+		private Timer(Callable<V> callable, long deadline, long period) {
+			super(callable);
+			this.deadline = deadline;
+			this.period = period;
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(deadline - (System.nanoTime() - startTime), TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed other) {
+			if (other == this) {
+				return 0;
+			}
+			long diff = getDelay(TimeUnit.NANOSECONDS) - other.getDelay(TimeUnit.NANOSECONDS);
+			return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			boolean cancelled = super.cancel(mayInterruptIfRunning);
+			if (cancelled) {
+				cancelledTimers.add(this);
+			}
+			return cancelled;
+		}
+
+		@Override
+		public void run() {
+			if (period == 0) {
+				super.run();
+			} else if (runAndReset()) {
+				if (period > 0) {
+					deadline += period;
+				} else {
+					deadline = System.nanoTime() - startTime - period;
+				}
+				if (state.get() != STATE_RUNNING || !enqueue(this)) {
+					// complete the future
+					super.cancel(false);
+				}
+			}
+		}
+
+		/**
+		 * Pass expired timer to executor.
+		 */
+		private void expire() {
+			try {
+				executor.execute(this);
+			} catch (RejectedExecutionException ex) {
+				LOGGER.debug("executor rejected expired timer!", ex);
+				super.cancel(false);
+			}
+		}
+	}
+}
@@ -433,6 +433,24 @@ public class LeastRecentlyUsedCache<K, V> {
 		return eldest.getValue();
 	}
 
+	/**
+	 * Gets the timestamped value without read access.
+	 * 
+	 * Neither evicts nor updates the entry. Intended to be used by
+	 * {@link SegmentedLeastRecentlyUsedCache} for lookups without locking.
+	 * 
+	 * @param key the key to look up in the cache
+	 * @return the timestamped value, or {@code null}, if not available.
+	 * @since 3.0
+	 */
+	final Timestamped<V> peek(K key) {
+		CacheEntry<K, V> entry = cache.get(key);
+		if (entry == null) {
+			return null;
+		}
+		return entry.getEntry();
+	}
+
 	private void add(K key, V value) {
 		CacheEntry<K, V> entry = new CacheEntry<>(key, value);
 		cache.put(key, entry);
@@ -961,7 +979,11 @@ public class LeastRecentlyUsedCache<K, V> {
 
 		private final K key;
 		private final V value;
-		private long lastUpdate;
+		/**
+		 * Last update. Volatile to support {@link LeastRecentlyUsedCache#peek}
+		 * without locking.
+		 */
+		private volatile long lastUpdate;
 		private CacheEntry<K, V> after;
 		private CacheEntry<K, V> before;
 
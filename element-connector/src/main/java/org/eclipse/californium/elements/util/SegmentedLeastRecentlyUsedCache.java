@@ -0,0 +1,765 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.elements.util;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.elements.util.LeastRecentlyUsedCache.EvictionListener;
+import org.eclipse.californium.elements.util.LeastRecentlyUsedCache.Predicate;
+import org.eclipse.californium.elements.util.LeastRecentlyUsedCache.Timestamped;
+
+/**
+ * A thread safe in-memory cache with a maximum capacity and support for
+ * evicting stale entries based on an approximated LRU policy.
+ * <p>
+ * Offers the same API as the {@link LeastRecentlyUsedCache}, but the entries
+ * are distributed by the hash of their keys over several segments. Each
+ * segment is a {@link LeastRecentlyUsedCache} with its own lock. Therefore
+ * modifying operations only contend, if the keys are in the same segment.
+ * </p>
+ * <p>
+ * Read access ({@link #get(Object)} and {@link #getTimestamped(Object)})
+ * doesn't lock, if the entry is neither evicted nor updated. Updating the
+ * last-access time on read access ({@link #isUpdatingOnReadAccess()}) is
+ * only executed, if the last update is older than the
+ * {@link #getAccessResolutionNanos()}. Frequently read entries are therefore
+ * only relinked once in that resolution, instead of on each read access.
+ * Evicting on read access ({@link #isEvictingOnReadAccess()}) is always
+ * executed, if the entry is expired.
+ * </p>
+ * <p>
+ * The capacity is split evenly over the segments and stale entries are
+ * evicted per segment. For a small number of segments compared to the
+ * capacity and well distributed keys, that approximates the LRU policy of the
+ * {@link LeastRecentlyUsedCache}.
+ * </p>
+ *
+ * @param <K> The type of the keys used in the cache.
+ * @param <V> The type of the values used in the cache.
+ * @since 3.0
+ */
+public class SegmentedLeastRecentlyUsedCache<K, V> {
+
+	/**
+	 * Maximum resolution of the last-access time for updates on read access.
+	 */
+	private static final long MAX_ACCESS_RESOLUTION_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	/**
+	 * Segments of the cache.
+	 *
+	 * The instances of the {@link LeastRecentlyUsedCache} are also used as
+	 * lock for that segment.
+	 */
+	private final LeastRecentlyUsedCache<K, V>[] segments;
+
+	private Collection<V> values;
+
+	private volatile int capacity;
+	/**
+	 * Threshold for expiration in nanoseconds.
+	 */
+	private volatile long expirationThresholdNanos;
+	/**
+	 * Resolution of last-access time for updates on read access in
+	 * nanoseconds.
+	 */
+	private volatile long accessResolutionNanos;
+	/**
+	 * Enables eviction on read access. Default is {@code true}.
+	 */
+	private volatile boolean evictOnReadAccess = true;
+	/**
+	 * Enables update last-access time on read access. Default is
+	 * {@code true}.
+	 */
+	private volatile boolean updateOnReadAccess = true;
+
+	/**
+	 * Creates a cache based on given configuration parameters.
+	 *
+	 * @param segments number of segments
+	 * @param capacity the maximum number of entries the cache can manage
+	 * @param threshold the period of time of inactivity (in seconds) after
+	 *            which an entry is considered stale and can be evicted from the
+	 *            cache if a new entry is to be added to the cache
+	 * @throws IllegalArgumentException if segments is less than {@code 1}, or
+	 *             the capacity is less than segments.
+	 */
+	public SegmentedLeastRecentlyUsedCache(int segments, int capacity, long threshold) {
+		this(segments, capacity, threshold, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Creates a cache based on given configuration parameters.
+	 *
+	 * @param segments number of segments
+	 * @param capacity the maximum number of entries the cache can manage
+	 * @param threshold the period of time of inactivity after which an entry
+	 *            is considered stale and can be evicted from the cache if a new
+	 *            entry is to be added to the cache
+	 * @param unit TimeUnit for threshold
+	 * @throws IllegalArgumentException if segments is less than {@code 1}, or
+	 *             the capacity is less than segments.
+	 */
+	@SuppressWarnings("unchecked")
+	public SegmentedLeastRecentlyUsedCache(int segments, int capacity, long threshold, TimeUnit unit) {
+		if (segments < 1) {
+			throw new IllegalArgumentException("segments " + segments + " must be at least 1!");
+		}
+		if (capacity < segments) {
+			throw new IllegalArgumentException("capacity " + capacity + " must be at least " + segments + "!");
+		}
+		this.segments = new LeastRecentlyUsedCache[segments];
+		int segmentCapacity = segmentCapacity(capacity);
+		for (int index = 0; index < segments; ++index) {
+			this.segments[index] = new LeastRecentlyUsedCache<>(
+					Math.min(segmentCapacity, LeastRecentlyUsedCache.DEFAULT_INITIAL_CAPACITY), segmentCapacity,
+					threshold, unit);
+		}
+		this.capacity = capacity;
+		setExpirationThreshold(threshold, unit);
+	}
+
+	/**
+	 * Gets the capacity of a single segment.
+	 *
+	 * @param capacity the maximum number of entries the cache can manage
+	 * @return capacity of a single segment
+	 */
+	private int segmentCapacity(int capacity) {
+		return (capacity + segments.length - 1) / segments.length;
+	}
+
+	/**
+	 * Gets the segment of the key.
+	 *
+	 * @param key key
+	 * @return the segment of the key
+	 */
+	private LeastRecentlyUsedCache<K, V> segment(Object key) {
+		int hash = key.hashCode();
+		// spread higher bits, the key's hash may vary only in few bits.
+		hash ^= (hash >>> 16);
+		return segments[(hash & 0x7fffffff) % segments.length];
+	}
+
+	/**
+	 * Gets the number of segments.
+	 *
+	 * @return number of segments
+	 */
+	public int getSegments() {
+		return segments.length;
+	}
+
+	/**
+	 * Registers a listener to be notified about (stale) entries being evicted
+	 * from the cache.
+	 *
+	 * The listener is called with the lock of the segment held.
+	 *
+	 * @param listener the listener
+	 */
+	public void addEvictionListener(EvictionListener<V> listener) {
+		if (listener != null) {
+			for (LeastRecentlyUsedCache<K, V> segment : segments) {
+				synchronized (segment) {
+					segment.addEvictionListener(listener);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get evict mode on read access.
+	 *
+	 * @return {@code true}, if entries are evicted on read access, when
+	 *         expired, {@code false}, if not.
+	 * @see LeastRecentlyUsedCache#isEvictingOnReadAccess()
+	 */
+	public boolean isEvictingOnReadAccess() {
+		return evictOnReadAccess;
+	}
+
+	/**
+	 * Set evict mode on read access.
+	 *
+	 * @param evict {@code true}, if entries are evicted on read access, when
+	 *            expired, {@code false}, if not.
+	 * @see LeastRecentlyUsedCache#setEvictingOnReadAccess(boolean)
+	 */
+	public void setEvictingOnReadAccess(boolean evict) {
+		evictOnReadAccess = evict;
+		for (LeastRecentlyUsedCache<K, V> segment : segments) {
+			segment.setEvictingOnReadAccess(evict);
+		}
+	}
+
+	/**
+	 * Get update last-access time mode on read access.
+	 *
+	 * @return {@code true}, if entries last-access time is updated on read
+	 *         access, {@code false}, if not.
+	 * @see LeastRecentlyUsedCache#isUpdatingOnReadAccess()
+	 * @see #getAccessResolutionNanos()
+	 */
+	public boolean isUpdatingOnReadAccess() {
+		return updateOnReadAccess;
+	}
+
+	/**
+	 * Set update last-access time mode on read access.
+	 *
+	 * @param update {@code true},if entries last-access time is updated on read
+	 *            access, {@code false}, if not.
+	 * @see LeastRecentlyUsedCache#setUpdatingOnReadAccess(boolean)
+	 * @see #getAccessResolutionNanos()
+	 */
+	public void setUpdatingOnReadAccess(boolean update) {
+		updateOnReadAccess = update;
+		for (LeastRecentlyUsedCache<K, V> segment : segments) {
+			segment.setUpdatingOnReadAccess(update);
+		}
+	}
+
+	/**
+	 * Gets the resolution of the last-access time for updates on read access.
+	 *
+	 * A read access updates the last-access time only, if the last update is
+	 * at least that resolution ago. Defaults to a {@code 1/16} of the
+	 * expiration threshold, but at most one second.
+	 *
+	 * @return resolution in nanoseconds
+	 */
+	public long getAccessResolutionNanos() {
+		return accessResolutionNanos;
+	}
+
+	/**
+	 * Gets the period of time after which an entry is considered <em>stale</em>
+	 * if it hasn't be accessed.
+	 *
+	 * @return the threshold in seconds
+	 */
+	public final long getExpirationThreshold() {
+		return TimeUnit.NANOSECONDS.toSeconds(expirationThresholdNanos);
+	}
+
+	/**
+	 * Sets the period of time after which an entry is to be considered stale if
+	 * it hasn't be accessed.
+	 *
+	 * Also adjusts the {@link #getAccessResolutionNanos()}.
+	 *
+	 * @param newThreshold the threshold in seconds
+	 * @see LeastRecentlyUsedCache#setExpirationThreshold(long)
+	 */
+	public final void setExpirationThreshold(long newThreshold) {
+		setExpirationThreshold(newThreshold, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Sets the period of time after which an entry is to be considered stale if
+	 * it hasn't be accessed.
+	 *
+	 * Also adjusts the {@link #getAccessResolutionNanos()}.
+	 *
+	 * @param newThreshold the threshold
+	 * @param unit TimeUnit for threshold
+	 * @see LeastRecentlyUsedCache#setExpirationThreshold(long, TimeUnit)
+	 */
+	public final void setExpirationThreshold(long newThreshold, TimeUnit unit) {
+		long thresholdNanos = unit.toNanos(newThreshold);
+		this.expirationThresholdNanos = thresholdNanos;
+		this.accessResolutionNanos = Math.min(thresholdNanos / 16, MAX_ACCESS_RESOLUTION_NANOS);
+		for (LeastRecentlyUsedCache<K, V> segment : segments) {
+			segment.setExpirationThreshold(newThreshold, unit);
+		}
+	}
+
+	/**
+	 * Gets the maximum number of entries this cache can manage.
+	 *
+	 * @return the number of entries
+	 */
+	public final int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Sets the maximum number of entries this cache can manage.
+	 *
+	 * The capacity is split evenly over the segments.
+	 *
+	 * @param capacity the maximum number of entries the cache can manage
+	 * @throws IllegalArgumentException if the capacity is less than the number
+	 *             of segments.
+	 * @see LeastRecentlyUsedCache#setCapacity(int)
+	 */
+	public final void setCapacity(int capacity) {
+		if (capacity < segments.length) {
+			throw new IllegalArgumentException("capacity " + capacity + " must be at least " + segments.length + "!");
+		}
+		this.capacity = capacity;
+		int segmentCapacity = segmentCapacity(capacity);
+		for (LeastRecentlyUsedCache<K, V> segment : segments) {
+			segment.setCapacity(segmentCapacity);
+		}
+	}
+
+	/**
+	 * Gets the cache's current number of entries.
+	 *
+	 * @return the size
+	 */
+	public final int size() {
+		int size = 0;
+		for (LeastRecentlyUsedCache<K, V> segment : segments) {
+			size += segment.size();
+		}
+		return size;
+	}
+
+	/**
+	 * Gets the number of entries that can be added to this cache without the
+	 * need for removing stale entries.
+	 *
+	 * Sum of the remaining capacities of all segments. A new entry may still
+	 * be rejected, if its segment is exhausted.
+	 *
+	 * @return The number of entries.
+	 */
+	public final int remainingCapacity() {
+		int remaining = 0;
+		for (LeastRecentlyUsedCache<K, V> segment : segments) {
+			remaining += segment.remainingCapacity();
+		}
+		return remaining;
+	}
+
+	/**
+	 * Removes all entries from the cache.
+	 */
+	public final void clear() {
+		for (LeastRecentlyUsedCache<K, V> segment : segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	/**
+	 * Puts an entry to the cache.
+	 *
+	 * @param key the key to store the value under
+	 * @param value the value to store
+	 * @return {@code true}, if the entry could be added to the cache,
+	 *         {@code false}, otherwise, e.g. because the segment's remaining
+	 *         capacity is zero and no stale entries can be evicted
+	 * @see LeastRecentlyUsedCache#put(Object, Object)
+	 */
+	public final boolean put(K key, V value) {
+		LeastRecentlyUsedCache<K, V> segment = segment(key);
+		synchronized (segment) {
+			return segment.put(key, value);
+		}
+	}
+
+	/**
+	 * Puts an entry with last-update-timestamp to the cache.
+	 *
+	 * @param key the key to store the value under
+	 * @param value the value to store
+	 * @param lastUpdate the last-update timestamp to store
+	 * @return {@code true}, if the entry could be added to the cache,
+	 *         {@code false}, otherwise.
+	 * @see LeastRecentlyUsedCache#put(Object, Object, long)
+	 */
+	public final boolean put(K key, V value, long lastUpdate) {
+		LeastRecentlyUsedCache<K, V> segment = segment(key);
+		synchronized (segment) {
+			return segment.put(key, value, lastUpdate);
+		}
+	}
+
+	/**
+	 * Puts an entry to the cache, if the cache doesn't contain a not stale
+	 * value for that key.
+	 * 
+	 * Executes the check and the put atomically.
+	 *
+	 * @param key the key to store the value under
+	 * @param value the value to store
+	 * @return the value already stored in the cache, or {@code null}, if the
+	 *         provided value is put to the cache or could not be added to the
+	 *         cache, e.g. because the segment's remaining capacity is zero and
+	 *         no stale entries can be evicted
+	 * @see LeastRecentlyUsedCache#get(Object)
+	 * @see LeastRecentlyUsedCache#put(Object, Object)
+	 */
+	public final V putIfAbsent(K key, V value) {
+		LeastRecentlyUsedCache<K, V> segment = segment(key);
+		synchronized (segment) {
+			V previous = segment.get(key);
+			if (previous == null) {
+				segment.put(key, value);
+			}
+			return previous;
+		}
+	}
+
+	/**
+	 * Gets a value from the cache.
+	 *
+	 * @param key the key to look up in the cache
+	 * @return the value, if the key has been found in the cache and the value
+	 *         is not stale, {@code null}, otherwise
+	 * @see LeastRecentlyUsedCache#get(Object)
+	 */
+	public final V get(K key) {
+		Timestamped<V> timestamped = getTimestamped(key);
+		return timestamped == null ? null : timestamped.getValue();
+	}
+
+	/**
+	 * Gets a timestamped value from the cache.
+	 *
+	 * @param key the key to look up in the cache
+	 * @return the timestamped value, if the key has been found in the cache and
+	 *         the value is not stale, {@code null}, otherwise
+	 * @see LeastRecentlyUsedCache#getTimestamped(Object)
+	 */
+	public final Timestamped<V> getTimestamped(K key) {
+		if (key == null) {
+			return null;
+		}
+		LeastRecentlyUsedCache<K, V> segment = segment(key);
+		Timestamped<V> timestamped = segment.peek(key);
+		if (timestamped == null) {
+			return null;
+		}
+		long age = ClockUtil.nanoRealtime() - timestamped.getLastUpdate();
+		long thresholdNanos = expirationThresholdNanos;
+		if ((evictOnReadAccess && thresholdNanos > 0 && age >= thresholdNanos)
+				|| (updateOnReadAccess && age >= accessResolutionNanos)) {
+			synchronized (segment) {
+				return segment.getTimestamped(key);
+			}
+		}
+		return timestamped;
+	}
+
+	/**
+	 * Update the last-access time.
+	 *
+	 * @param key the key to update the last-access time.
+	 * @return {@code true}, if updated, {@code false}, otherwise.
+	 * @see LeastRecentlyUsedCache#update(Object)
+	 */
+	public final boolean update(K key) {
+		if (key == null) {
+			return false;
+		}
+		LeastRecentlyUsedCache<K, V> segment = segment(key);
+		synchronized (segment) {
+			return segment.update(key);
+		}
+	}
+
+	/**
+	 * Removes an entry from the cache.
+	 *
+	 * Doesn't call {@code EvictionListeners}.
+	 *
+	 * @param key the key of the entry to remove
+	 * @return the removed value or {@code null}, if the cache does not contain
+	 *         the key
+	 */
+	public final V remove(K key) {
+		if (key == null) {
+			return null;
+		}
+		LeastRecentlyUsedCache<K, V> segment = segment(key);
+		synchronized (segment) {
+			return segment.remove(key);
+		}
+	}
+
+	/**
+	 * Removes provided entry from the cache.
+	 *
+	 * Doesn't call {@code EvictionListeners}.
+	 *
+	 * @param key the key of the entry to remove
+	 * @param value value of the entry to remove
+	 * @return the removed value or {@code null}, if the cache does not contain
+	 *         the key or entry
+	 */
+	public final V remove(K key, V value) {
+		if (key == null) {
+			return null;
+		}
+		LeastRecentlyUsedCache<K, V> segment = segment(key);
+		synchronized (segment) {
+			return segment.remove(key, value);
+		}
+	}
+
+	/**
+	 * Remove expired entries.
+	 *
+	 * @param maxEntries maximum expired entries to remove. {@code 0} for
+	 *            unlimited.
+	 * @return number of removed expired entries.
+	 * @see LeastRecentlyUsedCache#removeExpiredEntries(int)
+	 */
+	public final int removeExpiredEntries(int maxEntries) {
+		int counter = 0;
+		for (LeastRecentlyUsedCache<K, V> segment : segments) {
+			int left = 0;
+			if (maxEntries > 0) {
+				left = maxEntries - counter;
+				if (left <= 0) {
+					break;
+				}
+			}
+			synchronized (segment) {
+				counter += segment.removeExpiredEntries(left);
+			}
+		}
+		return counter;
+	}
+
+	/**
+	 * Finds a value based on a predicate.
+	 *
+	 * @param predicate the condition to match. Assumed to match entries in a
+	 *            unique manner. Therefore stops on first match, even if that
+	 *            gets evicted on the read access.
+	 * @return the first value from the cache that matches according to the
+	 *         given predicate, or {@code null}, if no value matches
+	 * @see LeastRecentlyUsedCache#find(Predicate)
+	 */
+	public final V find(Predicate<V> predicate) {
+		return find(predicate, true);
+	}
+
+	/**
+	 * Finds a value based on a predicate.
+	 *
+	 * @param predicate the condition to match
+	 * @param unique {@code true}, if the predicate matches entries in a unique
+	 *            manner and stops, even if that entry gets evicted on the read
+	 *            access. {@code false}, if more entries may be matched and so
+	 *            continue to search, if a matching entry gets evicted on the
+	 *            read access.
+	 * @return the first value from the cache that matches according to the
+	 *         given predicate, or {@code null}, if no value matches
+	 * @see LeastRecentlyUsedCache#find(Predicate, boolean)
+	 */
+	public final V find(final Predicate<V> predicate, boolean unique) {
+		if (predicate != null) {
+			for (LeastRecentlyUsedCache<K, V> segment : segments) {
+				if (unique) {
+					// detect matches, even if evicted
+					final boolean[] match = { false };
+					V value;
+					synchronized (segment) {
+						value = segment.find(new Predicate<V>() {
+
+							@Override
+							public boolean accept(V value) {
+								if (predicate.accept(value)) {
+									match[0] = true;
+									return true;
+								}
+								return false;
+							}
+						}, true);
+					}
+					if (match[0]) {
+						return value;
+					}
+				} else {
+					V value;
+					synchronized (segment) {
+						value = segment.find(predicate, false);
+					}
+					if (value != null) {
+						return value;
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Gets iterator over all values contained in this cache.
+	 *
+	 * @return an iterator over all values backed by the underlying maps.
+	 * @see LeastRecentlyUsedCache#valuesIterator()
+	 */
+	public final Iterator<V> valuesIterator() {
+		return valuesIterator(true);
+	}
+
+	/**
+	 * Gets iterator over all values contained in this cache.
+	 * <p>
+	 * Iterates the segments one after the other. Read access locks the
+	 * segment of the currently accessed entry.
+	 * </p>
+	 * <p>
+	 * Removal of values from the iterator is unsupported.
+	 * </p>
+	 *
+	 * @param readAccess {@code true} to enable read access while iterating.
+	 * @return an iterator over all values backed by the underlying maps.
+	 * @see LeastRecentlyUsedCache#valuesIterator(boolean)
+	 */
+	public final Iterator<V> valuesIterator(final boolean readAccess) {
+		return new Iterator<V>() {
+
+			private int index;
+			private Iterator<V> current = segments[0].valuesIterator(readAccess);
+
+			@Override
+			public boolean hasNext() {
+				while (!current.hasNext()) {
+					if (++index >= segments.length) {
+						return false;
+					}
+					current = segments[index].valuesIterator(readAccess);
+				}
+				return true;
+			}
+
+			@Override
+			public V next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return current.next();
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Gets all values contained in this cache.
+	 *
+	 * The returned collection is intended to be used as read access, therefore
+	 * the modifying methods will throw a {@link UnsupportedOperationException}.
+	 *
+	 * @return an collection of all values backed by the underlying maps.
+	 * @see LeastRecentlyUsedCache#values()
+	 */
+	public final Collection<V> values() {
+		Collection<V> vs = values;
+		if (vs == null) {
+			vs = new AbstractCollection<V>() {
+
+				@Override
+				public final int size() {
+					return SegmentedLeastRecentlyUsedCache.this.size();
+				}
+
+				@Override
+				public final boolean contains(final Object o) {
+					return null != find(new Predicate<V>() {
+
+						@Override
+						public boolean accept(final V value) {
+							return value.equals(o);
+						}
+					}, false);
+				}
+
+				@Override
+				public final Iterator<V> iterator() {
+					return valuesIterator();
+				}
+
+				@Override
+				public final boolean add(Object o) {
+					throw new UnsupportedOperationException();
+				}
+
+				@Override
+				public final boolean remove(Object o) {
+					throw new UnsupportedOperationException();
+				}
+
+				@Override
+				public final void clear() {
+					throw new UnsupportedOperationException();
+				}
+			};
+			values = vs;
+		}
+		return vs;
+	}
+
+	/**
+	 * Gets iterator over all values with timestamp contained in this cache.
+	 * <p>
+	 * The iterator is based on a snapshot of the segments. The entries are
+	 * ordered according their last update.
+	 * </p>
+	 * <p>
+	 * Removal of values from the iterator is unsupported.
+	 * </p>
+	 *
+	 * @return an iterator over all timestamped values.
+	 * @see LeastRecentlyUsedCache#timestampedIterator()
+	 */
+	public final Iterator<Timestamped<V>> timestampedIterator() {
+		List<Timestamped<V>> snapshot = new ArrayList<>(size());
+		for (LeastRecentlyUsedCache<K, V> segment : segments) {
+			synchronized (segment) {
+				Iterator<Timestamped<V>> iterator = segment.timestampedIterator();
+				while (iterator.hasNext()) {
+					snapshot.add(iterator.next());
+				}
+			}
+		}
+		if (segments.length > 1) {
+			Collections.sort(snapshot, new Comparator<Timestamped<V>>() {
+
+				@Override
+				public int compare(Timestamped<V> o1, Timestamped<V> o2) {
+					long delta = o1.getLastUpdate() - o2.getLastUpdate();
+					return delta < 0 ? -1 : (delta > 0 ? 1 : 0);
+				}
+			});
+		}
+		return Collections.unmodifiableList(snapshot).iterator();
+	}
+}
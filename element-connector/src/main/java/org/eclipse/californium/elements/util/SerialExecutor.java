@@ -12,22 +12,21 @@
  * 
  * Contributors:
  *    Bosch Software Innovations GmbH - initial creation
+ *    Bosch.IO GmbH - reduce footprint for idle executors
+ *    Bosch.IO GmbH - add setExecutor to switch the target executor
  ******************************************************************************/
 package org.eclipse.californium.elements.util;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.ConcurrentModificationException;
 import java.util.List;
 import java.util.concurrent.AbstractExecutorService;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Executor;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicReference;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,52 +35,79 @@ import org.slf4j.LoggerFactory;
  * Serial executor.
  * 
  * Serialize job execution before passing the jobs to a provided executor.
+ * 
+ * Since 3.0 the executor is designed for a small heap footprint, because it is
+ * used per connection and millions of mostly idle connections are common. It
+ * uses its own monitor instead of separate locks and conditions, and the queue
+ * for pending jobs is only created, if a job is executed while an other job is
+ * still pending. That queue is released again, when it gets empty.
  */
 public class SerialExecutor extends AbstractExecutorService {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(SerialExecutor.class);
 
 	/**
-	 * Target executor to execute job serially.
+	 * Initial capacity of the queue for pending jobs.
+	 * 
+	 * @since 3.0
 	 */
-	private final Executor executor;
+	private static final int INITIAL_QUEUE_CAPACITY = 8;
 
 	/**
-	 * Owner thread, which currently executes the {@link #currentlyExecutedJob}.
+	 * Updater for {@link #owner}.
+	 * 
+	 * @since 3.0
 	 */
-	private final AtomicReference<Thread> owner = new AtomicReference<Thread>();
+	private static final AtomicReferenceFieldUpdater<SerialExecutor, Thread> OWNER = AtomicReferenceFieldUpdater
+			.newUpdater(SerialExecutor.class, Thread.class, "owner");
 
 	/**
-	 * Execution listener.
+	 * Updater for {@link #listener}.
 	 * 
-	 * Called before and after executing a task.
+	 * @since 3.0
+	 */
+	private static final AtomicReferenceFieldUpdater<SerialExecutor, ExecutionListener> LISTENER = AtomicReferenceFieldUpdater
+			.newUpdater(SerialExecutor.class, ExecutionListener.class, "listener");
+
+	/**
+	 * Target executor to execute job serially. Guarded by {@code this} since
+	 * 3.0.
 	 * 
-	 * @since 2.4
+	 * @see #setExecutor(Executor)
 	 */
-	private final AtomicReference<ExecutionListener> listener = new AtomicReference<ExecutionListener>();
+	private Executor executor;
 
 	/**
-	 * Queue for serialized jobs.
+	 * Owner thread, which currently executes the {@link #currentlyExecutedJob}.
+	 * 
+	 * @see #OWNER
 	 */
-	private final BlockingQueue<Runnable> tasks = new LinkedBlockingQueue<>();
+	private volatile Thread owner;
 
 	/**
-	 * Lock to protected simultaneous access.
+	 * Execution listener.
+	 * 
+	 * Called before and after executing a task.
+	 * 
+	 * @see #LISTENER
+	 * @since 2.4
 	 */
-	private final ReentrantLock lock = new ReentrantLock();
+	private volatile ExecutionListener listener;
 
 	/**
-	 * Condition from {@link #lock} to wait for termination.
+	 * Queue for serialized jobs.
+	 * 
+	 * Created on demand and released, when empty. Guarded by {@code this}.
 	 */
-	private final Condition terminated = lock.newCondition();
+	private ArrayDeque<Runnable> tasks;
 
 	/**
-	 * Currently executed job.
+	 * Currently executed job. Guarded by {@code this}.
 	 */
 	private Runnable currentlyExecutedJob;
 
 	/**
-	 * Indicate shutdown.
+	 * Indicate shutdown. Guarded by {@code this}.
 	 */
 	private boolean shutdown;
 
@@ -98,19 +124,40 @@ public class SerialExecutor extends AbstractExecutorService {
 		this.executor = executor;
 	}
 
+	/**
+	 * Set target executor.
+	 * 
+	 * Jobs, which are already passed to the previous target executor, are
+	 * still executed by that. The next jobs are passed to the new target
+	 * executor. The serial order of the jobs is kept.
+	 * 
+	 * @param executor new target executor.
+	 * @throws NullPointerException if executor is {@code null}.
+	 * @since 3.0
+	 */
+	public void setExecutor(final Executor executor) {
+		if (executor == null) {
+			throw new NullPointerException("Executor must not be null!");
+		}
+		synchronized (this) {
+			this.executor = executor;
+		}
+	}
+
 	@Override
 	public void execute(final Runnable command) {
-		lock.lock();
-		try {
+		synchronized (this) {
 			if (shutdown) {
 				throw new RejectedExecutionException("SerialExecutor already shutdown!");
 			}
-			tasks.offer(command);
 			if (currentlyExecutedJob == null) {
-				scheduleNextJob();
+				scheduleJob(command);
+			} else {
+				if (tasks == null) {
+					tasks = new ArrayDeque<>(INITIAL_QUEUE_CAPACITY);
+				}
+				tasks.offer(command);
 			}
-		} finally {
-			lock.unlock();
 		}
 	}
 
@@ -123,8 +170,8 @@ public class SerialExecutor extends AbstractExecutorService {
 	 */
 	public void assertOwner() {
 		final Thread me = Thread.currentThread();
-		if (owner.get() != me) {
-			final Thread thread = owner.get();
+		final Thread thread = owner;
+		if (thread != me) {
 			if (thread == null) {
 				throw new ConcurrentModificationException(this + " is not owned!");
 			} else {
@@ -140,7 +187,7 @@ public class SerialExecutor extends AbstractExecutorService {
 	 *         {@link #currentlyExecutedJob}, {@code false}, otherwise.
 	 */
 	public boolean checkOwner() {
-		return owner.get() == Thread.currentThread();
+		return owner == Thread.currentThread();
 	}
 
 	/**
@@ -149,8 +196,8 @@ public class SerialExecutor extends AbstractExecutorService {
 	 * @throws ConcurrentModificationException, if thread is already set.
 	 */
 	private void setOwner() {
-		final Thread thread = owner.get();
-		if (!owner.compareAndSet(null, Thread.currentThread())) {
+		final Thread thread = owner;
+		if (!OWNER.compareAndSet(this, null, Thread.currentThread())) {
 			if (thread == null) {
 				throw new ConcurrentModificationException(this + " was already owned!");
 			} else {
@@ -166,8 +213,8 @@ public class SerialExecutor extends AbstractExecutorService {
 	 *             executing the {@link #currentlyExecutedJob}.
 	 */
 	private void clearOwner() {
-		if (!owner.compareAndSet(Thread.currentThread(), null)) {
-			final Thread thread = owner.get();
+		if (!OWNER.compareAndSet(this, Thread.currentThread(), null)) {
+			final Thread thread = owner;
 			if (thread == null) {
 				throw new ConcurrentModificationException(this + " is not owned, clear failed!");
 			} else {
@@ -183,11 +230,11 @@ public class SerialExecutor extends AbstractExecutorService {
 	 */
 	@Override
 	public void shutdown() {
-		lock.lock();
-		try {
+		synchronized (this) {
 			shutdown = true;
-		} finally {
-			lock.unlock();
+			if (currentlyExecutedJob == null) {
+				notifyAll();
+			}
 		}
 	}
 
@@ -200,13 +247,10 @@ public class SerialExecutor extends AbstractExecutorService {
 	 */
 	@Override
 	public List<Runnable> shutdownNow() {
-		lock.lock();
-		try {
-			List<Runnable> pending = new ArrayList<>(tasks.size());
+		synchronized (this) {
+			List<Runnable> pending = new ArrayList<>(tasks == null ? 0 : tasks.size());
 			shutdownNow(pending);
 			return pending;
-		} finally {
-			lock.unlock();
 		}
 	}
 
@@ -219,101 +263,118 @@ public class SerialExecutor extends AbstractExecutorService {
 	 * @see #shutdownNow()
 	 */
 	public int shutdownNow(final Collection<Runnable> jobs) {
-		lock.lock();
-		try {
+		synchronized (this) {
 			shutdown();
-			return tasks.drainTo(jobs);
-		} finally {
-			lock.unlock();
+			if (tasks == null) {
+				return 0;
+			}
+			int count = tasks.size();
+			jobs.addAll(tasks);
+			tasks = null;
+			return count;
 		}
 	}
 
 	@Override
 	public boolean isShutdown() {
-		lock.lock();
-		try {
+		synchronized (this) {
 			return shutdown;
-		} finally {
-			lock.unlock();
 		}
 	}
 
 	@Override
 	public boolean isTerminated() {
-		lock.lock();
-		try {
+		synchronized (this) {
 			return shutdown && currentlyExecutedJob == null;
-		} finally {
-			lock.unlock();
 		}
 	}
 
 	@Override
 	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
-		lock.lock();
-		try {
+		synchronized (this) {
 			long nanosTimeout = unit.toNanos(timeout);
+			long end = System.nanoTime() + nanosTimeout;
 			while (!shutdown || currentlyExecutedJob != null) {
-				nanosTimeout = terminated.awaitNanos(nanosTimeout);
 				if (nanosTimeout <= 0) {
 					break;
 				}
+				TimeUnit.NANOSECONDS.timedWait(this, nanosTimeout);
+				nanosTimeout = end - System.nanoTime();
 			}
 			return shutdown && currentlyExecutedJob == null;
-		} finally {
-			lock.unlock();
 		}
 	}
 
 	/**
-	 * Schedule next job from {@link #tasks}. {@link #setOwner()} and
-	 * {@link #clearOwner()} before and after executing the job.
+	 * Schedule next job from {@link #tasks}.
+	 * 
+	 * Releases the {@link #tasks}, if empty.
 	 */
 	private final void scheduleNextJob() {
-		lock.lock();
-		try {
-			currentlyExecutedJob = tasks.poll();
-			if (currentlyExecutedJob != null) {
-				final Runnable command = currentlyExecutedJob;
-				executor.execute(new Runnable() {
-
-					@Override
-					public void run() {
+		synchronized (this) {
+			Runnable next = null;
+			if (tasks != null) {
+				next = tasks.poll();
+				if (tasks.isEmpty()) {
+					tasks = null;
+				}
+			}
+			if (next != null) {
+				scheduleJob(next);
+			} else {
+				currentlyExecutedJob = null;
+				if (shutdown) {
+					notifyAll();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Schedule job. {@link #setOwner()} and {@link #clearOwner()} before and
+	 * after executing the job. Schedules the next job from {@link #tasks}
+	 * afterwards.
+	 * 
+	 * Must be called holding the monitor of {@code this}.
+	 * 
+	 * @param command job to execute
+	 * @since 3.0
+	 */
+	private final void scheduleJob(final Runnable command) {
+		currentlyExecutedJob = command;
+		executor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					try {
+						setOwner();
+						ExecutionListener current = listener;
 						try {
+							if (current != null) {
+								current.beforeExecution();
+							}
+							command.run();
+						} catch (Throwable t) {
+							LOGGER.error("unexpected error occurred:", t);
+						} finally {
 							try {
-								setOwner();
-								ExecutionListener current = listener.get();
-								try {
-									if (current != null) {
-										current.beforeExecution();
-									}
-									command.run();
-								} catch (Throwable t) {
-									LOGGER.error("unexpected error occurred:", t);
-								} finally {
-									try {
-										if (current != null) {
-											current.afterExecution();
-										}
-									} catch (Throwable t) {
-										LOGGER.error("unexpected error occurred:", t);
-									}
-									clearOwner();
+								if (current != null) {
+									current.afterExecution();
 								}
-							} finally {
-								scheduleNextJob();
+							} catch (Throwable t) {
+								LOGGER.error("unexpected error occurred:", t);
 							}
-						} catch (RejectedExecutionException ex) {
-							LOGGER.debug("shutdown?", ex);
+							clearOwner();
 						}
+					} finally {
+						scheduleNextJob();
 					}
-				});
-			} else if (shutdown) {
-				terminated.signalAll();
+				} catch (RejectedExecutionException ex) {
+					LOGGER.debug("shutdown?", ex);
+				}
 			}
-		} finally {
-			lock.unlock();
-		}
+		});
 	}
 
 	/**
@@ -341,7 +402,7 @@ public class SerialExecutor extends AbstractExecutorService {
 	 * @since 2.4
 	 */
 	public ExecutionListener setExecutionListener(ExecutionListener listener) {
-		return this.listener.getAndSet(listener);
+		return LISTENER.getAndSet(this, listener);
 	}
 
 	/**
@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.elements;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.elements.category.NativeDatagramSocketImplRequired;
+import org.eclipse.californium.elements.rule.NetworkRule;
+import org.eclipse.californium.elements.util.SimpleMessageCallback;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Runs the {@link UDPConnectorTest} with batch mode enabled.
+ *
+ * The batch mode uses a {@link java.nio.channels.DatagramChannel}, which
+ * doesn't support the direct datagram socket implementation of the
+ * {@link NetworkRule}.
+ */
+@Category(NativeDatagramSocketImplRequired.class)
+public class UDPConnectorBatchTest extends UDPConnectorTest {
+
+	private static final int BATCH_SIZE = 16;
+
+	@Override
+	protected UDPConnector createConnector(InetSocketAddress address) {
+		UDPConnector connector = new UDPConnector(address);
+		connector.setBatchSize(BATCH_SIZE);
+		return connector;
+	}
+
+	@Test
+	public void testSendMoreMessagesThanBatchSize() throws InterruptedException {
+		int messages = BATCH_SIZE * 4 + 1;
+		InetSocketAddress dest = destination.getAddress();
+		EndpointContext context = new UdpEndpointContext(dest);
+		matcher.setMatches(messages);
+
+		SimpleMessageCallback callback = new SimpleMessageCallback(messages, false);
+		for (int index = 0; index < messages; ++index) {
+			byte[] data = { (byte) index, 1, 2 };
+			connector.send(RawData.outbound(data, context, callback, false));
+		}
+		assertThat(callback.toString(), callback.await(1000), is(true));
+
+		for (int index = 0; index < messages; ++index) {
+			RawData receivedData = channel.poll(1, TimeUnit.SECONDS);
+			assertThat("received data " + index, receivedData, is(notNullValue()));
+			assertThat("bytes received:", receivedData.getSize(), is(equalTo(3)));
+		}
+	}
+
+	@Test
+	public void testMulticastConnectorIgnoresBatchSize() throws UnknownHostException {
+		UdpMulticastConnector multicast = new UdpMulticastConnector.Builder().setLocalPort(0)
+				.addMulticastGroup(InetAddress.getByName("224.0.1.187")).build();
+		multicast.setBatchSize(BATCH_SIZE);
+		assertThat(multicast.getBatchSize(), is(1));
+	}
+}
@@ -64,15 +64,25 @@ public class UDPConnectorTest {
 	@Before
 	public void setup() throws IOException {
 		matcher = new TestEndpointContextMatcher(1, 1);
-		connector = new UDPConnector(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		connector = createConnector(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
 		connector.setEndpointContextMatcher(matcher);
 		connector.start();
 		channel = new SimpleRawDataChannel(1);
-		destination = new UDPConnector(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		destination = createConnector(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
 		destination.setRawDataReceiver(channel);
 		destination.start();
 	}
 
+	/**
+	 * Create connector for test.
+	 * 
+	 * @param address local address
+	 * @return created connector
+	 */
+	protected UDPConnector createConnector(InetSocketAddress address) {
+		return new UDPConnector(address);
+	}
+
 	@After
 	public void stop() {
 		connector.destroy();
@@ -216,7 +226,7 @@ public class UDPConnectorTest {
 		}
 	}
 
-	private static class TestEndpointContextMatcher implements EndpointContextMatcher {
+	static class TestEndpointContextMatcher implements EndpointContextMatcher {
 
 		private final CountDownLatch latchSendMatcher;
 		private final AtomicInteger matches;
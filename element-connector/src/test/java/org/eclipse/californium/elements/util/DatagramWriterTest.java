@@ -16,6 +16,10 @@
 package org.eclipse.californium.elements.util;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.net.DatagramPacket;
+import java.util.Arrays;
 
 import org.junit.Before;
 import org.junit.Rule;
@@ -261,6 +265,21 @@ public class DatagramWriterTest {
 		assertEquals("12345678", hex(data));
 	}
 
+	@Test
+	public void testWriteToDatagramPacketReusesBuffer() {
+		DatagramPacket packet = new DatagramPacket(Bytes.EMPTY, 0);
+		writer.writeBytes(bin("123456"));
+		writer.writeTo(packet);
+		assertEquals(3, packet.getLength());
+		assertEquals("123456", hex(Arrays.copyOfRange(packet.getData(), packet.getOffset(), packet.getLength())));
+		byte[] buffer = packet.getData();
+
+		writer.writeBytes(bin("abcd"));
+		writer.writeTo(packet);
+		assertSame(buffer, packet.getData());
+		assertEquals("ABCD", hex(Arrays.copyOfRange(packet.getData(), packet.getOffset(), packet.getLength())));
+	}
+
 	private static byte[] bin(String hex) {
 		return StringUtil.hex2ByteArray(hex);
 	}
@@ -0,0 +1,251 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.elements.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.californium.elements.category.Small;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Verifies behavior of {@code HashedWheelTimer}.
+ */
+@Category(Small.class)
+public class HashedWheelTimerTest {
+
+	private static final long TICK_MILLIS = 10;
+	private static final int TICKS_PER_WHEEL = 8;
+
+	ExecutorService executor;
+	HashedWheelTimer timer;
+
+	@Before
+	public void setUp() {
+		executor = ExecutorsUtil.newFixedThreadPool(2, new DaemonThreadFactory("Test#"));
+		timer = new HashedWheelTimer(executor, new DaemonThreadFactory("Timer#"), TICK_MILLIS, TimeUnit.MILLISECONDS,
+				TICKS_PER_WHEEL);
+	}
+
+	@After
+	public void tearDown() {
+		timer.shutdownNow();
+		executor.shutdownNow();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTickDurationTooSmall() {
+		new HashedWheelTimer(executor, new DaemonThreadFactory("Timer#"), 100, TimeUnit.MICROSECONDS, 8);
+	}
+
+	@Test
+	public void testTicksPerWheelIsPowerOfTwo() {
+		HashedWheelTimer wheel = new HashedWheelTimer(executor, new DaemonThreadFactory("Timer#"), TICK_MILLIS,
+				TimeUnit.MILLISECONDS, 100);
+		try {
+			assertThat(wheel.getTicksPerWheel(), is(128));
+		} finally {
+			wheel.shutdown();
+		}
+	}
+
+	@Test
+	public void testScheduleExpiresNotEarly() throws Exception {
+		final long start = System.nanoTime();
+		ScheduledFuture<Long> future = timer.schedule(new Callable<Long>() {
+
+			@Override
+			public Long call() throws Exception {
+				return System.nanoTime() - start;
+			}
+		}, 50, TimeUnit.MILLISECONDS);
+		long elapsed = future.get(2, TimeUnit.SECONDS);
+		assertThat(elapsed, is(greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50))));
+		assertThat(timer.getPendingTimers(), is(0));
+	}
+
+	@Test
+	public void testScheduleMoreThanOneRound() throws Exception {
+		final CountDownLatch latch = new CountDownLatch(1);
+		long delay = TICK_MILLIS * TICKS_PER_WHEEL * 3;
+		long start = System.nanoTime();
+		timer.schedule(new Runnable() {
+
+			@Override
+			public void run() {
+				latch.countDown();
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+		assertTrue(latch.await(2, TimeUnit.SECONDS));
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		assertThat(elapsed, is(greaterThanOrEqualTo(delay)));
+	}
+
+	@Test
+	public void testCancel() throws Exception {
+		final AtomicInteger counter = new AtomicInteger();
+		Runnable task = new Runnable() {
+
+			@Override
+			public void run() {
+				counter.incrementAndGet();
+			}
+		};
+		ScheduledFuture<?> future = timer.schedule(task, 50, TimeUnit.MILLISECONDS);
+		ScheduledFuture<?> other = timer.schedule(task, 50, TimeUnit.MILLISECONDS);
+		assertThat(timer.getPendingTimers(), is(2));
+		assertTrue(future.cancel(false));
+		assertTrue(future.isCancelled());
+		other.get(2, TimeUnit.SECONDS);
+		Thread.sleep(TICK_MILLIS * 2);
+		assertThat(counter.get(), is(1));
+		assertThat(timer.getPendingTimers(), is(0));
+	}
+
+	@Test
+	public void testManyTimers() throws Exception {
+		final int count = 10000;
+		final AtomicInteger counter = new AtomicInteger();
+		ScheduledFuture<?>[] futures = new ScheduledFuture<?>[count];
+		Runnable task = new Runnable() {
+
+			@Override
+			public void run() {
+				counter.incrementAndGet();
+			}
+		};
+		for (int index = 0; index < count; ++index) {
+			futures[index] = timer.schedule(task, 100 + (index % 200), TimeUnit.MILLISECONDS);
+		}
+		for (int index = 0; index < count; index += 2) {
+			assertTrue(futures[index].cancel(false));
+		}
+		for (int index = 1; index < count; index += 2) {
+			futures[index].get(2, TimeUnit.SECONDS);
+			assertFalse(futures[index].isCancelled());
+		}
+		assertThat(counter.get(), is(count / 2));
+	}
+
+	@Test
+	public void testScheduleAtFixedRate() throws Exception {
+		final CountDownLatch latch = new CountDownLatch(3);
+		ScheduledFuture<?> future = timer.scheduleAtFixedRate(new Runnable() {
+
+			@Override
+			public void run() {
+				latch.countDown();
+			}
+		}, 0, 20, TimeUnit.MILLISECONDS);
+		assertTrue(latch.await(2, TimeUnit.SECONDS));
+		assertFalse(future.isDone());
+		future.cancel(false);
+		assertTrue(future.isDone());
+	}
+
+	@Test
+	public void testScheduleWithFixedDelay() throws Exception {
+		final CountDownLatch latch = new CountDownLatch(3);
+		ScheduledFuture<?> future = timer.scheduleWithFixedDelay(new Runnable() {
+
+			@Override
+			public void run() {
+				latch.countDown();
+			}
+		}, 0, 20, TimeUnit.MILLISECONDS);
+		assertTrue(latch.await(2, TimeUnit.SECONDS));
+		future.cancel(false);
+		assertTrue(future.isDone());
+	}
+
+	@Test
+	public void testShutdownNowReturnsPendingTimers() throws Exception {
+		Runnable task = new Runnable() {
+
+			@Override
+			public void run() {
+			}
+		};
+		timer.schedule(task, 10, TimeUnit.SECONDS);
+		timer.schedule(task, 20, TimeUnit.SECONDS);
+		ScheduledFuture<?> cancelled = timer.schedule(task, 20, TimeUnit.SECONDS);
+		cancelled.cancel(false);
+		// let the timer thread transfer the timers into the wheel
+		Thread.sleep(TICK_MILLIS * 3);
+		List<Runnable> pending = timer.shutdownNow();
+		assertThat(pending.size(), is(2));
+		assertTrue(timer.isShutdown());
+		assertTrue(timer.awaitTermination(1, TimeUnit.SECONDS));
+		assertTrue(timer.isTerminated());
+	}
+
+	@Test
+	public void testShutdownCancelsPendingTimers() throws Exception {
+		final CountDownLatch latch = new CountDownLatch(2);
+		Runnable task = new Runnable() {
+
+			@Override
+			public void run() {
+				latch.countDown();
+			}
+		};
+		ScheduledFuture<?> delayed = timer.schedule(task, 10, TimeUnit.SECONDS);
+		ScheduledFuture<?> fresh = timer.schedule(task, 10, TimeUnit.SECONDS);
+		ScheduledFuture<?> periodic = timer.scheduleAtFixedRate(task, 0, 20, TimeUnit.MILLISECONDS);
+		assertTrue(latch.await(2, TimeUnit.SECONDS));
+		timer.shutdown();
+		assertTrue(timer.awaitTermination(1, TimeUnit.SECONDS));
+		assertTrue(timer.isTerminated());
+		assertTrue(delayed.isCancelled());
+		assertTrue(fresh.isCancelled());
+		try {
+			periodic.get(1, TimeUnit.SECONDS);
+			fail("periodic timer not cancelled!");
+		} catch (CancellationException ex) {
+			// expected
+		}
+		assertThat(timer.getPendingTimers(), is(0));
+		assertThat(timer.shutdownNow().size(), is(0));
+	}
+
+	@Test(expected = RejectedExecutionException.class)
+	public void testScheduleAfterShutdownIsRejected() {
+		timer.shutdown();
+		timer.schedule(new Runnable() {
+
+			@Override
+			public void run() {
+			}
+		}, 10, TimeUnit.MILLISECONDS);
+	}
+}
@@ -0,0 +1,276 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.elements.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.californium.elements.assume.TimeAssume;
+import org.eclipse.californium.elements.rule.TestTimeRule;
+import org.eclipse.californium.elements.util.LeastRecentlyUsedCache.EvictionListener;
+import org.eclipse.californium.elements.util.LeastRecentlyUsedCache.Timestamped;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Verifies behavior of {@code SegmentedLeastRecentlyUsedCache}.
+ */
+public class SegmentedLeastRecentlyUsedCacheTest {
+
+	private static final long THRESHOLD_MILLIS = 300;
+	private static final int SEGMENTS = 4;
+
+	@Rule
+	public TestTimeRule time = new TestTimeRule();
+
+	SegmentedLeastRecentlyUsedCache<Integer, String> cache;
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCapacityLessThanSegments() {
+		new SegmentedLeastRecentlyUsedCache<Integer, String>(SEGMENTS, SEGMENTS - 1, THRESHOLD_MILLIS);
+	}
+
+	@Test
+	public void testCapacityIsSplitOverSegments() {
+		givenACacheWithEntries(20, THRESHOLD_MILLIS, 0);
+		assertThat(cache.getSegments(), is(SEGMENTS));
+		assertThat(cache.getCapacity(), is(20));
+		assertThat(cache.remainingCapacity(), is(20));
+		for (int i = 0; i < 5; i++) {
+			assertTrue(cache.put(i, Integer.toString(i)));
+		}
+		assertThat(cache.size(), is(5));
+		assertThat(cache.remainingCapacity(), is(15));
+	}
+
+	@Test
+	public void testGetFailsWhenExpired() {
+		givenACacheWithEntries(8, THRESHOLD_MILLIS, 1);
+		cache.setEvictingOnReadAccess(true);
+		EvictionCounter counter = new EvictionCounter();
+		cache.addEvictionListener(counter);
+		assertThat(cache.get(0), is(notNullValue()));
+		time.setTestTimeShift(THRESHOLD_MILLIS + 100, TimeUnit.MILLISECONDS);
+		assertThat(cache.get(0), is(nullValue()));
+		assertThat(counter.count.get(), is(1));
+		assertThat(cache.size(), is(0));
+	}
+
+	@Test
+	public void testGetSucceedsEvenExpired() {
+		givenACacheWithEntries(8, THRESHOLD_MILLIS, 1);
+		cache.setEvictingOnReadAccess(false);
+		assertThat(cache.get(0), is(notNullValue()));
+		time.setTestTimeShift(THRESHOLD_MILLIS + 100, TimeUnit.MILLISECONDS);
+		assertThat(cache.get(0), is(notNullValue()));
+	}
+
+	@Test
+	public void testGetUpdatesOnlyAfterResolution() throws InterruptedException {
+		TimeAssume assume = new TimeAssume(time);
+		givenACacheWithEntries(8, THRESHOLD_MILLIS, 1);
+		cache.setEvictingOnReadAccess(true);
+		cache.setUpdatingOnReadAccess(true);
+		time.setFixedTestTime(true);
+		Timestamped<String> first = cache.getTimestamped(0);
+		// within resolution, no update
+		Timestamped<String> second = cache.getTimestamped(0);
+		assertThat(second.getLastUpdate(), is(first.getLastUpdate()));
+
+		assume.sleep(THRESHOLD_MILLIS / 2);
+		// after resolution, update
+		assertThat(cache.get(0), assume.inTime(is(notNullValue())));
+		Timestamped<String> third = cache.getTimestamped(0);
+		assertThat(third.getLastUpdate() - first.getLastUpdate(),
+				is(greaterThanOrEqualTo(cache.getAccessResolutionNanos())));
+		assume.sleep((THRESHOLD_MILLIS / 2) + 50);
+		// not expired, because of the update
+		assertThat(cache.get(0), assume.inTime(is(notNullValue())));
+	}
+
+	@Test
+	public void testRemoveExpiredEntriesWithLimit() throws InterruptedException {
+		TimeAssume assume = new TimeAssume(time);
+		givenACacheWithEntries(40, THRESHOLD_MILLIS, 10);
+		cache.setEvictingOnReadAccess(false);
+		cache.setUpdatingOnReadAccess(true);
+		time.setFixedTestTime(true);
+		assume.sleep(THRESHOLD_MILLIS / 2);
+		// update some entries
+		assertThat(cache.get(2), assume.inTime(is(notNullValue())));
+		assertThat(cache.get(8), assume.inTime(is(notNullValue())));
+		assertThat(cache.get(5), assume.inTime(is(notNullValue())));
+
+		// expire not updated entries
+		assume.sleep((THRESHOLD_MILLIS / 2) + 50);
+		// remove with limit
+		assertThat(cache.removeExpiredEntries(3), is(3));
+		// remove with exceeded limit
+		assertThat(cache.removeExpiredEntries(10), is(4));
+		// remove without expired entries
+		assertThat(cache.removeExpiredEntries(1), is(0));
+		// expires all
+		assume.sleep((THRESHOLD_MILLIS / 2) + 50);
+		// remove without limit
+		assertThat(cache.removeExpiredEntries(0), is(3));
+		assertThat(cache.size(), is(0));
+	}
+
+	@Test
+	public void testIteratorTimestampedIsOrdered() {
+		givenACacheWithEntries(40, THRESHOLD_MILLIS, 0);
+		long now = ClockUtil.nanoRealtime();
+		for (int i = 0; i < 20; i++) {
+			// reverse order
+			assertTrue(cache.put(i, Integer.toString(i), now - i));
+		}
+		Iterator<Timestamped<String>> iterator = cache.timestampedIterator();
+		int count = 0;
+		long last = Long.MIN_VALUE;
+		while (iterator.hasNext()) {
+			Timestamped<String> entry = iterator.next();
+			if (count > 0) {
+				assertThat(entry.getLastUpdate() - last, is(greaterThanOrEqualTo(0L)));
+			}
+			last = entry.getLastUpdate();
+			++count;
+		}
+		assertThat(count, is(20));
+	}
+
+	@Test
+	public void testValuesIterator() {
+		givenACacheWithEntries(40, THRESHOLD_MILLIS, 10);
+		int count = 0;
+		Iterator<String> iterator = cache.valuesIterator();
+		while (iterator.hasNext()) {
+			assertThat(iterator.next(), is(notNullValue()));
+			++count;
+		}
+		assertThat(count, is(10));
+		assertTrue(cache.values().contains("5"));
+		assertFalse(cache.values().contains("11"));
+	}
+
+	@Test
+	public void testRemove() {
+		givenACacheWithEntries(40, THRESHOLD_MILLIS, 10);
+		String value = cache.get(3);
+		// remove by identity
+		assertThat(cache.remove(3, "3"), is(nullValue()));
+		assertThat(cache.remove(3, value), is(value));
+		assertThat(cache.remove(4), is("4"));
+		assertThat(cache.get(3), is(nullValue()));
+		assertThat(cache.get(4), is(nullValue()));
+		assertThat(cache.size(), is(8));
+	}
+
+	@Test
+	public void testPutIfAbsent() {
+		givenACacheWithEntries(40, THRESHOLD_MILLIS, 10);
+		assertThat(cache.putIfAbsent(3, "three"), is("3"));
+		assertThat(cache.get(3), is("3"));
+		assertThat(cache.putIfAbsent(30, "30"), is(nullValue()));
+		assertThat(cache.get(30), is("30"));
+		assertThat(cache.size(), is(11));
+	}
+
+	@Test
+	public void testStoreEvictsEldestStaleEntryOfSegment() {
+		givenACacheWithEntries(SEGMENTS, THRESHOLD_MILLIS, 0);
+		EvictionCounter counter = new EvictionCounter();
+		cache.addEvictionListener(counter);
+		assertTrue(cache.put(0, "0"));
+		// same segment, capacity 1 per segment
+		int key = sameSegment(0);
+		assertFalse(cache.put(key, "1"));
+		time.setTestTimeShift(THRESHOLD_MILLIS + 100, TimeUnit.MILLISECONDS);
+		assertTrue(cache.put(key, "1"));
+		assertThat(counter.count.get(), is(1));
+		assertThat(cache.get(0), is(nullValue()));
+	}
+
+	@Test
+	public void testConcurrentAccess() throws InterruptedException {
+		final int threads = 4;
+		final int entries = 1000;
+		cache = new SegmentedLeastRecentlyUsedCache<>(SEGMENTS, threads * entries * 2, THRESHOLD_MILLIS,
+				TimeUnit.MILLISECONDS);
+		final CountDownLatch ready = new CountDownLatch(threads);
+		final AtomicInteger errors = new AtomicInteger();
+		for (int thread = 0; thread < threads; ++thread) {
+			final int offset = thread * entries;
+			Thread worker = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					for (int i = offset; i < offset + entries; ++i) {
+						String value = Integer.toString(i);
+						if (!cache.put(i, value) || !value.equals(cache.get(i))) {
+							errors.incrementAndGet();
+						}
+					}
+					ready.countDown();
+				}
+			});
+			worker.start();
+		}
+		assertTrue(ready.await(10, TimeUnit.SECONDS));
+		assertThat(errors.get(), is(0));
+		assertThat(cache.size(), is(threads * entries));
+	}
+
+	private int sameSegment(int key) {
+		int hash = Integer.valueOf(key).hashCode();
+		hash ^= (hash >>> 16);
+		int segment = (hash & 0x7fffffff) % SEGMENTS;
+		for (int other = key + 1;; ++other) {
+			hash = Integer.valueOf(other).hashCode();
+			hash ^= (hash >>> 16);
+			if ((hash & 0x7fffffff) % SEGMENTS == segment) {
+				return other;
+			}
+		}
+	}
+
+	private void givenACacheWithEntries(int capacity, long expirationThresholdMillis, int noOfEntries) {
+		cache = new SegmentedLeastRecentlyUsedCache<>(SEGMENTS, capacity, expirationThresholdMillis,
+				TimeUnit.MILLISECONDS);
+		for (int i = 0; i < noOfEntries; i++) {
+			cache.put(i, Integer.toString(i));
+		}
+	}
+
+	private static class EvictionCounter implements EvictionListener<String> {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public void onEviction(String value) {
+			count.incrementAndGet();
+		}
+	};
+}
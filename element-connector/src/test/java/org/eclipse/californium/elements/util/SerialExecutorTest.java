@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.elements.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.californium.elements.category.Small;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Verifies behavior of {@link SerialExecutor}.
+ */
+@Category(Small.class)
+public class SerialExecutorTest {
+
+	private static final int JOBS = 10000;
+
+	private ExecutorService target;
+	private SerialExecutor executor;
+
+	@Before
+	public void setup() {
+		target = Executors.newFixedThreadPool(4);
+		executor = new SerialExecutor(target);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+		target.shutdownNow();
+	}
+
+	@Test
+	public void testJobsAreExecutedInOrder() throws InterruptedException {
+		final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+		final AtomicBoolean concurrent = new AtomicBoolean();
+		final CountDownLatch done = new CountDownLatch(JOBS);
+		for (int index = 0; index < JOBS; ++index) {
+			final int job = index;
+			executor.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					if (!executor.checkOwner()) {
+						concurrent.set(true);
+					}
+					executed.add(job);
+					done.countDown();
+				}
+			});
+		}
+		assertThat(done.await(5, TimeUnit.SECONDS), is(true));
+		assertThat(concurrent.get(), is(false));
+		for (int index = 0; index < JOBS; ++index) {
+			assertThat(executed.get(index), is(index));
+		}
+	}
+
+	@Test
+	public void testSetExecutorKeepsOrder() throws InterruptedException {
+		ExecutorService other = Executors.newFixedThreadPool(2);
+		try {
+			final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+			final CountDownLatch done = new CountDownLatch(JOBS);
+			for (int index = 0; index < JOBS; ++index) {
+				if (index == JOBS / 2) {
+					executor.setExecutor(other);
+				}
+				final int job = index;
+				executor.execute(new Runnable() {
+
+					@Override
+					public void run() {
+						executed.add(job);
+						done.countDown();
+					}
+				});
+			}
+			assertThat(done.await(5, TimeUnit.SECONDS), is(true));
+			for (int index = 0; index < JOBS; ++index) {
+				assertThat(executed.get(index), is(index));
+			}
+		} finally {
+			other.shutdownNow();
+		}
+	}
+
+	@Test(expected = NullPointerException.class)
+	public void testSetExecutorRejectsNull() {
+		executor.setExecutor(null);
+	}
+
+	@Test
+	public void testShutdownNowReturnsPendingJobs() throws InterruptedException {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		executor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+				}
+			}
+		});
+		assertThat(started.await(1, TimeUnit.SECONDS), is(true));
+		executor.execute(new TestJob());
+		executor.execute(new TestJob());
+		List<Runnable> pending = executor.shutdownNow();
+		assertThat(pending.size(), is(2));
+		assertThat(executor.isShutdown(), is(true));
+		assertThat(executor.isTerminated(), is(false));
+		release.countDown();
+		assertThat(executor.awaitTermination(1, TimeUnit.SECONDS), is(true));
+	}
+
+	@Test(expected = RejectedExecutionException.class)
+	public void testExecuteAfterShutdownFails() {
+		executor.shutdown();
+		executor.execute(new TestJob());
+	}
+
+	@Test
+	public void testAwaitTerminationOfIdleExecutor() throws InterruptedException {
+		assertThat(executor.awaitTermination(10, TimeUnit.MILLISECONDS), is(false));
+		executor.shutdown();
+		assertThat(executor.awaitTermination(10, TimeUnit.MILLISECONDS), is(true));
+		assertThat(executor.isTerminated(), is(true));
+	}
+
+	private static class TestJob implements Runnable {
+
+		@Override
+		public void run() {
+		}
+	}
+}
@@ -142,11 +142,13 @@ import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -172,6 +174,7 @@ import org.eclipse.californium.elements.util.Bytes;
 import org.eclipse.californium.elements.util.ClockUtil;
 import org.eclipse.californium.elements.util.DaemonThreadFactory;
 import org.eclipse.californium.elements.util.DatagramReader;
+import org.eclipse.californium.elements.util.DatagramWriter;
 import org.eclipse.californium.elements.util.ExecutorsUtil;
 import org.eclipse.californium.elements.util.LeastRecentlyUsedCache;
 import org.eclipse.californium.elements.util.NamedThreadFactory;
@@ -212,6 +215,7 @@ import org.eclipse.californium.scandium.dtls.RecordLayer;
 import org.eclipse.californium.scandium.dtls.ResumingClientHandshaker;
 import org.eclipse.californium.scandium.dtls.ResumingServerHandshaker;
 import org.eclipse.californium.scandium.dtls.ResumptionSupportingConnectionStore;
+import org.eclipse.californium.scandium.dtls.StripedConnectionStore;
 import org.eclipse.californium.scandium.dtls.ServerHandshaker;
 import org.eclipse.californium.scandium.dtls.ServerNameExtension;
 import org.eclipse.californium.scandium.dtls.SessionAdapter;
@@ -219,6 +223,7 @@ import org.eclipse.californium.scandium.dtls.SessionStore;
 import org.eclipse.californium.scandium.dtls.SessionId;
 import org.eclipse.californium.scandium.dtls.SessionListener;
 import org.eclipse.californium.scandium.dtls.cipher.CipherSuite;
+import org.eclipse.californium.scandium.dtls.cipher.XECDHEKeyPairPool;
 import org.eclipse.californium.scandium.dtls.pskstore.AdvancedPskStore;
 import org.eclipse.californium.scandium.dtls.x509.NewAdvancedCertificateVerifier;
 import org.eclipse.californium.scandium.util.SecretUtil;
@@ -263,6 +268,23 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 
 	private static final long CLIENT_HELLO_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(60);
 
+	/**
+	 * Per thread datagram for sending records.
+	 * 
+	 * Reuses the buffer and the datagram packet for all records sent by the
+	 * same thread, shared by all connectors.
+	 * 
+	 * @see #sendRecord(Record)
+	 * @since 3.0
+	 */
+	private static final ThreadLocal<OutgoingDatagram> OUTGOING_DATAGRAM = new ThreadLocal<OutgoingDatagram>() {
+
+		@Override
+		protected OutgoingDatagram initialValue() {
+			return new OutgoingDatagram();
+		}
+	};
+
 	/**
 	 * Indicates, that MDC support is available.
 	 * 
@@ -301,6 +323,13 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 	private final int thresholdHandshakesWithoutVerifiedPeer;
 	private final AtomicInteger pendingHandshakesWithoutVerifiedPeer = new AtomicInteger();
 	protected final DtlsHealth health;
+	/**
+	 * Extended health handler. {@code null}, if {@link #health} doesn't
+	 * implement {@link DtlsHealthExtended}.
+	 * 
+	 * @since 3.0
+	 */
+	private final DtlsHealthExtended healthExtended;
 
 	private final boolean serverOnly;
 	private final String defaultHandshakeMode;
@@ -383,8 +412,32 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 	private volatile AlertHandler alertHandler;
 	private final SessionListener sessionListener;
 	private final ConnectionListener connectionListener;
+	/**
+	 * Pool of pre-generated ephemeral key pairs. {@code null}, if not used.
+	 * 
+	 * @since 3.0
+	 */
+	private final XECDHEKeyPairPool keyPairPool;
 	private ExecutorService executorService;
 	private boolean hasInternalExecutor;
+	/**
+	 * Executor for handshakes.
+	 * 
+	 * Executes the jobs of connections with ongoing handshakes. Counts the
+	 * pending jobs to admit new handshakes with verified address. Created on
+	 * {@link #start()}.
+	 * 
+	 * @since 3.0
+	 */
+	private volatile HandshakeExecutor handshakeExecutor;
+	/**
+	 * Internal executor service for handshakes. {@code null}, if the
+	 * handshakes are executed by the {@link #executorService}.
+	 * 
+	 * @see DtlsConnectorConfig#getHandshakeThreadCount()
+	 * @since 3.0
+	 */
+	private ExecutorService handshakeExecutorService;
 
 	/**
 	 * Creates a DTLS connector from a given configuration object using the
@@ -405,6 +458,12 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 	 * @since 3.0 (moved SessionCache from parameter to configuration)
 	 */
 	protected static ResumptionSupportingConnectionStore createConnectionStore(DtlsConnectorConfig configuration) {
+		int stripes = configuration.getConnectionStoreStripes();
+		if (stripes > 1) {
+			return new StripedConnectionStore(stripes, configuration.getMaxConnections(),
+					configuration.getStaleConnectionThreshold(), configuration.getSessionStore())
+							.setTag(configuration.getLoggingTag());
+		}
 		return new InMemoryConnectionStore(configuration.getMaxConnections(),
 				configuration.getStaleConnectionThreshold(), configuration.getSessionStore()).setTag(configuration.getLoggingTag());
 
@@ -446,6 +505,12 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 			this.connectionStore.attach(connectionIdGenerator);
 			this.connectionStore.setConnectionListener(config.getConnectionListener());
 			this.connectionListener = config.getConnectionListener();
+			int keyPairPoolSize = config.getKeyPairPoolSize();
+			if (keyPairPoolSize > 0 && !config.getSupportedGroups().isEmpty()) {
+				this.keyPairPool = new XECDHEKeyPairPool(keyPairPoolSize, config.getSupportedGroups());
+			} else {
+				this.keyPairPool = null;
+			}
 			HandshakeResultHandler handler = new HandshakeResultHandler() {
 
 				@Override
@@ -472,10 +537,13 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 				}
 			}
 			this.health = healthHandler;
+			this.healthExtended = (healthHandler instanceof DtlsHealthExtended) ? (DtlsHealthExtended) healthHandler
+					: null;
 			this.sessionListener = new SessionAdapter() {
 
 				@Override
 				public void contextEstablished(Handshaker handshaker, DTLSContext establishedContext) {
+					useWorkerExecutor(handshaker);
 					DTLSConnector.this.contextEstablished(handshaker);
 				}
 
@@ -495,6 +563,7 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 					if (health != null) {
 						health.endHandshake(false);
 					}
+					useWorkerExecutor(handshaker);
 					List<RawData> listOut = handshaker.takeDeferredApplicationData();
 					if (!listOut.isEmpty()) {
 						LOGGER.debug("Handshake with [{}] failed, report error to deferred {} messages",
@@ -567,6 +636,12 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 	 * @param handshaker new create handshaker
 	 */
 	private final void initializeHandshaker(final Handshaker handshaker) {
+		handshaker.setKeyPairPool(keyPairPool);
+		HandshakeExecutor executor = handshakeExecutor;
+		SerialExecutor serialExecutor = handshaker.getConnection().getExecutor();
+		if (executor != null && serialExecutor != null) {
+			serialExecutor.setExecutor(executor);
+		}
 		if (sessionListener != null) {
 			handshaker.addSessionListener(sessionListener);
 			if (health != null) {
@@ -576,6 +651,28 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 		onInitializeHandshaker(handshaker);
 	}
 
+	/**
+	 * Use the worker threads for the jobs of the handshaker's connection.
+	 * 
+	 * Called, when the handshake is established or failed. The jobs of
+	 * connections with ongoing handshakes are executed by the
+	 * {@link #handshakeExecutor}.
+	 * 
+	 * @param handshaker established or failed handshaker
+	 * @since 3.0
+	 */
+	private void useWorkerExecutor(Handshaker handshaker) {
+		Connection connection = handshaker.getConnection();
+		Handshaker ongoing = connection.getOngoingHandshake();
+		if (ongoing == null || ongoing == handshaker) {
+			ExecutorService executor = getExecutorService();
+			SerialExecutor serialExecutor = connection.getExecutor();
+			if (executor != null && serialExecutor != null) {
+				serialExecutor.setExecutor(executor);
+			}
+		}
+	}
+
 	/**
 	 * Called after initialization of new create handshaker.
 	 * 
@@ -899,6 +996,14 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 			}
 			this.hasInternalExecutor = true;
 		}
+		int handshakeThreadCount = config.getHandshakeThreadCount();
+		if (handshakeThreadCount > 0) {
+			handshakeExecutorService = ExecutorsUtil.newFixedThreadPool(handshakeThreadCount, new DaemonThreadFactory(
+					"DTLS-Handshake-" + lastBindAddress + "#", NamedThreadFactory.SCANDIUM_THREAD_GROUP)); //$NON-NLS-1$
+			handshakeExecutor = new HandshakeExecutor(handshakeExecutorService, config.getMaxPendingHandshakeJobs());
+		} else {
+			handshakeExecutor = new HandshakeExecutor(executorService, config.getMaxPendingHandshakeJobs());
+		}
 		// prepare restored connections.
 		long expires = calculateRecentHandshakeExpires();
 		int recentCounter = 0;
@@ -950,6 +1055,9 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 			}
 		}
 		running.set(true);
+		if (keyPairPool != null) {
+			keyPairPool.start();
+		}
 
 		int receiverThreadCount = config.getReceiverThreadCount();
 		for (int i = 0; i < receiverThreadCount; i++) {
@@ -985,6 +1093,7 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 
 					@Override
 					public void run() {
+						updateQueueDepths();
 						health.dump(config.getLoggingTag(), config.getMaxConnections(), connectionStore.remainingCapacity(), pendingHandshakesWithoutVerifiedPeer.get());
 					}
 
@@ -1044,10 +1153,31 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 		return socket;
 	}
 
+	/**
+	 * Report the queue depths of the handshake and worker jobs to the
+	 * {@link #health}.
+	 * 
+	 * @since 3.0
+	 */
+	private void updateQueueDepths() {
+		if (healthExtended == null) {
+			return;
+		}
+		HandshakeExecutor executor = handshakeExecutor;
+		int handshakeJobs = executor == null ? 0 : executor.getPendingJobs();
+		int workerJobs = -1;
+		ExecutorService workers = getExecutorService();
+		if (workers instanceof ThreadPoolExecutor && !(workers instanceof ScheduledExecutorService)) {
+			workerJobs = ((ThreadPoolExecutor) workers).getQueue().size();
+		}
+		healthExtended.updateQueueDepths(handshakeJobs, workerJobs);
+	}
+
 	@Override
 	public void stop() {
 		ExecutorService shutdownTimer = null;
 		ExecutorService shutdown = null;
+		ExecutorService shutdownHandshakes = null;
 		List<Runnable> pending = new ArrayList<>();
 		boolean stop;
 		synchronized (this) {
@@ -1064,6 +1194,9 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 				}
 				// recent handshakes will be restored from connection store,
 				recentHandshakes.clear();
+				if (keyPairPool != null) {
+					keyPairPool.stop();
+				}
 				for (Thread t : receiverThreads) {
 					t.interrupt();
 				}
@@ -1086,6 +1219,11 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 					executorService = null;
 					hasInternalExecutor = false;
 				}
+				if (handshakeExecutorService != null) {
+					pending.addAll(handshakeExecutorService.shutdownNow());
+					shutdownHandshakes = handshakeExecutorService;
+					handshakeExecutorService = null;
+				}
 				for (Thread t : receiverThreads) {
 					t.interrupt();
 					try {
@@ -1112,6 +1250,15 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 			} catch (InterruptedException e) {
 			}
 		}
+		if (shutdownHandshakes != null) {
+			try {
+				if (!shutdownHandshakes.awaitTermination(500, TimeUnit.MILLISECONDS)) {
+					LOGGER.warn("Shutdown DTLS connector on [{}] handshake executor not terminated in time!",
+							lastBindAddress);
+				}
+			} catch (InterruptedException e) {
+			}
+		}
 		for (Runnable job : pending) {
 			try {
 				job.run();
@@ -1326,6 +1473,12 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 	 *         parameter create is {@code false}.
 	 */
 	private final Connection getConnection(InetSocketAddress peerAddress, ConnectionId cid, boolean create) {
+		// fast path without lock for the common case of an executing connection
+		Connection available = cid != null ? connectionStore.get(cid) : connectionStore.get(peerAddress);
+		if (available != null && available.isExecuting()) {
+			LOGGER.trace("connection available for {},{}", peerAddress, cid);
+			return available;
+		}
 		ExecutorService executor = getExecutorService();
 		synchronized (connectionStore) {
 			Connection connection;
@@ -1438,6 +1591,8 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 
 		if (records.size() == 1 && firstRecord.isNewClientHello()) {
 			firstRecord.setAddress(peerAddress, router);
+			// the address is verified by the workers, only verified
+			// CLIENT_HELLOs are admitted to the handshake executor
 			executorService.execute(new Runnable() {
 
 				@Override
@@ -1892,7 +2047,10 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 	 * a connection for that CLIENT_HELLO already exists using the client random
 	 * contained in the CLIENT_HELLO message. If the connection already exists,
 	 * take that, otherwise create a new one and pass the execution to the
-	 * serial execution of that connection.
+	 * serial execution of that connection. If too many handshake jobs are
+	 * pending, a CLIENT_HELLO with verified address is dropped. CLIENT_HELLOs
+	 * without verified address are answered with a HELLO_VERIFY_REQUEST and
+	 * are not limited.
 	 * 
 	 * @param record record of CLIENT_HELLO message
 	 */
@@ -1914,6 +2072,21 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 			// the IP address indicated in the client hello message
 			AddressVerification addressVerification = isClientInControlOfSourceIpAddress(clientHello, record, expectedCookie);
 			if (addressVerification != null) {
+				HandshakeExecutor executor = handshakeExecutor;
+				if (!executor.admit()) {
+					// drop instead of a HELLO_VERIFY_REQUEST, the peer's
+					// retransmission backs off, while a verified peer would
+					// retry immediately
+					DROP_LOGGER.trace("Discarding new CLIENT_HELLO from [{}], {} handshake jobs pending",
+							StringUtil.toLog(peerAddress), executor.getPendingJobs());
+					if (health != null) {
+						health.receivingRecord(true);
+					}
+					if (healthExtended != null) {
+						healthExtended.dropClientHello();
+					}
+					return;
+				}
 				Connection connection;
 				synchronized (connectionStore) {
 					connection = connectionStore.get(peerAddress);
@@ -1952,7 +2125,7 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 					}
 					if (connection == null) {
 						connection = new Connection(peerAddress);
-						connection.setConnectorContext(getExecutorService(), connectionListener);
+						connection.setConnectorContext(handshakeExecutor, connectionListener);
 						connection.startByClientHello(clientHello);
 						if (!connectionStore.put(connection)) {
 							return;
@@ -2847,9 +3020,11 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 		if (health != null && record.getType() != ContentType.APPLICATION_DATA) {
 			health.sendingRecord(false);
 		}
-		byte[] recordBytes = record.toByteArray();
-		DatagramPacket datagram = new DatagramPacket(recordBytes, recordBytes.length, record.getPeerAddress());
-		sendNextDatagramOverNetwork(datagram);
+		OutgoingDatagram outgoing = OUTGOING_DATAGRAM.get();
+		record.writeTo(outgoing.writer);
+		outgoing.writer.writeTo(outgoing.datagram);
+		outgoing.datagram.setSocketAddress(record.getPeerAddress());
+		sendNextDatagramOverNetwork(outgoing.datagram);
 	}
 
 	protected void sendNextDatagramOverNetwork(final DatagramPacket datagramPacket) throws IOException {
@@ -3012,6 +3187,88 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 		return running.get();
 	}
 
+	/**
+	 * Reusable buffer and datagram packet for sending records.
+	 * 
+	 * @since 3.0
+	 */
+	private static class OutgoingDatagram {
+
+		private final DatagramWriter writer = new DatagramWriter(DEFAULT_IPV4_MTU);
+		private final DatagramPacket datagram = new DatagramPacket(Bytes.EMPTY, 0);
+	}
+
+	/**
+	 * Executor for handshake jobs.
+	 * 
+	 * Passes the jobs to the target executor and counts the pending jobs,
+	 * either queued or executing. New handshakes are only admitted, if the
+	 * number of pending jobs is below the limit.
+	 * 
+	 * @since 3.0
+	 */
+	private static class HandshakeExecutor implements Executor {
+
+		/**
+		 * Target executor.
+		 */
+		private final Executor executor;
+		/**
+		 * Maximum number of pending jobs to admit new handshakes. {@code 0}
+		 * for no limit.
+		 */
+		private final int maxPendingJobs;
+		/**
+		 * Number of pending jobs.
+		 */
+		private final AtomicInteger pendingJobs = new AtomicInteger();
+
+		private HandshakeExecutor(Executor executor, int maxPendingJobs) {
+			this.executor = executor;
+			this.maxPendingJobs = maxPendingJobs;
+		}
+
+		@Override
+		public void execute(final Runnable command) {
+			pendingJobs.incrementAndGet();
+			try {
+				executor.execute(new Runnable() {
+
+					@Override
+					public void run() {
+						try {
+							command.run();
+						} finally {
+							pendingJobs.decrementAndGet();
+						}
+					}
+				});
+			} catch (RuntimeException ex) {
+				pendingJobs.decrementAndGet();
+				throw ex;
+			}
+		}
+
+		/**
+		 * Check, if a new handshake is admitted.
+		 * 
+		 * @return {@code true}, if admitted, {@code false}, if too many jobs
+		 *         are pending.
+		 */
+		private boolean admit() {
+			return maxPendingJobs == 0 || pendingJobs.get() < maxPendingJobs;
+		}
+
+		/**
+		 * Get number of pending jobs.
+		 * 
+		 * @return number of pending jobs
+		 */
+		private int getPendingJobs() {
+			return pendingJobs.get();
+		}
+	}
+
 	/**
 	 * A worker thread for continuously doing repetitive tasks.
 	 */
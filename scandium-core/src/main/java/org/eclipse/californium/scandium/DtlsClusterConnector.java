@@ -12,6 +12,9 @@
  * 
  * Contributors:
  *    Bosch IO.GmbH - initial creation
+ *    Bosch.IO GmbH - add batching of forwarded and backwarded messages
+ *    Bosch.IO GmbH - add destination node hook for connection handover
+ *    Bosch.IO GmbH - flush pending batches on stop
  ******************************************************************************/
 package org.eclipse.californium.scandium;
 
@@ -20,10 +23,15 @@ import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.net.UnknownHostException;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import org.eclipse.californium.elements.util.DatagramReader;
@@ -62,6 +70,13 @@ import org.slf4j.LoggerFactory;
  * to send outgoing messages also from other endpoints,
  * {@link DtlsClusterConnectorConfig} can be used to configure that.
  * </p>
+ * <p>
+ * Since 3.0 the forwarded and backwarded records may be sent in batches, see
+ * {@link DtlsClusterConnectorConfig#getBatchSize()}. A batch starts with
+ * {@link #RECORD_TYPE_BATCH} followed by the cluster internal messages, each
+ * prepended by its length (2 bytes, network byte order). The messages are
+ * encoded in the same way as sent without batching.
+ * </p>
  * 
  * @since 2.5
  */
@@ -125,6 +140,27 @@ public class DtlsClusterConnector extends DTLSConnector {
 	 * Message Format</a> (1. byte, version 0b01, others xx xxxx).
 	 */
 	public static final Byte RECORD_TYPE_OUTGOING = (byte) 62;
+	/**
+	 * Type of batched forwarded or backwarded messages.
+	 * 
+	 * Unassigned according <a href=
+	 * "https://www.iana.org/assignments/tls-parameters/tls-parameters.xhtml#tls-parameters-5">IANA,
+	 * TLS ContentType</a>, and no collision with CoAP messages
+	 * <a href= "https://tools.ietf.org/html/rfc7252#section-3">RFC 7252,
+	 * Message Format</a> (1. byte, version 0b01, others xx xxxx). Also no
+	 * collision with the cluster management messages of the
+	 * {@code DtlsClusterManager} ({@code 61} and {@code 60}), which are
+	 * received by the same socket.
+	 * 
+	 * @since 3.0
+	 */
+	public static final Byte RECORD_TYPE_BATCH = (byte) 58;
+	/**
+	 * Size of the length of a message within a batch.
+	 * 
+	 * @since 3.0
+	 */
+	protected static final int BATCH_MESSAGE_LENGTH_SIZE = 2;
 	/**
 	 * Node CID generator to extract node-id from CID and retrieve own node-id.
 	 */
@@ -142,6 +178,32 @@ public class DtlsClusterConnector extends DTLSConnector {
 	 * Send messages back to original receiving dtls connector.
 	 */
 	private final boolean backwardMessages;
+	/**
+	 * Configured maximum size of batched datagrams. {@code 0}, if batching is
+	 * disabled.
+	 * 
+	 * @since 3.0
+	 */
+	private final int configuredBatchSize;
+	/**
+	 * Interval in microseconds to flush a not completely filled batch.
+	 * 
+	 * @since 3.0
+	 */
+	private final int batchIntervalMicros;
+	/**
+	 * Maximum size of batched datagrams. Limited by the receive buffer.
+	 * {@code 0}, if batching is disabled.
+	 * 
+	 * @since 3.0
+	 */
+	private volatile int batchSize;
+	/**
+	 * Batches per cluster node.
+	 * 
+	 * @since 3.0
+	 */
+	private final ConcurrentMap<InetSocketAddress, ClusterBatch> batches = new ConcurrentHashMap<>();
 	/**
 	 * DTLS cluster health statistic.
 	 */
@@ -197,10 +259,12 @@ public class DtlsClusterConnector extends DTLSConnector {
 		this.nodeCidGenerator = getNodeConnectionIdGenerator();
 		this.clusterInternalSocketAddress = clusterConfiguration.getAddress();
 		this.backwardMessages = clusterConfiguration.useBackwardMessages();
+		this.configuredBatchSize = clusterConfiguration.getBatchSize();
+		this.batchIntervalMicros = clusterConfiguration.getBatchIntervalMicros();
 		this.clusterHealth = (health instanceof DtlsClusterHealth) ? (DtlsClusterHealth) health : null;
 		this.startReceiver = startReceiver;
-		LOGGER.info("cluster-node {}: on internal {}, backwards {}", getNodeID(),
-				StringUtil.toLog(clusterInternalSocketAddress), backwardMessages);
+		LOGGER.info("cluster-node {}: on internal {}, backwards {}, batch {}", getNodeID(),
+				StringUtil.toLog(clusterInternalSocketAddress), backwardMessages, configuredBatchSize);
 	}
 
 	/**
@@ -248,6 +312,7 @@ public class DtlsClusterConnector extends DTLSConnector {
 			throw ex;
 		}
 		super.init(bindAddress, socket, mtu);
+		batchSize = Math.min(configuredBatchSize, inboundDatagramBufferSize + MAX_DATAGRAM_OFFSET);
 		if (startReceiver) {
 			startReceiver();
 		}
@@ -273,6 +338,10 @@ public class DtlsClusterConnector extends DTLSConnector {
 				public void doWork() throws Exception {
 					clusterPacket.setData(receiverBuffer);
 					clusterInternalSocket.receive(clusterPacket);
+					if (batchSize > 0 && isClusterBatch(clusterPacket)) {
+						processBatchFromClusterNetwork(clusterPacket);
+						return;
+					}
 					Byte type = getClusterRecordType(clusterPacket);
 					if (type != null) {
 						if (ensureLength(type, clusterPacket)) {
@@ -296,10 +365,15 @@ public class DtlsClusterConnector extends DTLSConnector {
 	 * {@inheritDoc}
 	 * 
 	 * Stop also socket and threads for cluster internal communication.
+	 * Pending batches are sent before the socket is closed.
 	 */
 	@Override
 	public void stop() {
 		super.stop();
+		for (ClusterBatch batch : batches.values()) {
+			batch.flush();
+		}
+		batches.clear();
 		synchronized (this) {
 			clusterInternalSocket.close();
 			for (Thread t : clusterReceiverThreads) {
@@ -331,6 +405,16 @@ public class DtlsClusterConnector extends DTLSConnector {
 		this.nodesProvider = nodes;
 	}
 
+	/**
+	 * Get cluster nodes provider.
+	 * 
+	 * @return cluster nodes provider
+	 * @since 3.0
+	 */
+	protected ClusterNodesProvider getClusterNodesProvider() {
+		return nodesProvider;
+	}
+
 	/**
 	 * Get connector's node-id.
 	 * 
@@ -358,6 +442,21 @@ public class DtlsClusterConnector extends DTLSConnector {
 		return null;
 	}
 
+	/**
+	 * Check, if internal message is a batch of forwarded or backwarded
+	 * records.
+	 * 
+	 * Only used, if batching is enabled.
+	 * 
+	 * @param clusterPacket cluster internal message
+	 * @return {@code true}, if message is a batch, {@code false}, otherwise.
+	 * @since 3.0
+	 */
+	protected boolean isClusterBatch(DatagramPacket clusterPacket) {
+		return clusterPacket.getLength() > 0 && clusterPacket.getData()[clusterPacket.getOffset()
+				+ CLUSTER_RECORD_TYPE_OFFSET] == RECORD_TYPE_BATCH.byteValue();
+	}
+
 	/**
 	 * Ensure, that the packet is large enough for a valid cluster internal
 	 * message.
@@ -414,6 +513,57 @@ public class DtlsClusterConnector extends DTLSConnector {
 		}
 	}
 
+	/**
+	 * Process received batch of cluster internal messages.
+	 * 
+	 * Splits the batch and processes the contained messages using
+	 * {@link #processDatagramFromClusterNetwork(Byte, DatagramPacket)}.
+	 * 
+	 * @param batchPacket batch of cluster internal messages
+	 * @since 3.0
+	 */
+	protected void processBatchFromClusterNetwork(DatagramPacket batchPacket) {
+		byte[] data = batchPacket.getData();
+		int index = batchPacket.getOffset() + 1;
+		int end = batchPacket.getOffset() + batchPacket.getLength();
+		SocketAddress router = batchPacket.getSocketAddress();
+		DatagramPacket clusterPacket = new DatagramPacket(data, 0);
+		int messages = 0;
+		while (index < end) {
+			int length = -1;
+			if (index + BATCH_MESSAGE_LENGTH_SIZE <= end) {
+				length = ((data[index] & 0xff) << 8) | (data[index + 1] & 0xff);
+				index += BATCH_MESSAGE_LENGTH_SIZE;
+			}
+			if (length < 0 || index + length > end) {
+				FILTER.debug("cluster-node {}: received broken batch from {}", getNodeID(), StringUtil.toLog(router));
+				if (clusterHealth != null) {
+					clusterHealth.dropForwardMessage();
+				}
+				break;
+			}
+			++messages;
+			// decode modifies the packet, therefore reset data and address
+			clusterPacket.setData(data, index, length);
+			clusterPacket.setSocketAddress(router);
+			index += length;
+			Byte type = getClusterRecordType(clusterPacket);
+			if (type != null && ensureLength(type, clusterPacket)) {
+				try {
+					processDatagramFromClusterNetwork(type, clusterPacket);
+				} catch (IOException ex) {
+					FILTER.debug("cluster-node {}: processing batched message from {} failed!", getNodeID(),
+							StringUtil.toLog(router), ex);
+				}
+			} else if (clusterHealth != null) {
+				clusterHealth.dropForwardMessage();
+			}
+		}
+		if (clusterHealth != null) {
+			clusterHealth.receiveClusterBatch(messages);
+		}
+	}
+
 	/**
 	 * Process cluster internal management message.
 	 * 
@@ -429,13 +579,78 @@ public class DtlsClusterConnector extends DTLSConnector {
 	/**
 	 * Send cluster internal message.
 	 * 
-	 * Used for forwarded or backwarded tls_cid records.
+	 * Used for forwarded or backwarded tls_cid records. If batching is
+	 * enabled, the message is added to the batch of the destination node.
+	 * 
+	 * The message is reported to the {@link #clusterHealth} as forwarded or
+	 * backwarded, when it is actually sent. If a batch could not be sent, the
+	 * contained messages are reported as dropped.
+	 * 
+	 * Note: with batching, sending the batch happens later and an i/o-error
+	 * is not thrown by this method. Therefore a forwarded record, which could
+	 * not be sent, is dropped instead of being processed locally as fallback,
+	 * as it is done without batching. Backwarded records are also dropped
+	 * without reporting the error to the callback of the message.
 	 * 
 	 * @param clusterPacket cluster internal message
+	 * @param nodeId node-id of the destination node. Used for the statistic
+	 *            of forwarded records, ignored for backwarded records.
 	 * @throws IOException if an i/o-error occurred.
+	 * @since 3.0 (added parameter nodeId)
+	 */
+	protected void sendDatagramToClusterNetwork(DatagramPacket clusterPacket, int nodeId) throws IOException {
+		if (batchSize > 0) {
+			InetSocketAddress destination = (InetSocketAddress) clusterPacket.getSocketAddress();
+			ClusterBatch batch = batches.get(destination);
+			if (batch == null) {
+				batch = new ClusterBatch(destination);
+				ClusterBatch previous = batches.putIfAbsent(destination, batch);
+				if (previous != null) {
+					batch = previous;
+				}
+			}
+			batch.add(clusterPacket, nodeId);
+		} else {
+			byte type = clusterPacket.getData()[clusterPacket.getOffset() + CLUSTER_RECORD_TYPE_OFFSET];
+			clusterInternalSocket.send(clusterPacket);
+			reportSent(type, nodeId);
+		}
+	}
+
+	/**
+	 * Report sent cluster internal message to the {@link #clusterHealth}.
+	 * 
+	 * @param type type of the message. {@link #RECORD_TYPE_INCOMING} or
+	 *            {@link #RECORD_TYPE_OUTGOING}.
+	 * @param nodeId node-id of the destination node of forwarded messages
+	 * @since 3.0
+	 */
+	private void reportSent(byte type, int nodeId) {
+		if (clusterHealth != null) {
+			if (type == RECORD_TYPE_INCOMING.byteValue()) {
+				clusterHealth.forwardMessage();
+				clusterHealth.forwardMessage(nodeId);
+			} else if (type == RECORD_TYPE_OUTGOING.byteValue()) {
+				clusterHealth.backwardMessage();
+			}
+		}
+	}
+
+	/**
+	 * Report dropped cluster internal message to the {@link #clusterHealth}.
+	 * 
+	 * @param type type of the message. {@link #RECORD_TYPE_INCOMING} or
+	 *            {@link #RECORD_TYPE_OUTGOING}.
+	 * @since 3.0
 	 */
-	protected void sendDatagramToClusterNetwork(DatagramPacket clusterPacket) throws IOException {
-		clusterInternalSocket.send(clusterPacket);
+	private void reportDropped(byte type) {
+		if (clusterHealth != null) {
+			if (type == RECORD_TYPE_INCOMING.byteValue()) {
+				clusterHealth.dropForwardMessage();
+			} else if (type == RECORD_TYPE_OUTGOING.byteValue()) {
+				clusterHealth.dropBackwardMessage();
+			}
+		}
 	}
 
 	/**
@@ -455,7 +670,7 @@ public class DtlsClusterConnector extends DTLSConnector {
 				DatagramReader reader = new DatagramReader(data, offset, length);
 				ConnectionId cid = Record.readConnectionIdFromReader(reader, connectionIdGenerator);
 				if (cid != null) {
-					int incomingNodeId = nodeCidGenerator.getNodeId(cid);
+					int incomingNodeId = getDestinationNodeId(cid, nodeCidGenerator.getNodeId(cid));
 					if (getNodeID() != incomingNodeId) {
 						LOGGER.trace("cluster-node {}: received foreign message for {} from {}", getNodeID(),
 								incomingNodeId, StringUtil.toLog(source));
@@ -466,10 +681,7 @@ public class DtlsClusterConnector extends DTLSConnector {
 							try {
 								LOGGER.trace("cluster-node {}: forwards received message from {} to {}, {} bytes",
 										getNodeID(), StringUtil.toLog(source), StringUtil.toLog(clusterNode), length);
-								sendDatagramToClusterNetwork(clusterPacket);
-								if (clusterHealth != null) {
-									clusterHealth.forwardMessage();
-								}
+								sendDatagramToClusterNetwork(clusterPacket, incomingNodeId);
 								return;
 							} catch (IOException e) {
 								LOGGER.info("cluster-node {}: error forwarding to {}/{}:", getNodeID(), incomingNodeId,
@@ -506,6 +718,22 @@ public class DtlsClusterConnector extends DTLSConnector {
 		super.processDatagram(packet, null);
 	}
 
+	/**
+	 * Get node-id of node to process the record.
+	 * 
+	 * Called for every received tls_cid record. Records for other nodes are
+	 * forwarded to that node.
+	 * 
+	 * @param cid connection id of the record
+	 * @param nodeId node-id contained in the connection id
+	 * @return node-id of node to process the record. This default
+	 *         implementation returns the provided node-id.
+	 * @since 3.0
+	 */
+	protected int getDestinationNodeId(ConnectionId cid, int nodeId) {
+		return nodeId;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * 
@@ -527,10 +755,7 @@ public class DtlsClusterConnector extends DTLSConnector {
 				DatagramPacket clusterPacket = encode(RECORD_TYPE_OUTGOING, datagram, recordBytes);
 				clusterPacket.setSocketAddress(router);
 				try {
-					sendDatagramToClusterNetwork(clusterPacket);
-					if (clusterHealth != null) {
-						clusterHealth.backwardMessage();
-					}
+					sendDatagramToClusterNetwork(clusterPacket, -1);
 				} catch (IOException ex) {
 					LOGGER.debug("cluster-node {}: sending internal message failed!", getNodeID(), ex);
 					if (clusterHealth != null) {
@@ -621,6 +846,146 @@ public class DtlsClusterConnector extends DTLSConnector {
 		}
 	}
 
+	/**
+	 * Batch of cluster internal messages for one cluster node.
+	 * 
+	 * @since 3.0
+	 */
+	private class ClusterBatch implements Runnable {
+
+		/**
+		 * Datagram to send the batch.
+		 */
+		private final DatagramPacket batchPacket;
+		/**
+		 * Buffer of the batch.
+		 */
+		private final byte[] buffer;
+		/**
+		 * Types of the messages in the batch.
+		 */
+		private final byte[] types;
+		/**
+		 * Node-ids of the destination node of the messages in the batch.
+		 */
+		private final int[] nodeIds;
+		/**
+		 * Current length of the batch.
+		 */
+		private int length;
+		/**
+		 * Number of messages in the batch.
+		 */
+		private int messages;
+		/**
+		 * Indicates, that a flush is scheduled.
+		 */
+		private boolean scheduled;
+
+		private ClusterBatch(InetSocketAddress destination) {
+			int maxMessages = batchSize / (BATCH_MESSAGE_LENGTH_SIZE + CLUSTER_ADDRESS_OFFSET + MIN_ADDRESS_LENGTH);
+			this.buffer = new byte[batchSize];
+			this.types = new byte[maxMessages];
+			this.nodeIds = new int[maxMessages];
+			this.batchPacket = new DatagramPacket(buffer, 0, destination);
+		}
+
+		/**
+		 * Add cluster internal message to batch.
+		 * 
+		 * Sends the batch, if the message doesn't fit into the batch.
+		 * Messages too large for a batch are sent without batch.
+		 * 
+		 * @param clusterPacket cluster internal message
+		 * @param nodeId node-id of the destination node
+		 * @throws IOException if an i/o-error occurred sending a message too
+		 *             large for a batch.
+		 */
+		private synchronized void add(DatagramPacket clusterPacket, int nodeId) throws IOException {
+			int messageLength = clusterPacket.getLength();
+			int required = BATCH_MESSAGE_LENGTH_SIZE + messageLength;
+			byte type = clusterPacket.getData()[clusterPacket.getOffset() + CLUSTER_RECORD_TYPE_OFFSET];
+			if (length + required > buffer.length || messages == types.length) {
+				flush();
+				if (1 + required > buffer.length) {
+					clusterInternalSocket.send(clusterPacket);
+					reportSent(type, nodeId);
+					return;
+				}
+			}
+			if (length == 0) {
+				buffer[CLUSTER_RECORD_TYPE_OFFSET] = RECORD_TYPE_BATCH;
+				length = 1;
+			}
+			buffer[length++] = (byte) (messageLength >> 8);
+			buffer[length++] = (byte) messageLength;
+			System.arraycopy(clusterPacket.getData(), clusterPacket.getOffset(), buffer, length, messageLength);
+			length += messageLength;
+			types[messages] = type;
+			nodeIds[messages] = nodeId;
+			++messages;
+			if (!scheduled) {
+				ScheduledExecutorService timer = DtlsClusterConnector.this.timer;
+				if (timer != null) {
+					try {
+						timer.schedule(this, batchIntervalMicros, TimeUnit.MICROSECONDS);
+						scheduled = true;
+					} catch (RejectedExecutionException ex) {
+						// stopped
+					}
+				}
+				if (!scheduled) {
+					flush();
+				}
+			}
+		}
+
+		/**
+		 * Send batch.
+		 * 
+		 * A batch with a single message is sent as that message. The messages
+		 * are reported as sent after the batch is sent, or as dropped, if
+		 * sending the batch failed.
+		 */
+		private synchronized void flush() {
+			if (messages == 0) {
+				return;
+			}
+			try {
+				if (messages == 1) {
+					int offset = 1 + BATCH_MESSAGE_LENGTH_SIZE;
+					batchPacket.setData(buffer, offset, length - offset);
+				} else {
+					batchPacket.setData(buffer, 0, length);
+				}
+				clusterInternalSocket.send(batchPacket);
+				if (messages > 1 && clusterHealth != null) {
+					clusterHealth.sendClusterBatch(messages);
+				}
+				for (int index = 0; index < messages; ++index) {
+					reportSent(types[index], nodeIds[index]);
+				}
+			} catch (IOException ex) {
+				FILTER.debug("cluster-node {}: sending batch to {} failed!", getNodeID(),
+						StringUtil.toLog(batchPacket.getSocketAddress()), ex);
+				for (int index = 0; index < messages; ++index) {
+					reportDropped(types[index]);
+				}
+			} finally {
+				length = 0;
+				messages = 0;
+			}
+		}
+
+		@Override
+		public void run() {
+			synchronized (this) {
+				scheduled = false;
+				flush();
+			}
+		}
+	}
+
 	/**
 	 * Cluster nodes provider. Maintaining internal addresses of nodes.
 	 * 
@@ -12,6 +12,7 @@
  * 
  * Contributors:
  *    Bosch IO.GmbH - initial creation
+ *    Bosch.IO GmbH - add node and batch statistic
  ******************************************************************************/
 package org.eclipse.californium.scandium;
 
@@ -27,6 +28,16 @@ public interface DtlsClusterHealth extends DtlsHealth {
 	 */
 	void forwardMessage();
 
+	/**
+	 * Report forwarding (CID) message to node.
+	 * 
+	 * Reported in addition to {@link #forwardMessage()}.
+	 * 
+	 * @param nodeId node-id of destination node
+	 * @since 3.0
+	 */
+	void forwardMessage(int nodeId);
+
 	/**
 	 * Report processing of forwarded (CID) message.
 	 */
@@ -72,4 +83,20 @@ public interface DtlsClusterHealth extends DtlsHealth {
 	 */
 	void receivingClusterManagementMessage();
 
+	/**
+	 * Report sending batch of forwarded or backwarded (CID) messages.
+	 * 
+	 * @param messages number of messages in batch
+	 * @since 3.0
+	 */
+	void sendClusterBatch(int messages);
+
+	/**
+	 * Report receiving batch of forwarded or backwarded (CID) messages.
+	 * 
+	 * @param messages number of messages in batch
+	 * @since 3.0
+	 */
+	void receiveClusterBatch(int messages);
+
 }
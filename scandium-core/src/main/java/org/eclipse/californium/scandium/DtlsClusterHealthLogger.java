@@ -12,9 +12,14 @@
  * 
  * Contributors:
  *    Bosch IO.GmbH - initial creation
+ *    Bosch.IO GmbH - add node and batch statistic
  ******************************************************************************/
 package org.eclipse.californium.scandium;
 
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ScheduledExecutorService;
 
 import org.eclipse.californium.elements.util.SimpleCounterStatistic;
@@ -41,6 +46,16 @@ public class DtlsClusterHealthLogger extends DtlsHealthLogger implements DtlsClu
 			"sent cluster mgmt", align);
 	private final SimpleCounterStatistic receivingClusterManagementMessage = new SimpleCounterStatistic(
 			"recv cluster mgmt", align);
+	private final SimpleCounterStatistic sentBatches = new SimpleCounterStatistic("sent batches", align);
+	private final SimpleCounterStatistic sentBatchedMessages = new SimpleCounterStatistic("sent batched", align);
+	private final SimpleCounterStatistic receivedBatches = new SimpleCounterStatistic("recv batches", align);
+	private final SimpleCounterStatistic receivedBatchedMessages = new SimpleCounterStatistic("recv batched", align);
+	/**
+	 * Forwarded messages per node.
+	 * 
+	 * @since 3.0
+	 */
+	private final ConcurrentMap<Integer, SimpleCounterStatistic> forwardedMessagesPerNode = new ConcurrentHashMap<>();
 
 	/**
 	 * Create passive dtls cluster health logger.
@@ -83,6 +98,10 @@ public class DtlsClusterHealthLogger extends DtlsHealthLogger implements DtlsClu
 		add(dropBackwardMessage);
 		add(sendingClusterManagementMessage);
 		add(receivingClusterManagementMessage);
+		add(sentBatches);
+		add(sentBatchedMessages);
+		add(receivedBatches);
+		add(receivedBatchedMessages);
 	}
 
 	protected boolean isUsed() {
@@ -102,6 +121,95 @@ public class DtlsClusterHealthLogger extends DtlsHealthLogger implements DtlsClu
 		log.append(head).append(dropBackwardMessage).append(eol);
 		log.append(head).append(sendingClusterManagementMessage).append(eol);
 		log.append(head).append(receivingClusterManagementMessage);
+		if (sentBatches.isUsed() || receivedBatches.isUsed()) {
+			log.append(eol);
+			log.append(head).append(sentBatches).append(eol);
+			log.append(head).append(sentBatchedMessages).append(eol);
+			log.append(head).append(receivedBatches).append(eol);
+			log.append(head).append(receivedBatchedMessages);
+		}
+		for (SimpleCounterStatistic node : new TreeMap<>(forwardedMessagesPerNode).values()) {
+			log.append(eol).append(head).append(node);
+		}
+	}
+
+	@Override
+	public void reset() {
+		super.reset();
+		for (SimpleCounterStatistic node : forwardedMessagesPerNode.values()) {
+			node.reset();
+		}
+	}
+
+	/**
+	 * Get number of sent batches.
+	 * 
+	 * @return number of sent batches
+	 * @since 3.0
+	 */
+	public long getSentBatches() {
+		return sentBatches.getCounter();
+	}
+
+	/**
+	 * Get number of messages sent in batches.
+	 * 
+	 * @return number of messages sent in batches
+	 * @since 3.0
+	 */
+	public long getSentBatchedMessages() {
+		return sentBatchedMessages.getCounter();
+	}
+
+	/**
+	 * Get number of received batches.
+	 * 
+	 * @return number of received batches
+	 * @since 3.0
+	 */
+	public long getReceivedBatches() {
+		return receivedBatches.getCounter();
+	}
+
+	/**
+	 * Get number of messages received in batches.
+	 * 
+	 * @return number of messages received in batches
+	 * @since 3.0
+	 */
+	public long getReceivedBatchedMessages() {
+		return receivedBatchedMessages.getCounter();
+	}
+
+	/**
+	 * Get number of forwarded messages to node.
+	 * 
+	 * @param nodeId node-id of destination node
+	 * @return number of forwarded messages
+	 * @since 3.0
+	 */
+	public long getForwardedMessages(int nodeId) {
+		SimpleCounterStatistic statistic = forwardedMessagesPerNode.get(nodeId);
+		return statistic == null ? 0 : statistic.getCounter();
+	}
+
+	/**
+	 * Get forwarded messages statistic for node.
+	 * 
+	 * @param nodeId node-id of destination node
+	 * @return forwarded messages statistic
+	 * @since 3.0
+	 */
+	private SimpleCounterStatistic getForwardedMessagesStatistic(int nodeId) {
+		SimpleCounterStatistic statistic = forwardedMessagesPerNode.get(nodeId);
+		if (statistic == null) {
+			statistic = new SimpleCounterStatistic("forwarded to node " + nodeId, align);
+			SimpleCounterStatistic previous = forwardedMessagesPerNode.putIfAbsent(nodeId, statistic);
+			if (previous != null) {
+				statistic = previous;
+			}
+		}
+		return statistic;
 	}
 
 	@Override
@@ -109,6 +217,11 @@ public class DtlsClusterHealthLogger extends DtlsHealthLogger implements DtlsClu
 		forwardedMessage.increment();
 	}
 
+	@Override
+	public void forwardMessage(int nodeId) {
+		getForwardedMessagesStatistic(nodeId).increment();
+	}
+
 	@Override
 	public void backwardMessage() {
 		backwardedMessage.increment();
@@ -154,4 +267,16 @@ public class DtlsClusterHealthLogger extends DtlsHealthLogger implements DtlsClu
 		receivingClusterManagementMessage.increment();
 	}
 
+	@Override
+	public void sendClusterBatch(int messages) {
+		sentBatches.increment();
+		sentBatchedMessages.increment(messages);
+	}
+
+	@Override
+	public void receiveClusterBatch(int messages) {
+		receivedBatches.increment();
+		receivedBatchedMessages.increment(messages);
+	}
+
 }
@@ -0,0 +1,46 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ * 
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ * 
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium;
+
+/**
+ * Extended health interface for {@link DTLSConnector}.
+ * 
+ * Adds the handshake admission and queue statistic, without changing the
+ * {@link DtlsHealth} interface of existing implementations.
+ * 
+ * @since 3.0
+ */
+public interface DtlsHealthExtended extends DtlsHealth {
+
+	/**
+	 * Report dropping a new CLIENT_HELLO with verified address, because too
+	 * many handshake jobs are pending.
+	 * 
+	 * Reported in addition to {@link #receivingRecord(boolean)}.
+	 */
+	void dropClientHello();
+
+	/**
+	 * Report the current queue depths.
+	 * 
+	 * Reported before {@link #dump(String, int, int, int)}.
+	 * 
+	 * @param handshakeJobs number of pending handshake jobs
+	 * @param workerJobs number of queued jobs of the worker threads. {@code -1},
+	 *            if not available.
+	 */
+	void updateQueueDepths(int handshakeJobs, int workerJobs);
+}
@@ -12,6 +12,7 @@
  * 
  * Contributors:
  *    Bosch Software Innovations GmbH - initial creation
+ *    Bosch.IO GmbH - add handshake admission and queue statistic
  ******************************************************************************/
 package org.eclipse.californium.scandium;
 
@@ -29,7 +30,7 @@ import org.slf4j.LoggerFactory;
  * Health implementation using counter and logging for results.
  */
 @NoPublicAPI
-public class DtlsHealthLogger extends CounterStatisticManager implements DtlsHealth {
+public class DtlsHealthLogger extends CounterStatisticManager implements DtlsHealthExtended {
 
 	/** the logger. */
 	private static final Logger LOGGER = LoggerFactory.getLogger(DTLSConnector.class.getCanonicalName() + ".health");
@@ -46,6 +47,26 @@ public class DtlsHealthLogger extends CounterStatisticManager implements DtlsHea
 	private final SimpleCounterStatistic sentRecords = new SimpleCounterStatistic("sending records", align);
 	private final SimpleCounterStatistic droppedSentRecords = new SimpleCounterStatistic("dropped sending records",
 			align);
+	/**
+	 * Dropped new CLIENT_HELLOs.
+	 * 
+	 * @since 3.0
+	 */
+	private final SimpleCounterStatistic droppedClientHellos = new SimpleCounterStatistic("dropped client hellos",
+			align);
+	/**
+	 * Number of pending handshake jobs.
+	 * 
+	 * @since 3.0
+	 */
+	private volatile int handshakeJobs;
+	/**
+	 * Number of queued jobs of the worker threads. {@code -1}, if not
+	 * available.
+	 * 
+	 * @since 3.0
+	 */
+	private volatile int workerJobs = -1;
 
 	/**
 	 * Create passive dtls health logger.
@@ -85,6 +106,7 @@ public class DtlsHealthLogger extends CounterStatisticManager implements DtlsHea
 		add(droppedReceivedRecords);
 		add(sentRecords);
 		add(droppedSentRecords);
+		add(droppedClientHellos);
 	}
 
 	@Override
@@ -100,7 +122,8 @@ public class DtlsHealthLogger extends CounterStatisticManager implements DtlsHea
 				log.append(head).append(sentRecords).append(eol);
 				log.append(head).append(droppedSentRecords).append(eol);
 				log.append(head).append(receivedRecords).append(eol);
-				log.append(head).append(droppedReceivedRecords);
+				log.append(head).append(droppedReceivedRecords).append(eol);
+				log.append(head).append(droppedClientHellos);
 				dump(head, log);
 				LOGGER.debug("{}", log);
 			}
@@ -116,8 +139,12 @@ public class DtlsHealthLogger extends CounterStatisticManager implements DtlsHea
 				String head = "   " + tag;
 				String associations = "associations";
 				String handshakes = "handshakes pending";
+				String handshakeQueue = "handshake jobs";
+				String workerQueue = "worker jobs queued";
 				align.add(associations);
 				align.add(handshakes);
+				align.add(handshakeQueue);
+				align.add(workerQueue);
 				StringBuilder log = new StringBuilder();
 				log.append(tag).append("statistic:").append(eol);
 				String msg = SimpleCounterStatistic.format(align.getAlign(), associations,
@@ -127,12 +154,20 @@ public class DtlsHealthLogger extends CounterStatisticManager implements DtlsHea
 				msg = SimpleCounterStatistic.format(align.getAlign(), handshakes, pendingHandshakes.get());
 				log.append(head).append(msg);
 				log.append(" (").append(pendingWithoutVerify).append(" without verify).").append(eol);
+				msg = SimpleCounterStatistic.format(align.getAlign(), handshakeQueue, handshakeJobs);
+				log.append(head).append(msg).append(eol);
+				int jobs = workerJobs;
+				if (jobs >= 0) {
+					msg = SimpleCounterStatistic.format(align.getAlign(), workerQueue, jobs);
+					log.append(head).append(msg).append(eol);
+				}
 				log.append(head).append(succeededHandshakes).append(eol);
 				log.append(head).append(failedHandshakes).append(eol);
 				log.append(head).append(sentRecords).append(eol);
 				log.append(head).append(droppedSentRecords).append(eol);
 				log.append(head).append(receivedRecords).append(eol);
-				log.append(head).append(droppedReceivedRecords);
+				log.append(head).append(droppedReceivedRecords).append(eol);
+				log.append(head).append(droppedClientHellos);
 				dump(head, log);
 				LOGGER.debug("{}", log);
 			}
@@ -202,4 +237,48 @@ public class DtlsHealthLogger extends CounterStatisticManager implements DtlsHea
 			sentRecords.increment();
 		}
 	}
+
+	@Override
+	public void dropClientHello() {
+		droppedClientHellos.increment();
+	}
+
+	@Override
+	public void updateQueueDepths(int handshakeJobs, int workerJobs) {
+		this.handshakeJobs = handshakeJobs;
+		this.workerJobs = workerJobs;
+	}
+
+	/**
+	 * Get number of dropped new CLIENT_HELLOs.
+	 * 
+	 * @return number of dropped new CLIENT_HELLOs
+	 * @since 3.0
+	 */
+	public long getDroppedClientHellos() {
+		return droppedClientHellos.getCounter();
+	}
+
+	/**
+	 * Get number of pending handshake jobs.
+	 * 
+	 * @return number of pending handshake jobs, as last reported with
+	 *         {@link #updateQueueDepths(int, int)}.
+	 * @since 3.0
+	 */
+	public int getHandshakeJobs() {
+		return handshakeJobs;
+	}
+
+	/**
+	 * Get number of queued jobs of the worker threads.
+	 * 
+	 * @return number of queued jobs, as last reported with
+	 *         {@link #updateQueueDepths(int, int)}. {@code -1}, if not
+	 *         available.
+	 * @since 3.0
+	 */
+	public int getWorkerJobs() {
+		return workerJobs;
+	}
 }
@@ -12,6 +12,7 @@
  * 
  * Contributors:
  *    Bosch IO.GmbH - initial creation
+ *    Bosch.IO GmbH - add connection handover
  ******************************************************************************/
 package org.eclipse.californium.scandium;
 
@@ -20,18 +21,27 @@ import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetSocketAddress;
 import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.crypto.Mac;
 import javax.crypto.SecretKey;
 
+import org.eclipse.californium.elements.AddressEndpointContext;
 import org.eclipse.californium.elements.Connector;
 import org.eclipse.californium.elements.RawData;
 import org.eclipse.californium.elements.RawDataChannel;
 import org.eclipse.californium.elements.UDPConnector;
+import org.eclipse.californium.elements.util.ClockUtil;
+import org.eclipse.californium.elements.util.DatagramReader;
+import org.eclipse.californium.elements.util.DatagramWriter;
+import org.eclipse.californium.elements.util.SegmentedLeastRecentlyUsedCache;
+import org.eclipse.californium.elements.util.SerialExecutor;
 import org.eclipse.californium.elements.util.StringUtil;
 import org.eclipse.californium.scandium.config.DtlsClusterConnectorConfig;
 import org.eclipse.californium.scandium.config.DtlsConnectorConfig;
 import org.eclipse.californium.scandium.dtls.Connection;
+import org.eclipse.californium.scandium.dtls.ConnectionId;
 import org.eclipse.californium.scandium.dtls.DTLSContext;
 import org.eclipse.californium.scandium.dtls.Handshaker;
 import org.eclipse.californium.scandium.dtls.NodeConnectionIdGenerator;
@@ -50,6 +60,15 @@ import org.slf4j.LoggerFactory;
  * If encryption is enabled, that header for the forwarded tls-cid records maybe
  * protected by a MAC, see {@link DtlsClusterConnectorConfig}.
  * 
+ * If encryption is enabled, connections may also be handed over to the node,
+ * which receives the records of that connection, see
+ * {@link DtlsClusterConnectorConfig#getHandoverThreshold()}. That node requests
+ * the connection state from the owning node using a
+ * {@link #HANDOVER_REQUEST}. The owning node responds with a
+ * {@link #HANDOVER_RESPONSE} containing the state in the format of
+ * {@link Connection#writeTo(DatagramWriter)} and removes the connection.
+ * Records still received by the previous owner are forwarded to the new one.
+ * 
  * @since 2.5
  */
 public class DtlsManagedClusterConnector extends DtlsClusterConnector {
@@ -79,6 +98,63 @@ public class DtlsManagedClusterConnector extends DtlsClusterConnector {
 	 * @see #getManagementProtocol()
 	 */
 	public static final String PROTOCOL_MANAGEMENT_DTLS_MAC = "mgmt-dtls-mac";
+	/**
+	 * Type of management message to request the handover of a connection.
+	 * 
+	 * Sent using the DTLS management connector. Followed by the
+	 * {@link #HANDOVER_MAGIC}, the node-id of the requesting node (4 bytes)
+	 * and the connection id.
+	 * 
+	 * Doesn't collide with the cluster management messages of the
+	 * {@code DtlsClusterManager} ({@code 61} and {@code 60}), nor with
+	 * {@link #RECORD_TYPE_BATCH}.
+	 * 
+	 * @since 3.0
+	 */
+	public static final byte HANDOVER_REQUEST = (byte) 57;
+	/**
+	 * Type of management message with the handed over connection.
+	 * 
+	 * Sent using the DTLS management connector. Followed by the
+	 * {@link #HANDOVER_MAGIC} and a result (1 byte). If accepted ({@code 1}),
+	 * followed by the current {@link ClockUtil#nanoRealtime()} of the sending
+	 * node (8 bytes) and the connection state. If rejected ({@code 0}),
+	 * followed by the connection id (1 byte length and the connection id).
+	 * 
+	 * Doesn't collide with the cluster management messages of the
+	 * {@code DtlsClusterManager} ({@code 61} and {@code 60}), nor with
+	 * {@link #RECORD_TYPE_BATCH}.
+	 * 
+	 * @since 3.0
+	 */
+	public static final byte HANDOVER_RESPONSE = (byte) 56;
+	/**
+	 * Magic of handover messages. Follows the type.
+	 * 
+	 * @since 3.0
+	 */
+	private static final byte[] HANDOVER_MAGIC = { 'H', 'O' };
+	/**
+	 * Minimum length of a {@link #HANDOVER_REQUEST}. Type, magic, node-id and
+	 * at least one byte connection id.
+	 * 
+	 * @since 3.0
+	 */
+	private static final int HANDOVER_REQUEST_MIN_LENGTH = 1 + HANDOVER_MAGIC.length + 4 + 1;
+	/**
+	 * Minimum length of a {@link #HANDOVER_RESPONSE}. Type, magic, result and
+	 * at least the length of the connection id.
+	 * 
+	 * @since 3.0
+	 */
+	private static final int HANDOVER_RESPONSE_MIN_LENGTH = 1 + HANDOVER_MAGIC.length + 1 + 1;
+	/**
+	 * Expiration of the number of forwarded records of a connection in
+	 * seconds.
+	 * 
+	 * @since 3.0
+	 */
+	private static final int HANDOVER_EXPIRATION_SECONDS = 60;
 
 	/**
 	 * Protocol for cluster management. {@link #PROTOCOL_MANAGEMENT_UDP},
@@ -97,6 +173,41 @@ public class DtlsManagedClusterConnector extends DtlsClusterConnector {
 	 * tls_cid records.
 	 */
 	private final Connector clusterManagementConnector;
+	/**
+	 * Connection store.
+	 * 
+	 * @since 3.0
+	 */
+	private final ResumptionSupportingConnectionStore connectionStore;
+	/**
+	 * Number of forwarded records of a connection to request the handover.
+	 * {@code 0}, if handover is disabled.
+	 * 
+	 * @since 3.0
+	 */
+	private final int handoverThreshold;
+	/**
+	 * Number of forwarded records per connection id.
+	 * 
+	 * {@code null}, if handover is disabled.
+	 * 
+	 * @since 3.0
+	 */
+	private final SegmentedLeastRecentlyUsedCache<ConnectionId, AtomicInteger> forwardedRecords;
+	/**
+	 * Node-ids of the nodes, which took over connections from this node.
+	 * 
+	 * Entries are kept as the connections in the connection store: each
+	 * forwarded record refreshes the entry, and stale entries are only
+	 * evicted, if the capacity is exhausted. Records, which still reach this
+	 * node, are therefore forwarded to the new owner as long as this node
+	 * would have kept the connection itself.
+	 * 
+	 * {@code null}, if handover is disabled.
+	 * 
+	 * @since 3.0
+	 */
+	private final SegmentedLeastRecentlyUsedCache<ConnectionId, Integer> handedOver;
 
 	/**
 	 * Create dtls connector with cluster management communication.
@@ -127,6 +238,7 @@ public class DtlsManagedClusterConnector extends DtlsClusterConnector {
 	protected DtlsManagedClusterConnector(DtlsConnectorConfig configuration,
 			DtlsClusterConnectorConfig clusterConfiguration, ResumptionSupportingConnectionStore connectionStore) {
 		super(configuration, clusterConfiguration, connectionStore, false);
+		this.connectionStore = connectionStore;
 		String identity = clusterConfiguration.getSecureIdentity();
 		Integer mgmtReceiveBuffer = addConditionally(config.getSocketReceiveBufferSize(), MAX_DATAGRAM_OFFSET);
 		Integer mgmtSendBuffer = addConditionally(config.getSocketSendBufferSize(), MAX_DATAGRAM_OFFSET);
@@ -181,6 +293,7 @@ public class DtlsManagedClusterConnector extends DtlsClusterConnector {
 
 			this.useClusterMac = clusterConfiguration.useClusterMac();
 			this.protocol = this.useClusterMac ? PROTOCOL_MANAGEMENT_DTLS_MAC : PROTOCOL_MANAGEMENT_DTLS;
+			this.handoverThreshold = clusterConfiguration.getHandoverThreshold();
 		} else {
 			ClusterManagementUdpConnector udpConnector = new ClusterManagementUdpConnector(
 					clusterConfiguration.getAddress());
@@ -195,9 +308,21 @@ public class DtlsManagedClusterConnector extends DtlsClusterConnector {
 			this.clusterManagementConnector = udpConnector;
 			this.useClusterMac = false;
 			this.protocol = PROTOCOL_MANAGEMENT_UDP;
+			this.handoverThreshold = 0;
+		}
+		if (handoverThreshold > 0) {
+			int segments = Math.max(1, Math.min(16, config.getMaxConnections() / 1024));
+			this.forwardedRecords = new SegmentedLeastRecentlyUsedCache<>(segments, config.getMaxConnections(),
+					HANDOVER_EXPIRATION_SECONDS, TimeUnit.SECONDS);
+			this.handedOver = new SegmentedLeastRecentlyUsedCache<>(segments, config.getMaxConnections(),
+					config.getStaleConnectionThreshold(), TimeUnit.SECONDS);
+			this.handedOver.setEvictingOnReadAccess(false);
+		} else {
+			this.forwardedRecords = null;
+			this.handedOver = null;
 		}
-		LOGGER.info("cluster-node {} ({}): recv. buffer {}, send buffer {}", getNodeID(), protocol, mgmtReceiveBuffer,
-				mgmtSendBuffer);
+		LOGGER.info("cluster-node {} ({}): recv. buffer {}, send buffer {}, handover {}", getNodeID(), protocol,
+				mgmtReceiveBuffer, mgmtSendBuffer, handoverThreshold);
 	}
 
 	/**
@@ -310,7 +435,7 @@ public class DtlsManagedClusterConnector extends DtlsClusterConnector {
 	 * records, if {@link #useClusterMac} is enabled.
 	 */
 	@Override
-	protected void sendDatagramToClusterNetwork(DatagramPacket clusterPacket) throws IOException {
+	protected void sendDatagramToClusterNetwork(DatagramPacket clusterPacket, int nodeId) throws IOException {
 		if (useClusterMac) {
 			try {
 				DTLSContext context = ((DTLSConnector) clusterManagementConnector)
@@ -328,7 +453,7 @@ public class DtlsManagedClusterConnector extends DtlsClusterConnector {
 				throw new IOException("Cluster MAC could not be generated!", ex);
 			}
 		}
-		super.sendDatagramToClusterNetwork(clusterPacket);
+		super.sendDatagramToClusterNetwork(clusterPacket, nodeId);
 	}
 
 	/**
@@ -400,6 +525,176 @@ public class DtlsManagedClusterConnector extends DtlsClusterConnector {
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * If handover is enabled, records of connections taken over from other
+	 * nodes are processed locally, and records of connections handed over to
+	 * other nodes are forwarded to those. If records of a connection are
+	 * forwarded {@link #handoverThreshold} times, the handover of that
+	 * connection is requested.
+	 * 
+	 * @since 3.0
+	 */
+	@Override
+	protected int getDestinationNodeId(ConnectionId cid, int nodeId) {
+		if (handoverThreshold == 0) {
+			return nodeId;
+		}
+		int ownNodeId = getNodeID();
+		if (handedOver.size() > 0) {
+			Integer handedOverNodeId = handedOver.get(cid);
+			if (handedOverNodeId != null) {
+				if (connectionStore.get(cid) == null) {
+					nodeId = handedOverNodeId;
+				} else {
+					// taken back
+					handedOver.remove(cid, handedOverNodeId);
+					return ownNodeId;
+				}
+			}
+		}
+		if (nodeId != ownNodeId) {
+			if (connectionStore.get(cid) != null) {
+				return ownNodeId;
+			}
+			AtomicInteger counter = new AtomicInteger();
+			AtomicInteger previous = forwardedRecords.putIfAbsent(cid, counter);
+			if (previous != null) {
+				counter = previous;
+			}
+			if (counter.incrementAndGet() % handoverThreshold == 0) {
+				requestHandover(cid, nodeId);
+			}
+		}
+		return nodeId;
+	}
+
+	/**
+	 * Request handover of connection.
+	 * 
+	 * @param cid connection id of connection
+	 * @param nodeId node-id of the node owning the connection
+	 * @since 3.0
+	 */
+	private void requestHandover(ConnectionId cid, int nodeId) {
+		InetSocketAddress node = getClusterNodesProvider().getClusterNode(nodeId);
+		if (node != null) {
+			DatagramWriter writer = new DatagramWriter(HANDOVER_REQUEST_MIN_LENGTH - 1 + cid.length());
+			writer.writeByte(HANDOVER_REQUEST);
+			writer.writeBytes(HANDOVER_MAGIC);
+			writer.write(getNodeID(), Integer.SIZE);
+			writer.writeBytes(cid.getBytes());
+			LOGGER.debug("cluster-node {} ({}): request handover of {} from {}", getNodeID(), protocol, cid, nodeId);
+			clusterManagementConnector
+					.send(RawData.outbound(writer.toByteArray(), new AddressEndpointContext(node), null, false));
+		}
+	}
+
+	/**
+	 * Process handover request.
+	 * 
+	 * Serializes and removes the requested connection within the serial
+	 * execution of that connection, and responds with the serialized
+	 * connection. Requests with a node-id, which doesn't belong to the
+	 * requesting peer, are dropped.
+	 * 
+	 * @param request handover request
+	 * @since 3.0
+	 */
+	private void processHandoverRequest(final RawData request) {
+		int offset = 1 + HANDOVER_MAGIC.length;
+		DatagramReader reader = new DatagramReader(request.getBytes(), offset, request.getSize() - offset);
+		final int nodeId = reader.read(Integer.SIZE);
+		final ConnectionId cid = new ConnectionId(reader.readBytesLeft());
+		InetSocketAddress node = getClusterNodesProvider().getClusterNode(nodeId);
+		if (!request.getInetSocketAddress().equals(node)) {
+			LOGGER.warn("cluster-node {} ({}): drop handover request of {} for {} from {}!", getNodeID(), protocol,
+					cid, nodeId, StringUtil.toLog(request.getInetSocketAddress()));
+			return;
+		}
+		final Connection connection = connectionStore.get(cid);
+		Runnable handover = new Runnable() {
+
+			@Override
+			public void run() {
+				DatagramWriter writer = new DatagramWriter(true);
+				boolean accepted = false;
+				if (connection != null && connection.getConnectionId().equals(cid)) {
+					writer.writeByte(HANDOVER_RESPONSE);
+					writer.writeBytes(HANDOVER_MAGIC);
+					writer.writeByte((byte) 1);
+					writer.writeLong(ClockUtil.nanoRealtime(), Long.SIZE);
+					accepted = connection.writeTo(writer);
+					if (accepted) {
+						connectionStore.remove(connection, false);
+						handedOver.put(cid, nodeId);
+						LOGGER.info("cluster-node {} ({}): handover {} to {}", getNodeID(), protocol, cid, nodeId);
+					} else {
+						writer.reset();
+					}
+				}
+				if (!accepted) {
+					LOGGER.debug("cluster-node {} ({}): reject handover {} to {}", getNodeID(), protocol, cid,
+							nodeId);
+					writer.writeByte(HANDOVER_RESPONSE);
+					writer.writeBytes(HANDOVER_MAGIC);
+					writer.writeByte((byte) 0);
+					writer.writeVarBytes(cid, Byte.SIZE);
+				}
+				RawData response = RawData.outbound(writer.toByteArray(),
+						new AddressEndpointContext(request.getInetSocketAddress()), null, false);
+				writer.close();
+				clusterManagementConnector.send(response);
+			}
+		};
+		SerialExecutor executor = connection == null ? null : connection.getExecutor();
+		if (executor == null) {
+			handover.run();
+		} else {
+			executor.execute(handover);
+		}
+	}
+
+	/**
+	 * Process handover response.
+	 * 
+	 * Restores the handed over connection, if the handover was requested.
+	 * 
+	 * @param response handover response
+	 * @since 3.0
+	 */
+	private void processHandoverResponse(RawData response) {
+		int offset = 1 + HANDOVER_MAGIC.length;
+		DatagramReader reader = new DatagramReader(response.getBytes(), offset, response.getSize() - offset);
+		if (reader.readNextByte() == 0) {
+			byte[] cid = reader.readVarBytes(Byte.SIZE);
+			if (cid != null) {
+				LOGGER.debug("cluster-node {} ({}): handover {} rejected", getNodeID(), protocol,
+						StringUtil.byteArray2Hex(cid));
+				forwardedRecords.remove(new ConnectionId(cid));
+			}
+			return;
+		}
+		long nanoShift = ClockUtil.nanoRealtime() - reader.readLong(Long.SIZE);
+		try {
+			Connection connection = Connection.fromReader(reader, nanoShift);
+			if (connection != null) {
+				ConnectionId cid = connection.getConnectionId();
+				if (forwardedRecords.remove(cid) == null) {
+					LOGGER.info("cluster-node {} ({}): handover {} not requested!", getNodeID(), protocol, cid);
+				} else if (restoreConnection(connection)) {
+					handedOver.remove(cid);
+					LOGGER.info("cluster-node {} ({}): took over {}", getNodeID(), protocol, cid);
+				} else {
+					LOGGER.info("cluster-node {} ({}): failed to take over {}", getNodeID(), protocol, cid);
+				}
+			}
+		} catch (RuntimeException ex) {
+			LOGGER.info("cluster-node {} ({}): failed to take over connection!", getNodeID(), protocol, ex);
+		}
+	}
+
 	@Override
 	protected void processManagementDatagramFromClusterNetwork(DatagramPacket clusterPacket) throws IOException {
 		LOGGER.trace("cluster-node {} ({}): process datagram from {}, {} bytes", getNodeID(), protocol,
@@ -464,6 +759,8 @@ public class DtlsManagedClusterConnector extends DtlsClusterConnector {
 
 		public ClusterManagementDtlsConnector(DtlsConnectorConfig configuration) {
 			super(configuration);
+			// intercept handover messages, even without application receiver
+			setRawDataReceiver(null);
 		}
 
 		@Override
@@ -487,7 +784,11 @@ public class DtlsManagedClusterConnector extends DtlsClusterConnector {
 
 				@Override
 				public void receiveData(RawData raw) {
-					messageHandler.receiveData(raw);
+					if (!processHandover(raw)) {
+						if (messageHandler != null) {
+							messageHandler.receiveData(raw);
+						}
+					}
 					if (clusterHealth != null) {
 						clusterHealth.receivingClusterManagementMessage();
 					}
@@ -495,6 +796,37 @@ public class DtlsManagedClusterConnector extends DtlsClusterConnector {
 			});
 		}
 
+		/**
+		 * Process handover messages.
+		 * 
+		 * Only messages with the handover type, the {@link #HANDOVER_MAGIC}
+		 * and the minimum length are processed as handover messages.
+		 * 
+		 * @param raw received management message
+		 * @return {@code true}, if the message is a handover message,
+		 *         {@code false}, otherwise.
+		 * @since 3.0
+		 */
+		private boolean processHandover(RawData raw) {
+			if (handoverThreshold > 0 && raw.getSize() > HANDOVER_MAGIC.length) {
+				byte[] data = raw.getBytes();
+				for (int index = 0; index < HANDOVER_MAGIC.length; ++index) {
+					if (data[index + 1] != HANDOVER_MAGIC[index]) {
+						return false;
+					}
+				}
+				byte type = data[0];
+				if (type == HANDOVER_REQUEST && raw.getSize() >= HANDOVER_REQUEST_MIN_LENGTH) {
+					processHandoverRequest(raw);
+					return true;
+				} else if (type == HANDOVER_RESPONSE && raw.getSize() >= HANDOVER_RESPONSE_MIN_LENGTH) {
+					processHandoverResponse(raw);
+					return true;
+				}
+			}
+			return false;
+		}
+
 		@Override
 		public void send(RawData msg) {
 			super.send(msg);
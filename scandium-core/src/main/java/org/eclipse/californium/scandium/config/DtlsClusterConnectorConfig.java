@@ -12,6 +12,8 @@
  * 
  * Contributors:
  *    Bosch IO.GmbH - initial creation
+ *    Bosch.IO GmbH - add batching of cluster internal messages
+ *    Bosch.IO GmbH - add connection handover
  ******************************************************************************/
 package org.eclipse.californium.scandium.config;
 
@@ -28,6 +30,13 @@ import org.eclipse.californium.scandium.util.SecretUtil;
  */
 public final class DtlsClusterConnectorConfig {
 
+	/**
+	 * Default interval in microseconds to flush a not completely filled batch.
+	 * 
+	 * @since 3.0
+	 */
+	public static final int DEFAULT_BATCH_INTERVAL_MICROS = 500;
+
 	/**
 	 * Local socket address for cluster internal connector.
 	 */
@@ -54,6 +63,26 @@ public final class DtlsClusterConnectorConfig {
 	 * Send outgoing messages back via original receiving connector (router).
 	 */
 	private Boolean backwardMessages;
+	/**
+	 * Maximum size in bytes of batched cluster internal datagrams.
+	 * {@code 0}, if batching is disabled.
+	 * 
+	 * @since 3.0
+	 */
+	private Integer batchSize;
+	/**
+	 * Interval in microseconds to flush a not completely filled batch.
+	 * 
+	 * @since 3.0
+	 */
+	private Integer batchIntervalMicros;
+	/**
+	 * Number of forwarded records of a connection to request the handover of
+	 * that connection. {@code 0}, if handover is disabled.
+	 * 
+	 * @since 3.0
+	 */
+	private Integer handoverThreshold;
 
 	/**
 	 * Get local socket address for internal cluster connector.
@@ -105,6 +134,42 @@ public final class DtlsClusterConnectorConfig {
 		return backwardMessages;
 	}
 
+	/**
+	 * Get maximum size of batched cluster internal datagrams.
+	 * 
+	 * Forwarded and backwarded records are packed into batched datagrams per
+	 * cluster node, in order to reduce the number of cluster internal
+	 * datagrams.
+	 * 
+	 * @return maximum size in bytes. {@code 0}, if batching is disabled.
+	 * @since 3.0
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Get interval to flush a not completely filled batch.
+	 * 
+	 * @return interval in microseconds
+	 * @since 3.0
+	 */
+	public int getBatchIntervalMicros() {
+		return batchIntervalMicros;
+	}
+
+	/**
+	 * Get number of forwarded records of a connection to request the handover
+	 * of that connection.
+	 * 
+	 * @return number of forwarded records. {@code 0}, if handover is disabled.
+	 * @see Builder#setHandoverThreshold(Integer)
+	 * @since 3.0
+	 */
+	public int getHandoverThreshold() {
+		return handoverThreshold;
+	}
+
 	/**
 	 * @return a copy of this configuration
 	 */
@@ -116,6 +181,9 @@ public final class DtlsClusterConnectorConfig {
 		cloned.secret = SecretUtil.create(secret);
 		cloned.clusterMac = clusterMac;
 		cloned.backwardMessages = backwardMessages;
+		cloned.batchSize = batchSize;
+		cloned.batchIntervalMicros = batchIntervalMicros;
+		cloned.handoverThreshold = handoverThreshold;
 		return cloned;
 	}
 
@@ -234,6 +302,77 @@ public final class DtlsClusterConnectorConfig {
 			return this;
 		}
 
+		/**
+		 * Set maximum size of batched cluster internal datagrams.
+		 * 
+		 * Forwarded and backwarded records are packed into batched datagrams
+		 * per cluster node. A batch is sent, if the next record doesn't fit
+		 * or the batch interval expires. The size is limited by the receive
+		 * buffer of the cluster internal communication, which is based on the
+		 * MTU. All nodes of a cluster must support batched datagrams, if
+		 * enabled on one node.
+		 * 
+		 * @param size maximum size in bytes. {@code 0} to disable batching.
+		 *            Default is {@code 0}.
+		 * @return this builder for command chaining
+		 * @throws IllegalArgumentException if size is negative
+		 * @see #setBatchIntervalMicros(Integer)
+		 * @since 3.0
+		 */
+		public Builder setBatchSize(Integer size) {
+			if (size != null && size < 0) {
+				throw new IllegalArgumentException("Batch size " + size + " must not be negative!");
+			}
+			config.batchSize = size;
+			return this;
+		}
+
+		/**
+		 * Set interval to flush a not completely filled batch.
+		 * 
+		 * @param interval interval in microseconds. Default is
+		 *            {@link DtlsClusterConnectorConfig#DEFAULT_BATCH_INTERVAL_MICROS}.
+		 * @return this builder for command chaining
+		 * @throws IllegalArgumentException if interval is less than {@code 1}
+		 * @see #setBatchSize(Integer)
+		 * @since 3.0
+		 */
+		public Builder setBatchIntervalMicros(Integer interval) {
+			if (interval != null && interval < 1) {
+				throw new IllegalArgumentException("Batch interval " + interval + " must be at least 1!");
+			}
+			config.batchIntervalMicros = interval;
+			return this;
+		}
+
+		/**
+		 * Set number of forwarded records of a connection to request the
+		 * handover of that connection.
+		 * 
+		 * If a node keeps receiving records of a connection owned by an other
+		 * node, e.g. caused by a NAT rebinding, that node requests the
+		 * connection state from the owning node and takes it over. That stops
+		 * the forwarding of the records. Only the DTLS state is moved, the
+		 * state of the upper layers (e.g. CoAP observations) is not moved.
+		 * 
+		 * Requires encryption for the cluster internal communication, see
+		 * {@link #setSecure(String, SecretKey)}, because the connection state
+		 * contains the keys.
+		 * 
+		 * @param threshold number of forwarded records. {@code 0} to disable
+		 *            the handover. Default is {@code 0}.
+		 * @return this builder for command chaining
+		 * @throws IllegalArgumentException if threshold is negative
+		 * @since 3.0
+		 */
+		public Builder setHandoverThreshold(Integer threshold) {
+			if (threshold != null && threshold < 0) {
+				throw new IllegalArgumentException("Handover threshold " + threshold + " must not be negative!");
+			}
+			config.handoverThreshold = threshold;
+			return this;
+		}
+
 		/**
 		 * Returns a potentially incomplete configuration. Only fields set by
 		 * users are affected, there is no default value, no consistency check.
@@ -255,7 +394,8 @@ public final class DtlsClusterConnectorConfig {
 		 * @return the configuration object
 		 * @throws IllegalStateException if
 		 *             {@link DtlsClusterConnectorConfig#address} wasn't
-		 *             provided.
+		 *             provided, or MAC or handover is enabled without
+		 *             encryption.
 		 */
 		public DtlsClusterConnectorConfig build() {
 			if (config.address == null) {
@@ -270,6 +410,17 @@ public final class DtlsClusterConnectorConfig {
 			if (config.clusterMac == null) {
 				config.clusterMac = config.identity != null;
 			}
+			if (config.handoverThreshold == null) {
+				config.handoverThreshold = 0;
+			} else if (config.handoverThreshold > 0 && config.identity == null) {
+				throw new IllegalStateException("Handover of connections requires enabled encryption!");
+			}
+			if (config.batchSize == null) {
+				config.batchSize = 0;
+			}
+			if (config.batchIntervalMicros == null) {
+				config.batchIntervalMicros = DEFAULT_BATCH_INTERVAL_MICROS;
+			}
 			return config;
 		}
 
@@ -64,6 +64,7 @@ import org.eclipse.californium.scandium.dtls.InMemoryConnectionStore;
 import org.eclipse.californium.scandium.dtls.ProtocolVersion;
 import org.eclipse.californium.scandium.dtls.RecordLayer;
 import org.eclipse.californium.scandium.dtls.ResumptionSupportingConnectionStore;
+import org.eclipse.californium.scandium.dtls.StripedConnectionStore;
 import org.eclipse.californium.scandium.dtls.SessionStore;
 import org.eclipse.californium.scandium.dtls.SignatureAndHashAlgorithm;
 import org.eclipse.californium.scandium.dtls.cipher.CipherSuite;
@@ -71,6 +72,7 @@ import org.eclipse.californium.scandium.dtls.cipher.CipherSuite.KeyExchangeAlgor
 import org.eclipse.californium.scandium.dtls.cipher.CipherSuiteSelector;
 import org.eclipse.californium.scandium.dtls.cipher.DefaultCipherSuiteSelector;
 import org.eclipse.californium.scandium.dtls.cipher.XECDHECryptography.SupportedGroup;
+import org.eclipse.californium.scandium.dtls.cipher.XECDHEKeyPairPool;
 import org.eclipse.californium.scandium.dtls.pskstore.AdvancedPskStore;
 import org.eclipse.californium.scandium.dtls.x509.NewAdvancedCertificateVerifier;
 import org.eclipse.californium.scandium.util.ListUtils;
@@ -104,6 +106,30 @@ public final class DtlsConnectorConfig {
 	 * The default value for the {@link #maxConnections} property.
 	 */
 	public static final int DEFAULT_MAX_CONNECTIONS = 150000;
+	/**
+	 * The default value for the {@link #connectionStoreStripes} property.
+	 * 
+	 * @since 3.0
+	 */
+	public static final int DEFAULT_CONNECTION_STORE_STRIPES = 1;
+	/**
+	 * The default value for the {@link #keyPairPoolSize} property.
+	 * 
+	 * @since 3.0
+	 */
+	public static final int DEFAULT_KEY_PAIR_POOL_SIZE = 0;
+	/**
+	 * The default value for the {@link #handshakeThreadCount} property.
+	 * 
+	 * @since 3.0
+	 */
+	public static final int DEFAULT_HANDSHAKE_THREAD_COUNT = 0;
+	/**
+	 * The default value for the {@link #maxPendingHandshakeJobs} property.
+	 * 
+	 * @since 3.0
+	 */
+	public static final int DEFAULT_MAX_PENDING_HANDSHAKE_JOBS = 0;
 	/**
 	 * The default value for the {@link #maxFragmentedHandshakeMessageLength} property.
 	 */
@@ -371,6 +397,34 @@ public final class DtlsConnectorConfig {
 
 	private Long staleConnectionThreshold;
 
+	/**
+	 * Number of stripes of the connection store.
+	 * 
+	 * @since 3.0
+	 */
+	private Integer connectionStoreStripes;
+
+	/**
+	 * Number of pre-generated ephemeral key pairs per supported group.
+	 * 
+	 * @since 3.0
+	 */
+	private Integer keyPairPoolSize;
+
+	/**
+	 * Number of threads for handshakes.
+	 * 
+	 * @since 3.0
+	 */
+	private Integer handshakeThreadCount;
+
+	/**
+	 * Maximum number of pending handshake jobs to start new handshakes.
+	 * 
+	 * @since 3.0
+	 */
+	private Integer maxPendingHandshakeJobs;
+
 	private Integer connectionThreadCount;
 
 	private Integer receiverThreadCount;
@@ -1097,6 +1151,64 @@ public final class DtlsConnectorConfig {
 		return staleConnectionThreshold;
 	}
 
+	/**
+	 * Gets the number of stripes of the connection store.
+	 * <p>
+	 * {@code 1} uses the {@link InMemoryConnectionStore}, larger values the
+	 * {@link StripedConnectionStore} with that number of stripes.
+	 * 
+	 * @return the number of stripes.
+	 * @see DTLSConnector#createConnectionStore
+	 * @since 3.0
+	 */
+	public Integer getConnectionStoreStripes() {
+		return connectionStoreStripes;
+	}
+
+	/**
+	 * Gets the number of pre-generated ephemeral key pairs per supported
+	 * group.
+	 * <p>
+	 * {@code 0}, generates the ephemeral key pairs for ECDHE on demand within
+	 * the handshake, larger values use a {@link XECDHEKeyPairPool} of that
+	 * size.
+	 * 
+	 * @return the number of pre-generated key pairs per supported group.
+	 * @since 3.0
+	 */
+	public Integer getKeyPairPoolSize() {
+		return keyPairPoolSize;
+	}
+
+	/**
+	 * Gets the number of threads for handshakes.
+	 * <p>
+	 * {@code 0}, processes the handshakes with the threads used to handle
+	 * DTLS connections, larger values use a separate thread pool of that size
+	 * for the handshakes.
+	 * 
+	 * @return the number of threads for handshakes.
+	 * @see #getConnectionThreadCount()
+	 * @since 3.0
+	 */
+	public Integer getHandshakeThreadCount() {
+		return handshakeThreadCount;
+	}
+
+	/**
+	 * Gets the maximum number of pending handshake jobs to start new
+	 * handshakes.
+	 * <p>
+	 * If that number of handshake jobs is pending, new CLIENT_HELLOs are
+	 * dropped. {@code 0}, for no limit.
+	 * 
+	 * @return the maximum number of pending handshake jobs.
+	 * @since 3.0
+	 */
+	public Integer getMaxPendingHandshakeJobs() {
+		return maxPendingHandshakeJobs;
+	}
+
 	/**
 	 * Gets the number of threads which should be use to handle DTLS connection.
 	 * <p>
@@ -1346,6 +1458,10 @@ public final class DtlsConnectorConfig {
 		cloned.maxDeferredProcessedIncomingRecordsSize = maxDeferredProcessedIncomingRecordsSize;
 		cloned.maxConnections = maxConnections;
 		cloned.staleConnectionThreshold = staleConnectionThreshold;
+		cloned.connectionStoreStripes = connectionStoreStripes;
+		cloned.keyPairPoolSize = keyPairPoolSize;
+		cloned.handshakeThreadCount = handshakeThreadCount;
+		cloned.maxPendingHandshakeJobs = maxPendingHandshakeJobs;
 		cloned.connectionThreadCount = connectionThreadCount;
 		cloned.receiverThreadCount = receiverThreadCount;
 		cloned.socketReceiveBufferSize = socketReceiveBufferSize;
@@ -2751,6 +2867,107 @@ public final class DtlsConnectorConfig {
 			return this;
 		}
 
+		/**
+		 * Set the number of stripes of the connection store.
+		 * <p>
+		 * The default value is {@link #DEFAULT_CONNECTION_STORE_STRIPES}, which
+		 * uses the {@link InMemoryConnectionStore}. Larger values use the
+		 * {@link StripedConnectionStore} with that number of stripes, which
+		 * reduces the lock contention on servers with many receiver and
+		 * connection threads. A good value is the number of cores. Only used,
+		 * if the {@link DTLSConnector} creates the connection store.
+		 * 
+		 * @param stripes the number of stripes.
+		 * @return this builder for command chaining.
+		 * @throws IllegalArgumentException if the given number of stripes is
+		 *             less than {@code 1}.
+		 * @see DTLSConnector#createConnectionStore
+		 * @since 3.0
+		 */
+		public Builder setConnectionStoreStripes(int stripes) {
+			if (stripes < 1) {
+				throw new IllegalArgumentException("Stripes must be at least 1!");
+			}
+			config.connectionStoreStripes = stripes;
+			return this;
+		}
+
+		/**
+		 * Set the number of pre-generated ephemeral key pairs per supported
+		 * group.
+		 * <p>
+		 * The default value is {@link #DEFAULT_KEY_PAIR_POOL_SIZE}, which
+		 * generates the ephemeral key pairs for ECDHE on demand within the
+		 * handshake. Larger values use a {@link XECDHEKeyPairPool}, which
+		 * keeps up to that number of key pairs per supported group and refills
+		 * them with a low priority background thread. That reduces the
+		 * processing time of full handshakes, especially, if many peers start
+		 * their handshakes at the same time. Each key pair is only used once.
+		 * 
+		 * @param size the number of pre-generated key pairs per supported
+		 *            group. {@code 0} to disable the pool.
+		 * @return this builder for command chaining.
+		 * @throws IllegalArgumentException if the given size is negative.
+		 * @since 3.0
+		 */
+		public Builder setKeyPairPoolSize(int size) {
+			if (size < 0) {
+				throw new IllegalArgumentException("Key pair pool size must not be negative!");
+			}
+			config.keyPairPoolSize = size;
+			return this;
+		}
+
+		/**
+		 * Set the number of threads for handshakes.
+		 * <p>
+		 * The default value is {@link #DEFAULT_HANDSHAKE_THREAD_COUNT}, which
+		 * processes the handshakes with the threads used to handle DTLS
+		 * connections. Larger values use a separate thread pool of that size
+		 * for the handshakes, including the new CLIENT_HELLOs. The records of
+		 * established connections are then not delayed by many peers starting
+		 * their handshakes at the same time.
+		 * 
+		 * @param threadCount the number of threads for handshakes. {@code 0}
+		 *            to use the threads to handle DTLS connections.
+		 * @return this builder for command chaining.
+		 * @throws IllegalArgumentException if the given thread count is
+		 *             negative.
+		 * @since 3.0
+		 */
+		public Builder setHandshakeThreadCount(int threadCount) {
+			if (threadCount < 0) {
+				throw new IllegalArgumentException("Handshake thread count must not be negative!");
+			}
+			config.handshakeThreadCount = threadCount;
+			return this;
+		}
+
+		/**
+		 * Set the maximum number of pending handshake jobs to start new
+		 * handshakes.
+		 * <p>
+		 * The handshake jobs are the new CLIENT_HELLOs and the records of
+		 * connections with ongoing handshakes, which are queued or executed.
+		 * If that maximum is reached, new CLIENT_HELLOs are dropped, until
+		 * the pending jobs are processed. Ongoing handshakes are not affected.
+		 * The default value is {@link #DEFAULT_MAX_PENDING_HANDSHAKE_JOBS},
+		 * which doesn't limit the handshake jobs.
+		 * 
+		 * @param maxJobs the maximum number of pending handshake jobs.
+		 *            {@code 0} for no limit.
+		 * @return this builder for command chaining.
+		 * @throws IllegalArgumentException if the given maximum is negative.
+		 * @since 3.0
+		 */
+		public Builder setMaxPendingHandshakeJobs(int maxJobs) {
+			if (maxJobs < 0) {
+				throw new IllegalArgumentException("Maximum pending handshake jobs must not be negative!");
+			}
+			config.maxPendingHandshakeJobs = maxJobs;
+			return this;
+		}
+
 		/**
 		 * Set the number of thread which should be used to receive
 		 * datagrams from the socket.
@@ -3123,6 +3340,18 @@ public final class DtlsConnectorConfig {
 			if (config.staleConnectionThreshold == null) {
 				config.staleConnectionThreshold = DEFAULT_STALE_CONNECTION_TRESHOLD;
 			}
+			if (config.connectionStoreStripes == null) {
+				config.connectionStoreStripes = DEFAULT_CONNECTION_STORE_STRIPES;
+			}
+			if (config.keyPairPoolSize == null) {
+				config.keyPairPoolSize = DEFAULT_KEY_PAIR_POOL_SIZE;
+			}
+			if (config.handshakeThreadCount == null) {
+				config.handshakeThreadCount = DEFAULT_HANDSHAKE_THREAD_COUNT;
+			}
+			if (config.maxPendingHandshakeJobs == null) {
+				config.maxPendingHandshakeJobs = DEFAULT_MAX_PENDING_HANDSHAKE_JOBS;
+			}
 			if (config.maxTransmissionUnitLimit == null){
 				config.maxTransmissionUnitLimit = DEFAULT_MAX_TRANSMISSION_UNIT_LIMIT;
 			}
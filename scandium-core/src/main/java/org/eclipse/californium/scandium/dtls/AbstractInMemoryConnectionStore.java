@@ -0,0 +1,711 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ *                    extracted from InMemoryConnectionStore
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.elements.util.ClockUtil;
+import org.eclipse.californium.elements.util.DataStreamReader;
+import org.eclipse.californium.elements.util.DatagramWriter;
+import org.eclipse.californium.elements.util.LeastRecentlyUsedCache;
+import org.eclipse.californium.elements.util.LeastRecentlyUsedCache.Timestamped;
+import org.eclipse.californium.elements.util.SerialExecutor;
+import org.eclipse.californium.elements.util.StringUtil;
+import org.eclipse.californium.elements.util.WipAPI;
+import org.eclipse.californium.scandium.ConnectionListener;
+import org.eclipse.californium.scandium.util.SecretUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Common base of the in-memory connection stores.
+ * <p>
+ * Keeps the connections by peer address and by established session id and
+ * implements the bookkeeping of these maps. The storage of the connections by
+ * their connection id, including the locking of that storage, is left to the
+ * implementations.
+ * </p>
+ *
+ * @see InMemoryConnectionStore
+ * @see StripedConnectionStore
+ * @since 3.0
+ */
+abstract class AbstractInMemoryConnectionStore implements ResumptionSupportingConnectionStore {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(AbstractInMemoryConnectionStore.class);
+	// extra cid bytes additionally to required bytes for small capacity.
+	private static final int DEFAULT_SMALL_EXTRA_CID_LENGTH = 2;
+	// extra cid bytes additionally to required bytes for large capacity.
+	private static final int DEFAULT_LARGE_EXTRA_CID_LENGTH = 3;
+
+	protected final SessionStore sessionStore;
+	protected final ConcurrentMap<InetSocketAddress, Connection> connectionsByAddress;
+	protected final ConcurrentMap<SessionId, Connection> connectionsByEstablishedSession;
+
+	private volatile ConnectionListener connectionListener;
+	/**
+	 * Connection id generator.
+	 *
+	 * @see #attach(ConnectionIdGenerator)
+	 */
+	private volatile ConnectionIdGenerator connectionIdGenerator;
+
+	protected volatile String tag = "";
+
+	/**
+	 * Creates the common base of the in-memory connection stores.
+	 *
+	 * @param sessionStore a second level store to use for <em>current</em>
+	 *            connection state of established DTLS sessions. If provided,
+	 *            the connections are not kept by their established session id.
+	 */
+	protected AbstractInMemoryConnectionStore(SessionStore sessionStore) {
+		this.connectionsByAddress = new ConcurrentHashMap<>();
+		this.sessionStore = sessionStore;
+		if (sessionStore != null) {
+			this.connectionsByEstablishedSession = null;
+		} else {
+			this.connectionsByEstablishedSession = new ConcurrentHashMap<>();
+		}
+	}
+
+	/**
+	 * Gets the maximum number of connections.
+	 *
+	 * @return maximum number of connections
+	 */
+	protected abstract int getConnectionCapacity();
+
+	/**
+	 * Gets the connection by its connection id without logging.
+	 *
+	 * @param cid connection id
+	 * @return connection, or {@code null}, if not available
+	 */
+	protected abstract Connection getConnection(ConnectionId cid);
+
+	/**
+	 * Updates the last-access time of the connection.
+	 *
+	 * @param cid connection id of the connection
+	 * @return {@code true}, if updated, {@code false}, if the connection is
+	 *         not available.
+	 */
+	protected abstract boolean updateConnection(ConnectionId cid);
+
+	@Override
+	public void setConnectionListener(ConnectionListener listener) {
+		this.connectionListener = listener;
+	}
+
+	@Override
+	public synchronized void attach(ConnectionIdGenerator connectionIdGenerator) {
+		if (this.connectionIdGenerator != null) {
+			throw new IllegalStateException("Connection id generator already attached!");
+		}
+		if (connectionIdGenerator == null || !connectionIdGenerator.useConnectionId()) {
+			int bits = Integer.SIZE - Integer.numberOfLeadingZeros(getConnectionCapacity());
+			int cidLength = ((bits + 7) / 8); // required bytes for capacity
+			cidLength += (cidLength < 3) ? DEFAULT_SMALL_EXTRA_CID_LENGTH : DEFAULT_LARGE_EXTRA_CID_LENGTH;
+			this.connectionIdGenerator = new SingleNodeConnectionIdGenerator(cidLength);
+		} else {
+			this.connectionIdGenerator = connectionIdGenerator;
+		}
+	}
+
+	/**
+	 * Creates a new unused connection id.
+	 *
+	 * @return connection id, or {@code null}, if no free connection id could
+	 *         created
+	 * @see #connectionIdGenerator
+	 * @see ConnectionIdGenerator
+	 */
+	private ConnectionId newConnectionId() {
+		for (int i = 0; i < 10; ++i) {
+			ConnectionId cid = connectionIdGenerator.createConnectionId();
+			if (getConnection(cid) == null) {
+				return cid;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Prepares the connection id of a connection to be put into the store.
+	 * <p>
+	 * Assigns a new connection id, if the connection has none.
+	 *
+	 * @param connection connection to be put
+	 * @return connection id of the connection
+	 * @throws IllegalStateException if the connection is not executing, the
+	 *             connection id is empty or already used, or no new connection
+	 *             id is available.
+	 */
+	protected ConnectionId prepareConnectionId(Connection connection) {
+		if (!connection.isExecuting()) {
+			throw new IllegalStateException("Connection is not executing!");
+		}
+		ConnectionId connectionId = connection.getConnectionId();
+		if (connectionId == null) {
+			if (connectionIdGenerator == null) {
+				throw new IllegalStateException("Connection id generator must be attached before!");
+			}
+			connectionId = newConnectionId();
+			if (connectionId == null) {
+				throw new IllegalStateException("Connection ids exhausted!");
+			}
+			connection.setConnectionId(connectionId);
+		} else if (connectionId.isEmpty()) {
+			throw new IllegalStateException("Connection must have a none empty connection id!");
+		} else if (getConnection(connectionId) != null) {
+			throw new IllegalStateException("Connection id already used! " + connectionId);
+		}
+		return connectionId;
+	}
+
+	/**
+	 * Checks the connection id of a connection to be restored.
+	 *
+	 * @param connection connection to be restored
+	 * @return connection id of the connection
+	 * @throws IllegalStateException if the connection id is missing, empty or
+	 *             already used.
+	 */
+	protected ConnectionId checkRestoreConnectionId(Connection connection) {
+		ConnectionId connectionId = connection.getConnectionId();
+		if (connectionId == null) {
+			throw new IllegalStateException("Connection must have a connection id!");
+		} else if (connectionId.isEmpty()) {
+			throw new IllegalStateException("Connection must have a none empty connection id!");
+		} else if (getConnection(connectionId) != null) {
+			throw new IllegalStateException("Connection id already used! " + connectionId);
+		}
+		return connectionId;
+	}
+
+	/**
+	 * Logs an added connection.
+	 *
+	 * @param connection added connection
+	 * @param size size of the storage after adding the connection
+	 */
+	protected void logAdded(Connection connection, int size) {
+		if (LOGGER.isTraceEnabled()) {
+			LOGGER.trace("{}connection: add {} (size {})", tag, connection, size, new Throwable("connection added!"));
+		} else {
+			LOGGER.debug("{}connection: add {} (size {})", tag, connection.getConnectionId(), size);
+		}
+	}
+
+	/**
+	 * Adds a connection, which has been put into the store, to the maps by
+	 * peer address and established session.
+	 *
+	 * @param connection added connection
+	 * @param session established session of the connection, or {@code null},
+	 *            if not available.
+	 * @param deferred list to defer the removal of replaced, not executing
+	 *            connections. {@code null}, to remove them immediately.
+	 * @see #runDeferred(List)
+	 */
+	protected void added(Connection connection, DTLSSession session, List<Runnable> deferred) {
+		addToAddressConnections(connection, deferred);
+		if (session != null) {
+			addToEstablishedConnections(session.getSessionIdentifier(), connection, deferred);
+		}
+	}
+
+	@Override
+	public boolean update(final Connection connection, InetSocketAddress newPeerAddress) {
+		return update(connection, newPeerAddress, null);
+	}
+
+	/**
+	 * Update the last-access time and the peer address of the connection.
+	 *
+	 * @param connection connection to update
+	 * @param newPeerAddress new peer address. May be {@code null}, if only the
+	 *            last-access time is updated.
+	 * @param deferred list to defer the removal of replaced, not executing
+	 *            connections. {@code null}, to remove them immediately.
+	 * @return {@code true}, if updated, {@code false}, otherwise.
+	 * @see #update(Connection, InetSocketAddress)
+	 * @see #runDeferred(List)
+	 */
+	protected boolean update(final Connection connection, InetSocketAddress newPeerAddress,
+			List<Runnable> deferred) {
+		if (connection == null) {
+			return false;
+		}
+		ConnectionId connectionId = connection.getConnectionId();
+		if (updateConnection(connectionId)) {
+			connection.refreshAutoResumptionTime();
+			if (newPeerAddress == null) {
+				LOGGER.debug("{}connection: {} updated usage!", tag, connectionId);
+			} else if (!connection.equalsPeerAddress(newPeerAddress)) {
+				InetSocketAddress oldPeerAddress = connection.getPeerAddress();
+				if (LOGGER.isTraceEnabled()) {
+					LOGGER.trace("{}connection: {} updated, address changed from {} to {}!", tag, connectionId,
+							StringUtil.toLog(oldPeerAddress), StringUtil.toLog(newPeerAddress),
+							new Throwable("connection updated!"));
+				} else {
+					LOGGER.debug("{}connection: {} updated, address changed from {} to {}!", tag, connectionId,
+							StringUtil.toLog(oldPeerAddress), StringUtil.toLog(newPeerAddress));
+				}
+				if (oldPeerAddress != null) {
+					connectionsByAddress.remove(oldPeerAddress, connection);
+					connection.updatePeerAddress(null);
+				}
+				connection.updatePeerAddress(newPeerAddress);
+				addToAddressConnections(connection, deferred);
+			}
+			return true;
+		} else {
+			LOGGER.debug("{}connection: {} - {} update failed!", tag, connectionId, StringUtil.toLog(newPeerAddress));
+			return false;
+		}
+	}
+
+	@Override
+	public void putEstablishedSession(Connection connection) {
+		DTLSSession session = connection.getEstablishedSession();
+		if (session == null) {
+			throw new IllegalArgumentException("connection has no established session!");
+		}
+		ConnectionListener listener = connectionListener;
+		if (listener != null) {
+			listener.onConnectionEstablished(connection);
+		}
+		SessionId sessionId = session.getSessionIdentifier();
+		if (!sessionId.isEmpty()) {
+			addToEstablishedConnections(sessionId, connection, null);
+			if (sessionStore != null) {
+				sessionStore.put(session);
+			}
+		}
+	}
+
+	@Override
+	public void removeFromEstablishedSessions(Connection connection) {
+		SessionId sessionId = connection.getEstablishedSessionIdentifier();
+		if (sessionId == null) {
+			throw new IllegalArgumentException("connection has no established session!");
+		}
+		removeByEstablishedSessions(sessionId, connection);
+	}
+
+	/**
+	 * Finds the connection of an established session.
+	 *
+	 * @param id session id
+	 * @return connection, or {@code null}, if not available or the
+	 *         connections are not kept by their established session id.
+	 */
+	protected Connection findLocally(final SessionId id) {
+		if (id == null) {
+			throw new NullPointerException("DTLS Session ID must not be null!");
+		}
+		if (connectionsByEstablishedSession == null) {
+			return null;
+		}
+		Connection connection = connectionsByEstablishedSession.get(id);
+		if (connection != null) {
+			SessionId establishedId = connection.getEstablishedSessionIdentifier();
+			if (establishedId != null) {
+				if (!id.equals(establishedId)) {
+					LOGGER.warn("{}connection {} changed session {}!={}!", tag, connection.getConnectionId(), id,
+							establishedId);
+				}
+			} else {
+				LOGGER.warn("{}connection {} lost session {}!", tag, connection.getConnectionId(), id);
+			}
+			updateConnection(connection.getConnectionId());
+		}
+		return connection;
+	}
+
+	/**
+	 * Marks the provided connections as resumption required.
+	 *
+	 * @param connections connections to mark
+	 */
+	protected void markAllAsResumptionRequired(Collection<Connection> connections) {
+		for (Connection connection : connections) {
+			if (connection.getPeerAddress() != null && !connection.isResumptionRequired()) {
+				connection.setResumptionRequired(true);
+				LOGGER.debug("{}connection: mark for resumption {}!", tag, connection);
+			}
+		}
+	}
+
+	@Override
+	public Connection get(final InetSocketAddress peerAddress) {
+		Connection connection = connectionsByAddress.get(peerAddress);
+		if (connection == null) {
+			LOGGER.debug("{}connection: missing connection for {}!", tag, StringUtil.toLog(peerAddress));
+		} else {
+			InetSocketAddress address = connection.getPeerAddress();
+			if (address == null) {
+				LOGGER.warn("{}connection {} lost ip-address {}!", tag, connection.getConnectionId(),
+						StringUtil.toLog(peerAddress));
+			} else if (!address.equals(peerAddress)) {
+				LOGGER.warn("{}connection {} changed ip-address {}!={}!", tag, connection.getConnectionId(),
+						StringUtil.toLog(peerAddress), StringUtil.toLog(address));
+			}
+		}
+		return connection;
+	}
+
+	@Override
+	public Connection get(final ConnectionId cid) {
+		Connection connection = getConnection(cid);
+		if (connection == null) {
+			LOGGER.debug("{}connection: missing connection for {}!", tag, cid);
+		} else {
+			ConnectionId connectionId = connection.getConnectionId();
+			if (connectionId == null) {
+				LOGGER.warn("{}connection lost cid {}!", tag, cid);
+			} else if (!connectionId.equals(cid)) {
+				LOGGER.warn("{}connection changed cid {}!={}!", tag, connectionId, cid);
+			}
+		}
+		return connection;
+	}
+
+	/**
+	 * Cleans up a connection, which has been removed from the store.
+	 * <p>
+	 * Shuts down the executor of the connection, removes it from the maps by
+	 * peer address and established session, calls the
+	 * {@link ConnectionListener} and destroys the keys.
+	 *
+	 * @param connection removed connection
+	 * @param sessionId established session id of the connection before
+	 *            removing. May be {@code null}.
+	 * @param size size of the storage after removing the connection
+	 */
+	protected void removed(Connection connection, SessionId sessionId, int size) {
+		if (connection.isExecuting()) {
+			List<Runnable> pendings = connection.getExecutor().shutdownNow();
+			if (LOGGER.isTraceEnabled()) {
+				LOGGER.trace("{}connection: remove {} (size {}, left jobs: {})", tag, connection, size,
+						pendings.size(), new Throwable("connection removed!"));
+			} else if (pendings.isEmpty()) {
+				LOGGER.debug("{}connection: remove {} (size {})", tag, connection, size);
+			} else {
+				LOGGER.debug("{}connection: remove {} (size {}, left jobs: {})", tag, connection, size,
+						pendings.size());
+			}
+		} else {
+			if (LOGGER.isTraceEnabled()) {
+				LOGGER.trace("{}connection: remove {} (size {})", tag, connection, size,
+						new Throwable("connection removed!"));
+			} else {
+				LOGGER.debug("{}connection: remove {} (size {})", tag, connection, size);
+			}
+		}
+		removeByAddressConnections(connection);
+		removeByEstablishedSessions(sessionId, connection);
+		ConnectionListener listener = connectionListener;
+		if (listener != null) {
+			listener.onConnectionRemoved(connection);
+		}
+		// destroy keys.
+		SecretUtil.destroy(connection.getDtlsContext());
+	}
+
+	/**
+	 * Creates an eviction listener for the storage of the connections.
+	 * <p>
+	 * Makes sure, that stale (evicted) connections are removed from the other
+	 * maps.
+	 *
+	 * @return eviction listener
+	 * @see #removeEvicted(Connection)
+	 */
+	protected LeastRecentlyUsedCache.EvictionListener<Connection> newEvictionListener() {
+		return new LeastRecentlyUsedCache.EvictionListener<Connection>() {
+
+			@Override
+			public void onEviction(final Connection staleConnection) {
+				Runnable remove = new Runnable() {
+
+					@Override
+					public void run() {
+						Handshaker handshaker = staleConnection.getOngoingHandshake();
+						if (handshaker != null) {
+							handshaker.handshakeFailed(new ConnectionEvictedException("Evicted!"));
+						}
+						removeEvicted(staleConnection);
+					}
+				};
+				if (staleConnection.isExecuting()) {
+					staleConnection.getExecutor().execute(remove);
+				} else {
+					remove.run();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Removes an evicted connection from the maps by peer address and
+	 * established session and calls the {@link ConnectionListener}.
+	 *
+	 * @param staleConnection evicted connection
+	 */
+	protected void removeEvicted(Connection staleConnection) {
+		removeByAddressConnections(staleConnection);
+		removeByEstablishedSessions(staleConnection.getEstablishedSessionIdentifier(), staleConnection);
+		ConnectionListener listener = connectionListener;
+		if (listener != null) {
+			listener.onConnectionRemoved(staleConnection);
+		}
+	}
+
+	protected void removeByEstablishedSessions(SessionId sessionId, Connection connection) {
+		if (connectionsByEstablishedSession != null && sessionId != null && !sessionId.isEmpty()) {
+			connectionsByEstablishedSession.remove(sessionId, connection);
+		}
+	}
+
+	protected void removeByAddressConnections(Connection connection) {
+		InetSocketAddress peerAddress = connection.getPeerAddress();
+		if (peerAddress != null) {
+			connectionsByAddress.remove(peerAddress, connection);
+			connection.updatePeerAddress(null);
+		}
+	}
+
+	protected void removeSessionFromStore(SessionId sessionId) {
+		if (sessionStore != null && sessionId != null && !sessionId.isEmpty()) {
+			sessionStore.remove(sessionId);
+		}
+	}
+
+	/**
+	 * Add connection to the map by peer address.
+	 * <p>
+	 * A previous connection with that peer address is removed from that map.
+	 *
+	 * @param connection connection to add
+	 * @param deferred list to defer the removal of a replaced, not executing
+	 *            connection. {@code null}, to remove it immediately.
+	 * @see #runDeferred(List)
+	 */
+	protected void addToAddressConnections(Connection connection, List<Runnable> deferred) {
+		final InetSocketAddress peerAddress = connection.getPeerAddress();
+		if (peerAddress != null) {
+			final Connection previous = connectionsByAddress.put(peerAddress, connection);
+			if (previous != null && previous != connection) {
+				Runnable removeAddress = new Runnable() {
+
+					@Override
+					public void run() {
+						if (previous.equalsPeerAddress(peerAddress)) {
+							previous.updatePeerAddress(null);
+							if (connectionsByEstablishedSession == null) {
+								if (!previous.expectCid()) {
+									remove(previous, false);
+								}
+							}
+						}
+					}
+				};
+				LOGGER.debug("{}connection: {} - {} added! {} removed from address.", tag,
+						connection.getConnectionId(), StringUtil.toLog(peerAddress), previous.getConnectionId());
+				execute(previous, removeAddress, deferred);
+			} else {
+				LOGGER.debug("{}connection: {} - {} added!", tag, connection.getConnectionId(),
+						StringUtil.toLog(peerAddress));
+			}
+		} else {
+			LOGGER.debug("{}connection: {} - missing address!", tag, connection.getConnectionId());
+		}
+	}
+
+	/**
+	 * Add connection to the map by established session id.
+	 * <p>
+	 * A previous connection with that session id is removed from the store.
+	 *
+	 * @param sessionId established session id
+	 * @param connection connection to add
+	 * @param deferred list to defer the removal of a replaced, not executing
+	 *            connection. {@code null}, to remove it immediately.
+	 * @see #runDeferred(List)
+	 */
+	protected void addToEstablishedConnections(SessionId sessionId, Connection connection,
+			List<Runnable> deferred) {
+		if (connectionsByEstablishedSession != null) {
+			final Connection previous = connectionsByEstablishedSession.put(sessionId, connection);
+			if (previous != null && previous != connection) {
+				Runnable removePreviousConnection = new Runnable() {
+
+					@Override
+					public void run() {
+						remove(previous, false);
+					}
+				};
+				execute(previous, removePreviousConnection, deferred);
+			}
+		}
+	}
+
+	/**
+	 * Executes a job for a connection.
+	 * <p>
+	 * Uses the executor of the connection, if the connection is executing.
+	 * Otherwise the job is either deferred or run immediately.
+	 *
+	 * @param connection connection
+	 * @param job job to execute
+	 * @param deferred list to defer the job, if the connection is not
+	 *            executing. {@code null}, to run the job immediately.
+	 */
+	private static void execute(Connection connection, Runnable job, List<Runnable> deferred) {
+		if (connection.isExecuting()) {
+			connection.getExecutor().execute(job);
+		} else if (deferred != null) {
+			deferred.add(job);
+		} else {
+			job.run();
+		}
+	}
+
+	/**
+	 * Runs the deferred jobs.
+	 * <p>
+	 * Intended to be called after a lock is released, which must not be held
+	 * when removing other connections.
+	 *
+	 * @param deferred list of deferred jobs. May be {@code null}.
+	 */
+	protected static void runDeferred(List<Runnable> deferred) {
+		if (deferred != null) {
+			for (Runnable job : deferred) {
+				job.run();
+			}
+		}
+	}
+
+	/**
+	 * Shuts down the executors of the provided connections.
+	 *
+	 * @param connections connections to shutdown
+	 * @param pending list to add the pending jobs. {@code null}, to drop them.
+	 */
+	protected void shutdown(Collection<Connection> connections, List<Runnable> pending) {
+		for (Connection connection : connections) {
+			SerialExecutor executor = connection.getExecutor();
+			if (executor != null) {
+				if (pending == null) {
+					executor.shutdownNow();
+				} else {
+					executor.shutdownNow(pending);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Clears the maps by peer address and established session.
+	 */
+	protected void clearMaps() {
+		if (connectionsByEstablishedSession != null) {
+			connectionsByEstablishedSession.clear();
+		}
+		connectionsByAddress.clear();
+	}
+
+	/**
+	 * Writes the connections, which are not too quiet.
+	 *
+	 * @param iterator timestamped connections
+	 * @param writer writer to serialize a connection
+	 * @param out output stream to write the serialized connections
+	 * @param startNanos start time of saving in nanoseconds
+	 * @param maxQuietPeriodInSeconds maximum quiet period in seconds.
+	 *            Connections without traffic for that time are skipped.
+	 * @return number of written connections
+	 * @throws IOException if an io-error occurred
+	 */
+	protected int writeConnections(Iterator<Timestamped<Connection>> iterator, DatagramWriter writer,
+			OutputStream out, long startNanos, long maxQuietPeriodInSeconds) throws IOException {
+		int count = 0;
+		while (iterator.hasNext()) {
+			Timestamped<Connection> connection = iterator.next();
+			long updateNanos = connection.getLastUpdate();
+			long quiet = TimeUnit.NANOSECONDS.toSeconds(startNanos - updateNanos);
+			if (quiet > maxQuietPeriodInSeconds) {
+				LOGGER.trace("{}skip {} ts, {}s too quiet!", tag, updateNanos, quiet);
+			} else {
+				LOGGER.trace("{}write {} ts, {}s ", tag, updateNanos, quiet);
+				if (connection.getValue().writeTo(writer)) {
+					writer.writeTo(out);
+					++count;
+				} else {
+					writer.reset();
+				}
+			}
+		}
+		return count;
+	}
+
+	@WipAPI
+	@Override
+	public int loadConnections(InputStream in, long delta) throws IOException {
+		boolean clear = true;
+		int count = 0;
+		long startNanos = ClockUtil.nanoRealtime();
+		DataStreamReader reader = new DataStreamReader(in);
+		try {
+			Connection connection;
+			while ((connection = Connection.fromReader(reader, delta)) != null) {
+				long lastUpdate = connection.getLastMessageNanos();
+				if (lastUpdate - startNanos > 0) {
+					LOGGER.warn("{}read {} ts is after {} (future)", tag, lastUpdate, startNanos);
+				}
+				LOGGER.trace("{}read {} ts, {}s", tag, lastUpdate,
+						TimeUnit.NANOSECONDS.toSeconds(startNanos - lastUpdate));
+				restore(connection);
+				++count;
+			}
+			clear = false;
+		} catch (IllegalArgumentException ex) {
+			LOGGER.warn("{}reading failed after {} connections", tag, count, ex);
+			clear();
+			throw ex;
+		} finally {
+			if (clear) {
+				clear();
+				count = 0;
+			}
+		}
+		return count;
+	}
+}
@@ -42,6 +42,7 @@
  *                                                    process reordered handshake messages
  *    Achim Kraus (Bosch Software Innovations GmbH) - add dtls flight number
  *    Achim Kraus (Bosch Software Innovations GmbH) - redesign DTLSFlight and RecordLayer
+ *    Bosch.IO GmbH - use key pair pool
  ******************************************************************************/
 package org.eclipse.californium.scandium.dtls;
 
@@ -543,7 +544,7 @@ public class ClientHandshaker extends Handshaker {
 			try {
 				SupportedGroup ecGroup = serverKeyExchange.getSupportedGroup();
 				if (supportedGroups.contains(ecGroup)) {
-					ecdhe = new XECDHECryptography(ecGroup);
+					ecdhe = new XECDHECryptography(ecGroup, keyPairPool);
 					ecdheSecret = ecdhe.generateSecret(serverKeyExchange.getEncodedPoint());
 					encodedPoint = ecdhe.getEncodedPoint();
 					session.setEcGroup(ecGroup);
@@ -112,14 +112,17 @@ public class DtlsAeadConnectionState extends DTLSConnectionState {
 			LOGGER.trace("nonce: {}", StringUtil.byteArray2HexString(nonce));
 			LOGGER.trace("adata: {}", StringUtil.byteArray2HexString(additionalData));
 		}
-		byte[] encryptedFragment = AeadBlockCipher.encrypt(cipherSuite, encryptionKey, nonce, additionalData, fragment);
+		int recordIvLength = cipherSuite.getRecordIvLength();
+		byte[] encryptedFragment = new byte[recordIvLength + fragment.length + cipherSuite.getMacLength()];
+		AeadBlockCipher.encrypt(cipherSuite, encryptionKey, nonce, additionalData, fragment, 0, fragment.length,
+				encryptedFragment, recordIvLength);
 
 		/*
 		 * Prepend the explicit nonce as specified in
 		 * http://tools.ietf.org/html/rfc5246#section-6.2.3.3 and
 		 * http://tools.ietf.org/html/draft-mcgrew-tls-aes-ccm-04#section-3
 		 */
-		System.arraycopy(nonce, cipherSuite.getFixedIvLength(), encryptedFragment, 0, cipherSuite.getRecordIvLength());
+		System.arraycopy(nonce, cipherSuite.getFixedIvLength(), encryptedFragment, 0, recordIvLength);
 		Bytes.clear(nonce);
 		LOGGER.trace("==> {} bytes", encryptedFragment.length);
 
@@ -173,8 +176,9 @@ public class DtlsAeadConnectionState extends DTLSConnectionState {
 				LOGGER.debug(b.toString());
 			}
 		}
-		byte[] payload = AeadBlockCipher.decrypt(cipherSuite, encryptionKey, nonce, additionalData, ciphertextFragment,
-				recordIvLength, ciphertextFragment.length - recordIvLength);
+		byte[] payload = new byte[applicationDataLength];
+		AeadBlockCipher.decrypt(cipherSuite, encryptionKey, nonce, additionalData, ciphertextFragment, recordIvLength,
+				ciphertextFragment.length - recordIvLength, payload, 0);
 		Bytes.clear(nonce);
 		return payload;
 	}
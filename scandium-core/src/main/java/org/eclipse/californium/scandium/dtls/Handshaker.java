@@ -55,6 +55,7 @@
  *    Achim Kraus (Bosch Software Innovations GmbH) - redesign DTLSFlight and RecordLayer
  *    Achim Kraus (Bosch Software Innovations GmbH) - remove copy of master secret
  *    Achim Kraus (Bosch Software Innovations GmbH) - redesign wrapMessage
+ *    Bosch.IO GmbH - add key pair pool
  ******************************************************************************/
 package org.eclipse.californium.scandium.dtls;
 
@@ -103,6 +104,7 @@ import org.eclipse.californium.scandium.dtls.AlertMessage.AlertLevel;
 import org.eclipse.californium.scandium.dtls.cipher.CipherSuite;
 import org.eclipse.californium.scandium.dtls.cipher.PseudoRandomFunction;
 import org.eclipse.californium.scandium.dtls.cipher.PseudoRandomFunction.Label;
+import org.eclipse.californium.scandium.dtls.cipher.XECDHEKeyPairPool;
 import org.eclipse.californium.scandium.dtls.pskstore.AdvancedPskStore;
 import org.eclipse.californium.scandium.dtls.x509.NewAdvancedCertificateVerifier;
 import org.eclipse.californium.scandium.util.SecretIvParameterSpec;
@@ -146,6 +148,13 @@ public abstract class Handshaker implements Destroyable {
 
 	private volatile boolean generateClusterMacKeys;
 
+	/**
+	 * Pool of pre-generated ephemeral key pairs. {@code null}, if not used.
+	 * 
+	 * @since 3.0
+	 */
+	protected volatile XECDHEKeyPairPool keyPairPool;
+
 	private boolean destroyed;
 
 	private final ReentrantLock recursionProtection = new ReentrantLock();
@@ -2032,6 +2041,17 @@ public abstract class Handshaker implements Destroyable {
 		generateClusterMacKeys = enable;
 	}
 
+	/**
+	 * Set pool of pre-generated ephemeral key pairs for ECDHE.
+	 * 
+	 * @param pool pool of key pairs. {@code null}, to generate the key pairs
+	 *            on demand.
+	 * @since 3.0
+	 */
+	public void setKeyPairPool(XECDHEKeyPairPool pool) {
+		keyPairPool = pool;
+	}
+
 	/**
 	 * Notifies all registered session listeners about a handshake
 	 * retransmit of a flight.
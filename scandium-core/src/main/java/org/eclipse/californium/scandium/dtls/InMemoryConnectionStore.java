@@ -31,30 +31,22 @@
  *    Achim Kraus (Bosch Software Innovations GmbH) - add putEstablishedSession
  *                                                    and removeFromEstablishedSessions
  *                                                    for faster find
+ *    Bosch.IO GmbH - move shared logic into AbstractInMemoryConnectionStore
  ******************************************************************************/
 package org.eclipse.californium.scandium.dtls;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.TimeUnit;
 
 import org.eclipse.californium.elements.util.ClockUtil;
-import org.eclipse.californium.elements.util.DataStreamReader;
 import org.eclipse.californium.elements.util.DatagramWriter;
 import org.eclipse.californium.elements.util.LeastRecentlyUsedCache;
-import org.eclipse.californium.elements.util.LeastRecentlyUsedCache.Timestamped;
-import org.eclipse.californium.elements.util.SerialExecutor;
 import org.eclipse.californium.elements.util.SerializationUtil;
 import org.eclipse.californium.elements.util.StringUtil;
 import org.eclipse.californium.elements.util.WipAPI;
-import org.eclipse.californium.scandium.ConnectionListener;
-import org.eclipse.californium.scandium.util.SecretUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -100,30 +92,12 @@ import org.slf4j.LoggerFactory;
  * the session get's removed also from the session store.
  * </p>
  */
-public class InMemoryConnectionStore implements ResumptionSupportingConnectionStore {
+public class InMemoryConnectionStore extends AbstractInMemoryConnectionStore {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(InMemoryConnectionStore.class);
-	 // extra cid bytes additionally to required bytes for small capacity.
-	private static final int DEFAULT_SMALL_EXTRA_CID_LENGTH = 2;
-	 // extra cid bytes additionally to required bytes for large capacity.
-	private static final int DEFAULT_LARGE_EXTRA_CID_LENGTH = 3;
 	private static final int DEFAULT_CACHE_SIZE = 150000;
 	private static final long DEFAULT_EXPIRATION_THRESHOLD = 36 * 60 * 60; // 36h
-	private static boolean SINGLE_SESSION_STORE = true;
-	private final SessionStore sessionStore;
 	protected final LeastRecentlyUsedCache<ConnectionId, Connection> connections;
-	protected final ConcurrentMap<InetSocketAddress, Connection> connectionsByAddress;
-	protected final ConcurrentMap<SessionId, Connection> connectionsByEstablishedSession;
-
-	private ConnectionListener connectionListener;
-	/**
-	 * Connection id generator.
-	 * 
-	 * @see #attach(ConnectionIdGenerator)
-	 */
-	private ConnectionIdGenerator connectionIdGenerator;
-
-	protected String tag = "";
 
 	/**
 	 * Creates a store with a capacity of 500000 connections and
@@ -167,46 +141,12 @@ public class InMemoryConnectionStore implements ResumptionSupportingConnectionSt
 	 *            connection state of established DTLS sessions.
 	 */
 	public InMemoryConnectionStore(int capacity, long threshold, SessionStore sessionStore) {
+		super(sessionStore);
 		this.connections = new LeastRecentlyUsedCache<>(capacity, threshold);
 		this.connections.setEvictingOnReadAccess(false);
 		this.connections.setUpdatingOnReadAccess(false);
-		this.connectionsByAddress = new ConcurrentHashMap<>();
-		this.sessionStore = sessionStore;
-		if (SINGLE_SESSION_STORE && sessionStore != null) {
-			this.connectionsByEstablishedSession = null;
-		} else {
-			this.connectionsByEstablishedSession = new ConcurrentHashMap<>();
-		}
 		// make sure that stale (evicted) connection is removed from other maps.
-		connections.addEvictionListener(new LeastRecentlyUsedCache.EvictionListener<Connection>() {
-
-			@Override
-			public void onEviction(final Connection staleConnection) {
-				Runnable remove = new Runnable() {
-
-					@Override
-					public void run() {
-						Handshaker handshaker = staleConnection.getOngoingHandshake();
-						if (handshaker != null) {
-							handshaker.handshakeFailed(new ConnectionEvictedException("Evicted!"));
-						}
-						synchronized (InMemoryConnectionStore.this) {
-							removeByAddressConnections(staleConnection);
-							removeByEstablishedSessions(staleConnection.getEstablishedSessionIdentifier(), staleConnection);
-							ConnectionListener listener = connectionListener;
-							if (listener != null) {
-								listener.onConnectionRemoved(staleConnection);
-							}
-						}
-					}
-				};
-				if (staleConnection.isExecuting()) {
-					staleConnection.getExecutor().execute(remove);
-				} else {
-					remove.run();
-				}
-			}
-		});
+		connections.addEvictionListener(newEvictionListener());
 
 		LOGGER.info("Created new InMemoryConnectionStore [capacity: {}, connection expiration threshold: {}s]",
 				capacity, threshold);
@@ -223,42 +163,24 @@ public class InMemoryConnectionStore implements ResumptionSupportingConnectionSt
 		return this;
 	}
 
-	/**
-	 * Creates a new unused connection id.
-	 * 
-	 * @return connection id, or {@code null}, if no free connection id could
-	 *         created
-	 * @see #connectionIdGenerator
-	 * @see ConnectionIdGenerator
-	 */
-	private ConnectionId newConnectionId() {
-		for (int i = 0; i < 10; ++i) {
-			ConnectionId cid = connectionIdGenerator.createConnectionId();
-			if (connections.get(cid) == null) {
-				return cid;
-			}
-		}
-		return null;
+	@Override
+	protected int getConnectionCapacity() {
+		return connections.getCapacity();
 	}
 
 	@Override
-	public void setConnectionListener(ConnectionListener listener) {
-		this.connectionListener = listener;
+	protected synchronized Connection getConnection(ConnectionId cid) {
+		return connections.get(cid);
 	}
 
 	@Override
-	public void attach(ConnectionIdGenerator connectionIdGenerator) {
-		if (this.connectionIdGenerator != null) {
-			throw new IllegalStateException("Connection id generator already attached!");
-		}
-		if (connectionIdGenerator == null || !connectionIdGenerator.useConnectionId()) {
-			int bits = Integer.SIZE - Integer.numberOfLeadingZeros(connections.getCapacity());
-			int cidLength = ((bits + 7) / 8); // required bytes for capacity
-			cidLength += (cidLength < 3) ? DEFAULT_SMALL_EXTRA_CID_LENGTH : DEFAULT_LARGE_EXTRA_CID_LENGTH;
-			this.connectionIdGenerator = new SingleNodeConnectionIdGenerator(cidLength);
-		} else {
-			this.connectionIdGenerator = connectionIdGenerator;
-		}
+	protected synchronized boolean updateConnection(ConnectionId cid) {
+		return connections.update(cid);
+	}
+
+	@Override
+	protected synchronized void removeEvicted(Connection staleConnection) {
+		super.removeEvicted(staleConnection);
 	}
 
 	/**
@@ -278,38 +200,13 @@ public class InMemoryConnectionStore implements ResumptionSupportingConnectionSt
 	@Override
 	public boolean put(final Connection connection) {
 		if (connection != null) {
-			if (!connection.isExecuting()) {
-				throw new IllegalStateException("Connection is not executing!");
-			}
-			ConnectionId connectionId = connection.getConnectionId();
-			if (connectionId == null) {
-				if (connectionIdGenerator == null) {
-					throw new IllegalStateException("Connection id generator must be attached before!");
-				}
-				connectionId = newConnectionId();
-				if (connectionId == null) {
-					throw new IllegalStateException("Connection ids exhausted!");
-				}
-				connection.setConnectionId(connectionId);
-			} else if (connectionId.isEmpty()) {
-				throw new IllegalStateException("Connection must have a none empty connection id!");
-			} else if (connections.get(connectionId) != null) {
-				throw new IllegalStateException("Connection id already used! " + connectionId);
-			}
+			ConnectionId connectionId = prepareConnectionId(connection);
 			DTLSSession session = connection.getEstablishedSession();
 			boolean success = false;
 			synchronized (this) {
 				if (connections.put(connectionId, connection)) {
-					if (LOGGER.isTraceEnabled()) {
-						LOGGER.trace("{}connection: add {} (size {})", tag, connection, connections.size(),
-								new Throwable("connection added!"));
-					} else {
-						LOGGER.debug("{}connection: add {} (size {})", tag, connectionId, connections.size());
-					}
-					addToAddressConnections(connection);
-					if (session != null) {
-						addToEstablishedConnections(session.getSessionIdentifier(), connection);
-					}
+					logAdded(connection, connections.size());
+					added(connection, session, null);
 					success = true;
 				} else {
 					LOGGER.warn("{}connection store is full! {} max. entries.", tag, connections.getCapacity());
@@ -326,67 +223,7 @@ public class InMemoryConnectionStore implements ResumptionSupportingConnectionSt
 
 	@Override
 	public synchronized boolean update(final Connection connection, InetSocketAddress newPeerAddress) {
-		if (connection == null) {
-			return false;
-		}
-		if (connections.update(connection.getConnectionId())) {
-			connection.refreshAutoResumptionTime();
-			if (newPeerAddress == null) {
-				LOGGER.debug("{}connection: {} updated usage!", tag, connection.getConnectionId());
-			} else if (!connection.equalsPeerAddress(newPeerAddress)) {
-				InetSocketAddress oldPeerAddress = connection.getPeerAddress();
-				if (LOGGER.isTraceEnabled()) {
-					LOGGER.trace("{}connection: {} updated, address changed from {} to {}!", tag,
-							connection.getConnectionId(), StringUtil.toLog(oldPeerAddress),
-							StringUtil.toLog(newPeerAddress), new Throwable("connection updated!"));
-				} else {
-					LOGGER.debug("{}connection: {} updated, address changed from {} to {}!", tag,
-							connection.getConnectionId(), StringUtil.toLog(oldPeerAddress),
-							StringUtil.toLog(newPeerAddress));
-				}
-				if (oldPeerAddress != null) {
-					connectionsByAddress.remove(oldPeerAddress, connection);
-					connection.updatePeerAddress(null);
-				}
-				connection.updatePeerAddress(newPeerAddress);
-				addToAddressConnections(connection);
-			}
-			return true;
-		} else {
-			LOGGER.debug("{}connection: {} - {} update failed!", tag, connection.getConnectionId(),
-					StringUtil.toLog(newPeerAddress));
-			return false;
-		}
-	}
-
-	@Override
-	public void putEstablishedSession(Connection connection) {
-		DTLSSession session = connection.getEstablishedSession();
-		if (session == null) {
-			throw new IllegalArgumentException("connection has no established session!");
-		}
-		ConnectionListener listener = connectionListener;
-		if (listener != null) {
-			listener.onConnectionEstablished(connection);
-		}
-		SessionId sessionId = session.getSessionIdentifier();
-		if (!sessionId.isEmpty()) {
-			synchronized (this) {
-				addToEstablishedConnections(sessionId, connection);
-			}
-			if (sessionStore != null) {
-				sessionStore.put(session);
-			}
-		}
-	}
-
-	@Override
-	public synchronized void removeFromEstablishedSessions(Connection connection) {
-		SessionId sessionId = connection.getEstablishedSessionIdentifier();
-		if (sessionId == null) {
-			throw new IllegalArgumentException("connection has no established session!");
-		}
-		removeByEstablishedSessions(sessionId, connection);
+		return super.update(connection, newPeerAddress);
 	}
 
 	@Override
@@ -418,37 +255,9 @@ public class InMemoryConnectionStore implements ResumptionSupportingConnectionSt
 		}
 	}
 
-	private Connection findLocally(final SessionId id) {
-		if (id == null) {
-			throw new NullPointerException("DTLS Session ID must not be null!");
-		}
-		if (connectionsByEstablishedSession == null) {
-			return null;
-		}
-		Connection connection = connectionsByEstablishedSession.get(id);
-		if (connection != null) {
-			SessionId establishedId = connection.getEstablishedSessionIdentifier();
-			if (establishedId != null) {
-				if (!id.equals(establishedId)) {
-					LOGGER.warn("{}connection {} changed session {}!={}!", tag, connection.getConnectionId(), id,
-							establishedId);
-				}
-			} else {
-				LOGGER.warn("{}connection {} lost session {}!", tag, connection.getConnectionId(), id);
-			}
-			connections.update(connection.getConnectionId());
-		}
-		return connection;
-	}
-
 	@Override
 	public synchronized void markAllAsResumptionRequired() {
-		for (Connection connection : connections.values()) {
-			if (connection.getPeerAddress() != null && !connection.isResumptionRequired()) {
-				connection.setResumptionRequired(true);
-				LOGGER.debug("{}connection: mark for resumption {}!", tag, connection);
-			}
-		}
+		markAllAsResumptionRequired(connections.values());
 	}
 
 	@Override
@@ -458,40 +267,6 @@ public class InMemoryConnectionStore implements ResumptionSupportingConnectionSt
 		return remaining;
 	}
 
-	@Override
-	public synchronized Connection get(final InetSocketAddress peerAddress) {
-		Connection connection = connectionsByAddress.get(peerAddress);
-		if (connection == null) {
-			LOGGER.debug("{}connection: missing connection for {}!", tag, StringUtil.toLog(peerAddress));
-		} else {
-			InetSocketAddress address = connection.getPeerAddress();
-			if (address == null) {
-				LOGGER.warn("{}connection {} lost ip-address {}!", tag, connection.getConnectionId(),
-						StringUtil.toLog(peerAddress));
-			} else if (!address.equals(peerAddress)) {
-				LOGGER.warn("{}connection {} changed ip-address {}!={}!", tag, connection.getConnectionId(),
-						StringUtil.toLog(peerAddress), StringUtil.toLog(address));
-			}
-		}
-		return connection;
-	}
-
-	@Override
-	public synchronized Connection get(final ConnectionId cid) {
-		Connection connection = connections.get(cid);
-		if (connection == null) {
-			LOGGER.debug("{}connection: missing connection for {}!", tag, cid);
-		} else {
-			ConnectionId connectionId = connection.getConnectionId();
-			if (connectionId == null) {
-				LOGGER.warn("{}connection lost cid {}!", tag, cid);
-			} else if (!connectionId.equals(cid)) {
-				LOGGER.warn("{}connection changed cid {}!={}!", tag, connectionId, cid);
-			}
-		}
-		return connection;
-	}
-
 	@Override
 	public boolean remove(final Connection connection, final boolean removeFromSessionCache) {
 		boolean removed;
@@ -499,33 +274,7 @@ public class InMemoryConnectionStore implements ResumptionSupportingConnectionSt
 		synchronized (this) {
 			removed = connections.remove(connection.getConnectionId(), connection) == connection;
 			if (removed) {
-				if (connection.isExecuting()) {
-					List<Runnable> pendings = connection.getExecutor().shutdownNow();
-					if (LOGGER.isTraceEnabled()) {
-						LOGGER.trace("{}connection: remove {} (size {}, left jobs: {})", tag, connection,
-								connections.size(), pendings.size(), new Throwable("connection removed!"));
-					} else if (pendings.isEmpty()) {
-						LOGGER.debug("{}connection: remove {} (size {})", tag, connection, connections.size());
-					} else {
-						LOGGER.debug("{}connection: remove {} (size {}, left jobs: {})", tag, connection,
-								connections.size(), pendings.size());
-					}
-				} else {
-					if (LOGGER.isTraceEnabled()) {
-						LOGGER.trace("{}connection: remove {} (size {})", tag, connection, connections.size(),
-								new Throwable("connection removed!"));
-					} else {
-						LOGGER.debug("{}connection: remove {} (size {})", tag, connection, connections.size());
-					}
-				}
-				removeByAddressConnections(connection);
-				removeByEstablishedSessions(sessionId, connection);
-				ConnectionListener listener = connectionListener;
-				if (listener != null) {
-					listener.onConnectionRemoved(connection);
-				}
-				// destroy keys.
-				SecretUtil.destroy(connection.getDtlsContext());
+				removed(connection, sessionId, connections.size());
 			}
 		}
 		if (removeFromSessionCache) {
@@ -534,105 +283,17 @@ public class InMemoryConnectionStore implements ResumptionSupportingConnectionSt
 		return removed;
 	}
 
-	private void removeByEstablishedSessions(SessionId sessionId, Connection connection) {
-		if (connectionsByEstablishedSession != null && sessionId != null && !sessionId.isEmpty()) {
-			connectionsByEstablishedSession.remove(sessionId, connection);
-		}
-	}
-
-	private void removeByAddressConnections(Connection connection) {
-		InetSocketAddress peerAddress = connection.getPeerAddress();
-		if (peerAddress != null) {
-			connectionsByAddress.remove(peerAddress, connection);
-			connection.updatePeerAddress(null);
-		}
-	}
-
-	private void removeSessionFromStore(SessionId sessionId) {
-		if (sessionStore != null  && sessionId != null && !sessionId.isEmpty()) {
-			sessionStore.remove(sessionId);
-		}
-	}
-
-	private void addToAddressConnections(Connection connection) {
-		final InetSocketAddress peerAddress = connection.getPeerAddress();
-		if (peerAddress != null) {
-			final Connection previous = connectionsByAddress.put(peerAddress, connection);
-			if (previous != null && previous != connection) {
-				Runnable removeAddress = new Runnable() {
-
-					@Override
-					public void run() {
-						if (previous.equalsPeerAddress(peerAddress)) {
-							previous.updatePeerAddress(null);
-							if (connectionsByEstablishedSession == null) {
-								if (!previous.expectCid()) {
-									remove(previous, false);
-								}
-							}
-						}
-					}
-				};
-				LOGGER.debug("{}connection: {} - {} added! {} removed from address.", tag, connection.getConnectionId(),
-						StringUtil.toLog(peerAddress), previous.getConnectionId());
-				if (previous.isExecuting()) {
-					previous.getExecutor().execute(removeAddress);
-				} else {
-					removeAddress.run();
-				}
-			} else {
-				LOGGER.debug("{}connection: {} - {} added!", tag, connection.getConnectionId(),
-						StringUtil.toLog(peerAddress));
-			}
-		} else {
-			LOGGER.debug("{}connection: {} - missing address!", tag, connection.getConnectionId());
-		}
-	}
-
-	private void addToEstablishedConnections(SessionId sessionId, Connection connection) {
-		if (connectionsByEstablishedSession != null) {
-			final Connection previous = connectionsByEstablishedSession.put(sessionId, connection);
-			if (previous != null && previous != connection) {
-				Runnable removePreviousConnection = new Runnable() {
-
-					@Override
-					public void run() {
-						remove(previous, false);
-					}
-				};
-				if (previous.isExecuting()) {
-					previous.getExecutor().execute(removePreviousConnection);
-				} else {
-					removePreviousConnection.run();
-				}
-			}
-		}
-	}
-
 	@Override
 	public final synchronized void clear() {
-		for (Connection connection : connections.values()) {
-			SerialExecutor executor = connection.getExecutor();
-			if (executor != null) {
-				executor.shutdownNow();
-			}
-		}
+		shutdown(connections.values(), null);
 		connections.clear();
-		if (connectionsByEstablishedSession != null) {
-			connectionsByEstablishedSession.clear();
-		}
-		connectionsByAddress.clear();
+		clearMaps();
 		// TODO: does it make sense to clear the SessionCache as well?
 	}
 
 	@Override
 	public final synchronized void stop(List<Runnable> pending) {
-		for (Connection connection : connections.values()) {
-			SerialExecutor executor = connection.getExecutor();
-			if (executor != null) {
-				executor.shutdownNow(pending);
-			}
-		}
+		shutdown(connections.values(), pending);
 	}
 
 	/**
@@ -648,27 +309,12 @@ public class InMemoryConnectionStore implements ResumptionSupportingConnectionSt
 	@WipAPI
 	@Override
 	public int saveConnections(OutputStream out, long maxQuietPeriodInSeconds) throws IOException {
-		int count = 0;
+		int count;
 		DatagramWriter writer = new DatagramWriter(4096);
 		long startNanos = ClockUtil.nanoRealtime();
 		synchronized (connections) {
-			Iterator<Timestamped<Connection>> iterator = connections.timestampedIterator();
-			while (iterator.hasNext()) {
-				Timestamped<Connection> connection = iterator.next();
-				long updateNanos = connection.getLastUpdate();
-				long quiet = TimeUnit.NANOSECONDS.toSeconds(startNanos - updateNanos);
-				if (quiet > maxQuietPeriodInSeconds) {
-					LOGGER.trace("{}skip {} ts, {}s too quiet!", tag, updateNanos, quiet);
-				} else {
-					LOGGER.trace("{}write {} ts, {}s ", tag, updateNanos, quiet);
-					if (connection.getValue().writeTo(writer)) {
-						writer.writeTo(out);
-						++count;
-					} else {
-						writer.reset();
-					}
-				}
-			}
+			count = writeConnections(connections.timestampedIterator(), writer, out, startNanos,
+					maxQuietPeriodInSeconds);
 		}
 		SerializationUtil.writeNoItem(out);
 		out.flush();
@@ -677,61 +323,16 @@ public class InMemoryConnectionStore implements ResumptionSupportingConnectionSt
 		return count;
 	}
 
-	@WipAPI
-	@Override
-	public int loadConnections(InputStream in, long delta) throws IOException {
-		boolean clear = true;
-		int count = 0;
-		long startNanos = ClockUtil.nanoRealtime();
-		DataStreamReader reader = new DataStreamReader(in);
-		try {
-			Connection connection;
-			while ((connection = Connection.fromReader(reader, delta)) != null) {
-				long lastUpdate = connection.getLastMessageNanos();
-				if (lastUpdate - startNanos > 0) {
-					LOGGER.warn("{}read {} ts is after {} (future)", tag, lastUpdate, startNanos);
-				}
-				LOGGER.trace("{}read {} ts, {}s", tag, lastUpdate,
-						TimeUnit.NANOSECONDS.toSeconds(startNanos - lastUpdate));
-				restore(connection);
-				++count;
-			}
-			clear = false;
-		} catch (IllegalArgumentException ex) {
-			LOGGER.warn("{}reading failed after {} connections", tag, count, ex);
-			clear();
-			throw ex;
-		} finally {
-			if (clear) {
-				clear();
-				count = 0;
-			}
-		}
-		return count;
-	}
-
 	@WipAPI
 	@Override
 	public boolean restore(Connection connection) {
 
-		ConnectionId connectionId = connection.getConnectionId();
-		if (connectionId == null) {
-			throw new IllegalStateException("Connection must have a connection id!");
-		} else if (connectionId.isEmpty()) {
-			throw new IllegalStateException("Connection must have a none empty connection id!");
-		} else if (connections.get(connectionId) != null) {
-			throw new IllegalStateException("Connection id already used! " + connectionId);
-		}
+		ConnectionId connectionId = checkRestoreConnectionId(connection);
 		boolean restored = false;
 		synchronized (connections) {
 			if (connections.put(connectionId, connection, connection.getLastMessageNanos())) {
-				if (LOGGER.isTraceEnabled()) {
-					LOGGER.trace("{}connection: add {} (size {})", tag, connection, connections.size(),
-							new Throwable("connection added!"));
-				} else {
-					LOGGER.debug("{}connection: add {} (size {})", tag, connectionId, connections.size());
-				}
-				addToAddressConnections(connection);
+				logAdded(connection, connections.size());
+				addToAddressConnections(connection, null);
 				restored = true;
 			} else {
 				LOGGER.warn("{}connection store is full! {} max. entries.", tag, connections.getCapacity());
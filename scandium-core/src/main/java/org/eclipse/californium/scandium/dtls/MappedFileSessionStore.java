@@ -0,0 +1,541 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.californium.elements.util.Bytes;
+import org.eclipse.californium.elements.util.DatagramReader;
+import org.eclipse.californium.elements.util.DatagramWriter;
+import org.eclipse.californium.elements.util.WipAPI;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A session store that stores {@code DTLSSession} in a memory-mapped file.
+ *
+ * The file consists of a header and a fixed number of fixed sized slots. The
+ * slots are grouped into buckets of {@link #SLOTS_PER_BUCKET} slots. A session
+ * is stored in one of the slots of the bucket selected by the hash of its
+ * session id. If all slots of that bucket are used by not expired sessions,
+ * the oldest session of that bucket gets replaced. Therefore no index is kept
+ * on the heap and the sessions are available again after a restart without
+ * reading the whole file.
+ *
+ * Sessions are serialized using {@link DTLSSession#writeTo(DatagramWriter)}.
+ * Sessions, which doesn't fit into a slot (e.g. because of a large x509
+ * certificate chain as peer identity), are not stored.
+ *
+ * Sessions expire after the provided time to live, based on the system's
+ * wall-clock, so that the expiration is also applied after a restart.
+ *
+ * Expired sessions are cleared, when they are looked up, when their slot is
+ * reused, and by an incremental sweep of one bucket on each
+ * {@link #put(DTLSSession)}. All expired sessions are cleared on opening the
+ * file and by {@link #removeExpiredSessions()}, which may be called
+ * periodically.
+ *
+ * Note: the file contains not encrypted critical credentials (the master
+ * secrets). Expired sessions stay in the file in plain text until they are
+ * cleared. It is required to protect this file, e.g. by the file system
+ * permissions. The encoding of the content may also change in the future.
+ *
+ * @since 3.0
+ */
+@WipAPI
+public class MappedFileSessionStore implements SessionStore, Closeable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(MappedFileSessionStore.class);
+
+	/**
+	 * Number of slots per bucket.
+	 */
+	public static final int SLOTS_PER_BUCKET = 8;
+	/**
+	 * Default size of a slot in bytes.
+	 */
+	public static final int DEFAULT_SLOT_SIZE = 512;
+	/**
+	 * Magic number of the file header.
+	 */
+	private static final int MAGIC = 0x43535331; // "CSS1"
+	/**
+	 * Version number of the file format.
+	 */
+	private static final int VERSION = 1;
+	/**
+	 * Size of the file header.
+	 */
+	private static final int HEADER_SIZE = 64;
+	/**
+	 * Maximum number of bytes of a mapped region.
+	 */
+	private static final int MAX_REGION_SIZE = 1 << 30;
+	/**
+	 * Maximum session id length. See RFC 5246.
+	 */
+	private static final int MAX_SESSION_ID_LENGTH = 32;
+
+	// slot layout
+	private static final int SLOT_STATE = 0;
+	private static final int SLOT_ID_LENGTH = 1;
+	private static final int SLOT_ID = 2;
+	private static final int SLOT_TIME = SLOT_ID + MAX_SESSION_ID_LENGTH;
+	private static final int SLOT_DATA_LENGTH = SLOT_TIME + Long.SIZE / Byte.SIZE;
+	private static final int SLOT_DATA = SLOT_DATA_LENGTH + Short.SIZE / Byte.SIZE;
+
+	private static final byte STATE_FREE = 0;
+	private static final byte STATE_USED = 1;
+
+	private final File file;
+	private final RandomAccessFile randomAccessFile;
+	private final MappedByteBuffer[] regions;
+	private final Object[] locks;
+	private final int slotSize;
+	private final int slotsPerRegion;
+	private final int buckets;
+	private final long timeToLiveMillis;
+	/**
+	 * Next bucket of the incremental sweep.
+	 */
+	private final AtomicInteger sweepBucket = new AtomicInteger();
+
+	/**
+	 * Create session store with memory-mapped file.
+	 *
+	 * If the file already exists and was created with the same capacity and
+	 * slot size, the contained sessions are reused. Otherwise the file is
+	 * initialized.
+	 *
+	 * @param file file to map
+	 * @param capacity maximum number of sessions. Rounded up to a multiple of
+	 *            {@link #SLOTS_PER_BUCKET}.
+	 * @param slotSize size of the slots in bytes. Sessions, which doesn't fit
+	 *            into a slot, are not stored.
+	 * @param timeToLive time to live of the sessions
+	 * @param unit time unit of time to live
+	 * @throws IOException if an i/o error occurred
+	 * @throws IllegalArgumentException if capacity is less than {@code 1},
+	 *             the slot size is too small or too large, or the time to live
+	 *             is less than {@code 1}
+	 * @throws NullPointerException if file or unit is {@code null}
+	 */
+	public MappedFileSessionStore(File file, int capacity, int slotSize, long timeToLive, TimeUnit unit)
+			throws IOException {
+		if (file == null) {
+			throw new NullPointerException("File must not be null!");
+		}
+		if (unit == null) {
+			throw new NullPointerException("Time unit must not be null!");
+		}
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity " + capacity + " must be at least 1!");
+		}
+		if (slotSize < SLOT_DATA + 64 || slotSize > SLOT_DATA + 0xffff) {
+			throw new IllegalArgumentException("slot size " + slotSize + " must be in range [" + (SLOT_DATA + 64)
+					+ "..." + (SLOT_DATA + 0xffff) + "]!");
+		}
+		if (timeToLive < 1) {
+			throw new IllegalArgumentException("time to live " + timeToLive + " must be at least 1!");
+		}
+		this.file = file;
+		this.slotSize = slotSize;
+		this.timeToLiveMillis = unit.toMillis(timeToLive);
+		this.buckets = (capacity + SLOTS_PER_BUCKET - 1) / SLOTS_PER_BUCKET;
+		long slots = (long) buckets * SLOTS_PER_BUCKET;
+		// regions contain only complete buckets
+		this.slotsPerRegion = (MAX_REGION_SIZE / (slotSize * SLOTS_PER_BUCKET)) * SLOTS_PER_BUCKET;
+		int numberOfRegions = (int) ((slots + slotsPerRegion - 1) / slotsPerRegion);
+		this.locks = new Object[Math.min(buckets, 1024)];
+		for (int index = 0; index < locks.length; ++index) {
+			locks[index] = new Object();
+		}
+		long fileSize = HEADER_SIZE + slots * slotSize;
+		this.randomAccessFile = new RandomAccessFile(file, "rw");
+		try {
+			FileChannel channel = randomAccessFile.getChannel();
+			boolean reuse = randomAccessFile.length() == fileSize;
+			if (reuse) {
+				randomAccessFile.seek(0);
+				reuse = randomAccessFile.readInt() == MAGIC && randomAccessFile.readInt() == VERSION
+						&& randomAccessFile.readInt() == slotSize && randomAccessFile.readInt() == buckets;
+			}
+			if (!reuse) {
+				LOGGER.info("initialize session store {} for {} sessions, {} bytes", file, slots, fileSize);
+				// clear header and all slots
+				randomAccessFile.setLength(0);
+				randomAccessFile.setLength(fileSize);
+				MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+				header.putInt(0, MAGIC);
+				header.putInt(4, VERSION);
+				header.putInt(8, slotSize);
+				header.putInt(12, buckets);
+				header.force();
+			} else {
+				LOGGER.info("reuse session store {} for {} sessions, {} bytes", file, slots, fileSize);
+			}
+			this.regions = new MappedByteBuffer[numberOfRegions];
+			long position = HEADER_SIZE;
+			for (int index = 0; index < numberOfRegions; ++index) {
+				long size = Math.min((long) slotsPerRegion * slotSize, fileSize - position);
+				regions[index] = channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+				position += size;
+			}
+		} catch (IOException ex) {
+			randomAccessFile.close();
+			throw ex;
+		}
+		int expired = removeExpiredSessions();
+		if (expired > 0) {
+			LOGGER.info("session store {} cleared {} expired sessions", file, expired);
+		}
+	}
+
+	/**
+	 * Get the file of this session store.
+	 *
+	 * @return file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Get the capacity.
+	 *
+	 * @return maximum number of sessions
+	 */
+	public int getCapacity() {
+		return buckets * SLOTS_PER_BUCKET;
+	}
+
+	/**
+	 * Get the maximum size of a serialized session.
+	 *
+	 * @return maximum size of a serialized session in bytes
+	 */
+	public int getMaxSessionSize() {
+		return slotSize - SLOT_DATA;
+	}
+
+	@Override
+	public void put(DTLSSession session) {
+		if (session == null) {
+			return;
+		}
+		SessionId id = session.getSessionIdentifier();
+		if (id.isEmpty() || id.length() > MAX_SESSION_ID_LENGTH) {
+			return;
+		}
+		DatagramWriter writer = new DatagramWriter(slotSize, true);
+		session.writeTo(writer);
+		byte[] data = writer.toByteArray();
+		writer.close();
+		try {
+			if (data.length > getMaxSessionSize()) {
+				LOGGER.debug("session {} with {} bytes exceeds slot!", id, data.length);
+				return;
+			}
+			long now = System.currentTimeMillis();
+			int bucket = bucket(id);
+			synchronized (lock(bucket)) {
+				int first = bucket * SLOTS_PER_BUCKET;
+				int slot = -1;
+				int eldest = -1;
+				long eldestTime = Long.MAX_VALUE;
+				for (int index = first; index < first + SLOTS_PER_BUCKET; ++index) {
+					ByteBuffer buffer = slot(index);
+					if (buffer.get(SLOT_STATE) != STATE_USED) {
+						if (slot < 0) {
+							slot = index;
+						}
+					} else if (matches(buffer, id)) {
+						slot = index;
+						break;
+					} else {
+						long time = buffer.getLong(SLOT_TIME);
+						if (isExpired(time, now)) {
+							if (slot < 0) {
+								slot = index;
+							}
+						} else if (time < eldestTime) {
+							eldestTime = time;
+							eldest = index;
+						}
+					}
+				}
+				if (slot < 0) {
+					LOGGER.trace("session store bucket {} full, replace eldest session.", bucket);
+					slot = eldest;
+				}
+				ByteBuffer buffer = slot(slot);
+				buffer.put(SLOT_STATE, STATE_FREE);
+				int previousLength = dataLength(buffer);
+				buffer.position(SLOT_ID);
+				buffer.put(id.getBytes());
+				buffer.put(SLOT_ID_LENGTH, (byte) id.length());
+				buffer.putLong(SLOT_TIME, now);
+				buffer.putShort(SLOT_DATA_LENGTH, (short) data.length);
+				buffer.position(SLOT_DATA);
+				buffer.put(data);
+				// clear secrets of previous session
+				clear(buffer, data.length, previousLength);
+				buffer.put(SLOT_STATE, STATE_USED);
+			}
+			// incremental sweep, without holding the lock of the bucket above
+			sweep((sweepBucket.getAndIncrement() & 0x7fffffff) % buckets, now);
+		} finally {
+			Bytes.clear(data);
+		}
+	}
+
+	@Override
+	public DTLSSession get(SessionId id) {
+		if (id == null || id.isEmpty() || id.length() > MAX_SESSION_ID_LENGTH) {
+			return null;
+		}
+		byte[] data = null;
+		long now = System.currentTimeMillis();
+		int bucket = bucket(id);
+		synchronized (lock(bucket)) {
+			ByteBuffer buffer = find(bucket, id);
+			if (buffer != null) {
+				if (isExpired(buffer.getLong(SLOT_TIME), now)) {
+					free(buffer);
+				} else {
+					data = new byte[buffer.getShort(SLOT_DATA_LENGTH) & 0xffff];
+					buffer.position(SLOT_DATA);
+					buffer.get(data);
+				}
+			}
+		}
+		if (data == null) {
+			return null;
+		}
+		try {
+			return DTLSSession.fromReader(new DatagramReader(data, false));
+		} catch (IllegalArgumentException ex) {
+			LOGGER.warn("session {} corrupted!", id, ex);
+			remove(id);
+			return null;
+		} finally {
+			Bytes.clear(data);
+		}
+	}
+
+	@Override
+	public void remove(SessionId id) {
+		if (id == null || id.isEmpty() || id.length() > MAX_SESSION_ID_LENGTH) {
+			return;
+		}
+		int bucket = bucket(id);
+		synchronized (lock(bucket)) {
+			ByteBuffer buffer = find(bucket, id);
+			if (buffer != null) {
+				free(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Remove all expired sessions and clear their secrets.
+	 *
+	 * Reads the state of all slots. May be called periodically to clear the
+	 * secrets of expired sessions earlier than the incremental sweep.
+	 *
+	 * @return number of removed sessions
+	 */
+	public int removeExpiredSessions() {
+		int expired = 0;
+		long now = System.currentTimeMillis();
+		for (int bucket = 0; bucket < buckets; ++bucket) {
+			expired += sweep(bucket, now);
+		}
+		return expired;
+	}
+
+	/**
+	 * Get the number of stored sessions, which are not expired.
+	 *
+	 * Reads the state of all slots. Intended for tests and diagnose.
+	 *
+	 * @return number of stored sessions
+	 */
+	public int size() {
+		int size = 0;
+		long now = System.currentTimeMillis();
+		for (int bucket = 0; bucket < buckets; ++bucket) {
+			synchronized (lock(bucket)) {
+				int first = bucket * SLOTS_PER_BUCKET;
+				for (int index = first; index < first + SLOTS_PER_BUCKET; ++index) {
+					ByteBuffer buffer = slot(index);
+					if (buffer.get(SLOT_STATE) == STATE_USED && !isExpired(buffer.getLong(SLOT_TIME), now)) {
+						++size;
+					}
+				}
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Write the changes to the storage device.
+	 *
+	 * @see MappedByteBuffer#force()
+	 */
+	public void flush() {
+		for (MappedByteBuffer region : regions) {
+			region.force();
+		}
+	}
+
+	/**
+	 * Flush the changes and close the file.
+	 *
+	 * The mapped regions stays valid until they are garbage collected, but
+	 * this session store must not be used anymore.
+	 */
+	@Override
+	public void close() throws IOException {
+		flush();
+		randomAccessFile.close();
+	}
+
+	/**
+	 * Remove the expired sessions of a bucket.
+	 *
+	 * @param bucket bucket to sweep
+	 * @param now current wall-clock time in milliseconds
+	 * @return number of removed sessions
+	 */
+	private int sweep(int bucket, long now) {
+		int expired = 0;
+		synchronized (lock(bucket)) {
+			int first = bucket * SLOTS_PER_BUCKET;
+			for (int index = first; index < first + SLOTS_PER_BUCKET; ++index) {
+				ByteBuffer buffer = slot(index);
+				if (buffer.get(SLOT_STATE) == STATE_USED && isExpired(buffer.getLong(SLOT_TIME), now)) {
+					free(buffer);
+					++expired;
+				}
+			}
+		}
+		return expired;
+	}
+
+	/**
+	 * Free slot and clear the secrets of the session.
+	 *
+	 * @param buffer buffer of the slot
+	 */
+	private void free(ByteBuffer buffer) {
+		buffer.put(SLOT_STATE, STATE_FREE);
+		clear(buffer, 0, dataLength(buffer));
+	}
+
+	/**
+	 * Clear data of slot.
+	 *
+	 * @param buffer buffer of the slot
+	 * @param from offset within the data to start clearing
+	 * @param to offset within the data to stop clearing (exclusive)
+	 */
+	private void clear(ByteBuffer buffer, int from, int to) {
+		for (int index = from; index < to; ++index) {
+			buffer.put(SLOT_DATA + index, (byte) 0);
+		}
+	}
+
+	/**
+	 * Get length of data of slot.
+	 *
+	 * @param buffer buffer of the slot
+	 * @return length of data, limited to the maximum session size
+	 */
+	private int dataLength(ByteBuffer buffer) {
+		return Math.min(buffer.getShort(SLOT_DATA_LENGTH) & 0xffff, getMaxSessionSize());
+	}
+
+	private boolean isExpired(long time, long now) {
+		return now - time >= timeToLiveMillis;
+	}
+
+	private int bucket(SessionId id) {
+		int hash = id.hashCode();
+		// spread higher bits
+		hash ^= (hash >>> 16);
+		return (hash & 0x7fffffff) % buckets;
+	}
+
+	private Object lock(int bucket) {
+		return locks[bucket % locks.length];
+	}
+
+	/**
+	 * Get the slot.
+	 *
+	 * @param index index of slot
+	 * @return buffer for the slot. Position {@code 0} is the start of the
+	 *         slot, the limit is the end of the slot.
+	 */
+	private ByteBuffer slot(int index) {
+		ByteBuffer region = regions[index / slotsPerRegion].duplicate();
+		int offset = (index % slotsPerRegion) * slotSize;
+		region.limit(offset + slotSize);
+		region.position(offset);
+		return region.slice();
+	}
+
+	/**
+	 * Find slot of session.
+	 *
+	 * @param bucket bucket of session id
+	 * @param id session id
+	 * @return buffer for the slot, or {@code null}, if not available
+	 */
+	private ByteBuffer find(int bucket, SessionId id) {
+		int first = bucket * SLOTS_PER_BUCKET;
+		for (int index = first; index < first + SLOTS_PER_BUCKET; ++index) {
+			ByteBuffer buffer = slot(index);
+			if (buffer.get(SLOT_STATE) == STATE_USED && matches(buffer, id)) {
+				return buffer;
+			}
+		}
+		return null;
+	}
+
+	private static boolean matches(ByteBuffer buffer, SessionId id) {
+		int length = id.length();
+		if ((buffer.get(SLOT_ID_LENGTH) & 0xff) != length) {
+			return false;
+		}
+		byte[] bytes = id.getBytes();
+		for (int index = 0; index < length; ++index) {
+			if (buffer.get(SLOT_ID + index) != bytes[index]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
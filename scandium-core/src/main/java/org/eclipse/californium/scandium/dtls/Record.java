@@ -312,12 +312,21 @@ public class Record {
 	 * @return a byte array containing the <em>DTLSCiphertext</em> structure
 	 */
 	public byte[] toByteArray() {
-		int length = fragmentBytes.length + RECORD_HEADER_BYTES;
-		if (useConnectionId()) {
-			length += connectionId.length();
-		}
-		DatagramWriter writer = new DatagramWriter(length);
+		DatagramWriter writer = new DatagramWriter(size());
+		writeTo(writer);
+		return writer.toByteArray();
+	}
 
+	/**
+	 * Encodes this record into its corresponding <em>DTLSCiphertext</em>
+	 * structure and appends that to the provided writer.
+	 * 
+	 * Enables callers to reuse the writer's buffer for multiple records.
+	 * 
+	 * @param writer writer to append the <em>DTLSCiphertext</em> structure
+	 * @since 3.0
+	 */
+	public void writeTo(DatagramWriter writer) {
 		if (useConnectionId()) {
 			writer.write(ContentType.TLS12_CID.getCode(), CONTENT_TYPE_BITS);
 		} else {
@@ -334,8 +343,6 @@ public class Record {
 		}
 		writer.write(fragmentBytes.length, LENGTH_BITS);
 		writer.writeBytes(fragmentBytes);
-
-		return writer.toByteArray();
 	}
 
 	public int size() {
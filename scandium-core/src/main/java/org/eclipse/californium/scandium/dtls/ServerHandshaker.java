@@ -51,6 +51,7 @@
  *    Achim Kraus (Bosch Software Innovations GmbH) - add preSharedKeyIdentity to
  *                                                    support creating statistics.
  *    Achim Kraus (Bosch Software Innovations GmbH) - redesign DTLSFlight and RecordLayer
+ *    Bosch.IO GmbH - use key pair pool
  ******************************************************************************/
 package org.eclipse.californium.scandium.dtls;
 
@@ -566,7 +567,7 @@ public class ServerHandshaker extends Handshaker {
 				|| KeyExchangeAlgorithm.EC_DIFFIE_HELLMAN == keyExchangeAlgorithm) {
 			try {
 				SupportedGroup ecGroup = selectedCipherSuiteParameters.getSelectedSupportedGroup();
-				ecdhe = new XECDHECryptography(ecGroup);
+				ecdhe = new XECDHECryptography(ecGroup, keyPairPool);
 				session.setEcGroup(ecGroup);
 			} catch (GeneralSecurityException ex) {
 				AlertMessage alert = new AlertMessage(AlertLevel.FATAL, AlertDescription.ILLEGAL_PARAMETER);
@@ -0,0 +1,415 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.eclipse.californium.elements.util.ClockUtil;
+import org.eclipse.californium.elements.util.DatagramWriter;
+import org.eclipse.californium.elements.util.LeastRecentlyUsedCache;
+import org.eclipse.californium.elements.util.SerializationUtil;
+import org.eclipse.californium.elements.util.StringUtil;
+import org.eclipse.californium.elements.util.WipAPI;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An in-memory <code>ResumptionSupportingConnectionStore</code> for servers
+ * with many cores.
+ * <p>
+ * Same semantic as the {@link InMemoryConnectionStore}, but the connections
+ * are distributed by their connection id over several stripes. Each stripe
+ * uses its own {@link LeastRecentlyUsedCache} and its own lock. The lookups by
+ * connection id, peer address, or session id are not locked at all, only
+ * {@link #put(Connection)}, {@link #update(Connection, InetSocketAddress)} and
+ * {@link #remove(Connection, boolean)} lock the stripe of the connection.
+ * </p>
+ * <p>
+ * The capacity is split evenly over the stripes. Evicting stale connections
+ * is therefore only done within the stripe of the new connection, which is an
+ * approximation of the <em>least recently used</em> policy of the
+ * {@link InMemoryConnectionStore}. For a small number of stripes compared to
+ * the capacity and randomly generated connection ids, the difference is
+ * negligible.
+ * </p>
+ * <p>
+ * Supports also a {@link SessionStore} implementation to keep sessions for
+ * longer or in a distribute system. See {@link InMemoryConnectionStore}.
+ * </p>
+ *
+ * @since 3.0
+ */
+public class StripedConnectionStore extends AbstractInMemoryConnectionStore {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(StripedConnectionStore.class);
+
+	/**
+	 * Stripes of connections.
+	 *
+	 * The instances of the {@link LeastRecentlyUsedCache} are also used as
+	 * lock for that stripe.
+	 */
+	private final LeastRecentlyUsedCache<ConnectionId, Connection>[] stripes;
+	private final int capacity;
+
+	/**
+	 * Creates a striped store based on given configuration parameters.
+	 *
+	 * @param stripes number of stripes
+	 * @param capacity the maximum number of connections the store can manage
+	 * @param threshold the period of time of inactivity (in seconds) after
+	 *            which a connection is considered stale and can be evicted from
+	 *            the store if a new connection is to be added to the store
+	 * @param sessionStore a second level store to use for <em>current</em>
+	 *            connection state of established DTLS sessions.
+	 * @throws IllegalArgumentException if stripes is less than {@code 1}, or
+	 *             the capacity is less than stripes.
+	 */
+	@SuppressWarnings("unchecked")
+	public StripedConnectionStore(int stripes, int capacity, long threshold, SessionStore sessionStore) {
+		super(sessionStore);
+		if (stripes < 1) {
+			throw new IllegalArgumentException("stripes " + stripes + " must be at least 1!");
+		}
+		if (capacity < stripes) {
+			throw new IllegalArgumentException("capacity " + capacity + " must be at least " + stripes + "!");
+		}
+		int stripeCapacity = (capacity + stripes - 1) / stripes;
+		this.capacity = capacity;
+		this.stripes = new LeastRecentlyUsedCache[stripes];
+		for (int index = 0; index < stripes; ++index) {
+			LeastRecentlyUsedCache<ConnectionId, Connection> stripe = new LeastRecentlyUsedCache<>(stripeCapacity,
+					threshold);
+			stripe.setEvictingOnReadAccess(false);
+			stripe.setUpdatingOnReadAccess(false);
+			stripe.addEvictionListener(newEvictionListener());
+			this.stripes[index] = stripe;
+		}
+		LOGGER.info(
+				"Created new StripedConnectionStore [stripes: {}, capacity: {}, connection expiration threshold: {}s]",
+				stripes, capacity, threshold);
+	}
+
+	/**
+	 * Set tag for logging outputs.
+	 *
+	 * @param tag tag for logging
+	 * @return this connection store for calls chaining
+	 */
+	public StripedConnectionStore setTag(final String tag) {
+		this.tag = StringUtil.normalizeLoggingTag(tag);
+		return this;
+	}
+
+	/**
+	 * Get the number of stripes.
+	 *
+	 * @return number of stripes
+	 */
+	public int getStripes() {
+		return stripes.length;
+	}
+
+	/**
+	 * Get the stripe of the connection id.
+	 *
+	 * @param cid connection id
+	 * @return stripe of the connection id
+	 */
+	private LeastRecentlyUsedCache<ConnectionId, Connection> stripe(ConnectionId cid) {
+		int hash = cid.hashCode();
+		// spread higher bits, the cid's hash may vary only in few bits.
+		hash ^= (hash >>> 16);
+		return stripes[(hash & 0x7fffffff) % stripes.length];
+	}
+
+	@Override
+	protected int getConnectionCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * Not locked, the stripes neither update nor evict on read access.
+	 */
+	@Override
+	protected Connection getConnection(ConnectionId cid) {
+		return stripe(cid).get(cid);
+	}
+
+	@Override
+	protected boolean updateConnection(ConnectionId cid) {
+		LeastRecentlyUsedCache<ConnectionId, Connection> stripe = stripe(cid);
+		synchronized (stripe) {
+			return stripe.update(cid);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * A connection can be successfully added to the store if any of the
+	 * following conditions is met:
+	 * <ul>
+	 * <li>The remaining capacity of the connection's stripe is greater than
+	 * zero.</li>
+	 * <li>The connection's stripe contains at least one <em>stale</em>
+	 * connection. In such a case the least-recently accessed stale connection
+	 * of that stripe gets evicted.</li>
+	 * </ul>
+	 */
+	@Override
+	public boolean put(final Connection connection) {
+		if (connection == null) {
+			return false;
+		}
+		ConnectionId connectionId = prepareConnectionId(connection);
+		LeastRecentlyUsedCache<ConnectionId, Connection> stripe = stripe(connectionId);
+		DTLSSession session = connection.getEstablishedSession();
+		List<Runnable> deferred = new ArrayList<>(2);
+		boolean success = false;
+		synchronized (stripe) {
+			if (stripe.get(connectionId) != null) {
+				throw new IllegalStateException("Connection id already used! " + connectionId);
+			}
+			if (stripe.put(connectionId, connection)) {
+				logAdded(connection, stripe.size());
+				// add to the other maps with the lock held, a concurrent
+				// remove must not cleanup before
+				added(connection, session, deferred);
+				success = true;
+			} else {
+				LOGGER.warn("{}connection store stripe is full! {} max. entries.", tag, stripe.getCapacity());
+			}
+		}
+		// remove replaced connections of other stripes without lock held
+		runDeferred(deferred);
+		if (success && session != null && sessionStore != null) {
+			sessionStore.put(session);
+		}
+		return success;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Updates the address under the lock of the stripe of the connection,
+	 * same as {@link #put(Connection)} and {@link #remove(Connection, boolean)}.
+	 */
+	@Override
+	public boolean update(final Connection connection, InetSocketAddress newPeerAddress) {
+		if (connection == null) {
+			return false;
+		}
+		List<Runnable> deferred = null;
+		if (newPeerAddress != null && !connection.equalsPeerAddress(newPeerAddress)) {
+			deferred = new ArrayList<>(1);
+		}
+		LeastRecentlyUsedCache<ConnectionId, Connection> stripe = stripe(connection.getConnectionId());
+		boolean updated;
+		synchronized (stripe) {
+			updated = update(connection, newPeerAddress, deferred);
+		}
+		// remove replaced connections of other stripes without lock held
+		runDeferred(deferred);
+		return updated;
+	}
+
+	@Override
+	public DTLSSession find(SessionId id) {
+		if (id == null || id.isEmpty()) {
+			return null;
+		}
+		DTLSSession session = null;
+		if (sessionStore != null) {
+			session = sessionStore.get(id);
+		}
+		Connection connection = findLocally(id);
+		if (connection != null) {
+			if (sessionStore == null) {
+				DTLSSession establishedSession = connection.getEstablishedSession();
+				if (establishedSession != null) {
+					session = new DTLSSession(establishedSession);
+				}
+			} else if (session == null) {
+				// remove corresponding connection from this store
+				remove(connection, false);
+				return null;
+			}
+		}
+		return session;
+	}
+
+	@Override
+	public void markAllAsResumptionRequired() {
+		for (LeastRecentlyUsedCache<ConnectionId, Connection> stripe : stripes) {
+			synchronized (stripe) {
+				markAllAsResumptionRequired(stripe.values());
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * Sum of the remaining capacities of all stripes. A new connection may
+	 * still be rejected, if its stripe is exhausted.
+	 */
+	@Override
+	public int remainingCapacity() {
+		int remaining = 0;
+		int size = 0;
+		for (LeastRecentlyUsedCache<ConnectionId, Connection> stripe : stripes) {
+			remaining += stripe.remainingCapacity();
+			size += stripe.size();
+		}
+		LOGGER.debug("{}connection: size {}, remaining {}!", tag, size, remaining);
+		return remaining;
+	}
+
+	@Override
+	public boolean remove(final Connection connection, final boolean removeFromSessionCache) {
+		SessionId sessionId = connection.getEstablishedSessionIdentifier();
+		ConnectionId connectionId = connection.getConnectionId();
+		LeastRecentlyUsedCache<ConnectionId, Connection> stripe = stripe(connectionId);
+		boolean removed;
+		int size;
+		synchronized (stripe) {
+			removed = stripe.remove(connectionId, connection) == connection;
+			size = stripe.size();
+		}
+		if (removed) {
+			removed(connection, sessionId, size);
+		}
+		if (removeFromSessionCache) {
+			removeSessionFromStore(sessionId);
+		}
+		return removed;
+	}
+
+	@Override
+	public final void clear() {
+		for (LeastRecentlyUsedCache<ConnectionId, Connection> stripe : stripes) {
+			synchronized (stripe) {
+				shutdown(stripe.values(), null);
+				stripe.clear();
+			}
+		}
+		clearMaps();
+	}
+
+	@Override
+	public final void stop(List<Runnable> pending) {
+		for (LeastRecentlyUsedCache<ConnectionId, Connection> stripe : stripes) {
+			synchronized (stripe) {
+				shutdown(stripe.values(), pending);
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * Iterates the stripes one after the other.
+	 *
+	 * @see LeastRecentlyUsedCache#valuesIterator()
+	 */
+	@Override
+	public Iterator<Connection> iterator() {
+		return new Iterator<Connection>() {
+
+			private int index;
+			private Iterator<Connection> current = stripes[0].valuesIterator();
+
+			@Override
+			public boolean hasNext() {
+				while (!current.hasNext()) {
+					if (++index >= stripes.length) {
+						return false;
+					}
+					current = stripes[index].valuesIterator();
+				}
+				return true;
+			}
+
+			@Override
+			public Connection next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return current.next();
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@WipAPI
+	@Override
+	public int saveConnections(OutputStream out, long maxQuietPeriodInSeconds) throws IOException {
+		int count = 0;
+		DatagramWriter writer = new DatagramWriter(4096);
+		long startNanos = ClockUtil.nanoRealtime();
+		for (LeastRecentlyUsedCache<ConnectionId, Connection> stripe : stripes) {
+			synchronized (stripe) {
+				count += writeConnections(stripe.timestampedIterator(), writer, out, startNanos,
+						maxQuietPeriodInSeconds);
+			}
+		}
+		SerializationUtil.writeNoItem(out);
+		out.flush();
+		writer.close();
+		clear();
+		return count;
+	}
+
+	@WipAPI
+	@Override
+	public boolean restore(Connection connection) {
+
+		ConnectionId connectionId = checkRestoreConnectionId(connection);
+		LeastRecentlyUsedCache<ConnectionId, Connection> stripe = stripe(connectionId);
+		List<Runnable> deferred = new ArrayList<>(1);
+		boolean restored = false;
+		synchronized (stripe) {
+			if (stripe.get(connectionId) != null) {
+				throw new IllegalStateException("Connection id already used! " + connectionId);
+			}
+			if (stripe.put(connectionId, connection, connection.getLastMessageNanos())) {
+				logAdded(connection, stripe.size());
+				addToAddressConnections(connection, deferred);
+				restored = true;
+			} else {
+				LOGGER.warn("{}connection store stripe is full! {} max. entries.", tag, stripe.getCapacity());
+			}
+		}
+		runDeferred(deferred);
+		if (restored && connection.hasEstablishedDtlsContext()) {
+			putEstablishedSession(connection);
+		}
+		return restored;
+	}
+}
@@ -105,6 +105,75 @@ public class AeadBlockCipher {
 		}
 	}
 
+	/**
+	 * Decrypt with AEAD cipher into provided buffer.
+	 * 
+	 * @param cipherSuite the cipher suite
+	 * @param key the encryption key K.
+	 * @param nonce the nonce N.
+	 * @param additionalData the additional authenticated data a.
+	 * @param crypted the encrypted and authenticated message c.
+	 * @param cryptedOffset the offset within crypted.
+	 * @param cryptedLength the length within crypted.
+	 * @param output buffer for the decrypted message
+	 * @param outputOffset offset within the output
+	 * @return length of the decrypted message
+	 * 
+	 * @throws GeneralSecurityException if the message could not be de-crypted,
+	 *             e.g. because the ciphertext's block size is not correct
+	 * @throws InvalidMacException if the message could not be authenticated
+	 * @since 3.0
+	 */
+	public final static int decrypt(CipherSuite cipherSuite, SecretKey key, byte[] nonce, byte[] additionalData,
+			byte[] crypted, int cryptedOffset, int cryptedLength, byte[] output, int outputOffset)
+			throws GeneralSecurityException {
+		if (AES_CCM.equals(cipherSuite.getTransformation())) {
+			return CCMBlockCipher.decrypt(key, nonce, additionalData, crypted, cryptedOffset, cryptedLength, output,
+					outputOffset, cipherSuite.getMacLength());
+		} else {
+			Cipher cipher = cipherSuite.getThreadLocalCipher();
+			GCMParameterSpec parameterSpec = new GCMParameterSpec(cipherSuite.getMacLength() * 8, nonce);
+			cipher.init(Cipher.DECRYPT_MODE, key, parameterSpec);
+			cipher.updateAAD(additionalData);
+			return cipher.doFinal(crypted, cryptedOffset, cryptedLength, output, outputOffset);
+		}
+	}
+
+	/**
+	 * Encrypt with AEAD cipher into provided buffer.
+	 * 
+	 * @param cipherSuite the cipher suite
+	 * @param key the encryption key K.
+	 * @param nonce the nonce N.
+	 * @param additionalData the additional authenticated data a.
+	 * @param message the message to authenticate and encrypt.
+	 * @param messageOffset offset within message
+	 * @param messageLength length within message
+	 * @param output buffer for the encrypted and authenticated message. Must
+	 *            provide {@code messageLength} and the
+	 *            {@link CipherSuite#getMacLength()} bytes after the output
+	 *            offset.
+	 * @param outputOffset offset within the output
+	 * @return length of the encrypted and authenticated message.
+	 * @throws GeneralSecurityException if the data could not be encrypted, e.g.
+	 *             because the JVM does not support the AES cipher algorithm
+	 * @since 3.0
+	 */
+	public final static int encrypt(CipherSuite cipherSuite, SecretKey key, byte[] nonce, byte[] additionalData,
+			byte[] message, int messageOffset, int messageLength, byte[] output, int outputOffset)
+			throws GeneralSecurityException {
+		if (AES_CCM.equals(cipherSuite.getTransformation())) {
+			return CCMBlockCipher.encrypt(key, nonce, additionalData, message, messageOffset, messageLength, output,
+					outputOffset, cipherSuite.getMacLength());
+		} else {
+			Cipher cipher = cipherSuite.getThreadLocalCipher();
+			GCMParameterSpec parameterSpec = new GCMParameterSpec(cipherSuite.getMacLength() * 8, nonce);
+			cipher.init(Cipher.ENCRYPT_MODE, key, parameterSpec);
+			cipher.updateAAD(additionalData);
+			return cipher.doFinal(message, messageOffset, messageLength, output, outputOffset);
+		}
+	}
+
 	/**
 	 * Decrypt with jre AEAD cipher.
 	 * 
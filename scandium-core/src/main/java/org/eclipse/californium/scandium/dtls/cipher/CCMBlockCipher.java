@@ -18,21 +18,30 @@
  *    Achim Kraus (Bosch Software Innovations GmbH) - redesigned implementation
  *                                                    to improve performance
  *    Achim Kraus (Bosch Software Innovations GmbH) - use NoPadding for android support
+ *    Bosch.IO GmbH                                 - use caller provided buffers and
+ *                                                    process many blocks per cipher call
  ******************************************************************************/
 package org.eclipse.californium.scandium.dtls.cipher;
 
 import java.security.GeneralSecurityException;
-import java.security.MessageDigest;
 import java.util.Arrays;
 
 import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
-import javax.crypto.ShortBufferException;
+import javax.crypto.spec.IvParameterSpec;
 
 /**
  * A generic authenticated encryption block cipher mode which uses the 128-bit
  * block cipher AES. See <a href="http://tools.ietf.org/html/rfc3610" target="_blank">RFC
  * 3610</a> for details.
+ * <p>
+ * The CBC-MAC is calculated with a single call of a
+ * {@link #MAC_CIPHER_NAME} cipher over the formatted blocks, the key stream
+ * for the counter mode with a single call of the {@link #CIPHER_NAME} cipher
+ * over all counter blocks. The formatted blocks and the key stream use thread
+ * local buffers, which are reused for records up to
+ * {@link #MAX_THREAD_LOCAL_BUFFER_SIZE} bytes.
+ * </p>
  */
 public class CCMBlockCipher {
 
@@ -41,242 +50,312 @@ public class CCMBlockCipher {
 	 * CCM is only defined for use with 128-bit block ciphers, such as AES
 	 * (http://tools.ietf.org/html/rfc3610).
 	 */
+	private static final int BLOCK_SIZE = 16;
 
 	/**
 	 * The underlying block cipher.
 	 */
 	public static final String CIPHER_NAME = "AES/ECB/NoPadding";
 	public static final ThreadLocalCipher CIPHER = new ThreadLocalCipher(CIPHER_NAME);
+	/**
+	 * The underlying block cipher for the CBC-MAC.
+	 * 
+	 * @since 3.0
+	 */
+	public static final String MAC_CIPHER_NAME = "AES/CBC/NoPadding";
+	/**
+	 * Thread local cipher for the CBC-MAC.
+	 * 
+	 * @since 3.0
+	 */
+	public static final ThreadLocalCipher MAC_CIPHER = new ThreadLocalCipher(MAC_CIPHER_NAME);
+	/**
+	 * Maximum size of the thread local buffers. Larger messages use temporary
+	 * buffers.
+	 * 
+	 * @since 3.0
+	 */
+	public static final int MAX_THREAD_LOCAL_BUFFER_SIZE = 16384 + 2048;
+	/**
+	 * Zero IV for the CBC-MAC.
+	 */
+	private static final IvParameterSpec ZERO_IV = new IvParameterSpec(new byte[BLOCK_SIZE]);
+	/**
+	 * Length of additional data using 2 bytes for the length.
+	 * 
+	 * 2^16 - 2^8
+	 */
+	private static final int SHORT_ADDITIONAL_DATA_LENGTH = 65280;
 
-	private static abstract class Block {
-
-		protected final int blockSize;
-		protected final byte[] block;
+	private static final ThreadLocal<Buffers> BUFFERS = new ThreadLocal<Buffers>() {
 
-		protected Block(int blockSize) {
-			this.blockSize = blockSize;
-			this.block = new byte[blockSize];
+		@Override
+		protected Buffers initialValue() {
+			return new Buffers();
 		}
+	};
+
+	/**
+	 * Buffers for the formatted blocks and the cipher output.
+	 */
+	private static final class Buffers {
+
+		private final byte[] mac = new byte[BLOCK_SIZE];
+		private final byte[] receivedMac = new byte[BLOCK_SIZE];
+		private byte[] input = new byte[512];
+		private byte[] output = new byte[512];
+		private int used;
 
 		/**
-		 * Set integer at the end of the block.
+		 * Ensure, the buffers are large enough for the provided size.
 		 * 
-		 * Lowest byte at the end.
+		 * Buffers exceeding {@link CCMBlockCipher#MAX_THREAD_LOCAL_BUFFER_SIZE}
+		 * are only used temporary.
 		 * 
-		 * <pre>
-		 * block[end] = number & 0xff;
-		 * block[end - 1] = (number >>= 8) & 0xff;
-		 * block[end - 2] = (number >>= 8) & 0xff;
-		 * block[offset] = (number >>= 8) & 0xff;
-		 * </pre>
-		 * 
-		 * Return remaining bytes in number.
-		 * 
-		 * <pre>
-		 * blockSize = 16;
-		 * number = 0x20103
-		 * left = updateBlock(14, number); // write number to two bytes
-		 * left == 2 // highest third byte 0x2 will be left
-		 * </pre>
-		 * 
-		 * @param offset offset at which the number will be written, right
-		 *            padded with 0
-		 * @param number number to write
-		 * @return left bytes of the number, if number is too large, 0, if the
-		 *         complete number could be set.
+		 * @param size required size in bytes
 		 */
-		protected int setIntAtEnd(int offset, int number) {
-			int backOffset = blockSize;
-			while (backOffset > offset) {
-				block[--backOffset] = (byte) number;
-				number >>>= 8;
-			}
-			return number;
-		}
-
-	}
-
-	private static class BlockCipher extends Block {
-
-		private final Cipher cipher;
-		private final byte[] xblock;
-		private final int nonceL;
-
-		private BlockCipher(Cipher cipher, byte[] nonce) {
-			super(cipher.getBlockSize());
-			this.cipher = cipher;
-			this.nonceL = nonce.length;
-			int L = blockSize - 1 - nonceL;
-			if (L < 2 || L > 8) {
-				throw new IllegalArgumentException("Nonce length " + nonceL + " invalid for blocksize " + blockSize
-						+ " (valid length [" + (blockSize - 9) + "-" + (blockSize - 3) + "])");
+		private void ensure(int size) {
+			if (size > input.length) {
+				if (size > MAX_THREAD_LOCAL_BUFFER_SIZE) {
+					input = new byte[size];
+					output = new byte[size];
+				} else {
+					int newSize = Math.min(Math.max(size, input.length * 2), MAX_THREAD_LOCAL_BUFFER_SIZE);
+					input = new byte[newSize];
+					output = new byte[newSize];
+				}
 			}
-
-			xblock = new byte[blockSize];
-			// Octet Number Contents
-			// ------------ ---------
-			// 0 Flags
-			// 1 ... 15-L Nonce N
-			// 16-L ... 15 Counter i
-
-			// write the first byte: Flags
-			block[0] = (byte) (L - 1);
-			// the Nonce N
-			System.arraycopy(nonce, 0, block, 1, nonceL);
-		}
-
-		private byte[] updateBlock(int index) throws ShortBufferException {
-			// writer the Counter i (L bytes)
-			if (setIntAtEnd(nonceL + 1, index) != 0) {
-				throw new IllegalArgumentException("Index " + index + " too large for nonce " + nonceL
-						+ " and blocksize " + blockSize + " bytes.");
+			if (used < size) {
+				used = size;
 			}
-
-			cipher.update(block, 0, blockSize, xblock);
-			return xblock;
 		}
-	}
-
-	private static class MacCipher extends Block {
-
-		private final Cipher cipher;
-		private final byte[] mac;
 
 		/**
-		 * Computes CBC-MAC. See
-		 * <a href="http://tools.ietf.org/html/rfc3610#section-2.2" target="_blank">RFC 3610 -
-		 * Authentication</a> for details.
-		 * 
-		 * @param cipher the cipher.
-		 * @param nonce the nonce.
-		 * @param a the additional authenticated data.
-		 * @param m the message to authenticate and encrypt.
-		 * @param numAuthenticationBytes Number of octets in authentication
-		 *            field.
-		 * @throws ShortBufferException if cipher can not be realized.
+		 * Clear the used part of the buffers and drop temporary buffers.
 		 */
-		private MacCipher(Cipher cipher, byte[] nonce, byte[] a, byte[] m, int numAuthenticationBytes)
-				throws ShortBufferException {
-			super(cipher.getBlockSize());
-			this.cipher = cipher;
-			int lengthM = m.length;
-			int lengthA = a.length;
-			int nonceL = nonce.length;
-			int L = blockSize - 1 - nonceL;
-
-			if (L < 2 || L > 8) {
-				throw new IllegalArgumentException("Nonce length " + nonceL + " invalid for blocksize " + blockSize
-						+ " (valid length [" + (blockSize - 9) + "-" + (blockSize - 3) + "])");
+		private void clear() {
+			if (input.length > MAX_THREAD_LOCAL_BUFFER_SIZE) {
+				input = new byte[MAX_THREAD_LOCAL_BUFFER_SIZE];
+				output = new byte[MAX_THREAD_LOCAL_BUFFER_SIZE];
+			} else {
+				Arrays.fill(input, 0, used, (byte) 0);
+				Arrays.fill(output, 0, used, (byte) 0);
 			}
+			Arrays.fill(mac, (byte) 0);
+			Arrays.fill(receivedMac, (byte) 0);
+			used = 0;
+		}
+	}
 
-			// build first block B_0
-
-			// Octet Number Contents
-			// ------------ ---------
-			// 0 Flags
-			// 1 ... 15-L Nonce N
-			// 16-L ... 15 l(m)
+	/**
+	 * Get the length of the counter field L.
+	 * 
+	 * @param nonce the nonce N
+	 * @return the length of the counter field L
+	 * @throws IllegalArgumentException if the nonce length is not supported
+	 */
+	private static int getCounterLength(byte[] nonce) {
+		int nonceL = nonce.length;
+		int L = BLOCK_SIZE - 1 - nonceL;
+		if (L < 2 || L > 8) {
+			throw new IllegalArgumentException("Nonce length " + nonceL + " invalid for blocksize " + BLOCK_SIZE
+					+ " (valid length [" + (BLOCK_SIZE - 9) + "-" + (BLOCK_SIZE - 3) + "])");
+		}
+		return L;
+	}
 
-			int adata = 0;
-			// The Adata bit is set to zero if l(a)=0, and set to one if l(a)>0
-			if (lengthA > 0) {
-				adata = 1;
-			}
-			// M' field is set to (M-2)/2
-			int mPrime = (numAuthenticationBytes - 2) / 2;
-			// L' = L-1 (the zero value is reserved)
-			int lPrime = L - 1;
-
-			// Bit Number Contents
-			// ---------- ----------------------
-			// 7 Reserved (always zero)
-			// 6 Adata
-			// 5 ... 3 M'
-			// 2 ... 0 L'
-
-			// Flags = 64*Adata + 8*M' + L'
-			block[0] = (byte) (64 * adata + 8 * mPrime + lPrime);
-
-			// 1 ... 15-L Nonce N
-			System.arraycopy(nonce, 0, block, 1, nonceL);
-
-			// writer the length (L bytes)
-			if (setIntAtEnd(nonceL + 1, lengthM) != 0) {
-				throw new IllegalArgumentException("Length " + lengthM + " too large for nonce " + nonceL
-						+ " and blocksize " + blockSize + " bytes.");
-			}
+	/**
+	 * Set integer at the end of the block.
+	 * 
+	 * Lowest byte at the end.
+	 * 
+	 * <pre>
+	 * block[end] = number & 0xff;
+	 * block[end - 1] = (number >>= 8) & 0xff;
+	 * block[end - 2] = (number >>= 8) & 0xff;
+	 * block[offset] = (number >>= 8) & 0xff;
+	 * </pre>
+	 * 
+	 * @param block buffer with block
+	 * @param offset offset at which the number will be written, right padded
+	 *            with 0
+	 * @param end end of the block
+	 * @param number number to write
+	 * @return left bytes of the number, if number is too large, 0, if the
+	 *         complete number could be set.
+	 */
+	private static int setIntAtEnd(byte[] block, int offset, int end, int number) {
+		while (end > offset) {
+			block[--end] = (byte) number;
+			number >>>= 8;
+		}
+		return number;
+	}
 
-			cipher.update(block, 0, blockSize, block);
-
-			// If l(a)>0 (as indicated by the Adata field), then one or more
-			// blocks
-			// of authentication data are added.
-			if (lengthA > 0) {
-
-				// First two octets Followed by Comment
-				// ----------------- ----------------
-				// -------------------------------
-				// 0x0000 Nothing Reserved
-				// 0x0001 ... 0xFEFF Nothing For 0 < l(a) < (2^16 - 2^8)
-				// 0xFF00 ... 0xFFFD Nothing Reserved
-				// 0xFFFE 4 octets of l(a) For (2^16 - 2^8) <= l(a) < 2^32
-				// 0xFFFF 8 octets of l(a) For 2^32 <= l(a) < 2^64
-
-				// 2^16 - 2^8
-				final int first = 65280;
-
-				final int offset;
-				/*
-				 * The blocks encoding a are formed by concatenating this string
-				 * that encodes l(a) with a itself, and splitting the result
-				 * into 16-octet blocks, and then padding the last block with
-				 * zeroes if necessary.
-				 */
-				if (lengthA < first) {
-					// 2 bytes (0x0001 ... 0xFEFF)
-					xorInt(0, 2, lengthA);
-					offset = 2;
-				} else {
-					// 2 bytes (0xFFFE) + 4 octets of l(a)
-					xorInt(0, 2, 0xfffe);
-					xorInt(2, 6, lengthA);
-					offset = 6;
-				}
+	/**
+	 * Get the padded length in bytes.
+	 * 
+	 * @param length length in bytes
+	 * @return length padded to the block size
+	 */
+	private static int padded(int length) {
+		return (length + BLOCK_SIZE - 1) & ~(BLOCK_SIZE - 1);
+	}
 
-				update(a, offset);
-			}
-			update(m, 0);
-			mac = Arrays.copyOf(block, numAuthenticationBytes);
+	/**
+	 * Computes CBC-MAC. See
+	 * <a href="http://tools.ietf.org/html/rfc3610#section-2.2" target="_blank">RFC 3610 -
+	 * Authentication</a> for details.
+	 * 
+	 * The formatted blocks B_0 ... B_n are encrypted with a single call of the
+	 * CBC cipher using a zero IV. The MAC is the last block of the result and
+	 * is stored in {@link Buffers#mac}.
+	 * 
+	 * @param buffers thread local buffers
+	 * @param key the encryption key K.
+	 * @param nonce the nonce N.
+	 * @param a the additional authenticated data.
+	 * @param m the message to authenticate.
+	 * @param mOffset offset of the message
+	 * @param lengthM length of the message
+	 * @param numAuthenticationBytes Number of octets in authentication field.
+	 * @throws GeneralSecurityException if the cipher fails
+	 */
+	private static void mac(Buffers buffers, SecretKey key, byte[] nonce, byte[] a, byte[] m, int mOffset,
+			int lengthM, int numAuthenticationBytes) throws GeneralSecurityException {
+		int nonceL = nonce.length;
+		int L = getCounterLength(nonce);
+		int lengthA = a == null ? 0 : a.length;
+		int headerA = 0;
+		if (lengthA > 0) {
+			headerA = lengthA < SHORT_ADDITIONAL_DATA_LENGTH ? 2 : 6;
 		}
-
-		private void update(byte[] data, int initialBlockOffset) throws ShortBufferException {
-			int length = data.length;
-			for (int i = 0; i < length;) {
-				int blockEnd = i + blockSize - initialBlockOffset;
-				if (blockEnd > length) {
-					blockEnd = length;
-				}
-				for (int j = initialBlockOffset; i < blockEnd; ++i, ++j) {
-					block[j] ^= data[i];
-				}
-				initialBlockOffset = 0;
-				cipher.update(block, 0, blockSize, block);
-			}
+		int paddedA = padded(headerA + lengthA);
+		int length = BLOCK_SIZE + paddedA + padded(lengthM);
+		buffers.ensure(length);
+		byte[] block = buffers.input;
+
+		// build first block B_0
+
+		// Octet Number Contents
+		// ------------ ---------
+		// 0 Flags
+		// 1 ... 15-L Nonce N
+		// 16-L ... 15 l(m)
+
+		// The Adata bit is set to zero if l(a)=0, and set to one if l(a)>0
+		int adata = lengthA > 0 ? 1 : 0;
+		// M' field is set to (M-2)/2
+		int mPrime = (numAuthenticationBytes - 2) / 2;
+		// L' = L-1 (the zero value is reserved)
+		int lPrime = L - 1;
+
+		// Bit Number Contents
+		// ---------- ----------------------
+		// 7 Reserved (always zero)
+		// 6 Adata
+		// 5 ... 3 M'
+		// 2 ... 0 L'
+
+		// Flags = 64*Adata + 8*M' + L'
+		block[0] = (byte) (64 * adata + 8 * mPrime + lPrime);
+
+		// 1 ... 15-L Nonce N
+		System.arraycopy(nonce, 0, block, 1, nonceL);
+
+		// writer the length (L bytes)
+		if (setIntAtEnd(block, nonceL + 1, BLOCK_SIZE, lengthM) != 0) {
+			throw new IllegalArgumentException("Length " + lengthM + " too large for nonce " + nonceL
+					+ " and blocksize " + BLOCK_SIZE + " bytes.");
 		}
-
-		private byte[] getMac() {
-			return mac;
+		int offset = BLOCK_SIZE;
+		// If l(a)>0 (as indicated by the Adata field), then one or more
+		// blocks of authentication data are added.
+		if (lengthA > 0) {
+
+			// First two octets Followed by Comment
+			// ----------------- ----------------
+			// -------------------------------
+			// 0x0000 Nothing Reserved
+			// 0x0001 ... 0xFEFF Nothing For 0 < l(a) < (2^16 - 2^8)
+			// 0xFF00 ... 0xFFFD Nothing Reserved
+			// 0xFFFE 4 octets of l(a) For (2^16 - 2^8) <= l(a) < 2^32
+			// 0xFFFF 8 octets of l(a) For 2^32 <= l(a) < 2^64
+
+			/*
+			 * The blocks encoding a are formed by concatenating this string
+			 * that encodes l(a) with a itself, and splitting the result into
+			 * 16-octet blocks, and then padding the last block with zeroes if
+			 * necessary.
+			 */
+			if (headerA == 2) {
+				// 2 bytes (0x0001 ... 0xFEFF)
+				setIntAtEnd(block, offset, offset + 2, lengthA);
+			} else {
+				// 2 bytes (0xFFFE) + 4 octets of l(a)
+				setIntAtEnd(block, offset, offset + 2, 0xfffe);
+				setIntAtEnd(block, offset + 2, offset + 6, lengthA);
+			}
+			System.arraycopy(a, 0, block, offset + headerA, lengthA);
+			int end = offset + paddedA;
+			offset += headerA + lengthA;
+			Arrays.fill(block, offset, end, (byte) 0);
+			offset = end;
 		}
+		System.arraycopy(m, mOffset, block, offset, lengthM);
+		offset += lengthM;
+		Arrays.fill(block, offset, length, (byte) 0);
+
+		Cipher cipher = MAC_CIPHER.current();
+		cipher.init(Cipher.ENCRYPT_MODE, key, ZERO_IV);
+		cipher.doFinal(block, 0, length, buffers.output, 0);
+		System.arraycopy(buffers.output, length - BLOCK_SIZE, buffers.mac, 0, BLOCK_SIZE);
+	}
 
-		protected int xorInt(int offset, int end, int number) {
-			while (end > offset) {
-				block[--end] ^= (byte) number;
-				number >>>= 8;
+	/**
+	 * Creates the key stream S_0 ... S_n for the counter mode. See
+	 * <a href="http://tools.ietf.org/html/rfc3610#section-2.3" target="_blank">RFC 3610 -
+	 * Encryption</a> for details.
+	 * 
+	 * The counter blocks A_0 ... A_n are encrypted with a single call of the
+	 * ECB cipher. The key stream is stored in {@link Buffers#output}.
+	 * 
+	 * @param buffers thread local buffers
+	 * @param key the encryption key K.
+	 * @param nonce the nonce N.
+	 * @param lengthM length of the message
+	 * @throws GeneralSecurityException if the cipher fails
+	 */
+	private static void keyStream(Buffers buffers, SecretKey key, byte[] nonce, int lengthM)
+			throws GeneralSecurityException {
+		int nonceL = nonce.length;
+		int L = getCounterLength(nonce);
+		// block 0 for MAC
+		int length = BLOCK_SIZE + padded(lengthM);
+		buffers.ensure(length);
+		byte[] block = buffers.input;
+
+		// Octet Number Contents
+		// ------------ ---------
+		// 0 Flags
+		// 1 ... 15-L Nonce N
+		// 16-L ... 15 Counter i
+		for (int offset = 0, index = 0; offset < length; offset += BLOCK_SIZE, ++index) {
+			// write the first byte: Flags
+			block[offset] = (byte) (L - 1);
+			// the Nonce N
+			System.arraycopy(nonce, 0, block, offset + 1, nonceL);
+			// writer the Counter i (L bytes)
+			if (setIntAtEnd(block, offset + nonceL + 1, offset + BLOCK_SIZE, index) != 0) {
+				throw new IllegalArgumentException("Index " + index + " too large for nonce " + nonceL
+						+ " and blocksize " + BLOCK_SIZE + " bytes.");
 			}
-			return number;
 		}
-
+		Cipher cipher = CIPHER.current();
+		cipher.init(Cipher.ENCRYPT_MODE, key);
+		cipher.doFinal(block, 0, length, buffers.output, 0);
 	}
+
 	// Static methods /////////////////////////////////////////////////
 
 	/**
@@ -318,56 +397,84 @@ public class CCMBlockCipher {
 	 */
 	public final static byte[] decrypt(SecretKey key, byte[] nonce, byte[] additionalData, byte[] crypted,
 			int cryptedOffset, int cryptedLength, int numAuthenticationBytes) throws GeneralSecurityException {
+		byte[] decrypted = new byte[cryptedLength - numAuthenticationBytes];
+		decrypt(key, nonce, additionalData, crypted, cryptedOffset, cryptedLength, decrypted, 0,
+				numAuthenticationBytes);
+		return decrypted;
+	}
 
-		// instantiate the underlying block cipher
-		Cipher cipher = CIPHER.current();
-		cipher.init(Cipher.ENCRYPT_MODE, key);
+	/**
+	 * Decrypt into provided buffer. See
+	 * <a href="http://tools.ietf.org/html/rfc3610#section-2.5" target="_blank">RFC 3610</a>
+	 * for details.
+	 * 
+	 * The output may be the same buffer as the crypted message, if the output
+	 * offset is not larger than the crypted offset. If the message could not
+	 * be authenticated, the written output is cleared.
+	 * 
+	 * @param key the encryption key K.
+	 * @param nonce the nonce N.
+	 * @param additionalData the additional authenticated data a.
+	 * @param crypted the encrypted and authenticated message c.
+	 * @param cryptedOffset offset within crypted
+	 * @param cryptedLength length within crypted
+	 * @param output buffer for the decrypted message
+	 * @param outputOffset offset within the output
+	 * @param numAuthenticationBytes Number of octets in authentication field.
+	 * @return length of the decrypted message
+	 * 
+	 * @throws GeneralSecurityException if the message could not be de-crypted,
+	 *             e.g. because the ciphertext's block size is not correct
+	 * @throws InvalidMacException if the message could not be authenticated
+	 * @since 3.0
+	 */
+	public final static int decrypt(SecretKey key, byte[] nonce, byte[] additionalData, byte[] crypted,
+			int cryptedOffset, int cryptedLength, byte[] output, int outputOffset, int numAuthenticationBytes)
+			throws GeneralSecurityException {
 
 		int lengthM = cryptedLength - numAuthenticationBytes;
-		int blockSize = cipher.getBlockSize();
-
-		// decrypted data without MAC
-		byte[] decrypted = new byte[lengthM];
-		// separate MAC
-		byte[] T = new byte[numAuthenticationBytes];
-
-		BlockCipher blockCiper = new BlockCipher(cipher, nonce);
-		// block 0 for MAC
-		int blockNo = 0;
-		byte[] block = blockCiper.updateBlock(blockNo++);
-		int tOffset = cryptedOffset + lengthM;
-		for (int i = 0; i < numAuthenticationBytes; ++i) {
-			T[i] = (byte) (crypted[tOffset + i] ^ block[i]);
+		if (lengthM < 0) {
+			throw new GeneralSecurityException("Ciphertext too short!");
 		}
-
-		for (int i = 0; i < lengthM;) {
-			block = blockCiper.updateBlock(blockNo++);
-			int blockEnd = i + blockSize;
-			if (blockEnd > lengthM) {
-				blockEnd = lengthM;
+		Buffers buffers = BUFFERS.get();
+		try {
+			keyStream(buffers, key, nonce, lengthM);
+			byte[] block = buffers.output;
+			// block 0 for MAC
+			byte[] T = buffers.receivedMac;
+			int tOffset = cryptedOffset + lengthM;
+			for (int i = 0; i < numAuthenticationBytes; ++i) {
+				T[i] = (byte) (crypted[tOffset + i] ^ block[i]);
 			}
-			for (int j = 0; i < blockEnd; ++i, ++j) {
-				decrypted[i] = (byte) (crypted[cryptedOffset + i] ^ block[j]);
+			for (int i = 0; i < lengthM; ++i) {
+				output[outputOffset + i] = (byte) (crypted[cryptedOffset + i] ^ block[BLOCK_SIZE + i]);
 			}
-		}
 
-		/*
-		 * The message and additional authentication data is then used to
-		 * recompute the CBC-MAC value and check T.
-		 */
-		MacCipher macCipher = new MacCipher(cipher, nonce, additionalData, decrypted, numAuthenticationBytes);
-		byte[] mac = macCipher.getMac();
-
-		/*
-		 * If the T value is not correct, the receiver MUST NOT reveal any
-		 * information except for the fact that T is incorrect. The receiver
-		 * MUST NOT reveal the decrypted message, the value T, or any other
-		 * information.
-		 */
-		if (MessageDigest.isEqual(T, mac)) {
-			return decrypted;
-		} else {
-			throw new InvalidMacException(mac, T);
+			/*
+			 * The message and additional authentication data is then used to
+			 * recompute the CBC-MAC value and check T.
+			 */
+			mac(buffers, key, nonce, additionalData, output, outputOffset, lengthM, numAuthenticationBytes);
+
+			/*
+			 * If the T value is not correct, the receiver MUST NOT reveal any
+			 * information except for the fact that T is incorrect. The
+			 * receiver MUST NOT reveal the decrypted message, the value T, or
+			 * any other information.
+			 */
+			byte[] mac = buffers.mac;
+			int result = 0;
+			for (int i = 0; i < numAuthenticationBytes; ++i) {
+				result |= mac[i] ^ T[i];
+			}
+			if (result != 0) {
+				Arrays.fill(output, outputOffset, outputOffset + lengthM, (byte) 0);
+				throw new InvalidMacException(Arrays.copyOf(mac, numAuthenticationBytes),
+						Arrays.copyOf(T, numAuthenticationBytes));
+			}
+			return lengthM;
+		} finally {
+			buffers.clear();
 		}
 	}
 
@@ -406,44 +513,67 @@ public class CCMBlockCipher {
 	 */
 	public final static byte[] encrypt(int outputOffset, SecretKey key, byte[] nonce, byte[] additionalData, byte[] message,
 			int numAuthenticationBytes) throws GeneralSecurityException {
+		byte[] encrypted = new byte[outputOffset + message.length + numAuthenticationBytes];
+		encrypt(key, nonce, additionalData, message, 0, message.length, encrypted, outputOffset,
+				numAuthenticationBytes);
+		return encrypted;
+	}
 
-		// instantiate the cipher
-		Cipher cipher = CIPHER.current();
-		cipher.init(Cipher.ENCRYPT_MODE, key);
-		int blockSize = cipher.getBlockSize();
-		int lengthM = message.length;
-
-		/*
-		 * First, authentication: http://tools.ietf.org/html/rfc3610#section-2.2
-		 */
-		// compute the authentication field T
-		MacCipher macCipher = new MacCipher(cipher, nonce, additionalData, message, numAuthenticationBytes);
-		byte[] mac = macCipher.getMac();
+	/**
+	 * Encrypt into provided buffer. See
+	 * <a href="http://tools.ietf.org/html/rfc3610#section-2.2" target="_blank">RFC 3610</a>
+	 * for details.
+	 * 
+	 * The output may be the same buffer as the message, if the output offset
+	 * is not larger than the message offset.
+	 * 
+	 * @param key the encryption key K.
+	 * @param nonce the nonce N.
+	 * @param additionalData the additional authenticated data a.
+	 * @param message the message to authenticate and encrypt.
+	 * @param messageOffset offset within message
+	 * @param messageLength length within message
+	 * @param output buffer for the encrypted and authenticated message. Must
+	 *            provide {@code messageLength + numAuthenticationBytes} bytes
+	 *            after the output offset.
+	 * @param outputOffset offset within the output
+	 * @param numAuthenticationBytes Number of octets in authentication field.
+	 * @return length of the encrypted and authenticated message.
+	 * @throws GeneralSecurityException if the data could not be encrypted, e.g.
+	 *             because the JVM does not support the AES cipher algorithm
+	 * @since 3.0
+	 */
+	public final static int encrypt(SecretKey key, byte[] nonce, byte[] additionalData, byte[] message,
+			int messageOffset, int messageLength, byte[] output, int outputOffset, int numAuthenticationBytes)
+			throws GeneralSecurityException {
 
-		/*
-		 * Second, encryption http://tools.ietf.org/html/rfc3610#section-2.3
-		 */
-		// encrypted data with MAC
-		byte[] encrypted = new byte[outputOffset + lengthM + numAuthenticationBytes];
-		BlockCipher blockCiper = new BlockCipher(cipher, nonce);
-		// block 0 for MAC
-		int blockNo = 0;
-		byte[] block = blockCiper.updateBlock(blockNo++);
-		int tOffset = outputOffset + lengthM;
-		for (int i = 0; i < numAuthenticationBytes; ++i) {
-			encrypted[i + tOffset] = (byte) (mac[i] ^ block[i]);
-		}
-		for (int i = 0; i < lengthM;) {
-			block = blockCiper.updateBlock(blockNo++);
-			int blockEnd = i + blockSize;
-			if (blockEnd > lengthM) {
-				blockEnd = lengthM;
+		Buffers buffers = BUFFERS.get();
+		try {
+			/*
+			 * First, authentication:
+			 * http://tools.ietf.org/html/rfc3610#section-2.2
+			 */
+			// compute the authentication field T
+			mac(buffers, key, nonce, additionalData, message, messageOffset, messageLength,
+					numAuthenticationBytes);
+			byte[] mac = buffers.mac;
+
+			/*
+			 * Second, encryption http://tools.ietf.org/html/rfc3610#section-2.3
+			 */
+			keyStream(buffers, key, nonce, messageLength);
+			byte[] block = buffers.output;
+			for (int i = 0; i < messageLength; ++i) {
+				output[outputOffset + i] = (byte) (message[messageOffset + i] ^ block[BLOCK_SIZE + i]);
 			}
-			for (int j = 0; i < blockEnd; ++i, ++j) {
-				encrypted[i + outputOffset] = (byte) (message[i] ^ block[j]);
+			// block 0 for MAC
+			int tOffset = outputOffset + messageLength;
+			for (int i = 0; i < numAuthenticationBytes; ++i) {
+				output[tOffset + i] = (byte) (mac[i] ^ block[i]);
 			}
+			return messageLength + numAuthenticationBytes;
+		} finally {
+			buffers.clear();
 		}
-
-		return encrypted;
 	}
 }
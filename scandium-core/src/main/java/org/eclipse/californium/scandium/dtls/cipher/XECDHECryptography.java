@@ -13,6 +13,7 @@
  * Contributors:
  *    Bosch.IO GmbH - initial creation
  *                    derived from ECDHECryptography
+ *    Bosch.IO GmbH - add key pair pool
  ******************************************************************************/
 package org.eclipse.californium.scandium.dtls.cipher;
 
@@ -232,24 +233,83 @@ public final class XECDHECryptography implements Destroyable {
 	 *             provider doesn't support the group
 	 */
 	public XECDHECryptography(SupportedGroup supportedGroup) throws GeneralSecurityException {
-		KeyPair keyPair;
+		this(supportedGroup, generateKeyPair(supportedGroup));
+	}
+
+	/**
+	 * Creates an ephemeral ECDH key pair for a given supported group.
+	 * 
+	 * Takes the key pair from the provided pool, if available. Otherwise the
+	 * key pair is generated.
+	 * 
+	 * @param supportedGroup a curve as defined in the <a href=
+	 *            "http://www.iana.org/assignments/tls-parameters/tls-parameters.xhtml#tls-parameters-8">
+	 *            IANA Supported Groups Registry</a>
+	 * @param pool pool of pre-generated key pairs. May be {@code null}.
+	 * @throws GeneralSecurityException if the key pair cannot be created from
+	 *             the given supported group, e.g. because the JRE's crypto
+	 *             provider doesn't support the group
+	 * @since 3.0
+	 */
+	public XECDHECryptography(SupportedGroup supportedGroup, XECDHEKeyPairPool pool) throws GeneralSecurityException {
+		this(supportedGroup, takeOrGenerateKeyPair(supportedGroup, pool));
+	}
+
+	/**
+	 * Creates ECDH with the provided ephemeral key pair.
+	 * 
+	 * @param supportedGroup supported group of the key pair
+	 * @param keyPair ephemeral key pair. Must be used only once!
+	 * @throws GeneralSecurityException if the public key could not be encoded
+	 * @since 3.0
+	 */
+	private XECDHECryptography(SupportedGroup supportedGroup, KeyPair keyPair) throws GeneralSecurityException {
+		privateKey = keyPair.getPrivate();
+		publicKey = keyPair.getPublic();
+		this.supportedGroup = supportedGroup;
+		this.encodedPoint = encodedPoint(keyPair.getPublic());
+	}
+
+	/**
+	 * Take key pair from pool, or generate a new one.
+	 * 
+	 * @param supportedGroup supported group of the key pair
+	 * @param pool pool of pre-generated key pairs. May be {@code null}.
+	 * @return key pair
+	 * @throws GeneralSecurityException if the key pair cannot be created
+	 * @since 3.0
+	 */
+	private static KeyPair takeOrGenerateKeyPair(SupportedGroup supportedGroup, XECDHEKeyPairPool pool)
+			throws GeneralSecurityException {
+		KeyPair keyPair = pool == null ? null : pool.take(supportedGroup);
+		if (keyPair == null) {
+			keyPair = generateKeyPair(supportedGroup);
+		}
+		return keyPair;
+	}
+
+	/**
+	 * Generate ephemeral key pair for supported group.
+	 * 
+	 * @param supportedGroup supported group
+	 * @return generated key pair
+	 * @throws GeneralSecurityException if the key pair cannot be created from
+	 *             the given supported group, e.g. because the JRE's crypto
+	 *             provider doesn't support the group
+	 * @since 3.0
+	 */
+	static KeyPair generateKeyPair(SupportedGroup supportedGroup) throws GeneralSecurityException {
+		KeyPairGenerator keyPairGenerator;
 		if (supportedGroup.getAlgorithmName().equals(EC_KEYPAIR_GENERATOR_ALGORITHM)) {
-			KeyPairGenerator keyPairGenerator = EC_KEYPAIR_GENERATOR.currentWithCause();
-			ECGenParameterSpec params = new ECGenParameterSpec(supportedGroup.name());
-			keyPairGenerator.initialize(params, RandomManager.currentSecureRandom());
-			keyPair = keyPairGenerator.generateKeyPair();
+			keyPairGenerator = EC_KEYPAIR_GENERATOR.currentWithCause();
 		} else if (supportedGroup.getAlgorithmName().equals(XDH_KEYPAIR_GENERATOR_ALGORITHM)) {
-			KeyPairGenerator keyPairGenerator = XDH_KEYPAIR_GENERATOR.currentWithCause();
-			ECGenParameterSpec params = new ECGenParameterSpec(supportedGroup.name());
-			keyPairGenerator.initialize(params, RandomManager.currentSecureRandom());
-			keyPair = keyPairGenerator.generateKeyPair();
+			keyPairGenerator = XDH_KEYPAIR_GENERATOR.currentWithCause();
 		} else {
 			throw new GeneralSecurityException(supportedGroup.name() + " not supported by KeyPairGenerator!");
 		}
-		privateKey = keyPair.getPrivate();
-		publicKey = keyPair.getPublic();
-		this.supportedGroup = supportedGroup;
-		this.encodedPoint = encodedPoint(keyPair.getPublic());
+		ECGenParameterSpec params = new ECGenParameterSpec(supportedGroup.name());
+		keyPairGenerator.initialize(params, RandomManager.currentSecureRandom());
+		return keyPairGenerator.generateKeyPair();
 	}
 
 	/**
@@ -0,0 +1,245 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls.cipher;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.californium.elements.util.DaemonThreadFactory;
+import org.eclipse.californium.elements.util.NamedThreadFactory;
+import org.eclipse.californium.scandium.dtls.cipher.XECDHECryptography.SupportedGroup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool of pre-generated ephemeral key pairs for ECDHE and XDH.
+ *
+ * Generating the ephemeral key pair is one of the expensive operations of a
+ * full handshake. Without pool, that key pair is generated on the connection's
+ * serial execution, which stalls the handshakes, when many peers start their
+ * handshakes at the same time, e.g. after a network outage.
+ *
+ * The pool keeps up to {@link #getSize()} key pairs per supported group. The
+ * key pairs are generated by a single daemon thread with
+ * {@link Thread#MIN_PRIORITY}. Each key pair is {@link #take(SupportedGroup)
+ * taken} at most once, therefore the key pairs are still ephemeral. If the
+ * pool is exhausted, the caller generates the key pair itself.
+ *
+ * @since 3.0
+ */
+public class XECDHEKeyPairPool {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(XECDHEKeyPairPool.class);
+
+	/**
+	 * Pooled key pairs per supported group.
+	 */
+	private final Map<SupportedGroup, BlockingQueue<KeyPair>> pools = new EnumMap<>(SupportedGroup.class);
+	/**
+	 * Maximum number of pooled key pairs per supported group.
+	 */
+	private final int size;
+	/**
+	 * Number of key pairs taken from the pool.
+	 */
+	private final AtomicLong hits = new AtomicLong();
+	/**
+	 * Number of requested key pairs, which are not available in the pool.
+	 */
+	private final AtomicLong misses = new AtomicLong();
+	/**
+	 * Thread generating the key pairs. {@code null}, if not started.
+	 */
+	private Thread generator;
+	/**
+	 * Indicates, that the pool is running.
+	 */
+	private volatile boolean running;
+	/**
+	 * Indicates, that a key pair was taken and the pool requires to be
+	 * refilled. Guarded by {@link #pools}.
+	 */
+	private boolean refill;
+
+	/**
+	 * Create pool of key pairs.
+	 *
+	 * @param size maximum number of pooled key pairs per supported group.
+	 * @param groups supported groups. Not usable groups are ignored.
+	 * @throws IllegalArgumentException if size is less than {@code 1}
+	 */
+	public XECDHEKeyPairPool(int size, List<SupportedGroup> groups) {
+		if (size < 1) {
+			throw new IllegalArgumentException("Size " + size + " must be at least 1!");
+		}
+		this.size = size;
+		for (SupportedGroup group : groups) {
+			if (group.isUsable()) {
+				pools.put(group, new ArrayBlockingQueue<KeyPair>(size));
+			}
+		}
+	}
+
+	/**
+	 * Get maximum number of pooled key pairs per supported group.
+	 *
+	 * @return maximum number of pooled key pairs
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Get number of currently pooled key pairs for supported group.
+	 *
+	 * @param group supported group
+	 * @return number of pooled key pairs. {@code 0}, if the group is not
+	 *         pooled.
+	 */
+	public int getPooled(SupportedGroup group) {
+		BlockingQueue<KeyPair> pool = pools.get(group);
+		return pool == null ? 0 : pool.size();
+	}
+
+	/**
+	 * Get number of key pairs taken from the pool.
+	 *
+	 * @return number of key pairs taken from the pool
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Get number of requested key pairs, which are not available in the pool.
+	 *
+	 * @return number of requested key pairs, which are not available
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Start the generator thread.
+	 *
+	 * Fills the pool in the background. Starting an already running pool has
+	 * no effect.
+	 */
+	public synchronized void start() {
+		if (running) {
+			return;
+		}
+		running = true;
+		generator = new DaemonThreadFactory("XECDHE-KeyPairPool#", NamedThreadFactory.SCANDIUM_THREAD_GROUP)
+				.newThread(new Runnable() {
+
+					@Override
+					public void run() {
+						generate();
+					}
+				});
+		generator.setPriority(Thread.MIN_PRIORITY);
+		generator.start();
+	}
+
+	/**
+	 * Stop the generator thread.
+	 *
+	 * Removes all pooled key pairs.
+	 */
+	public synchronized void stop() {
+		if (!running) {
+			return;
+		}
+		running = false;
+		generator.interrupt();
+		generator = null;
+		for (BlockingQueue<KeyPair> pool : pools.values()) {
+			pool.clear();
+		}
+	}
+
+	/**
+	 * Take key pair from pool.
+	 *
+	 * The key pair is removed from the pool and returned only once.
+	 *
+	 * @param group supported group of the key pair
+	 * @return key pair, or {@code null}, if not available.
+	 */
+	public KeyPair take(SupportedGroup group) {
+		BlockingQueue<KeyPair> pool = pools.get(group);
+		if (pool == null) {
+			return null;
+		}
+		KeyPair keyPair = pool.poll();
+		if (keyPair == null) {
+			misses.incrementAndGet();
+		} else {
+			hits.incrementAndGet();
+		}
+		synchronized (pools) {
+			if (!refill) {
+				refill = true;
+				pools.notify();
+			}
+		}
+		return keyPair;
+	}
+
+	/**
+	 * Generate key pairs until the pool is stopped.
+	 *
+	 * Fills up the pools round robin and waits for the next
+	 * {@link #take(SupportedGroup)}, if all pools are filled up.
+	 */
+	private void generate() {
+		LOGGER.debug("start generating key pairs for {}", pools.keySet());
+		try {
+			while (running && !Thread.currentThread().isInterrupted()) {
+				boolean generated = false;
+				for (Map.Entry<SupportedGroup, BlockingQueue<KeyPair>> entry : pools.entrySet()) {
+					BlockingQueue<KeyPair> pool = entry.getValue();
+					if (pool.remainingCapacity() > 0) {
+						try {
+							pool.offer(XECDHECryptography.generateKeyPair(entry.getKey()));
+							generated = true;
+						} catch (GeneralSecurityException ex) {
+							LOGGER.warn("failed to generate key pair for {}!", entry.getKey(), ex);
+						}
+					}
+				}
+				if (!generated) {
+					synchronized (pools) {
+						while (!refill && running) {
+							pools.wait();
+						}
+						refill = false;
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			// stopped
+		}
+		LOGGER.debug("stopped generating key pairs");
+	}
+}
@@ -12,10 +12,13 @@
  * 
  * Contributors:
  *    Bosch.IO GmbH - initial creation
+ *    Bosch.IO GmbH - add cache for verified certificate chains
+ *    Bosch.IO GmbH - use absolute expiration for cached chains
  ******************************************************************************/
 package org.eclipse.californium.scandium.dtls.x509;
 
 import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
 import java.security.PublicKey;
 import java.security.cert.CertPath;
 import java.security.cert.Certificate;
@@ -26,11 +29,15 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.security.auth.x500.X500Principal;
 
 import org.eclipse.californium.elements.auth.RawPublicKeyIdentity;
+import org.eclipse.californium.elements.util.Bytes;
 import org.eclipse.californium.elements.util.CertPathUtil;
+import org.eclipse.californium.elements.util.SegmentedLeastRecentlyUsedCache;
 import org.eclipse.californium.elements.util.SslContextUtil;
 import org.eclipse.californium.scandium.dtls.AlertMessage;
 import org.eclipse.californium.scandium.dtls.AlertMessage.AlertDescription;
@@ -41,6 +48,7 @@ import org.eclipse.californium.scandium.dtls.CertificateVerificationResult;
 import org.eclipse.californium.scandium.dtls.ConnectionId;
 import org.eclipse.californium.scandium.dtls.HandshakeException;
 import org.eclipse.californium.scandium.dtls.HandshakeResultHandler;
+import org.eclipse.californium.scandium.dtls.cipher.ThreadLocalMessageDigest;
 import org.eclipse.californium.scandium.util.ServerNames;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -49,10 +57,24 @@ import org.slf4j.LoggerFactory;
  * New advanced certificate verifier based on collections of trusted x509
  * certificates and RPKs.
  * 
+ * Since 3.0 the successfully validated x509 certificate chains may be cached,
+ * see {@link Builder#setVerificationCache(int, long, TimeUnit)}. The cache is
+ * keyed by the fingerprint of the received certificate chain. Because the
+ * trusted certificates of a verifier are immutable, changing the trusts
+ * requires a new verifier, which starts with an empty cache. The expiration
+ * of cached chains is absolute, it's not extended by using the cached chain.
+ * 
  * @since 2.5
  */
 public class StaticNewAdvancedCertificateVerifier implements NewAdvancedCertificateVerifier {
 
+	/**
+	 * Hash algorithm for the fingerprint of the certificate chains.
+	 * 
+	 * @since 3.0
+	 */
+	private static final ThreadLocalMessageDigest SHA256 = new ThreadLocalMessageDigest("SHA-256");
+
 	protected final Logger LOGGER = LoggerFactory.getLogger(getClass());
 
 	/**
@@ -70,6 +92,27 @@ public class StaticNewAdvancedCertificateVerifier implements NewAdvancedCertific
 	 */
 	private final List<CertificateType> supportedCertificateTypes;
 
+	/**
+	 * Cache of validated certificate chains. {@code null}, if not used.
+	 * 
+	 * @since 3.0
+	 */
+	private final SegmentedLeastRecentlyUsedCache<Bytes, ValidatedChain> verificationCache;
+
+	/**
+	 * Number of validated certificate chains found in the cache.
+	 * 
+	 * @since 3.0
+	 */
+	private final AtomicLong cacheHits = new AtomicLong();
+
+	/**
+	 * Number of certificate chains not found in the cache.
+	 * 
+	 * @since 3.0
+	 */
+	private final AtomicLong cacheMisses = new AtomicLong();
+
 	/**
 	 * Create delegating certificate verifier for x509 and RPK.
 	 * 
@@ -85,6 +128,40 @@ public class StaticNewAdvancedCertificateVerifier implements NewAdvancedCertific
 	 */
 	public StaticNewAdvancedCertificateVerifier(X509Certificate[] trustedCertificates,
 			RawPublicKeyIdentity[] trustedRPKs, List<CertificateType> supportedCertificateTypes) {
+		this(trustedCertificates, trustedRPKs, supportedCertificateTypes, 0, 0, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Create delegating certificate verifier for x509 and RPK with cache for
+	 * validated x509 certificate chains.
+	 * 
+	 * @param trustedCertificates trusted x509 certificates. {@code null} not
+	 *            support x.509, empty, to trust all.
+	 * @param trustedRPKs trusted RPK identities. {@code null} not support RPK,
+	 *            empty, to trust all.
+	 * @param supportedCertificateTypes list of supported certificate type in
+	 *            order of preference.
+	 * @param cacheSize maximum number of cached certificate chains. {@code 0}
+	 *            to disable the cache.
+	 * @param cacheExpiration expiration of cached certificate chains.
+	 *            {@code 0}, to expire only at the end of the validity of the
+	 *            certificates.
+	 * @param unit time unit of expiration
+	 * @throws IllegalArgumentException if both verifier are {@code null}, or
+	 *             cache size or expiration is negative.
+	 * @throws NullPointerException if the list of supported certificate types
+	 *             is {@code null}
+	 * @since 3.0
+	 */
+	public StaticNewAdvancedCertificateVerifier(X509Certificate[] trustedCertificates,
+			RawPublicKeyIdentity[] trustedRPKs, List<CertificateType> supportedCertificateTypes, int cacheSize,
+			long cacheExpiration, TimeUnit unit) {
+		if (cacheSize < 0) {
+			throw new IllegalArgumentException("cache size must not be negative!");
+		}
+		if (cacheExpiration < 0) {
+			throw new IllegalArgumentException("cache expiration must not be negative!");
+		}
 		if (trustedCertificates == null && trustedRPKs == null) {
 			throw new IllegalArgumentException("no trusts provided!");
 		}
@@ -110,6 +187,46 @@ public class StaticNewAdvancedCertificateVerifier implements NewAdvancedCertific
 				: Arrays.copyOf(trustedCertificates, trustedCertificates.length);
 		this.trustedRPKs = trustedRPKs == null ? null : new HashSet<>(Arrays.asList(trustedRPKs));
 		this.supportedCertificateTypes = Collections.unmodifiableList(supportedCertificateTypes);
+		if (cacheSize > 0 && this.trustedCertificates != null) {
+			int segments = Math.max(1, Math.min(16, cacheSize / 1024));
+			this.verificationCache = new SegmentedLeastRecentlyUsedCache<>(segments, cacheSize, cacheExpiration,
+					unit);
+			this.verificationCache.setEvictingOnReadAccess(true);
+			this.verificationCache.setUpdatingOnReadAccess(false);
+		} else {
+			this.verificationCache = null;
+		}
+	}
+
+	/**
+	 * Get number of validated certificate chains found in the cache.
+	 * 
+	 * @return number of cache hits
+	 * @since 3.0
+	 */
+	public long getCacheHits() {
+		return cacheHits.get();
+	}
+
+	/**
+	 * Get number of certificate chains not found in the cache.
+	 * 
+	 * @return number of cache misses. {@code 0}, if the cache is not used.
+	 * @since 3.0
+	 */
+	public long getCacheMisses() {
+		return cacheMisses.get();
+	}
+
+	/**
+	 * Remove all cached certificate chains.
+	 * 
+	 * @since 3.0
+	 */
+	public void clearCache() {
+		if (verificationCache != null) {
+			verificationCache.clear();
+		}
 	}
 
 	@Override
@@ -154,8 +271,7 @@ public class StaticNewAdvancedCertificateVerifier implements NewAdvancedCertific
 							}
 						}
 					}
-					certChain = CertPathUtil.validateCertificatePathWithIssuer(truncateCertificatePath, certChain,
-							trustedCertificates);
+					certChain = validateCertificatePath(truncateCertificatePath, certChain);
 					return new CertificateVerificationResult(cid, certChain, null);
 				} catch (GeneralSecurityException e) {
 					if (LOGGER.isTraceEnabled()) {
@@ -173,6 +289,95 @@ public class StaticNewAdvancedCertificateVerifier implements NewAdvancedCertific
 		}
 	}
 
+	/**
+	 * Validate certificate path.
+	 * 
+	 * Uses the cache of validated certificate chains, if available.
+	 * 
+	 * @param truncateCertificatePath {@code true} truncate certificate path at
+	 *            a trusted certificate before validation
+	 * @param certChain certificate chain
+	 * @return validated certificate chain
+	 * @throws GeneralSecurityException if the verification fails
+	 * @see CertPathUtil#validateCertificatePathWithIssuer(boolean, CertPath,
+	 *      X509Certificate[])
+	 * @since 3.0
+	 */
+	private CertPath validateCertificatePath(boolean truncateCertificatePath, CertPath certChain)
+			throws GeneralSecurityException {
+		if (verificationCache == null || certChain.getCertificates().isEmpty()) {
+			return validateChain(truncateCertificatePath, certChain);
+		}
+		Bytes fingerprint = fingerprint(truncateCertificatePath, certChain);
+		ValidatedChain validated = verificationCache.get(fingerprint);
+		if (validated != null) {
+			if (currentTimeMillis() < validated.notAfter) {
+				cacheHits.incrementAndGet();
+				return validated.path;
+			}
+			verificationCache.remove(fingerprint, validated);
+		}
+		cacheMisses.incrementAndGet();
+		CertPath path = validateChain(truncateCertificatePath, certChain);
+		long notAfter = Long.MAX_VALUE;
+		for (Certificate certificate : path.getCertificates()) {
+			if (certificate instanceof X509Certificate) {
+				notAfter = Math.min(notAfter, ((X509Certificate) certificate).getNotAfter().getTime());
+			}
+		}
+		verificationCache.put(fingerprint, new ValidatedChain(path, notAfter));
+		return path;
+	}
+
+	/**
+	 * Validate certificate chain against the trusted certificates.
+	 * 
+	 * @param truncateCertificatePath {@code true} truncate certificate path at
+	 *            a trusted certificate before validation
+	 * @param certChain certificate chain
+	 * @return validated certificate chain
+	 * @throws GeneralSecurityException if the verification fails
+	 * @see CertPathUtil#validateCertificatePathWithIssuer(boolean, CertPath,
+	 *      X509Certificate[])
+	 * @since 3.0
+	 */
+	protected CertPath validateChain(boolean truncateCertificatePath, CertPath certChain)
+			throws GeneralSecurityException {
+		return CertPathUtil.validateCertificatePathWithIssuer(truncateCertificatePath, certChain,
+				trustedCertificates);
+	}
+
+	/**
+	 * Get current time to check the validity of cached certificate chains.
+	 * 
+	 * @return current time in milliseconds since epoch
+	 * @since 3.0
+	 */
+	protected long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
+	/**
+	 * Create fingerprint of certificate chain.
+	 * 
+	 * @param truncateCertificatePath {@code true} truncate certificate path at
+	 *            a trusted certificate before validation
+	 * @param certChain certificate chain
+	 * @return fingerprint
+	 * @throws GeneralSecurityException if the hash algorithm is not available
+	 *             or a certificate could not be encoded
+	 * @since 3.0
+	 */
+	private static Bytes fingerprint(boolean truncateCertificatePath, CertPath certChain)
+			throws GeneralSecurityException {
+		MessageDigest md = SHA256.currentWithCause();
+		md.update(truncateCertificatePath ? (byte) 1 : (byte) 0);
+		for (Certificate certificate : certChain.getCertificates()) {
+			md.update(certificate.getEncoded());
+		}
+		return new Bytes(md.digest());
+	}
+
 	@Override
 	public List<X500Principal> getAcceptedIssuers() {
 		if (trustedCertificates != null) {
@@ -205,6 +410,24 @@ public class StaticNewAdvancedCertificateVerifier implements NewAdvancedCertific
 		 * List of supported certificate type in order of preference.
 		 */
 		protected List<CertificateType> supportedCertificateTypes;
+		/**
+		 * Maximum number of cached certificate chains.
+		 * 
+		 * @since 3.0
+		 */
+		protected int cacheSize;
+		/**
+		 * Expiration of cached certificate chains.
+		 * 
+		 * @since 3.0
+		 */
+		protected long cacheExpiration;
+		/**
+		 * Time unit of {@link #cacheExpiration}.
+		 * 
+		 * @since 3.0
+		 */
+		protected TimeUnit cacheExpirationUnit = TimeUnit.SECONDS;
 
 		public Builder setTrustedCertificates(Certificate... trustedCertificates) {
 			if (trustedCertificates == null) {
@@ -240,13 +463,69 @@ public class StaticNewAdvancedCertificateVerifier implements NewAdvancedCertific
 			return this;
 		}
 
+		/**
+		 * Set cache for validated x509 certificate chains.
+		 * 
+		 * If many peers use the same certificate chains and reconnect often,
+		 * the cache saves the expensive validation of the certificate path.
+		 * Only successfully validated chains are cached, until the cache
+		 * expiration or the end of the validity of a certificate in the chain.
+		 * The cache expiration starts with the validation and is not extended
+		 * by using the cached chain.
+		 * 
+		 * @param size maximum number of cached certificate chains. {@code 0}
+		 *            to disable the cache, which is the default.
+		 * @param expiration expiration of cached certificate chains.
+		 *            {@code 0}, to expire only at the end of the validity of
+		 *            the certificates.
+		 * @param unit time unit of expiration
+		 * @return this builder for command chaining
+		 * @throws IllegalArgumentException if size or expiration is negative
+		 * @since 3.0
+		 */
+		public Builder setVerificationCache(int size, long expiration, TimeUnit unit) {
+			if (size < 0) {
+				throw new IllegalArgumentException("cache size must not be negative!");
+			}
+			if (expiration < 0) {
+				throw new IllegalArgumentException("cache expiration must not be negative!");
+			}
+			this.cacheSize = size;
+			this.cacheExpiration = expiration;
+			this.cacheExpirationUnit = unit;
+			return this;
+		}
+
 		public boolean hasTrusts() {
 			return trustedCertificates != null || trustedRPKs != null;
 		}
 
 		public NewAdvancedCertificateVerifier build() {
 			return new StaticNewAdvancedCertificateVerifier(trustedCertificates, trustedRPKs,
-					supportedCertificateTypes);
+					supportedCertificateTypes, cacheSize, cacheExpiration, cacheExpirationUnit);
+		}
+	}
+
+	/**
+	 * Validated certificate chain.
+	 * 
+	 * @since 3.0
+	 */
+	private static class ValidatedChain {
+
+		/**
+		 * Validated certificate path.
+		 */
+		private final CertPath path;
+		/**
+		 * End of the validity of the certificate path in milliseconds since
+		 * epoch.
+		 */
+		private final long notAfter;
+
+		private ValidatedChain(CertPath path, long notAfter) {
+			this.path = path;
+			this.notAfter = notAfter;
 		}
 	}
 }
@@ -44,6 +44,7 @@
  *    Achim Kraus (Bosch Software Innovations GmbH) - remove unused sendRecord
  *    Achim Kraus (Bosch Software Innovations GmbH) - move advanced tests to
  *                                                    DTLSConnectorAdvancedTest
+ *    Bosch.IO GmbH - add test for handshake admission
  ******************************************************************************/
 package org.eclipse.californium.scandium;
 
@@ -69,9 +70,12 @@ import java.net.InetSocketAddress;
 import java.security.GeneralSecurityException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import javax.crypto.SecretKey;
+
 import org.eclipse.californium.elements.AddressEndpointContext;
 import org.eclipse.californium.elements.RawData;
 import org.eclipse.californium.elements.auth.RawPublicKeyIdentity;
@@ -83,6 +87,7 @@ import org.eclipse.californium.elements.util.DatagramWriter;
 import org.eclipse.californium.elements.util.ExecutorsUtil;
 import org.eclipse.californium.elements.util.SerialExecutor;
 import org.eclipse.californium.elements.util.SimpleMessageCallback;
+import org.eclipse.californium.elements.util.TestConditionTools;
 import org.eclipse.californium.elements.util.TestThreadFactory;
 import org.eclipse.californium.scandium.ConnectorHelper.LatchDecrementingRawDataChannel;
 import org.eclipse.californium.scandium.ConnectorHelper.LatchSessionListener;
@@ -98,6 +103,7 @@ import org.eclipse.californium.scandium.dtls.ClientHello;
 import org.eclipse.californium.scandium.dtls.ClientKeyExchange;
 import org.eclipse.californium.scandium.dtls.CompressionMethod;
 import org.eclipse.californium.scandium.dtls.Connection;
+import org.eclipse.californium.scandium.dtls.ConnectionId;
 import org.eclipse.californium.scandium.dtls.ContentType;
 import org.eclipse.californium.scandium.dtls.DTLSContext;
 import org.eclipse.californium.scandium.dtls.DtlsHandshakeTimeoutException;
@@ -113,6 +119,7 @@ import org.eclipse.californium.scandium.dtls.InMemoryConnectionStore;
 import org.eclipse.californium.scandium.dtls.PSKClientKeyExchange;
 import org.eclipse.californium.scandium.dtls.ProtocolVersion;
 import org.eclipse.californium.scandium.dtls.PskPublicInformation;
+import org.eclipse.californium.scandium.dtls.PskSecretResult;
 import org.eclipse.californium.scandium.dtls.Record;
 import org.eclipse.californium.scandium.dtls.SessionId;
 import org.eclipse.californium.scandium.dtls.cipher.CipherSuite;
@@ -121,6 +128,7 @@ import org.eclipse.californium.scandium.dtls.pskstore.AdvancedSinglePskStore;
 import org.eclipse.californium.scandium.dtls.x509.NewAdvancedCertificateVerifier;
 import org.eclipse.californium.scandium.dtls.x509.StaticNewAdvancedCertificateVerifier;
 import org.eclipse.californium.scandium.rule.DtlsNetworkRule;
+import org.eclipse.californium.scandium.util.ServerNames;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -1097,6 +1105,110 @@ public class DTLSConnectorTest {
 		}
 	}
 
+	/**
+	 * Verifies, that a server drops new CLIENT_HELLOs, while too many
+	 * handshake jobs are pending, and processes the retransmitted CLIENT_HELLOs
+	 * afterwards.
+	 * 
+	 * @throws Exception if test cannot be executed
+	 */
+	@Test
+	public void testServerDropsNewClientHelloWhenHandshakeJobsArePending() throws Exception {
+		final CountDownLatch blocking = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		AdvancedPskStore pskStore = new AdvancedSinglePskStore(CLIENT_IDENTITY, CLIENT_IDENTITY_SECRET.getBytes()) {
+
+			@Override
+			public PskSecretResult requestPskSecretResult(ConnectionId cid, ServerNames serverName,
+					PskPublicInformation identity, String hmacAlgorithm, SecretKey otherSecret, byte[] seed,
+					boolean useExtendedMasterSecret) {
+				blocking.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return super.requestPskSecretResult(cid, serverName, identity, hmacAlgorithm, otherSecret, seed,
+						useExtendedMasterSecret);
+			}
+		};
+		DtlsHealthLogger health = new DtlsHealthLogger("server");
+		ConnectorHelper serverHelper = new ConnectorHelper();
+		DTLSConnector client1 = null;
+		DTLSConnector client2 = null;
+		RecordCollectorDataHandler handler = new RecordCollectorDataHandler();
+		handler.applyDtlsContext(null);
+		UdpConnector rawClient = new UdpConnector(12000, handler);
+		try {
+			DtlsConnectorConfig.Builder serverConfig = DtlsConnectorConfig.builder()
+					.setAdvancedPskStore(pskStore)
+					.setHealthHandler(health)
+					.setHandshakeThreadCount(1)
+					.setMaxPendingHandshakeJobs(1);
+			serverHelper.startServer(serverConfig);
+			client1 = createPskClient(serverHelper);
+			client2 = createPskClient(serverHelper);
+
+			// given a handshake blocking the handshake thread
+			SimpleMessageCallback callback1 = sendMessage(client1, serverHelper.serverEndpoint);
+			assertTrue(blocking.await(MAX_TIME_TO_WAIT_SECS, TimeUnit.SECONDS));
+
+			// when an other client starts a handshake
+			SimpleMessageCallback callback2 = sendMessage(client2, serverHelper.serverEndpoint);
+
+			// then the new CLIENT_HELLO is dropped
+			TestConditionTools.assertStatisticCounter(health, "dropped client hellos", is(1L), MAX_TIME_TO_WAIT_SECS,
+					TimeUnit.SECONDS);
+
+			// and a CLIENT_HELLO without cookie is still answered with a
+			// HELLO_VERIFY_REQUEST
+			rawClient.start();
+			rawClient.sendRecord(serverHelper.serverEndpoint,
+					DtlsTestTools.newDTLSRecord(ContentType.HANDSHAKE.getCode(), 0, 0, createClientHello().toByteArray()));
+			List<Record> flight = handler.assertFlight(1, MAX_TIME_TO_WAIT_SECS, TimeUnit.SECONDS);
+			HandshakeMessage handshake = (HandshakeMessage) flight.get(0).getFragment();
+			assertThat(handshake.getMessageType(), is(HandshakeType.HELLO_VERIFY_REQUEST));
+			assertThat(health.getCounter("dropped client hellos"), is(1L));
+
+			// and the retransmitted CLIENT_HELLO is processed, when the
+			// handshake thread is released
+			release.countDown();
+			assertTrue(callback1.isSent(TimeUnit.SECONDS.toMillis(MAX_TIME_TO_WAIT_SECS)));
+			assertTrue(callback2.isSent(TimeUnit.SECONDS.toMillis(MAX_TIME_TO_WAIT_SECS * 4)));
+		} finally {
+			release.countDown();
+			rawClient.stop();
+			if (client1 != null) {
+				client1.destroy();
+			}
+			if (client2 != null) {
+				client2.destroy();
+			}
+			serverHelper.destroyServer();
+		}
+	}
+
+	private DTLSConnector createPskClient(ConnectorHelper serverHelper) throws Exception {
+		DtlsConnectorConfig clientConfig = DtlsConnectorConfig.builder()
+				.setAddress(clientEndpoint)
+				.setLoggingTag("client")
+				.setReceiverThreadCount(1)
+				.setConnectionThreadCount(2)
+				.setAdvancedPskStore(new AdvancedSinglePskStore(CLIENT_IDENTITY, CLIENT_IDENTITY_SECRET.getBytes()))
+				.setSupportedCipherSuites(CipherSuite.TLS_PSK_WITH_AES_128_CCM_8)
+				.build();
+		DTLSConnector client = serverHelper.createClient(clientConfig);
+		client.setRawDataReceiver(new LatchDecrementingRawDataChannel());
+		client.start();
+		return client;
+	}
+
+	private static SimpleMessageCallback sendMessage(DTLSConnector client, InetSocketAddress server) {
+		SimpleMessageCallback callback = new SimpleMessageCallback();
+		client.send(RawData.outbound(new byte[] { 0x01 }, new AddressEndpointContext(server), callback, false));
+		return callback;
+	}
+
 	private void assertClientIdentity(final Class<?> principalType) {
 
 		// assert that client identity is of given type
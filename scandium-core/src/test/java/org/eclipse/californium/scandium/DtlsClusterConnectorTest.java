@@ -12,16 +12,21 @@
  * 
  * Contributors:
  *    Bosch IO.GmbH - initial creation
+ *    Bosch.IO GmbH - run with batched cluster records
  ******************************************************************************/
 package org.eclipse.californium.scandium;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
 
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.util.Arrays;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
@@ -34,6 +39,8 @@ import org.eclipse.californium.elements.rule.TestNameLoggerRule;
 import org.eclipse.californium.elements.rule.ThreadsRule;
 import org.eclipse.californium.elements.util.LeastRecentlyUsedCache.Predicate;
 import org.eclipse.californium.elements.util.SimpleMessageCallback;
+import org.eclipse.californium.elements.util.TestCondition;
+import org.eclipse.californium.elements.util.TestConditionTools;
 import org.eclipse.californium.scandium.ConnectorHelper.LatchDecrementingRawDataChannel;
 import org.eclipse.californium.scandium.ConnectorHelper.MessageCapturingProcessor;
 import org.eclipse.californium.scandium.ConnectorHelper.SimpleRawDataChannel;
@@ -48,15 +55,19 @@ import org.eclipse.californium.scandium.rule.DtlsNetworkRule;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
-import org.junit.BeforeClass;
 import org.junit.ClassRule;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
 
 /**
  * Simple basic test for forwarding and backwarding of messages.
  */
+@RunWith(Parameterized.class)
 @Category(Small.class)
 public class DtlsClusterConnectorTest {
 
@@ -71,6 +82,7 @@ public class DtlsClusterConnectorTest {
 	public TestNameLoggerRule names = new TestNameLoggerRule();
 
 	private static final long DEFAULT_TIMEOUT_MILLIS = 2000;
+	private static final int MESSAGES = 10;
 
 	private static InetAddress loopback = InetAddress.getLoopbackAddress();
 	private static InetSocketAddress dtlsAddress1 = new InetSocketAddress(loopback, 15684);
@@ -82,13 +94,36 @@ public class DtlsClusterConnectorTest {
 	private static DtlsClusterConnector connector2;
 	private static MessageCapturingProcessor messages1;
 	private static MessageCapturingProcessor messages2;
+	/**
+	 * Batch size of the started cluster connectors.
+	 */
+	private static int serverBatchSize = -1;
+
+	/**
+	 * Actual batch size.
+	 */
+	@Parameter
+	public int batchSize;
+
+	/**
+	 * @return List of batch sizes.
+	 */
+	@Parameters(name = "batch size = {0}")
+	public static Iterable<Integer> batchSizeParams() {
+		return Arrays.asList(0, 1400);
+	}
 
 	private DTLSConnector clientConnector;
 	private InMemoryConnectionStore clientConnections;
 	private LatchDecrementingRawDataChannel clientChannel;
 
-	@BeforeClass
-	public static void initServer() throws IOException {
+	@Before
+	public void initServer() throws IOException {
+		if (connector1 != null && serverBatchSize == batchSize) {
+			return;
+		}
+		shutdownServer();
+		serverBatchSize = batchSize;
 		final int CID_LENGTH = 6;
 		final int NODE_ID_1 = 1;
 		final int NODE_ID_2 = 2;
@@ -97,17 +132,19 @@ public class DtlsClusterConnectorTest {
 		DtlsConnectorConfig config1 = DtlsConnectorConfig.builder().setAddress(dtlsAddress1)
 				.setAdvancedPskStore(testPskStore1).setMaxConnections(10).setReceiverThreadCount(2)
 				.setConnectionThreadCount(2)
-				.setConnectionIdGenerator(new MultiNodeConnectionIdGenerator(NODE_ID_1, CID_LENGTH)).build();
+				.setConnectionIdGenerator(new MultiNodeConnectionIdGenerator(NODE_ID_1, CID_LENGTH))
+				.setHealthHandler(new DtlsClusterHealthLogger("node-1")).build();
 		DtlsClusterConnectorConfig clusterConfig1 = DtlsClusterConnectorConfig.builder().setAddress(mgmtAddress1)
-				.build();
+				.setBatchSize(batchSize).setBatchIntervalMicros(20000).build();
 		AdvancedSinglePskStore testPskStore2 = new AdvancedSinglePskStore(ConnectorHelper.CLIENT_IDENTITY,
 				ConnectorHelper.CLIENT_IDENTITY_SECRET.getBytes());
 		DtlsConnectorConfig config2 = DtlsConnectorConfig.builder().setAddress(dtlsAddress2)
 				.setAdvancedPskStore(testPskStore2).setMaxConnections(10).setReceiverThreadCount(2)
 				.setConnectionThreadCount(2)
-				.setConnectionIdGenerator(new MultiNodeConnectionIdGenerator(NODE_ID_2, CID_LENGTH)).build();
+				.setConnectionIdGenerator(new MultiNodeConnectionIdGenerator(NODE_ID_2, CID_LENGTH))
+				.setHealthHandler(new DtlsClusterHealthLogger("node-2")).build();
 		DtlsClusterConnectorConfig clusterConfig2 = DtlsClusterConnectorConfig.builder().setAddress(mgmtAddress2)
-				.build();
+				.setBatchSize(batchSize).setBatchIntervalMicros(20000).build();
 		DtlsClusterConnector.ClusterNodesProvider nodesProvider = new DtlsClusterConnector.ClusterNodesProvider() {
 
 			@Override
@@ -240,4 +277,70 @@ public class DtlsClusterConnectorTest {
 
 		assertEquals(9, clientConnections.remainingCapacity());
 	}
+
+	/**
+	 * Send messages to connector 2 for connector 1 and check, that all are
+	 * forwarded and the responses are backwarded. Checks also, that batches
+	 * are sent and that all batched messages are received.
+	 * 
+	 * @throws Exception if an error occurred
+	 */
+	@Test
+	public void testBatchedForwarding() throws Exception {
+		assumeTrue("batching disabled", batchSize > 0);
+		clientChannel.setLatchCount(1);
+		SimpleMessageCallback callback = new SimpleMessageCallback();
+		RawData message = RawData.outbound("hello!".getBytes(), new AddressEndpointContext(dtlsAddress1), callback,
+				false);
+		clientConnector.send(message);
+		assertTrue(callback.isSent(DEFAULT_TIMEOUT_MILLIS));
+		assertTrue(clientChannel.await(DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+
+		// adapt the destination address to connector 2
+		Future<Void> result = clientConnector.startForEach(new Predicate<Connection>() {
+
+			@Override
+			public boolean accept(Connection value) {
+				if (value.equalsPeerAddress(dtlsAddress1)) {
+					clientConnections.update(value, dtlsAddress2);
+					return true;
+				} else {
+					return false;
+				}
+			}
+		});
+		result.get(DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+
+		final DtlsClusterHealthLogger health1 = (DtlsClusterHealthLogger) connector1.clusterHealth;
+		final DtlsClusterHealthLogger health2 = (DtlsClusterHealthLogger) connector2.clusterHealth;
+		long forwarded = health2.getForwardedMessages(connector1.getNodeID());
+		long sentBatches = health2.getSentBatches();
+		final long sentBatched1 = health1.getSentBatchedMessages();
+		final long sentBatched2 = health2.getSentBatchedMessages();
+		final long receivedBatched1 = health1.getReceivedBatchedMessages();
+		final long receivedBatched2 = health2.getReceivedBatchedMessages();
+
+		clientChannel.setLatchCount(MESSAGES);
+		for (int index = 0; index < MESSAGES; ++index) {
+			RawData next = RawData.outbound(("hello " + index + "!").getBytes(),
+					new AddressEndpointContext(dtlsAddress2), null, false);
+			clientConnector.send(next);
+		}
+		assertTrue(clientChannel.await(DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+		assertEquals(forwarded + MESSAGES, health2.getForwardedMessages(connector1.getNodeID()));
+		assertThat(health2.getSentBatches(), greaterThan(sentBatches));
+		// received batches are counted after processing the batched messages
+		boolean received = TestConditionTools.waitForCondition(DEFAULT_TIMEOUT_MILLIS, 50, TimeUnit.MILLISECONDS,
+				new TestCondition() {
+
+					@Override
+					public boolean isFulFilled() throws IllegalStateException {
+						return health1.getReceivedBatchedMessages() - receivedBatched1 == health2
+								.getSentBatchedMessages() - sentBatched2
+								&& health2.getReceivedBatchedMessages() - receivedBatched2 == health1
+										.getSentBatchedMessages() - sentBatched1;
+					}
+				});
+		assertTrue("batched messages not received", received);
+	}
 }
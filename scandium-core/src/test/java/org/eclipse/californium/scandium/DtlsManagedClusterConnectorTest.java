@@ -12,12 +12,16 @@
  * 
  * Contributors:
  *    Bosch IO.GmbH - initial creation
+ *    Bosch.IO GmbH - add test for batches with cluster MAC
  ******************************************************************************/
 package org.eclipse.californium.scandium;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
@@ -37,9 +41,11 @@ import org.eclipse.californium.elements.EndpointContext;
 import org.eclipse.californium.elements.RawData;
 import org.eclipse.californium.elements.category.Small;
 import org.eclipse.californium.elements.rule.TestNameLoggerRule;
+import org.eclipse.californium.elements.rule.TestTimeRule;
 import org.eclipse.californium.elements.rule.ThreadsRule;
 import org.eclipse.californium.elements.util.LeastRecentlyUsedCache.Predicate;
 import org.eclipse.californium.elements.util.SimpleMessageCallback;
+import org.eclipse.californium.elements.util.TestCondition;
 import org.eclipse.californium.elements.util.TestConditionTools;
 import org.eclipse.californium.scandium.ConnectorHelper.LatchDecrementingRawDataChannel;
 import org.eclipse.californium.scandium.ConnectorHelper.MessageCapturingProcessor;
@@ -49,6 +55,7 @@ import org.eclipse.californium.scandium.config.DtlsConnectorConfig;
 import org.eclipse.californium.scandium.dtls.Connection;
 import org.eclipse.californium.scandium.dtls.InMemoryConnectionStore;
 import org.eclipse.californium.scandium.dtls.MultiNodeConnectionIdGenerator;
+import org.eclipse.californium.scandium.dtls.ResumptionSupportingConnectionStore;
 import org.eclipse.californium.scandium.dtls.SingleNodeConnectionIdGenerator;
 import org.eclipse.californium.scandium.dtls.pskstore.AdvancedSinglePskStore;
 import org.eclipse.californium.scandium.rule.DtlsNetworkRule;
@@ -81,6 +88,9 @@ public class DtlsManagedClusterConnectorTest {
 	@Rule
 	public TestNameLoggerRule names = new TestNameLoggerRule();
 
+	@Rule
+	public TestTimeRule time = new TestTimeRule();
+
 	private static final long DEFAULT_TIMEOUT_MILLIS = 2000;
 
 	private static InetAddress loopback = InetAddress.getLoopbackAddress();
@@ -101,14 +111,22 @@ public class DtlsManagedClusterConnectorTest {
 		List<DtlsClusterConnectorConfig> parameters = Arrays.asList(
 				DtlsClusterConnectorConfig.builder().getIncompleteConfig(),
 				DtlsClusterConnectorConfig.builder().setBackwardMessage(false).getIncompleteConfig(),
-				DtlsClusterConnectorConfig.builder().setSecure("test", key).setClusterMac(false).getIncompleteConfig(),
-				DtlsClusterConnectorConfig.builder().setSecure("test", key).getIncompleteConfig());
+				DtlsClusterConnectorConfig.builder().setBatchSize(1400).setBatchIntervalMicros(20000)
+						.getIncompleteConfig(),
+				DtlsClusterConnectorConfig.builder().setSecure("test", key).setClusterMac(false)
+						.setHandoverThreshold(3).getIncompleteConfig(),
+				DtlsClusterConnectorConfig.builder().setSecure("test", key).setHandoverThreshold(3)
+						.getIncompleteConfig(),
+				DtlsClusterConnectorConfig.builder().setSecure("test", key).setBatchSize(1400)
+						.setBatchIntervalMicros(20000).getIncompleteConfig());
 		SecretUtil.destroy(key);
 		return parameters;
 	}
 
 	private DtlsManagedClusterConnector connector1;
 	private DtlsManagedClusterConnector connector2;
+	private ResumptionSupportingConnectionStore connections2;
+	private int maxConnections2;
 	private MessageCapturingProcessor messages1;
 	private MessageCapturingProcessor messages2;
 	private LatchDecrementingRawDataChannel mgmtChannel1;
@@ -167,7 +185,9 @@ public class DtlsManagedClusterConnectorTest {
 		};
 
 		connector1 = new DtlsManagedClusterConnector(config1, clusterConfig1);
-		connector2 = new DtlsManagedClusterConnector(config2, clusterConfig2);
+		connections2 = DTLSConnector.createConnectionStore(config2);
+		maxConnections2 = config2.getMaxConnections();
+		connector2 = new DtlsManagedClusterConnector(config2, clusterConfig2, connections2);
 
 		connector1.setClusterNodesProvider(nodesProvider);
 		connector2.setClusterNodesProvider(nodesProvider);
@@ -341,6 +361,212 @@ public class DtlsManagedClusterConnectorTest {
 				TimeUnit.MILLISECONDS);
 	}
 
+	/**
+	 * Send first a message to connector 1, then messages to connector 2 until
+	 * the connection is handed over to connector 2.
+	 * 
+	 * @throws Exception if an error occurred
+	 */
+	@Test
+	public void testConnectionHandover() throws Exception {
+		if (!secureInternalCommunication || clusterConfig.getHandoverThreshold() == 0) {
+			// handover requires encryption
+			return;
+		}
+		initClusterManagementCommunication();
+
+		// send message to connector 1
+		clientChannel.setLatchCount(1);
+
+		SimpleMessageCallback callback = new SimpleMessageCallback();
+		RawData message = RawData.outbound("hello!".getBytes(), new AddressEndpointContext(dtlsAddress1), callback,
+				false);
+		clientConnector.send(message);
+		assertTrue(callback.isSent(DEFAULT_TIMEOUT_MILLIS));
+		assertTrue(clientChannel.await(DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+		TestConditionTools.assertStatisticCounter(health1, "handshakes succeeded", is(1L), DEFAULT_TIMEOUT_MILLIS,
+				TimeUnit.MILLISECONDS);
+
+		// adapt the destination address to connector 2
+		Future<Void> result = clientConnector.startForEach(new Predicate<Connection>() {
+
+			@Override
+			public boolean accept(Connection value) {
+				if (value.equalsPeerAddress(dtlsAddress1)) {
+					clientConnections.update(value, dtlsAddress2);
+					return true;
+				} else {
+					return false;
+				}
+			}
+		});
+
+		result.get(DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+		assertTrue(result.isDone());
+
+		// send messages to connector 2, reaching the handover threshold.
+		// the reply of the last message may get lost, if the record is
+		// processed by connector 1 after the handover.
+		for (int index = 0; index < clusterConfig.getHandoverThreshold(); ++index) {
+			SimpleMessageCallback callback2 = new SimpleMessageCallback();
+			RawData message2 = RawData.outbound(("hello " + index + "!").getBytes(),
+					new AddressEndpointContext(dtlsAddress2), callback2, false);
+			clientConnector.send(message2);
+			assertTrue(callback2.isSent(DEFAULT_TIMEOUT_MILLIS));
+		}
+
+		final InetSocketAddress clientAddress = new InetSocketAddress(loopback, clientConnector.getAddress().getPort());
+		TestConditionTools.waitForCondition(DEFAULT_TIMEOUT_MILLIS, 50, TimeUnit.MILLISECONDS, new TestCondition() {
+
+			@Override
+			public boolean isFulFilled() throws IllegalStateException {
+				return connector1.getDtlsContextByAddress(clientAddress) == null;
+			}
+		});
+		assertNull("connection not handed over", connector1.getDtlsContextByAddress(clientAddress));
+		TestConditionTools.waitForCondition(DEFAULT_TIMEOUT_MILLIS, 50, TimeUnit.MILLISECONDS, new TestCondition() {
+
+			@Override
+			public boolean isFulFilled() throws IllegalStateException {
+				return connections2.remainingCapacity() < maxConnections2;
+			}
+		});
+		assertThat("connection not taken over", connections2.remainingCapacity(), is(maxConnections2 - 1));
+		health1.reset();
+		health2.reset();
+
+		// send message to connector 2, now processed locally
+		clientChannel.setLatchCount(1);
+		SimpleMessageCallback callback3 = new SimpleMessageCallback();
+		RawData message3 = RawData.outbound("hello local!".getBytes(), new AddressEndpointContext(dtlsAddress2),
+				callback3, false);
+		clientConnector.send(message3);
+		assertTrue(callback3.isSent(DEFAULT_TIMEOUT_MILLIS));
+		assertTrue(clientChannel.await(DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+
+		TestConditionTools.assertStatisticCounter(health2, "received records", is(1L), DEFAULT_TIMEOUT_MILLIS,
+				TimeUnit.MILLISECONDS);
+		TestConditionTools.assertStatisticCounter(health2, "forwarded", is(0L));
+		TestConditionTools.assertStatisticCounter(health1, "process forwarded", is(0L));
+		TestConditionTools.assertStatisticCounter(health2, "handshakes succeeded", is(0L));
+		assertNotNull(connector2.getDtlsContextByAddress(clientAddress));
+
+		// records reaching the previous owner after a while are still
+		// forwarded to the new owner
+		time.addTestTimeShift(5, TimeUnit.MINUTES);
+		health1.reset();
+		health2.reset();
+		result = clientConnector.startForEach(new Predicate<Connection>() {
+
+			@Override
+			public boolean accept(Connection value) {
+				if (value.equalsPeerAddress(dtlsAddress2)) {
+					clientConnections.update(value, dtlsAddress1);
+					return true;
+				} else {
+					return false;
+				}
+			}
+		});
+
+		result.get(DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+		assertTrue(result.isDone());
+
+		clientChannel.setLatchCount(1);
+		SimpleMessageCallback callback4 = new SimpleMessageCallback();
+		RawData message4 = RawData.outbound("hello previous!".getBytes(), new AddressEndpointContext(dtlsAddress1),
+				callback4, false);
+		clientConnector.send(message4);
+		assertTrue(callback4.isSent(DEFAULT_TIMEOUT_MILLIS));
+		assertTrue(clientChannel.await(DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+
+		TestConditionTools.assertStatisticCounter(health1, "forwarded", is(1L), DEFAULT_TIMEOUT_MILLIS,
+				TimeUnit.MILLISECONDS);
+		TestConditionTools.assertStatisticCounter(health2, "process forwarded", is(1L), DEFAULT_TIMEOUT_MILLIS,
+				TimeUnit.MILLISECONDS);
+		TestConditionTools.assertStatisticCounter(health1, "handshakes succeeded", is(0L));
+	}
+
+	/**
+	 * Send first a message to connector 1, then messages to connector 2 and
+	 * check, that these are forwarded in batches to connector 1. If the
+	 * cluster MAC is enabled, each message of the batch is verified.
+	 * 
+	 * @throws Exception if an error occurred
+	 */
+	@Test
+	public void testBatchedForwarding() throws Exception {
+		if (clusterConfig.getBatchSize() == 0) {
+			// batching disabled
+			return;
+		}
+		final int MESSAGES = 10;
+		initClusterManagementCommunication();
+
+		// send message to connector 1
+		clientChannel.setLatchCount(1);
+
+		SimpleMessageCallback callback = new SimpleMessageCallback();
+		RawData message = RawData.outbound("hello!".getBytes(), new AddressEndpointContext(dtlsAddress1), callback,
+				false);
+		clientConnector.send(message);
+		assertTrue(callback.isSent(DEFAULT_TIMEOUT_MILLIS));
+		assertTrue(clientChannel.await(DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+		TestConditionTools.assertStatisticCounter(health1, "handshakes succeeded", is(1L), DEFAULT_TIMEOUT_MILLIS,
+				TimeUnit.MILLISECONDS);
+		health1.reset();
+		health2.reset();
+
+		// adapt the destination address to connector 2
+		Future<Void> result = clientConnector.startForEach(new Predicate<Connection>() {
+
+			@Override
+			public boolean accept(Connection value) {
+				if (value.equalsPeerAddress(dtlsAddress1)) {
+					clientConnections.update(value, dtlsAddress2);
+					return true;
+				} else {
+					return false;
+				}
+			}
+		});
+
+		result.get(DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+		assertTrue(result.isDone());
+
+		// send messages to connector 2
+		clientChannel.setLatchCount(MESSAGES);
+		for (int index = 0; index < MESSAGES; ++index) {
+			RawData next = RawData.outbound(("hello " + index + "!").getBytes(),
+					new AddressEndpointContext(dtlsAddress2), null, false);
+			clientConnector.send(next);
+		}
+		assertTrue(clientChannel.await(DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+
+		TestConditionTools.assertStatisticCounter(health2, "forwarded", is((long) MESSAGES));
+		TestConditionTools.assertStatisticCounter(health1, "process forwarded", is((long) MESSAGES),
+				DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+		TestConditionTools.assertStatisticCounter(health1, "bad forward", is(0L));
+		TestConditionTools.assertStatisticCounter(health1, "drop forward", is(0L));
+		TestConditionTools.assertStatisticCounter(health2, "send backwarded", is((long) MESSAGES),
+				DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+		TestConditionTools.assertStatisticCounter(health2, "bad backward", is(0L));
+		assertThat(health2.getSentBatches(), is(greaterThan(0L)));
+		// received batches are counted after processing the batched messages,
+		// sent batches are counted after sending them
+		boolean received = TestConditionTools.waitForCondition(DEFAULT_TIMEOUT_MILLIS, 50, TimeUnit.MILLISECONDS,
+				new TestCondition() {
+
+					@Override
+					public boolean isFulFilled() throws IllegalStateException {
+						return health1.getReceivedBatchedMessages() == health2.getSentBatchedMessages()
+								&& health2.getReceivedBatchedMessages() == health1.getSentBatchedMessages();
+					}
+				});
+		assertTrue("batched messages not received", received);
+		TestConditionTools.assertStatisticCounter(health2, "handshakes succeeded", is(0L));
+	}
+
 	@Test
 	public void testClusterMgmtCommunication() throws Exception {
 		mgmtChannel1.setLatchCount(1);
@@ -385,7 +611,7 @@ public class DtlsManagedClusterConnectorTest {
 		data[DtlsClusterConnector.CLUSTER_ADDRESS_LENGTH_OFFSET] = 4;
 		DatagramPacket packet = new DatagramPacket(data, data.length, mgmtAddress1);
 		try {
-			connector2.sendDatagramToClusterNetwork(packet);
+			connector2.sendDatagramToClusterNetwork(packet, connector1.getNodeID());
 		} catch (IOException ex) {
 			ex.printStackTrace();
 		}
@@ -394,7 +620,44 @@ public class DtlsManagedClusterConnectorTest {
 				TimeUnit.MILLISECONDS);
 		TestConditionTools.assertStatisticCounter(health1, "recv cluster mgmt", is(0L));
 		TestConditionTools.assertStatisticCounter(health1, "backwarded", is(0L));
-		TestConditionTools.assertStatisticCounter(health2, "forwarded", is(0L));
+		// the broken message is counted as forwarded, when sent
+		TestConditionTools.assertStatisticCounter(health2, "forwarded", is(1L));
 		TestConditionTools.assertStatisticCounter(health2, "sent cluster mgmt", is(0L));
 	}
+
+	/**
+	 * Send cluster management messages with the types used by the
+	 * {@code DtlsClusterManager} and check, that these are delivered to the
+	 * management channel, regardless of batching and handover.
+	 * 
+	 * @throws Exception if an error occurred
+	 */
+	@Test
+	public void testClusterMgmtCommunicationWithClusterManagerTypes() throws Exception {
+		initClusterManagementCommunication();
+
+		// DtlsClusterManager ping
+		mgmtChannel1.setLatchCount(1);
+		byte[] ping = { 61, 2, 0, 0, 0, 0 };
+		RawData message = RawData.outbound(ping, new AddressEndpointContext(mgmtAddress1), null, false);
+		connector2.getClusterManagementConnector().send(message);
+
+		assertTrue("ping not received", mgmtChannel1.await(DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+		TestConditionTools.assertStatisticCounter("ping", health1, "recv cluster mgmt", is(1L),
+				DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+		TestConditionTools.assertStatisticCounter("ping", health1, "drop forward", is(0L));
+		TestConditionTools.assertStatisticCounter("ping", health1, "recv batched", is(0L));
+
+		// DtlsClusterManager pong
+		mgmtChannel2.setLatchCount(1);
+		byte[] pong = { 60, 1, 0, 0, 0, 0 };
+		message = RawData.outbound(pong, new AddressEndpointContext(mgmtAddress2), null, false);
+		connector1.getClusterManagementConnector().send(message);
+
+		assertTrue("pong not received", mgmtChannel2.await(DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+		TestConditionTools.assertStatisticCounter("pong", health2, "recv cluster mgmt", is(1L),
+				DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+		TestConditionTools.assertStatisticCounter("pong", health2, "drop forward", is(0L));
+		TestConditionTools.assertStatisticCounter("pong", health2, "recv batched", is(0L));
+	}
 }
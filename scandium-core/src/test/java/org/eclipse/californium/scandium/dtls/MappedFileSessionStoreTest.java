@@ -0,0 +1,234 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.elements.category.Small;
+import org.eclipse.californium.elements.util.DatagramWriter;
+import org.eclipse.californium.scandium.dtls.cipher.CipherSuite;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+
+@Category(Small.class)
+public class MappedFileSessionStoreTest {
+
+	private static final int CAPACITY = 64;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	File file;
+	MappedFileSessionStore store;
+	DTLSSession session;
+
+	@Before
+	public void setUp() throws Exception {
+		file = folder.newFile("sessions.bin");
+		store = new MappedFileSessionStore(file, CAPACITY, MappedFileSessionStore.DEFAULT_SLOT_SIZE, 1,
+				TimeUnit.HOURS);
+		session = newSession();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		store.close();
+	}
+
+	@Test
+	public void testPutAndGet() {
+		store.put(session);
+		DTLSSession stored = store.get(session.getSessionIdentifier());
+		assertThat(stored, is(notNullValue()));
+		assertThat(stored, is(session));
+		assertThat(stored.getMasterSecret(), is(session.getMasterSecret()));
+		assertThat(store.size(), is(1));
+	}
+
+	@Test
+	public void testPutReplacesSession() {
+		store.put(session);
+		DTLSSession update = newSession();
+		update.setSessionIdentifier(session.getSessionIdentifier());
+		store.put(update);
+		assertThat(store.get(session.getSessionIdentifier()), is(update));
+		assertThat(store.size(), is(1));
+	}
+
+	@Test
+	public void testRemove() {
+		store.put(session);
+		store.remove(session.getSessionIdentifier());
+		assertThat(store.get(session.getSessionIdentifier()), is(nullValue()));
+		assertThat(store.size(), is(0));
+	}
+
+	@Test
+	public void testSessionsSurviveReopen() throws Exception {
+		store.put(session);
+		store.close();
+		store = new MappedFileSessionStore(file, CAPACITY, MappedFileSessionStore.DEFAULT_SLOT_SIZE, 1,
+				TimeUnit.HOURS);
+		assertThat(store.get(session.getSessionIdentifier()), is(session));
+	}
+
+	@Test
+	public void testChangedLayoutReinitializes() throws Exception {
+		store.put(session);
+		store.close();
+		store = new MappedFileSessionStore(file, CAPACITY * 2, MappedFileSessionStore.DEFAULT_SLOT_SIZE, 1,
+				TimeUnit.HOURS);
+		assertThat(store.get(session.getSessionIdentifier()), is(nullValue()));
+		assertThat(store.getCapacity(), is(CAPACITY * 2));
+	}
+
+	@Test
+	public void testSessionExpires() throws Exception {
+		store.close();
+		store = new MappedFileSessionStore(file, CAPACITY, MappedFileSessionStore.DEFAULT_SLOT_SIZE, 100,
+				TimeUnit.MILLISECONDS);
+		store.put(session);
+		assertThat(store.get(session.getSessionIdentifier()), is(notNullValue()));
+		Thread.sleep(150);
+		assertThat(store.get(session.getSessionIdentifier()), is(nullValue()));
+	}
+
+	@Test
+	public void testExpiredSessionIsCleared() throws Exception {
+		store.close();
+		store = new MappedFileSessionStore(file, CAPACITY, MappedFileSessionStore.DEFAULT_SLOT_SIZE, 100,
+				TimeUnit.MILLISECONDS);
+		store.put(session);
+		byte[] secret = session.getMasterSecret().getEncoded();
+		store.flush();
+		assertThat(contains(file, secret), is(true));
+		Thread.sleep(150);
+		assertThat(store.get(session.getSessionIdentifier()), is(nullValue()));
+		store.flush();
+		assertThat(contains(file, secret), is(false));
+	}
+
+	@Test
+	public void testExpiredSessionIsClearedOnOpen() throws Exception {
+		store.close();
+		store = new MappedFileSessionStore(file, CAPACITY, MappedFileSessionStore.DEFAULT_SLOT_SIZE, 100,
+				TimeUnit.MILLISECONDS);
+		store.put(session);
+		byte[] secret = session.getMasterSecret().getEncoded();
+		store.close();
+		assertThat(contains(file, secret), is(true));
+		Thread.sleep(150);
+		store = new MappedFileSessionStore(file, CAPACITY, MappedFileSessionStore.DEFAULT_SLOT_SIZE, 100,
+				TimeUnit.MILLISECONDS);
+		store.flush();
+		assertThat(contains(file, secret), is(false));
+	}
+
+	@Test
+	public void testRemoveExpiredSessions() throws Exception {
+		store.close();
+		store = new MappedFileSessionStore(file, CAPACITY, MappedFileSessionStore.DEFAULT_SLOT_SIZE, 100,
+				TimeUnit.MILLISECONDS);
+		store.put(session);
+		byte[] secret = session.getMasterSecret().getEncoded();
+		Thread.sleep(150);
+		assertThat(store.removeExpiredSessions(), is(1));
+		store.flush();
+		assertThat(contains(file, secret), is(false));
+	}
+
+	@Test
+	public void testReplacedLargerSessionIsCleared() throws Exception {
+		DTLSSession x509 = DTLSSessionTest.newEstablishedServerSession(CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_128_CCM_8,
+				CertificateType.X_509);
+		session.setSessionIdentifier(x509.getSessionIdentifier());
+		byte[] x509Data = serialize(x509);
+		byte[] data = serialize(session);
+		assertThat(x509Data.length > data.length + 32, is(true));
+		byte[] tail = Arrays.copyOfRange(x509Data, x509Data.length - 32, x509Data.length);
+		store.close();
+		store = new MappedFileSessionStore(file, CAPACITY, x509Data.length + 64, 1, TimeUnit.HOURS);
+		store.put(x509);
+		store.flush();
+		assertThat(contains(file, tail), is(true));
+		store.put(session);
+		store.flush();
+		assertThat(store.get(session.getSessionIdentifier()), is(session));
+		assertThat(contains(file, tail), is(false));
+	}
+
+	@Test
+	public void testCapacityIsNotExceeded() {
+		for (int i = 0; i < CAPACITY * 2; ++i) {
+			store.put(newSession());
+		}
+		assertThat(store.size(), is(lessThanOrEqualTo(CAPACITY)));
+		// the latest session is always stored
+		store.put(session);
+		assertThat(store.get(session.getSessionIdentifier()), is(session));
+	}
+
+	@Test
+	public void testTooLargeSessionIsNotStored() throws Exception {
+		DTLSSession x509 = DTLSSessionTest.newEstablishedServerSession(CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_128_CCM_8,
+				CertificateType.X_509);
+		store.close();
+		store = new MappedFileSessionStore(file, CAPACITY, 128, 1, TimeUnit.HOURS);
+		store.put(x509);
+		assertThat(store.get(x509.getSessionIdentifier()), is(nullValue()));
+	}
+
+	private static byte[] serialize(DTLSSession session) {
+		DatagramWriter writer = new DatagramWriter();
+		session.writeTo(writer);
+		return writer.toByteArray();
+	}
+
+	private static boolean contains(File file, byte[] data) throws IOException {
+		byte[] content = new byte[(int) file.length()];
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			in.readFully(content);
+		} finally {
+			in.close();
+		}
+		for (int index = 0; index <= content.length - data.length; ++index) {
+			if (Arrays.equals(data, Arrays.copyOfRange(content, index, index + data.length))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static DTLSSession newSession() {
+		return DTLSSessionTest.newEstablishedServerSession(CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_128_CCM_8,
+				CertificateType.RAW_PUBLIC_KEY);
+	}
+}
@@ -19,6 +19,7 @@
  ******************************************************************************/
 package org.eclipse.californium.scandium.dtls;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
@@ -32,6 +33,7 @@ import javax.crypto.spec.SecretKeySpec;
 import org.eclipse.californium.elements.category.Small;
 import org.eclipse.californium.elements.util.Bytes;
 import org.eclipse.californium.elements.util.ClockUtil;
+import org.eclipse.californium.elements.util.DatagramWriter;
 import org.eclipse.californium.scandium.dtls.cipher.CCMBlockCipher;
 import org.eclipse.californium.scandium.dtls.cipher.CipherSuite;
 import org.eclipse.californium.scandium.util.SecretIvParameterSpec;
@@ -147,6 +149,22 @@ public class RecordTest {
 		assertTrue(Arrays.equals(decryptedData, payloadData));
 	}
 
+	@Test
+	public void testWriteToAppendsRecords() throws Exception {
+		Record record1 = new Record(ContentType.APPLICATION_DATA, protocolVer, SEQUENCE_NO,
+				new ApplicationMessage(payloadData));
+		Record record2 = new Record(ContentType.ALERT, protocolVer, SEQUENCE_NO + 1,
+				new AlertMessage(AlertMessage.AlertLevel.WARNING, AlertMessage.AlertDescription.CLOSE_NOTIFY));
+
+		DatagramWriter writer = new DatagramWriter();
+		record1.writeTo(writer);
+		record2.writeTo(writer);
+
+		byte[] expected = Bytes.concatenate(record1.toByteArray(), record2.toByteArray());
+		assertArrayEquals(expected, writer.toByteArray());
+		assertEquals(record1.size() + record2.size(), expected.length);
+	}
+
 	byte[] newGenericAEADCipherFragment() throws GeneralSecurityException {
 		// 64bit sequence number, consisting of 16bit epoch (0) + 48bit sequence number (5)
 		byte[] seq_num = new byte[]{0x00, (byte) EPOCH, 0x00, 0x00, 0x00, 0x00, 0x00, (byte) SEQUENCE_NO};
@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.eclipse.californium.elements.category.Small;
+import org.eclipse.californium.elements.rule.ThreadsRule;
+import org.eclipse.californium.scandium.dtls.cipher.CipherSuite;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(Small.class)
+public class StripedConnectionStoreTest {
+
+	@Rule
+	public ThreadsRule cleanup = new ThreadsRule();
+
+	private static final int STRIPES = 4;
+	private static final int INITIAL_CAPACITY = 40;
+
+	StripedConnectionStore store;
+	Connection con;
+	SessionId sessionId;
+
+	@Before
+	public void setUp() throws Exception {
+		store = new StripedConnectionStore(STRIPES, INITIAL_CAPACITY, 1000, null);
+		store.attach(null);
+		con = newConnection(50L);
+		sessionId = con.getEstablishedSession().getSessionIdentifier();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoStripes() {
+		new StripedConnectionStore(0, INITIAL_CAPACITY, 1000, null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCapacityLessThanStripes() {
+		new StripedConnectionStore(STRIPES, STRIPES - 1, 1000, null);
+	}
+
+	@Test
+	public void testPutAddsConnection() {
+		assertThat(store.getStripes(), is(STRIPES));
+		assertThat(store.remainingCapacity(), is(INITIAL_CAPACITY));
+
+		assertTrue(store.put(con));
+
+		assertThat(store.remainingCapacity(), is(INITIAL_CAPACITY - 1));
+	}
+
+	@Test
+	public void testGetRetrievesConnection() {
+		store.put(con);
+		ConnectionId cid = con.getConnectionId();
+		assertThat(store.get(cid), is(con));
+		assertThat(store.get(new ConnectionId(cid.getBytes())), is(con));
+		assertThat(store.get(con.getPeerAddress()), is(con));
+	}
+
+	@Test
+	public void testFindRetrievesLocalSession() {
+		store.put(con);
+		DTLSSession session = store.find(sessionId);
+		assertThat(session, is(con.getEstablishedSession()));
+	}
+
+	@Test
+	public void testFindRetrievesSharedSession() {
+		SessionStore sessionStore = new TestInMemorySessionStore();
+		sessionStore.put(con.getEstablishedSession());
+		store = new StripedConnectionStore(STRIPES, INITIAL_CAPACITY, 1000, sessionStore);
+
+		DTLSSession resumeSession = store.find(sessionId);
+
+		assertThat(resumeSession, is(notNullValue()));
+		assertThat(resumeSession.getMasterSecret(), is(con.getEstablishedSession().getMasterSecret()));
+	}
+
+	@Test
+	public void testRemoveConnectionRemovesAllMappings() {
+		store.put(con);
+		ConnectionId cid = con.getConnectionId();
+		InetSocketAddress peerAddress = con.getPeerAddress();
+
+		assertTrue(store.remove(con, true));
+
+		assertThat(store.get(cid), is(nullValue()));
+		assertThat(store.get(peerAddress), is(nullValue()));
+		assertThat(store.find(sessionId), is(nullValue()));
+		assertThat(con.isExecuting(), is(false));
+		assertThat(store.remainingCapacity(), is(INITIAL_CAPACITY));
+	}
+
+	@Test
+	public void testUpdateChangesAddress() throws Exception {
+		store.put(con);
+		InetSocketAddress oldAddress = con.getPeerAddress();
+		InetSocketAddress newAddress = new InetSocketAddress(InetAddress.getByAddress(longToIp(51L)), 5684);
+
+		assertTrue(store.update(con, newAddress));
+
+		assertThat(store.get(oldAddress), is(nullValue()));
+		assertThat(store.get(newAddress), is(con));
+		assertThat(store.get(con.getConnectionId()), is(con));
+	}
+
+	@Test
+	public void testPutDistributesConnectionsOverStripes() throws Exception {
+		// a single stripe is able to keep all connections
+		List<Connection> connections = new ArrayList<>();
+		for (int index = 0; index < INITIAL_CAPACITY / STRIPES; ++index) {
+			Connection connection = newConnection(100L + index);
+			assertTrue(store.put(connection));
+			connections.add(connection);
+		}
+		assertThat(store.remainingCapacity(), is(INITIAL_CAPACITY - connections.size()));
+		for (Connection connection : connections) {
+			assertThat(store.get(connection.getConnectionId()), is(connection));
+			assertThat(store.get(connection.getPeerAddress()), is(connection));
+		}
+		int count = 0;
+		Iterator<Connection> iterator = store.iterator();
+		while (iterator.hasNext()) {
+			assertTrue(connections.contains(iterator.next()));
+			++count;
+		}
+		assertThat(count, is(connections.size()));
+	}
+
+	@Test
+	public void testClearRemovesAllConnections() throws Exception {
+		store.put(con);
+		Connection con2 = newConnection(51L);
+		store.put(con2);
+
+		store.clear();
+
+		assertThat(store.remainingCapacity(), is(INITIAL_CAPACITY));
+		assertThat(store.get(con.getConnectionId()), is(nullValue()));
+		assertThat(store.get(con2.getConnectionId()), is(nullValue()));
+		assertThat(store.iterator().hasNext(), is(false));
+	}
+
+	@Test
+	public void testSaveAndLoadConnections() throws Exception {
+		assertTrue(store.put(con));
+		Connection con2 = newConnection(51L);
+		assertTrue(store.put(con2));
+		ConnectionId cid = con.getConnectionId();
+		ConnectionId cid2 = con2.getConnectionId();
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		int saveCount = store.saveConnections(out, 1000);
+		assertThat(saveCount, is(2));
+		assertThat(store.remainingCapacity(), is(INITIAL_CAPACITY));
+
+		int loadCount = store.loadConnections(new ByteArrayInputStream(out.toByteArray()), 0L);
+		assertThat(loadCount, is(2));
+		assertThat(store.remainingCapacity(), is(INITIAL_CAPACITY - 2));
+		Connection loaded = store.get(cid);
+		assertThat(loaded, is(notNullValue()));
+		assertThat(store.get(cid2), is(notNullValue()));
+		assertThat(store.find(sessionId), is(notNullValue()));
+	}
+
+	private Connection newConnection(long ip) throws HandshakeException, UnknownHostException {
+		InetAddress addr = InetAddress.getByAddress(longToIp(ip));
+		InetSocketAddress peerAddress = new InetSocketAddress(addr, 0);
+		Connection con = new Connection(peerAddress).setConnectorContext(new SyncExecutor(), null);
+		DTLSContext dtlsContext = DTLSContextTest.newEstablishedServerDtlsContext(CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_128_CCM_8, CertificateType.RAW_PUBLIC_KEY);
+		con.getSessionListener().contextEstablished(null, dtlsContext);
+		return con;
+	}
+
+	private static byte[] longToIp(long ip) {
+		byte[] result = new byte[4];
+		result[0] = 10;
+		for (int i = 3; i >= 1; i--) {
+			result[i] = (byte) (ip & 0xff);
+			ip >>= 8;
+		}
+		return result;
+	}
+}
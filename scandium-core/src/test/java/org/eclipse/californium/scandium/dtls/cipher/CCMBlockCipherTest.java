@@ -15,7 +15,10 @@
  ******************************************************************************/
 package org.eclipse.californium.scandium.dtls.cipher;
 
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.junit.Assume.assumeTrue;
 
 import java.util.ArrayList;
@@ -29,6 +32,7 @@ import javax.crypto.spec.SecretKeySpec;
 
 import org.eclipse.californium.elements.category.Small;
 import org.eclipse.californium.elements.util.Bytes;
+import org.eclipse.californium.elements.util.StringUtil;
 import org.eclipse.californium.scandium.dtls.ProtocolVersion;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -223,4 +227,54 @@ public class CCMBlockCipherTest {
 		CCMBlockCipher.encrypt(aesKey, nonce, additionalData, payloadData, 8);
 	}
 
+	/**
+	 * Test with packet vector #1 of
+	 * <a href="https://tools.ietf.org/html/rfc3610#section-8" target="_blank">
+	 * RFC 3610, Section 8</a>.
+	 */
+	@Test
+	public void testRfc3610PacketVector1() throws Exception {
+		SecretKey key = new SecretKeySpec(StringUtil.hex2ByteArray("C0C1C2C3C4C5C6C7C8C9CACBCCCDCECF"), "AES");
+		byte[] nonce = StringUtil.hex2ByteArray("00000003020100A0A1A2A3A4A5");
+		byte[] additionalData = StringUtil.hex2ByteArray("0001020304050607");
+		byte[] message = StringUtil.hex2ByteArray("08090A0B0C0D0E0F101112131415161718191A1B1C1D1E");
+		byte[] expected = StringUtil
+				.hex2ByteArray("588C979A61C663D2F066D0C2C0F989806D5F6B61DAC38417E8D12CFDF926E0");
+
+		byte[] encryptedData = CCMBlockCipher.encrypt(key, nonce, additionalData, message, 8);
+		assertTrue(Arrays.equals(encryptedData, expected));
+		byte[] decryptedData = CCMBlockCipher.decrypt(key, nonce, additionalData, encryptedData, 8);
+		assertTrue(Arrays.equals(decryptedData, message));
+	}
+
+	@Test
+	public void testEncryptAndDecryptWithBuffers() throws Exception {
+		int offset = 5;
+		byte[] encryptedData = CCMBlockCipher.encrypt(aesKey, nonce, additionalData, payloadData, 8);
+		byte[] buffer = new byte[offset + encryptedData.length + 3];
+		int length = CCMBlockCipher.encrypt(aesKey, nonce, additionalData, payloadData, 0, payloadLength, buffer,
+				offset, 8);
+		assertThat(length, is(encryptedData.length));
+		assertTrue(Arrays.equals(Arrays.copyOfRange(buffer, offset, offset + length), encryptedData));
+
+		// decrypt in place
+		length = CCMBlockCipher.decrypt(aesKey, nonce, additionalData, buffer, offset, length, buffer, offset, 8);
+		assertThat(length, is(payloadLength));
+		assertTrue(Arrays.equals(Arrays.copyOfRange(buffer, offset, offset + length), payloadData));
+	}
+
+	@Test
+	public void testDecryptWithBufferClearsOutputOnInvalidMac() throws Exception {
+		assumeTrue("requires payload", payloadLength > 0);
+		byte[] encryptedData = CCMBlockCipher.encrypt(aesKey, nonce, additionalData, payloadData, 8);
+		encryptedData[encryptedData.length - 1] ^= 0x55;
+		byte[] decryptedData = new byte[payloadLength];
+		try {
+			CCMBlockCipher.decrypt(aesKey, nonce, additionalData, encryptedData, 0, encryptedData.length,
+					decryptedData, 0, 8);
+			fail("invalid MAC not detected!");
+		} catch (InvalidMacException ex) {
+			assertTrue(Arrays.equals(decryptedData, new byte[payloadLength]));
+		}
+	}
 }
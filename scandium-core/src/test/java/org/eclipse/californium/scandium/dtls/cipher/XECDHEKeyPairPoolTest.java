@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls.cipher;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.security.KeyPair;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+
+import org.eclipse.californium.elements.category.Medium;
+import org.eclipse.californium.elements.util.TestCondition;
+import org.eclipse.californium.elements.util.TestConditionTools;
+import org.eclipse.californium.scandium.dtls.cipher.XECDHECryptography.SupportedGroup;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(Medium.class)
+public class XECDHEKeyPairPoolTest {
+
+	private static final int SIZE = 4;
+
+	private static final SupportedGroup GROUP = SupportedGroup.secp256r1;
+
+	private XECDHEKeyPairPool pool;
+
+	@Before
+	public void setup() throws InterruptedException {
+		pool = new XECDHEKeyPairPool(SIZE, Arrays.asList(GROUP));
+		pool.start();
+		waitForFilledPool();
+	}
+
+	@After
+	public void tearDown() {
+		pool.stop();
+	}
+
+	@Test
+	public void testTakeKeyPairOnlyOnce() throws Exception {
+		KeyPair keyPair1 = pool.take(GROUP);
+		KeyPair keyPair2 = pool.take(GROUP);
+		assertThat(keyPair1, is(notNullValue()));
+		assertThat(keyPair2, is(notNullValue()));
+		assertThat(keyPair1, is(not(sameInstance(keyPair2))));
+		assertThat(pool.getHits(), is(2L));
+		// refilled
+		waitForFilledPool();
+	}
+
+	@Test
+	public void testTakeNotPooledGroup() throws Exception {
+		assertThat(pool.take(SupportedGroup.secp384r1), is(nullValue()));
+		assertThat(pool.getPooled(SupportedGroup.secp384r1), is(0));
+	}
+
+	@Test
+	public void testTakeFromExhaustedPool() throws Exception {
+		pool.stop();
+		assertThat(pool.getPooled(GROUP), is(0));
+		assertThat(pool.take(GROUP), is(nullValue()));
+		assertThat(pool.getMisses(), is(1L));
+	}
+
+	@Test
+	public void testKeyExchangeWithPooledKeyPairs() throws Exception {
+		XECDHECryptography ecdhe1 = new XECDHECryptography(GROUP, pool);
+		XECDHECryptography ecdhe2 = new XECDHECryptography(GROUP, pool);
+		assertThat(pool.getHits(), is(2L));
+
+		SecretKey secret1 = ecdhe1.generateSecret(ecdhe2.getEncodedPoint());
+		SecretKey secret2 = ecdhe2.generateSecret(ecdhe1.getEncodedPoint());
+		assertThat(secret1, is(secret2));
+	}
+
+	private void waitForFilledPool() throws InterruptedException {
+		TestConditionTools.waitForCondition(2000, 20, TimeUnit.MILLISECONDS, new TestCondition() {
+
+			@Override
+			public boolean isFulFilled() throws IllegalStateException {
+				return pool.getPooled(GROUP) == SIZE;
+			}
+		});
+		assertThat(pool.getPooled(GROUP), is(SIZE));
+	}
+}
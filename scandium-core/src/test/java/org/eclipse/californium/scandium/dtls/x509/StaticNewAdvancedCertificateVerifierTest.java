@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch.IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch.IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls.x509;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.security.GeneralSecurityException;
+import java.security.cert.CertPath;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.elements.category.Small;
+import org.eclipse.californium.elements.rule.TestTimeRule;
+import org.eclipse.californium.scandium.dtls.CertificateMessage;
+import org.eclipse.californium.scandium.dtls.CertificateVerificationResult;
+import org.eclipse.californium.scandium.dtls.ConnectionId;
+import org.eclipse.californium.scandium.dtls.DtlsTestTools;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(Small.class)
+public class StaticNewAdvancedCertificateVerifierTest {
+
+	private static final ConnectionId CID = new ConnectionId(new byte[] { 1, 2, 3, 4 });
+
+	@Rule
+	public TestTimeRule time = new TestTimeRule();
+
+	private X509Certificate[] chain;
+	private long notAfter;
+
+	@Before
+	public void setUp() {
+		chain = DtlsTestTools.getClientCertificateChain();
+		notAfter = Long.MAX_VALUE;
+		for (X509Certificate certificate : chain) {
+			notAfter = Math.min(notAfter, certificate.getNotAfter().getTime());
+		}
+	}
+
+	@Test
+	public void testCachedChain() {
+		TestVerifier verifier = new TestVerifier(1, TimeUnit.MINUTES);
+		verifier.now = notAfter - TimeUnit.DAYS.toMillis(1);
+
+		CertificateVerificationResult result1 = verify(verifier, chain);
+		assertThat(result1.getException(), is(nullValue()));
+		assertThat(verifier.validations, is(1));
+		assertThat(verifier.getCacheMisses(), is(1L));
+		assertThat(verifier.getCacheHits(), is(0L));
+
+		CertificateVerificationResult result2 = verify(verifier, chain);
+		assertThat(result2.getException(), is(nullValue()));
+		assertThat(result2.getCertificatePath(), is(sameInstance(result1.getCertificatePath())));
+		assertThat(verifier.validations, is(1));
+		assertThat(verifier.getCacheMisses(), is(1L));
+		assertThat(verifier.getCacheHits(), is(1L));
+
+		verifier.clearCache();
+		CertificateVerificationResult result3 = verify(verifier, chain);
+		assertThat(result3.getException(), is(nullValue()));
+		assertThat(verifier.validations, is(2));
+		assertThat(verifier.getCacheMisses(), is(2L));
+		assertThat(verifier.getCacheHits(), is(1L));
+	}
+
+	@Test
+	public void testCachedChainExpiresAtNotAfter() {
+		TestVerifier verifier = new TestVerifier(0, TimeUnit.MINUTES);
+		verifier.now = notAfter - 1;
+
+		verify(verifier, chain);
+		verify(verifier, chain);
+		assertThat(verifier.validations, is(1));
+		assertThat(verifier.getCacheHits(), is(1L));
+
+		verifier.now = notAfter;
+		verify(verifier, chain);
+		assertThat(verifier.validations, is(2));
+		assertThat(verifier.getCacheMisses(), is(2L));
+		assertThat(verifier.getCacheHits(), is(1L));
+	}
+
+	@Test
+	public void testCacheExpirationIsAbsolute() {
+		TestVerifier verifier = new TestVerifier(60, TimeUnit.SECONDS);
+		verifier.now = notAfter - TimeUnit.DAYS.toMillis(1);
+
+		verify(verifier, chain);
+		time.addTestTimeShift(40, TimeUnit.SECONDS);
+		verify(verifier, chain);
+		assertThat(verifier.validations, is(1));
+		assertThat(verifier.getCacheHits(), is(1L));
+
+		// 80s after the validation, though only 40s after the last use
+		time.addTestTimeShift(40, TimeUnit.SECONDS);
+		verify(verifier, chain);
+		assertThat(verifier.validations, is(2));
+		assertThat(verifier.getCacheMisses(), is(2L));
+		assertThat(verifier.getCacheHits(), is(1L));
+	}
+
+	@Test
+	public void testFailedChainNotCached() {
+		StaticNewAdvancedCertificateVerifier verifier = (StaticNewAdvancedCertificateVerifier) StaticNewAdvancedCertificateVerifier
+				.builder().setTrustedCertificates(DtlsTestTools.getAlternativeCA())
+				.setVerificationCache(10, 1, TimeUnit.MINUTES).build();
+
+		CertificateVerificationResult result = verify(verifier, chain);
+		assertThat(result.getException(), is(notNullValue()));
+		result = verify(verifier, chain);
+		assertThat(result.getException(), is(notNullValue()));
+		assertThat(verifier.getCacheMisses(), is(2L));
+		assertThat(verifier.getCacheHits(), is(0L));
+	}
+
+	@Test
+	public void testCacheDisabled() {
+		StaticNewAdvancedCertificateVerifier verifier = (StaticNewAdvancedCertificateVerifier) StaticNewAdvancedCertificateVerifier
+				.builder().setTrustedCertificates(DtlsTestTools.getTrustedCertificates()).build();
+
+		verify(verifier, chain);
+		verify(verifier, chain);
+		assertThat(verifier.getCacheMisses(), is(0L));
+		assertThat(verifier.getCacheHits(), is(0L));
+	}
+
+	private static CertificateVerificationResult verify(NewAdvancedCertificateVerifier verifier,
+			X509Certificate[] chain) {
+		CertificateMessage message = new CertificateMessage(Arrays.asList(chain));
+		return verifier.verifyCertificate(CID, null, true, false, message);
+	}
+
+	/**
+	 * Verifier with stubbed path validation and adjustable time.
+	 * 
+	 * Makes the tests independent of the validity of the demo certificates.
+	 */
+	private static class TestVerifier extends StaticNewAdvancedCertificateVerifier {
+
+		private volatile long now;
+		private volatile int validations;
+
+		private TestVerifier(long cacheExpiration, TimeUnit unit) {
+			super(DtlsTestTools.getTrustedCertificates(), null, null, 10, cacheExpiration, unit);
+		}
+
+		@Override
+		protected CertPath validateChain(boolean truncateCertificatePath, CertPath certChain)
+				throws GeneralSecurityException {
+			++validations;
+			return certChain;
+		}
+
+		@Override
+		protected long currentTimeMillis() {
+			return now;
+		}
+	}
+}